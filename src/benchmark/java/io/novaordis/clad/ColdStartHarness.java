@@ -0,0 +1,514 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.clad;
+
+import io.novaordis.clad.command.CdsCommand;
+import io.novaordis.clad.discovery.DiscoveryCache;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Measures cold process startup: repeatedly forks fresh JVMs that run CommandLineApplication.main() (through
+ * ColdStartProbe) and records, for each run, the wall time from fork to exit, the peak resident set size and the
+ * number of classes loaded by the time the JVM exited. The results are reported as a percentile table on stdout, and
+ * optionally as CSV files that can be diffed between releases.
+ *
+ * The forked JVMs run the test application (application.name=test, the TestApplicationRuntime fixture) with the
+ * class path of the harness, optionally padded with a SyntheticClasspath. Built-in scenarios:
+ *
+ *   version          - a built-in command that does not need the runtime
+ *   help             - --help
+ *   needs-runtime    - a no-op command that initializes the runtime
+ *   unknown-command  - an unknown command, which exits with 1
+ *
+ * Usage (see the "benchmarks" Maven profile):
+ *
+ * mvn -Pbenchmarks test-compile exec:exec@cold-start -Dcold.start.args="--runs=50 --jars=100"
+ *
+ * Options:
+ *
+ *   --runs=<n>                  measured runs per scenario (default 20)
+ *   --warmup=<n>                discarded runs per scenario (default 2)
+ *   --scenarios=<a,b,...>       subset of scenarios (default all)
+ *   --jars=<n>                  synthetic JARs added to the class path (default 0)
+ *   --classes-per-jar=<n>       classes per synthetic JAR (default 1000)
+ *   --directory-classes=<n>     classes in the synthetic directory tree (default 0)
+ *   --depth=<n>                 synthetic directory tree depth (default 10)
+ *   --jvm-args="<args>"         extra arguments for the forked JVMs, space separated
+ *   --csv=<file>                percentile summary as CSV
+ *   --raw-csv=<file>            one CSV line per run
+ *
+ * The forked JVMs share a discovery cache file private to the harness run, so the warmup runs populate it the same
+ * way the first run after an install does. The test classes come with a build-time discovery index, which makes the
+ * class path scan unnecessary: pass --jvm-args="-Dclad.disable.index=true" for the synthetic class path to be
+ * scanned, and add -Dclad.disable.cache=true to measure uncached scans.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+public class ColdStartHarness {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    public static final String[] METRICS = { "wall_ms", "peak_rss_kb", "classes_loaded" };
+
+    public static final double[] PERCENTILES = { 50d, 90d, 99d };
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    public static void main(String[] args) throws Exception {
+
+        ColdStartHarness h = new ColdStartHarness();
+
+        try {
+
+            h.configure(args);
+        }
+        catch(IllegalArgumentException e) {
+
+            System.err.println("[error]: " + e.getMessage());
+            System.exit(1);
+        }
+
+        h.run();
+    }
+
+    /**
+     * @return the given percentile of the values, nearest-rank method. The list must be sorted.
+     */
+    public static double percentile(List<Double> sorted, double percentile) {
+
+        if (sorted.isEmpty()) {
+            return Double.NaN;
+        }
+
+        int rank = (int)Math.ceil(percentile / 100d * sorted.size());
+        return sorted.get(Math.max(0, Math.min(sorted.size() - 1, rank - 1)));
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private int runs;
+    private int warmup;
+    private int jars;
+    private int classesPerJar;
+    private int directoryClasses;
+    private int depth;
+    private List<String> jvmArguments;
+    private File csv;
+    private File rawCsv;
+
+    // scenario name - command line arguments
+    private Map<String, List<String>> scenarios;
+
+    // scenario name - metric - values, in the order of METRICS
+    private Map<String, List<List<Double>>> results;
+
+    // scenario name - exit codes observed
+    private Map<String, TreeSet<Integer>> exitCodes;
+
+    private List<String> rawLines;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public ColdStartHarness() {
+
+        this.runs = 20;
+        this.warmup = 2;
+        this.jars = 0;
+        this.classesPerJar = 1000;
+        this.directoryClasses = 0;
+        this.depth = 10;
+        this.jvmArguments = new ArrayList<>();
+
+        this.scenarios = new LinkedHashMap<>();
+        this.scenarios.put("version", Collections.singletonList("version"));
+        this.scenarios.put("help", Collections.singletonList("--help"));
+        this.scenarios.put("needs-runtime", Collections.singletonList("needs-runtime"));
+        this.scenarios.put("unknown-command", Collections.singletonList("no-such-command"));
+
+        this.results = new LinkedHashMap<>();
+        this.exitCodes = new LinkedHashMap<>();
+        this.rawLines = new ArrayList<>();
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @exception IllegalArgumentException on invalid arguments.
+     */
+    public void configure(String[] args) {
+
+        for(String a: args) {
+
+            int i = a.indexOf('=');
+
+            if (!a.startsWith("--") || i == -1) {
+                throw new IllegalArgumentException("invalid argument " + a + ", expecting --<name>=<value>");
+            }
+
+            String name = a.substring(2, i);
+            String value = a.substring(i + 1);
+
+            if ("runs".equals(name)) {
+                runs = toPositiveInt(name, value);
+            }
+            else if ("warmup".equals(name)) {
+                warmup = toInt(name, value);
+            }
+            else if ("jars".equals(name)) {
+                jars = toInt(name, value);
+            }
+            else if ("classes-per-jar".equals(name)) {
+                classesPerJar = toInt(name, value);
+            }
+            else if ("directory-classes".equals(name)) {
+                directoryClasses = toInt(name, value);
+            }
+            else if ("depth".equals(name)) {
+                depth = toPositiveInt(name, value);
+            }
+            else if ("jvm-args".equals(name)) {
+                jvmArguments.addAll(Arrays.asList(value.trim().split("\\s+")));
+            }
+            else if ("csv".equals(name)) {
+                csv = new File(value);
+            }
+            else if ("raw-csv".equals(name)) {
+                rawCsv = new File(value);
+            }
+            else if ("scenarios".equals(name)) {
+
+                Map<String, List<String>> selected = new LinkedHashMap<>();
+
+                for(String s: value.split(",")) {
+
+                    List<String> scenarioArgs = scenarios.get(s.trim());
+
+                    if (scenarioArgs == null) {
+                        throw new IllegalArgumentException(
+                                "unknown scenario " + s + ", known scenarios are " + scenarios.keySet());
+                    }
+
+                    selected.put(s.trim(), scenarioArgs);
+                }
+
+                scenarios = selected;
+            }
+            else {
+                throw new IllegalArgumentException("unknown argument " + a);
+            }
+        }
+    }
+
+    public void run() throws Exception {
+
+        File work = Files.createTempDirectory("clad-cold-start-").toFile();
+
+        SyntheticClasspath fixture = null;
+
+        try {
+
+            String classPath = System.getProperty(InstanceFactory.JAVA_CLASS_PATH_SYSTEM_PROPERTY_NAME);
+
+            if (jars > 0 || directoryClasses > 0) {
+
+                fixture = new SyntheticClasspath(
+                        new File(work, "classpath"), Math.max(jars, 1), jars > 0 ? classesPerJar : 0,
+                        directoryClasses, depth);
+
+                fixture.generate();
+                classPath = classPath + File.pathSeparator + fixture.getClassPath();
+            }
+
+            System.out.println("cold start: " + runs + " runs (" + warmup + " warmup) per scenario" +
+                    (fixture == null ? "" : ", " + fixture));
+
+            for(Map.Entry<String, List<String>> s: scenarios.entrySet()) {
+
+                List<List<Double>> values = new ArrayList<>();
+
+                for(int i = 0; i < METRICS.length; i ++) {
+                    values.add(new ArrayList<Double>());
+                }
+
+                results.put(s.getKey(), values);
+                exitCodes.put(s.getKey(), new TreeSet<Integer>());
+
+                for(int i = 0; i < warmup + runs; i ++) {
+
+                    Run r = fork(work, classPath, s.getValue());
+
+                    if (i < warmup) {
+                        continue;
+                    }
+
+                    values.get(0).add(r.wallMs);
+                    values.get(1).add((double)r.peakRssKb);
+                    values.get(2).add((double)r.classesLoaded);
+                    exitCodes.get(s.getKey()).add(r.exitCode);
+
+                    rawLines.add(String.format(Locale.US, "%s,%d,%.3f,%d,%d,%d",
+                            s.getKey(), i - warmup, r.wallMs, r.peakRssKb, r.classesLoaded, r.exitCode));
+                }
+            }
+
+            printTable(System.out);
+
+            if (csv != null) {
+
+                Files.write(csv.toPath(), getSummaryCsv().getBytes(StandardCharsets.UTF_8));
+                System.out.println("summary written to " + csv);
+            }
+
+            if (rawCsv != null) {
+
+                StringBuilder sb = new StringBuilder("scenario,run,wall_ms,peak_rss_kb,classes_loaded,exit_code\n");
+
+                for(String line: rawLines) {
+                    sb.append(line).append('\n');
+                }
+
+                Files.write(rawCsv.toPath(), sb.toString().getBytes(StandardCharsets.UTF_8));
+                System.out.println("raw results written to " + rawCsv);
+            }
+        }
+        finally {
+
+            SyntheticClasspath.delete(work);
+        }
+    }
+
+    public String getSummaryCsv() {
+
+        StringBuilder sb = new StringBuilder("scenario,metric,runs,min");
+
+        for(double p: PERCENTILES) {
+            sb.append(",p").append((int)p);
+        }
+
+        sb.append(",max,mean\n");
+
+        for(Map.Entry<String, List<List<Double>>> e: results.entrySet()) {
+
+            for(int m = 0; m < METRICS.length; m ++) {
+
+                List<Double> sorted = new ArrayList<>(e.getValue().get(m));
+                Collections.sort(sorted);
+
+                sb.append(e.getKey()).append(',').append(METRICS[m]).append(',').append(sorted.size());
+                sb.append(',').append(format(sorted.isEmpty() ? Double.NaN : sorted.get(0)));
+
+                for(double p: PERCENTILES) {
+                    sb.append(',').append(format(percentile(sorted, p)));
+                }
+
+                sb.append(',').append(format(sorted.isEmpty() ? Double.NaN : sorted.get(sorted.size() - 1)));
+                sb.append(',').append(format(mean(sorted))).append('\n');
+            }
+        }
+
+        return sb.toString();
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    void printTable(PrintStream out) {
+
+        out.printf(Locale.US, "%n%-18s%-16s%10s%10s%10s%10s%10s%10s  %s%n",
+                "scenario", "metric", "min", "p50", "p90", "p99", "max", "mean", "exit codes");
+
+        for(Map.Entry<String, List<List<Double>>> e: results.entrySet()) {
+
+            for(int m = 0; m < METRICS.length; m ++) {
+
+                List<Double> sorted = new ArrayList<>(e.getValue().get(m));
+                Collections.sort(sorted);
+
+                out.printf(Locale.US, "%-18s%-16s%10s%10s%10s%10s%10s%10s  %s%n",
+                        m == 0 ? e.getKey() : "",
+                        METRICS[m],
+                        format(sorted.isEmpty() ? Double.NaN : sorted.get(0)),
+                        format(percentile(sorted, 50)),
+                        format(percentile(sorted, 90)),
+                        format(percentile(sorted, 99)),
+                        format(sorted.isEmpty() ? Double.NaN : sorted.get(sorted.size() - 1)),
+                        format(mean(sorted)),
+                        m == 0 ? exitCodes.get(e.getKey()) : "");
+            }
+        }
+    }
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private Run fork(File work, String classPath, List<String> arguments) throws Exception {
+
+        File probeFile = new File(work, "probe");
+        File classLog = new File(work, "classes.log");
+        File output = new File(work, "output.log");
+
+        Files.deleteIfExists(probeFile.toPath());
+        Files.deleteIfExists(classLog.toPath());
+
+        int javaVersion = CdsCommand.toJavaFeatureVersion(System.getProperty("java.specification.version"));
+
+        List<String> commandLine = new ArrayList<>();
+
+        commandLine.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getPath());
+
+        if (javaVersion >= 9) {
+
+            commandLine.add("-Xlog:class+load=info:file=" + classLog.getPath());
+        }
+        else {
+
+            // Java 8 logs class loading on stdout only
+            commandLine.add("-verbose:class");
+        }
+
+        commandLine.add("-Dapplication.name=test");
+        commandLine.add("-D" + ColdStartProbe.PROBE_FILE_SYSTEM_PROPERTY_NAME + "=" + probeFile.getPath());
+        commandLine.add("-D" + DiscoveryCache.CACHE_FILE_SYSTEM_PROPERTY_NAME + "=" + new File(work, "cache"));
+        commandLine.addAll(jvmArguments);
+        commandLine.add("-cp");
+        commandLine.add(classPath);
+        commandLine.add(ColdStartProbe.class.getName());
+        commandLine.addAll(arguments);
+
+        ProcessBuilder pb = new ProcessBuilder(commandLine).redirectErrorStream(true);
+        pb.redirectOutput(javaVersion >= 9 ? output : classLog);
+
+        long t0 = System.nanoTime();
+        Process p = pb.start();
+        int exitCode = p.waitFor();
+        long t1 = System.nanoTime();
+
+        Run r = new Run();
+
+        r.wallMs = (t1 - t0) / 1000000d;
+        r.exitCode = exitCode;
+        r.peakRssKb = probeFile.isFile() ?
+                Long.parseLong(new String(Files.readAllBytes(probeFile.toPath()), StandardCharsets.UTF_8).trim()) : -1L;
+        r.classesLoaded = countClasses(classLog, javaVersion >= 9 ? "class,load" : "[Loaded ");
+
+        return r;
+    }
+
+    private static long countClasses(File log, String marker) throws IOException {
+
+        if (!log.isFile()) {
+            return -1L;
+        }
+
+        long count = 0;
+
+        try(BufferedReader br = new BufferedReader(new FileReader(log))) {
+
+            String line;
+
+            while((line = br.readLine()) != null) {
+
+                if (line.contains(marker)) {
+                    count ++;
+                }
+            }
+        }
+
+        return count;
+    }
+
+    private static double mean(List<Double> values) {
+
+        if (values.isEmpty()) {
+            return Double.NaN;
+        }
+
+        double sum = 0;
+
+        for(double v: values) {
+            sum += v;
+        }
+
+        return sum / values.size();
+    }
+
+    private static String format(double d) {
+
+        if (Double.isNaN(d)) {
+            return "n/a";
+        }
+
+        return d == Math.rint(d) && Math.abs(d) < 1e15 ?
+                Long.toString((long)d) : String.format(Locale.US, "%.1f", d);
+    }
+
+    private static int toInt(String name, String value) {
+
+        try {
+
+            int i = Integer.parseInt(value);
+
+            if (i < 0) {
+                throw new IllegalArgumentException("--" + name + " cannot be negative");
+            }
+
+            return i;
+        }
+        catch(NumberFormatException e) {
+
+            throw new IllegalArgumentException("invalid --" + name + " value: " + value);
+        }
+    }
+
+    private static int toPositiveInt(String name, String value) {
+
+        int i = toInt(name, value);
+
+        if (i == 0) {
+            throw new IllegalArgumentException("--" + name + " must be positive");
+        }
+
+        return i;
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+    private static class Run {
+
+        double wallMs;
+        long peakRssKb;
+        long classesLoaded;
+        int exitCode;
+    }
+
+}
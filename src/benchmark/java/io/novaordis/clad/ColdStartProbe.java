@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.clad;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+
+/**
+ * The main class of the JVMs forked by ColdStartHarness: installs a shutdown hook that records the peak resident set
+ * size, then delegates to CommandLineApplication.main(), which exits the JVM.
+ *
+ * The hook reads /proc/self/status, so it does not load the management classes, and writes "<peak-rss-kb>" into the
+ * file designated by -Dclad.cold.start.probe.file. The value is -1 where /proc is not available.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+public class ColdStartProbe {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    public static final String PROBE_FILE_SYSTEM_PROPERTY_NAME = "clad.cold.start.probe.file";
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    public static void main(String[] args) throws Exception {
+
+        final String file = System.getProperty(PROBE_FILE_SYSTEM_PROPERTY_NAME);
+
+        if (file != null) {
+
+            Runtime.getRuntime().addShutdownHook(new Thread() {
+
+                @Override
+                public void run() {
+
+                    try(FileWriter w = new FileWriter(file)) {
+
+                        w.write(Long.toString(getPeakRssKb()));
+                    }
+                    catch(IOException e) {
+
+                        // the harness reports the missing value
+                    }
+                }
+            });
+        }
+
+        CommandLineApplication.main(args);
+    }
+
+    /**
+     * @return VmHWM from /proc/self/status, in KB, or -1 if not available.
+     */
+    static long getPeakRssKb() {
+
+        try(BufferedReader br = new BufferedReader(new FileReader("/proc/self/status"))) {
+
+            String line;
+
+            while((line = br.readLine()) != null) {
+
+                if (line.startsWith("VmHWM:")) {
+
+                    return Long.parseLong(line.substring("VmHWM:".length()).replace("kB", "").trim());
+                }
+            }
+        }
+        catch(Exception e) {
+
+            // not Linux
+        }
+
+        return -1L;
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.clad;
+
+import io.novaordis.clad.discovery.ClasspathNameIndex;
+import io.novaordis.clad.discovery.DiscoveryCache;
+import io.novaordis.clad.discovery.DiscoveryIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * InstanceFactory.getFullyQualifiedClassName() over a synthetic class path (SyntheticClasspath). The build-time
+ * discovery index and the persistent JAR cache are disabled, so the class path is actually scanned:
+ *
+ * - coldCommand: the Command name index is rebuilt on every invocation, which is what a CLI process pays once.
+ * - warmCommand: the Command name index is built once, which is what a long-lived process pays per lookup.
+ * - unindexedSuffix: a suffix the index does not cover, resolved by walking the directories and the JARs.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InstanceFactoryBenchmark {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    @Param({ "10", "100" })
+    public int jars;
+
+    @Param({ "100", "1000" })
+    public int classesPerJar;
+
+    @Param({ "1000" })
+    public int directoryClasses;
+
+    @Param({ "20" })
+    public int depth;
+
+    private SyntheticClasspath fixture;
+
+    private String originalClassPath;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+
+        fixture = new SyntheticClasspath(
+                Files.createTempDirectory("clad-benchmark-").toFile(), jars, classesPerJar, directoryClasses, depth);
+
+        fixture.generate();
+
+        System.setProperty(DiscoveryIndex.DISABLE_INDEX_SYSTEM_PROPERTY_NAME, "true");
+        System.setProperty(DiscoveryCache.DISABLE_CACHE_SYSTEM_PROPERTY_NAME, "true");
+
+        originalClassPath = System.getProperty(InstanceFactory.JAVA_CLASS_PATH_SYSTEM_PROPERTY_NAME);
+        System.setProperty(InstanceFactory.JAVA_CLASS_PATH_SYSTEM_PROPERTY_NAME, fixture.getClassPath());
+
+        //
+        // fail early if the fixture does not resolve as expected
+        //
+
+        check("Needle", "Command", "synthetic.needle." + SyntheticClasspath.NEEDLE_COMMAND);
+        check("Needle", "Handler", "synthetic.");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+
+        System.setProperty(InstanceFactory.JAVA_CLASS_PATH_SYSTEM_PROPERTY_NAME, originalClassPath);
+        System.clearProperty(DiscoveryIndex.DISABLE_INDEX_SYSTEM_PROPERTY_NAME);
+        System.clearProperty(DiscoveryCache.DISABLE_CACHE_SYSTEM_PROPERTY_NAME);
+        ClasspathNameIndex.reset();
+
+        fixture.delete();
+    }
+
+    @Benchmark
+    public String coldCommand() throws Exception {
+
+        ClasspathNameIndex.reset();
+        return InstanceFactory.getFullyQualifiedClassName("Needle", "Command");
+    }
+
+    @Benchmark
+    public String warmCommand() throws Exception {
+
+        return InstanceFactory.getFullyQualifiedClassName("Needle", "Command");
+    }
+
+    @Benchmark
+    public String unindexedSuffix() throws Exception {
+
+        return InstanceFactory.getFullyQualifiedClassName("Needle", "Handler");
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private void check(String prefix, String suffix, String expectedPrefix) throws Exception {
+
+        String s = InstanceFactory.getFullyQualifiedClassName(prefix, suffix);
+
+        if (s == null || !s.startsWith(expectedPrefix)) {
+            throw new IllegalStateException(
+                    prefix + suffix + " resolved to " + s + " in the synthetic class path " + fixture);
+        }
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
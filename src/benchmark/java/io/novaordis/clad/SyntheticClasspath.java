@@ -0,0 +1,330 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.clad;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Generates a reproducible class path for the discovery benchmarks: N JARs with M classes each, and a directory tree
+ * of the given depth. The content depends only on the parameters, so results are comparable across machines.
+ *
+ * The class files are minimal, but valid (public classes extending Object, with no members). One in every 50 classes
+ * follows the Command naming convention, so the class path name index has entries to build. Exactly one class is
+ * named NEEDLE_COMMAND (in the last JAR) and exactly one is named NEEDLE_HANDLER (in the deepest directory), so they
+ * can be resolved without ambiguity.
+ *
+ * Can also be used from the command line:
+ *
+ * java -cp ... io.novaordis.clad.SyntheticClasspath <dir> <jars> <classes-per-jar> <directory-classes> <depth>
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+public class SyntheticClasspath {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    public static final String NEEDLE_COMMAND = "NeedleCommand";
+    public static final String NEEDLE_HANDLER = "NeedleHandler";
+
+    // the classes of a JAR are spread over packages of this size
+    public static final int CLASSES_PER_PACKAGE = 100;
+
+    // 01/01/2016, so the JAR bytes do not depend on when the fixture was generated
+    private static final long ENTRY_TIME = 1451606400000L;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    public static void main(String[] args) throws Exception {
+
+        if (args.length != 5) {
+
+            System.err.println(
+                    "usage: " + SyntheticClasspath.class.getName() +
+                            " <dir> <jars> <classes-per-jar> <directory-classes> <depth>");
+            System.exit(1);
+        }
+
+        SyntheticClasspath c = new SyntheticClasspath(
+                new File(args[0]), Integer.parseInt(args[1]), Integer.parseInt(args[2]),
+                Integer.parseInt(args[3]), Integer.parseInt(args[4]));
+
+        c.generate();
+
+        System.out.println(c.getClassPath());
+    }
+
+    /**
+     * @param internalName the class name in internal form ("a/b/C").
+     *
+     * @return the bytes of a class file declaring an empty public class that extends java.lang.Object.
+     */
+    public static byte[] toClassFile(String internalName) {
+
+        try {
+
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            DataOutputStream dos = new DataOutputStream(baos);
+
+            dos.writeInt(0xCAFEBABE);
+            dos.writeShort(0); // minor version
+            dos.writeShort(52); // Java 8
+
+            //
+            // constant pool: #1 this class, #2 its name, #3 the superclass, #4 its name
+            //
+
+            dos.writeShort(5);
+            dos.writeByte(7);
+            dos.writeShort(2);
+            dos.writeByte(1);
+            dos.writeUTF(internalName);
+            dos.writeByte(7);
+            dos.writeShort(4);
+            dos.writeByte(1);
+            dos.writeUTF("java/lang/Object");
+
+            dos.writeShort(0x0021); // ACC_PUBLIC | ACC_SUPER
+            dos.writeShort(1);
+            dos.writeShort(3);
+            dos.writeShort(0); // interfaces
+            dos.writeShort(0); // fields
+            dos.writeShort(0); // methods
+            dos.writeShort(0); // attributes
+
+            dos.flush();
+
+            return baos.toByteArray();
+        }
+        catch(IOException e) {
+
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private File root;
+    private int jars;
+    private int classesPerJar;
+    private int directoryClasses;
+    private int depth;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    /**
+     * @param root the directory the fixture is generated in. It will be created if it does not exist.
+     * @param directoryClasses the total number of classes in the directory tree, spread evenly over its levels.
+     * @param depth the number of nested packages in the directory tree. Must be at least 1.
+     */
+    public SyntheticClasspath(File root, int jars, int classesPerJar, int directoryClasses, int depth) {
+
+        if (jars < 1 || classesPerJar < 0 || directoryClasses < 0 || depth < 1) {
+            throw new IllegalArgumentException(
+                    "invalid fixture: " + jars + " JARs, " + classesPerJar + " classes per JAR, " +
+                            directoryClasses + " directory classes, depth " + depth);
+        }
+
+        this.root = root;
+        this.jars = jars;
+        this.classesPerJar = classesPerJar;
+        this.directoryClasses = directoryClasses;
+        this.depth = depth;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    public void generate() throws IOException {
+
+        File lib = new File(root, "lib");
+        File classes = new File(root, "classes");
+
+        if (!lib.isDirectory() && !lib.mkdirs()) {
+            throw new IOException("failed to create " + lib);
+        }
+
+        for(int i = 0; i < jars; i ++) {
+
+            writeJar(i);
+        }
+
+        //
+        // the directory tree: synthetic/d0/d1/.../d<depth-1>, each level holding its share of the classes
+        //
+
+        String packagePath = "synthetic";
+
+        for(int level = 0; level < depth; level ++) {
+
+            packagePath += "/d" + level;
+
+            File dir = new File(classes, packagePath);
+
+            if (!dir.isDirectory() && !dir.mkdirs()) {
+                throw new IOException("failed to create " + dir);
+            }
+
+            int count = directoryClasses / depth + (level < directoryClasses % depth ? 1 : 0);
+
+            for(int j = 0; j < count; j ++) {
+
+                String simpleName = toSimpleClassName(j);
+                Files.write(new File(dir, simpleName + ".class").toPath(), toClassFile(packagePath + "/" + simpleName));
+            }
+
+            if (level == depth - 1) {
+
+                Files.write(new File(dir, NEEDLE_HANDLER + ".class").toPath(),
+                        toClassFile(packagePath + "/" + NEEDLE_HANDLER));
+            }
+        }
+    }
+
+    /**
+     * @return the class path: the class directory first, then the JARs, in order.
+     */
+    public String getClassPath() {
+
+        StringBuilder sb = new StringBuilder(new File(root, "classes").getPath());
+
+        for(int i = 0; i < jars; i ++) {
+
+            sb.append(File.pathSeparatorChar).append(getJar(i).getPath());
+        }
+
+        return sb.toString();
+    }
+
+    public File getRoot() {
+
+        return root;
+    }
+
+    /**
+     * Deletes the whole fixture, including the root directory.
+     */
+    public void delete() throws IOException {
+
+        delete(root);
+    }
+
+    @Override
+    public String toString() {
+
+        return root + " (" + jars + " x " + classesPerJar + " JAR classes, " + directoryClasses +
+                " directory classes, depth " + depth + ")";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    /**
+     * Deletes the file, or the directory and everything under it. Does nothing if the file does not exist.
+     */
+    static void delete(File file) throws IOException {
+
+        if (!file.exists()) {
+            return;
+        }
+
+        Files.walkFileTree(file.toPath(), new SimpleFileVisitor<Path>() {
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private File getJar(int index) {
+
+        return new File(new File(root, "lib"), "synthetic-" + index + ".jar");
+    }
+
+    private void writeJar(int index) throws IOException {
+
+        try(ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(getJar(index)))) {
+
+            String currentPackage = null;
+
+            for(int j = 0; j < classesPerJar; j ++) {
+
+                String packagePath = "synthetic/j" + index + "/p" + (j / CLASSES_PER_PACKAGE) + "/";
+
+                if (!packagePath.equals(currentPackage)) {
+
+                    put(zos, packagePath, null);
+                    currentPackage = packagePath;
+                }
+
+                String internalName = packagePath + toSimpleClassName(j);
+                put(zos, internalName + ".class", toClassFile(internalName));
+            }
+
+            if (index == jars - 1) {
+
+                String internalName = "synthetic/needle/" + NEEDLE_COMMAND;
+                put(zos, "synthetic/needle/", null);
+                put(zos, internalName + ".class", toClassFile(internalName));
+            }
+        }
+    }
+
+    private static void put(ZipOutputStream zos, String name, byte[] content) throws IOException {
+
+        ZipEntry e = new ZipEntry(name);
+        e.setTime(ENTRY_TIME);
+        zos.putNextEntry(e);
+
+        if (content != null) {
+            zos.write(content);
+        }
+
+        zos.closeEntry();
+    }
+
+    private static String toSimpleClassName(int index) {
+
+        return index % 50 == 49 ? "Synthetic" + index + "Command" : "Synthetic" + index;
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
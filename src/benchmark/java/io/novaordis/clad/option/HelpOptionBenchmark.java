@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.clad.option;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HelpOption.resolveMacros() on a help text of realistic size, with the given number of macros, one of which expands
+ * into a multi-line command list, the way @COMMANDS@ does, and the rendering of the same text from a cached template,
+ * which is what displaying the help costs in a long-lived process.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HelpOptionBenchmark {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    @Param({ "1", "20" })
+    public int macros;
+
+    private byte[] helpContent;
+
+    private MacroResolver resolver;
+
+    private HelpTemplate template;
+
+    private ByteArrayOutputStream out;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @Setup
+    public void setUp() {
+
+        StringBuilder sb = new StringBuilder("Usage:\n\n    app [global-options] <command> [command-options]\n\n");
+        sb.append("Commands:\n\n@COMMANDS@\n");
+
+        for(int i = 1; i < macros; i ++) {
+
+            sb.append("Section ").append(i).append(": @MACRO").append(i).append("@\n");
+        }
+
+        //
+        // pad to about 4 KB of text without macros
+        //
+
+        while(sb.length() < 4096) {
+
+            sb.append("    Lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do eiusmod tempor.\n");
+        }
+
+        helpContent = sb.toString().getBytes(StandardCharsets.UTF_8);
+        template = HelpTemplate.parse(helpContent);
+        out = new ByteArrayOutputStream(2 * helpContent.length);
+
+        final StringBuilder commands = new StringBuilder();
+
+        for(int i = 0; i < 30; i ++) {
+
+            commands.append("    command-").append(i).append("\n");
+        }
+
+        resolver = new MacroResolver() {
+
+            @Override
+            public String resolveMacro(String macroName) {
+
+                return "COMMANDS".equals(macroName) ? commands.toString() : "value of " + macroName;
+            }
+        };
+    }
+
+    @Benchmark
+    public byte[] resolveMacros() throws Exception {
+
+        return HelpOption.resolveMacros(helpContent, resolver);
+    }
+
+    @Benchmark
+    public int render() throws Exception {
+
+        out.reset();
+        template.render(out, resolver);
+        return out.size();
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
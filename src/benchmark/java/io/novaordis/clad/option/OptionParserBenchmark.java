@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.clad.option;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OptionParser.parse() on a typical and on a 10,000 argument command line, coalesceQuotedSections() on heavily quoted
+ * input and typeHeuristics() on a mix of values of all types. parse() and coalesceQuotedSections() modify the argument
+ * list, so every invocation works on a fresh copy; the cost of the copy is included.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OptionParserBenchmark {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    public static final int LONG_COMMAND_LINE_SIZE = 10000;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private List<String> shortCommandLine;
+    private List<String> longCommandLine;
+    private List<String> quotedCommandLine;
+
+    private Set<Option> required;
+    private Set<Option> optional;
+    private OptionSchema schema;
+
+    private String[] values;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @Setup
+    public void setUp() {
+
+        required = new HashSet<>(Collections.<Option>singletonList(new StringOption("output")));
+
+        optional = new HashSet<>(Arrays.asList(
+                new StringOption('g'),
+                new StringOption("global2"),
+                new LongOption("count"),
+                new BooleanOption('b'),
+                new TimestampOption("from"),
+                new VerboseOption()));
+
+        schema = OptionSchema.compile(required, optional);
+
+        shortCommandLine = Arrays.asList(
+                "-g", "global-value", "--global2=global2-value", "--verbose", "test", "--output=csv", "--count=10",
+                "-b", "--from=07/23/16", "14:00:00", "positional");
+
+        //
+        // known options, unknown options and positional arguments, in equal measure
+        //
+
+        longCommandLine = new ArrayList<>();
+
+        for(int i = 0; longCommandLine.size() < LONG_COMMAND_LINE_SIZE; i ++) {
+
+            longCommandLine.add("--count=" + i);
+            longCommandLine.add("--unknown-" + i + "=something");
+            longCommandLine.add("-g");
+            longCommandLine.add("value-" + i);
+            longCommandLine.add("positional-" + i);
+        }
+
+        quotedCommandLine = new ArrayList<>();
+
+        for(int i = 0; i < 1000; i ++) {
+
+            quotedCommandLine.add("\"double");
+            quotedCommandLine.add("quoted");
+            quotedCommandLine.add("section " + i + "\"");
+            quotedCommandLine.add("'single");
+            quotedCommandLine.add("quoted'");
+            quotedCommandLine.add("--option=\"a");
+            quotedCommandLine.add("b\"");
+            quotedCommandLine.add("unquoted");
+        }
+
+        values = new String[] {
+                "07/23/16 14:00:00", "14:00:00", "12345", "-7", "1.5", "true", "false", "some string", "", "07/23/16"
+        };
+    }
+
+    @Benchmark
+    public List<Option> parseShortCommandLine() throws Exception {
+
+        return OptionParser.parse(0, new ArrayList<>(shortCommandLine), required, optional);
+    }
+
+    @Benchmark
+    public List<Option> parseLongCommandLine() throws Exception {
+
+        return OptionParser.parse(0, new ArrayList<>(longCommandLine), required, optional);
+    }
+
+    @Benchmark
+    public List<Option> parseShortCommandLineWithCompiledSchema() throws Exception {
+
+        return OptionParser.parse(0, new ArrayList<>(shortCommandLine), schema);
+    }
+
+    @Benchmark
+    public List<Option> parseLongCommandLineWithCompiledSchema() throws Exception {
+
+        return OptionParser.parse(0, new ArrayList<>(longCommandLine), schema);
+    }
+
+    @Benchmark
+    public List<String> coalesceQuotedSections() throws Exception {
+
+        List<String> args = new ArrayList<>(quotedCommandLine);
+        OptionParser.coalesceQuotedSections(0, args);
+        return args;
+    }
+
+    @Benchmark
+    public void typeHeuristics(Blackhole blackhole) {
+
+        for(String v: values) {
+
+            blackhole.consume(OptionParser.typeHeuristics(v, null));
+        }
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,508 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.clad;
+
+import io.novaordis.clad.application.ApplicationRuntime;
+import io.novaordis.clad.application.InvocationContext;
+import io.novaordis.utilities.UserErrorException;
+import org.apache.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Batch mode: --batch=<file|-> executes a file of command lines, one per line, in the current JVM. Blank lines and
+ * lines starting with '#' are ignored. A line is split into arguments on whitespace, the way the launcher passes them,
+ * so quoted sections are handled by the option parser, as usual.
+ *
+ * Each line goes through the regular CommandLineApplication.run() path - runtime and command identification, option
+ * parsing, help, required option checks - but class loading and discovery are paid only once, and commands that allow
+ * it (Command.canReuseRuntime()) share the runtime initialized by an earlier line with the same global options.
+ *
+ * Each line's stdout goes to stdout. Its exit code and stderr go to the results stream, which is stderr by default, or
+ * the file designated by --batch-results=<file>, as:
+ *
+ * <line-number> exit <exit-code>
+ * <line-number> stderr <stderr-line>
+ * ...
+ *
+ * --batch-parallelism=N executes up to N lines concurrently. Each line's stdout and stderr are buffered and written out
+ * in submission order, so the output is the same as in sequential mode, as long as the commands are safe to execute
+ * concurrently.
+ *
+ * The batch exits with 0 if all lines succeeded, and with 1 otherwise.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+class Batch {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final Logger log = Logger.getLogger(Batch.class);
+
+    public static final String BATCH_OPTION = "--batch";
+    public static final String PARALLELISM_OPTION = "--batch-parallelism";
+    public static final String RESULTS_OPTION = "--batch-results";
+
+    // designates stdin as batch source
+    public static final String STDIN = "-";
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * The batch options are only recognized before the first non-option argument, so commands can use the same names
+     * for their own options.
+     *
+     * @return the batch described by the command line, or null if the command line does not request batch mode.
+     *
+     * @exception UserErrorException if the batch options are invalid, or combined with other arguments.
+     */
+    static Batch fromArguments(String[] args) throws UserErrorException {
+
+        String source = null;
+        String parallelism = null;
+        String results = null;
+        List<String> others = new ArrayList<>();
+
+        //
+        // the batch options are leading global options: once the first non-option argument (the command) is seen, the
+        // remaining arguments belong to the command, even if they look like batch options
+        //
+
+        boolean leading = true;
+
+        for(String a: args) {
+
+            leading = leading && a.startsWith("-");
+
+            if (!leading) {
+
+                others.add(a);
+            }
+            else if (a.startsWith(BATCH_OPTION + "=")) {
+
+                source = a.substring(BATCH_OPTION.length() + 1);
+            }
+            else if (a.startsWith(PARALLELISM_OPTION + "=")) {
+
+                parallelism = a.substring(PARALLELISM_OPTION.length() + 1);
+            }
+            else if (a.startsWith(RESULTS_OPTION + "=")) {
+
+                results = a.substring(RESULTS_OPTION.length() + 1);
+            }
+            else {
+
+                others.add(a);
+            }
+        }
+
+        if (source == null) {
+
+            if (parallelism != null || results != null) {
+                throw new UserErrorException(
+                        PARALLELISM_OPTION + " and " + RESULTS_OPTION + " can only be used with " + BATCH_OPTION);
+            }
+
+            return null;
+        }
+
+        if (source.isEmpty()) {
+            throw new UserErrorException(
+                    "missing " + BATCH_OPTION + " file name, use " + BATCH_OPTION + "=- for stdin");
+        }
+
+        if (!others.isEmpty()) {
+            throw new UserErrorException(
+                    BATCH_OPTION + " cannot be combined with other arguments: " + String.join(" ", others));
+        }
+
+        int n = 1;
+
+        if (parallelism != null) {
+
+            try {
+                n = Integer.parseInt(parallelism);
+            }
+            catch(NumberFormatException e) {
+                n = 0;
+            }
+
+            if (n < 1) {
+                throw new UserErrorException("invalid " + PARALLELISM_OPTION + " value \"" + parallelism + "\"");
+            }
+        }
+
+        return new Batch(source, n, results);
+    }
+
+    /**
+     * @return the arguments of the command line, or an empty list if the line is blank or a comment.
+     */
+    static List<String> split(String line) {
+
+        List<String> arguments = new ArrayList<>();
+
+        int i = 0;
+        int length = line.length();
+
+        while(i < length) {
+
+            while(i < length && Character.isWhitespace(line.charAt(i))) {
+                i ++;
+            }
+
+            if (i == length) {
+                break;
+            }
+
+            if (arguments.isEmpty() && line.charAt(i) == '#') {
+                break;
+            }
+
+            int start = i;
+
+            while(i < length && !Character.isWhitespace(line.charAt(i))) {
+                i ++;
+            }
+
+            arguments.add(line.substring(start, i));
+        }
+
+        return arguments;
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private String source;
+    private int parallelism;
+    private String results;
+
+    // the runtimes initialized by the lines executed on a thread, keyed by global arguments; runtimes are not shared
+    // between threads, because commands set the runtime's streams
+    private ThreadLocal<Map<List<String>, ApplicationRuntime>> initializedRuntimes;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    /**
+     * @param source the batch file path, or STDIN.
+     * @param results the results file path. Null means the results are written to stderr.
+     */
+    Batch(String source, int parallelism, String results) {
+
+        this.source = source;
+        this.parallelism = parallelism;
+        this.results = results;
+        this.initializedRuntimes = ThreadLocal.withInitial(HashMap::new);
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @Override
+    public String toString() {
+
+        return "batch " + source + (parallelism > 1 ? " (parallelism " + parallelism + ")" : "");
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    /**
+     * @return 0 if all command lines succeeded, 1 otherwise.
+     */
+    int run(OutputStream stdout, OutputStream stderr) throws Exception {
+
+        //
+        // code that writes to System.out and System.err directly must write into the line's streams
+        //
+
+        InvocationContext.installRoutingStreams();
+
+        InputStream is;
+
+        try {
+
+            is = STDIN.equals(source) ? System.in : new FileInputStream(source);
+        }
+        catch(FileNotFoundException e) {
+
+            throw new UserErrorException("batch file " + source + " not found");
+        }
+
+        OutputStream resultStream = results == null ? stderr : new FileOutputStream(results);
+
+        try {
+
+            BufferedReader reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8));
+
+            boolean failed = parallelism == 1 ?
+                    runSequentially(reader, stdout, resultStream) : runInParallel(reader, stdout, resultStream);
+
+            return failed ? 1 : 0;
+        }
+        finally {
+
+            if (resultStream != stderr) {
+                resultStream.close();
+            }
+
+            if (is != System.in) {
+                is.close();
+            }
+        }
+    }
+
+    String getSource() {
+
+        return source;
+    }
+
+    int getParallelism() {
+
+        return parallelism;
+    }
+
+    String getResults() {
+
+        return results;
+    }
+
+    /**
+     * Executes a command line with the given streams.
+     *
+     * @return the exit code.
+     */
+    int execute(List<String> arguments, OutputStream stdout, OutputStream stderr) throws IOException {
+
+        for(String a: arguments) {
+
+            if (a.startsWith(BATCH_OPTION + "=")) {
+
+                stderr.write(("[error]: batches cannot be nested\n").getBytes());
+                return 1;
+            }
+        }
+
+        InvocationContext parent = InvocationContext.get();
+
+        InvocationContext context = new InvocationContext(
+                parent == null ? new File(".") : parent.getCurrentDirectory(),
+                parent == null ? System.getenv() : parent.getEnvironment(),
+                new ByteArrayInputStream(new byte[0]), stdout, stderr);
+
+        return CommandLineApplication.execute(
+                arguments.toArray(new String[arguments.size()]), context, initializedRuntimes.get());
+    }
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return true if any of the lines failed.
+     */
+    private boolean runSequentially(BufferedReader reader, OutputStream stdout, OutputStream resultStream)
+            throws IOException {
+
+        boolean failed = false;
+        int lineNumber = 0;
+        String line;
+
+        while((line = reader.readLine()) != null) {
+
+            lineNumber ++;
+
+            List<String> arguments = split(line);
+
+            if (arguments.isEmpty()) {
+                continue;
+            }
+
+            ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+
+            int exitCode = execute(arguments, stdout, stderr);
+
+            stdout.flush();
+            writeResult(resultStream, lineNumber, exitCode, stderr.toByteArray());
+
+            failed |= exitCode != 0;
+        }
+
+        return failed;
+    }
+
+    /**
+     * @return true if any of the lines failed.
+     */
+    private boolean runInParallel(BufferedReader reader, OutputStream stdout, OutputStream resultStream)
+            throws Exception {
+
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+
+        //
+        // bound the number of lines in flight, so the buffered output of a slow line does not pile up the output of
+        // all the lines after it
+        //
+
+        Deque<Future<Result>> pending = new ArrayDeque<>();
+        int window = parallelism * 4;
+
+        boolean failed = false;
+
+        try {
+
+            int lineNumber = 0;
+            String line;
+
+            while((line = reader.readLine()) != null) {
+
+                lineNumber ++;
+
+                List<String> arguments = split(line);
+
+                if (arguments.isEmpty()) {
+                    continue;
+                }
+
+                if (pending.size() == window) {
+
+                    failed |= drain(pending.removeFirst(), stdout, resultStream);
+                }
+
+                pending.addLast(executor.submit(InvocationContext.wrap(new Line(lineNumber, arguments))));
+            }
+
+            while(!pending.isEmpty()) {
+
+                failed |= drain(pending.removeFirst(), stdout, resultStream);
+            }
+        }
+        finally {
+
+            executor.shutdownNow();
+        }
+
+        return failed;
+    }
+
+    /**
+     * @return true if the line failed.
+     */
+    private static boolean drain(Future<Result> future, OutputStream stdout, OutputStream resultStream)
+            throws Exception {
+
+        Result r;
+
+        try {
+
+            r = future.get();
+        }
+        catch(ExecutionException e) {
+
+            throw (Exception)e.getCause();
+        }
+
+        stdout.write(r.stdout);
+        stdout.flush();
+        writeResult(resultStream, r.lineNumber, r.exitCode, r.stderr);
+
+        return r.exitCode != 0;
+    }
+
+    private static void writeResult(OutputStream resultStream, int lineNumber, int exitCode, byte[] stderr)
+            throws IOException {
+
+        StringBuilder sb = new StringBuilder();
+
+        sb.append(lineNumber).append(" exit ").append(exitCode).append('\n');
+
+        if (stderr.length > 0) {
+
+            String s = new String(stderr);
+
+            for(String l: s.split("\n")) {
+
+                sb.append(lineNumber).append(" stderr ").append(l).append('\n');
+            }
+        }
+
+        resultStream.write(sb.toString().getBytes());
+        resultStream.flush();
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+    private static class Result {
+
+        private int lineNumber;
+        private int exitCode;
+        private byte[] stdout;
+        private byte[] stderr;
+
+        Result(int lineNumber, int exitCode, byte[] stdout, byte[] stderr) {
+
+            this.lineNumber = lineNumber;
+            this.exitCode = exitCode;
+            this.stdout = stdout;
+            this.stderr = stderr;
+        }
+    }
+
+    private class Line implements Callable<Result> {
+
+        private int lineNumber;
+        private List<String> arguments;
+
+        Line(int lineNumber, List<String> arguments) {
+
+            this.lineNumber = lineNumber;
+            this.arguments = arguments;
+        }
+
+        @Override
+        public Result call() throws Exception {
+
+            ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+            ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+
+            int exitCode = execute(arguments, stdout, stderr);
+
+            return new Result(lineNumber, exitCode, stdout.toByteArray(), stderr.toByteArray());
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.clad;
+
+import io.novaordis.clad.application.InvocationContext;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Runs the command lines of one clad application in-process, for services that embed clad commands.
+ *
+ * An engine is built once per application. It resolves the application runtime and the command classes available on
+ * the class path into an immutable registry, at construction, and it can then be used by any number of threads at the
+ * same time: each invocation gets its own configuration, runtime and command instances, and runs under its own
+ * InvocationContext (current directory, environment, standard streams). Invocations do not read or write system
+ * properties: the application name is the engine's, and not the application.name system property's.
+ *
+ * Commands that write to System.out or System.err directly, instead of to the runtime's streams, write into the
+ * invocation's streams only if the embedding process installs the routing streams with
+ * InvocationContext.installRoutingStreams() - the engine does not replace the JVM-wide streams on its own. Batch mode
+ * and stdio server mode are not available through the engine.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+public class CladEngine {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final EngineRegistry registry;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    /**
+     * @param applicationName the application name, as it would be specified with -Dapplication.name. Commands and the
+     *                        application runtime are looked up on the class path, in the InstanceFactory.searchOrder
+     *                        in effect when the engine is built.
+     *
+     * @exception io.novaordis.utilities.UserErrorException if no application runtime is found for the name.
+     */
+    public CladEngine(String applicationName) throws Exception {
+
+        this.registry = EngineRegistry.build(applicationName, InstanceFactory.searchOrder);
+    }
+
+    /**
+     * @param registry the names the engine resolves.
+     */
+    CladEngine(EngineRegistry registry) {
+
+        this.registry = registry;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    public String getApplicationName() {
+
+        return registry.getApplicationName();
+    }
+
+    /**
+     * Runs one command line on the calling thread. Errors, including internal errors, are reported on the invocation's
+     * stderr, and reflected in the exit code.
+     *
+     * @param io the invocation's current directory, environment and standard streams.
+     *
+     * @return the exit code the process would have exited with, had the command line been run by the launcher.
+     *
+     * @exception IOException if the error report cannot be written to the invocation's stderr.
+     */
+    public int invoke(String[] argv, InvocationContext io) throws IOException {
+
+        if (argv == null) {
+            throw new IllegalArgumentException("null argument array");
+        }
+
+        if (io == null) {
+            throw new IllegalArgumentException("null invocation context");
+        }
+
+        return CommandLineApplication.execute(argv.clone(), io, registry, null);
+    }
+
+    /**
+     * Runs one command line on the calling thread, in the process' current directory and environment, with an empty
+     * stdin.
+     *
+     * @see CladEngine#invoke(String[], InvocationContext)
+     */
+    public int invoke(String[] argv, OutputStream stdout, OutputStream stderr) throws IOException {
+
+        return invoke(argv, new InvocationContext(
+                new File("."), System.getenv(), new ByteArrayInputStream(new byte[0]), stdout, stderr));
+    }
+
+    @Override
+    public String toString() {
+
+        return "CladEngine[" + registry.getApplicationName() + "]";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    EngineRegistry getRegistry() {
+
+        return registry;
+    }
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
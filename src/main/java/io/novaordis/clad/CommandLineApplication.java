@@ -17,23 +17,28 @@
 package io.novaordis.clad;
 
 import io.novaordis.clad.application.ApplicationRuntime;
+import io.novaordis.clad.application.InvocationContext;
 import io.novaordis.clad.command.Command;
 import io.novaordis.clad.configuration.Configuration;
 import io.novaordis.clad.configuration.ConfigurationImpl;
+import io.novaordis.clad.discovery.Registries;
 import io.novaordis.clad.option.HelpOption;
 import io.novaordis.clad.option.Option;
 import io.novaordis.clad.option.OptionParser;
+import io.novaordis.clad.option.OptionSchema;
 import io.novaordis.clad.option.VerboseOption;
 import io.novaordis.utilities.UserErrorException;
 import io.novaordis.utilities.logging.StderrVerboseLogging;
 import org.apache.log4j.Logger;
 
+import java.io.IOException;
 import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -50,6 +55,14 @@ public class CommandLineApplication {
 
     public static void main(String[] args) throws Exception {
 
+        //
+        // created first, so it records the JVM uptime at main() entry; disabled unless -Dclad.startup.report is set
+        //
+
+        StartupReport startupReport = StartupReport.fromSystemProperties();
+
+        startupReport.phase(StartupReport.LOGGING);
+
         //
         // turn on verbose logging as soon as we can. See
         // https://kb.novaordis.com/index.php/Project_log4j_Debugging_on_--verbose#Overview for more details.
@@ -62,7 +75,9 @@ public class CommandLineApplication {
         //noinspection finally
         try {
 
-            exitCode = new CommandLineApplication().run(args);
+            CommandLineApplication application = new CommandLineApplication();
+            application.setStartupReport(startupReport);
+            exitCode = application.run(args);
         }
         catch(Throwable t) {
 
@@ -70,10 +85,73 @@ public class CommandLineApplication {
         }
         finally {
 
+            startupReport.write();
             System.exit(exitCode);
         }
     }
 
+    /**
+     * Runs one invocation without exiting the JVM. Used by the daemon, whose JVM outlives the invocations it serves.
+     *
+     * @return the exit code the process would have exited with, had the invocation been run with main().
+     */
+    public static int execute(String[] args, OutputStream stdout, OutputStream stderr) throws Exception {
+
+        return new CommandLineApplication(stdout, stderr).run(args);
+    }
+
+    /**
+     * Runs one command line under the given invocation context, on the calling thread, and restores the thread's
+     * previous context on exit. Used by the modes that run several command lines in the same JVM (batch, stdio server).
+     * Internal errors are reported on the context's stderr.
+     *
+     * @param initializedRuntimes see setInitializedRuntimes(). Null disables runtime reuse.
+     *
+     * @return the exit code.
+     */
+    static int execute(String[] args, InvocationContext context,
+                       Map<List<String>, ApplicationRuntime> initializedRuntimes) throws IOException {
+
+        return execute(args, context, null, initializedRuntimes);
+    }
+
+    /**
+     * @param registry the registry commands and the runtime are looked up in. Null means the class path, and the
+     *                 application named by the application.name system property.
+     *
+     * @see CommandLineApplication#execute(String[], InvocationContext, Map)
+     */
+    static int execute(String[] args, InvocationContext context, EngineRegistry registry,
+                       Map<List<String>, ApplicationRuntime> initializedRuntimes) throws IOException {
+
+        InvocationContext parent = InvocationContext.get();
+
+        InvocationContext.set(context);
+
+        try {
+
+            CommandLineApplication application = new CommandLineApplication(context.getStdout(), context.getStderr());
+            application.setRegistry(registry);
+            application.setInitializedRuntimes(initializedRuntimes);
+            return application.run(args);
+        }
+        catch(Throwable t) {
+
+            log.error("internal error", t);
+            context.getStderr().write(("[error]: internal error: " + t + "\n").getBytes());
+            return 1;
+        }
+        finally {
+
+            if (parent == null) {
+                InvocationContext.remove();
+            }
+            else {
+                InvocationContext.set(parent);
+            }
+        }
+    }
+
     // Static Package Protected ----------------------------------------------------------------------------------------
 
     /**
@@ -85,8 +163,6 @@ public class CommandLineApplication {
      */
     static ApplicationRuntime identifyRuntime(Configuration configuration) throws Exception {
 
-        ApplicationRuntime runtime = null;
-
         String applicationName = configuration.getApplicationName();
 
         if (applicationName == null) {
@@ -100,7 +176,30 @@ public class CommandLineApplication {
         String applicationRuntimeClassName =
                 InstanceFactory.getFullyQualifiedClassName(normalizedApplicationName, "ApplicationRuntime");
 
-        if (applicationRuntimeClassName != null) {
+        return applicationRuntimeClassName == null ? null : instantiateRuntime(applicationRuntimeClassName);
+    }
+
+    /**
+     * Instantiates the given ApplicationRuntime class, through a build-time generated registry if one covers it,
+     * reflectively otherwise.
+     */
+    static ApplicationRuntime instantiateRuntime(String applicationRuntimeClassName) {
+
+        ApplicationRuntime runtime;
+
+        //
+        // classes covered by a build-time generated registry are instantiated without reflection
+        //
+
+        try {
+            runtime = Registries.newApplicationRuntime(applicationRuntimeClassName);
+        }
+        catch(Exception e) {
+            throw new IllegalStateException(
+                    "failed to instantiate ApplicationRuntime class " + applicationRuntimeClassName);
+        }
+
+        if (runtime == null) {
 
             //
             // we identified a class file in the class path whose name matches a application runtime class file pattern,
@@ -143,12 +242,24 @@ public class CommandLineApplication {
      */
     static Command identifyAndConfigureCommand(List<String> commandLineArguments) throws Exception {
 
+        return identifyAndConfigureCommand(commandLineArguments, null);
+    }
+
+    /**
+     * @param registry the registry to look up commands in. If null, the commands are looked up on the class path.
+     *
+     * @see CommandLineApplication#identifyAndConfigureCommand(List)
+     */
+    static Command identifyAndConfigureCommand(List<String> commandLineArguments, EngineRegistry registry)
+            throws Exception {
+
         Command command = null;
 
         for(int i = 0; i < commandLineArguments.size(); i++) {
 
             String commandCandidateName = commandLineArguments.get(i);
-            command = InstanceFactory.getCommand(commandCandidateName);
+            command = registry == null ?
+                    InstanceFactory.getCommand(commandCandidateName) : registry.newCommand(commandCandidateName);
 
             if (command != null) {
 
@@ -171,6 +282,15 @@ public class CommandLineApplication {
     private OutputStream stdoutOutputStream;
     private OutputStream stderrOutputStream;
     private Command command;
+    private StartupReport startupReport;
+
+    // runtimes initialized by earlier command lines executed in the same JVM, keyed by global arguments. If null, the
+    // runtimes are not reused
+    private Map<List<String>, ApplicationRuntime> initializedRuntimes;
+
+    // if not null, the application name, the runtime and the commands come from here, and not from the system
+    // properties and the class path
+    private EngineRegistry registry;
 
     // Constructors ----------------------------------------------------------------------------------------------------
 
@@ -196,6 +316,7 @@ public class CommandLineApplication {
 
         this.stdoutOutputStream = stdoutOutputStream;
         this.stderrOutputStream = stderrOutputStream;
+        this.startupReport = new StartupReport(null, null);
     }
 
     // Public ----------------------------------------------------------------------------------------------------------
@@ -218,8 +339,38 @@ public class CommandLineApplication {
         return stderrOutputStream;
     }
 
+    public void setStartupReport(StartupReport startupReport) {
+
+        this.startupReport = startupReport;
+    }
+
+    public StartupReport getStartupReport() {
+        return startupReport;
+    }
+
     // Package protected -----------------------------------------------------------------------------------------------
 
+    /**
+     * @param initializedRuntimes the runtimes initialized by earlier command lines executed in the same JVM, keyed by
+     *                            global arguments. Commands that allow it (Command.canReuseRuntime()) are executed with
+     *                            the runtime initialized for the same global arguments, if any, instead of a fresh one,
+     *                            and runtimes initialized for such commands are added to the map. Null disables reuse.
+     */
+    void setInitializedRuntimes(Map<List<String>, ApplicationRuntime> initializedRuntimes) {
+
+        this.initializedRuntimes = initializedRuntimes;
+    }
+
+    /**
+     * @param registry the registry the application name, the runtime and the commands are resolved from. Null means
+     *                 the application.name system property and the class path. Batch and stdio server modes are only
+     *                 available without a registry.
+     */
+    void setRegistry(EngineRegistry registry) {
+
+        this.registry = registry;
+    }
+
     /**
      * @return the exit code to be returned by the process on exit. Zero means everything OK, non-zero means failure.
      */
@@ -227,13 +378,34 @@ public class CommandLineApplication {
 
         try {
 
-            ConfigurationImpl nativeConfiguration = new ConfigurationImpl();
+            if (registry == null) {
+
+                Batch batch = Batch.fromArguments(args);
+
+                if (batch != null) {
+
+                    return batch.run(getStdoutOutputStream(), getStderrOutputStream());
+                }
+
+                StdioServer server = StdioServer.fromArguments(args);
+
+                if (server != null) {
+
+                    return server.run(System.in, getStdoutOutputStream());
+                }
+            }
+
+            ConfigurationImpl nativeConfiguration =
+                    registry == null ? new ConfigurationImpl() : new ConfigurationImpl(registry.getApplicationName());
 
             //
             // identify and instantiate the runtime
             //
 
-            ApplicationRuntime applicationRuntime = identifyRuntime(nativeConfiguration);
+            startupReport.phase(StartupReport.IDENTIFY_RUNTIME);
+
+            ApplicationRuntime applicationRuntime =
+                    registry == null ? identifyRuntime(nativeConfiguration) : registry.newApplicationRuntime();
 
             if (applicationRuntime == null) {
                 throw new UserErrorException("no application runtime");
@@ -250,7 +422,14 @@ public class CommandLineApplication {
 
             List<String> commandLineArguments = new ArrayList<>(Arrays.asList(args));
 
-            command = identifyAndConfigureCommand(commandLineArguments);
+            startupReport.phase(StartupReport.IDENTIFY_COMMAND);
+
+            command = identifyAndConfigureCommand(commandLineArguments, registry);
+
+            // what is left are the global arguments; an initialized runtime can only be reused for the same ones
+            List<String> globalArguments = new ArrayList<>(commandLineArguments);
+
+            startupReport.phase(StartupReport.GLOBAL_OPTIONS);
 
             Set<Option> requiredGlobalOptions = applicationRuntime.requiredGlobalOptions();
             Set<Option> optionalGlobalOptions = applicationRuntime.optionalGlobalOptions();
@@ -258,8 +437,10 @@ public class CommandLineApplication {
             optionalGlobalOptions = new HashSet<>(optionalGlobalOptions);
             optionalGlobalOptions.add(new VerboseOption());
 
-            List<Option> globalOptions = OptionParser.parse(
-                    0, commandLineArguments, requiredGlobalOptions, optionalGlobalOptions);
+            List<Option> globalOptions = OptionParser.parse(0, commandLineArguments,
+                    OptionSchema.forOwner(applicationRuntime.getClass(), requiredGlobalOptions, optionalGlobalOptions,
+                            applicationRuntime.computesGlobalOptions()),
+                    registry);
 
             actOnVerboseOption(globalOptions);
 
@@ -278,11 +459,14 @@ public class CommandLineApplication {
 
             if (command == null) {
 
+                startupReport.phase(StartupReport.DEFAULT_COMMAND);
+
                 // a special case is when we execute --help=<command-name>. In this case we don't look for a default
                 // command but attempt to execute the in-line help request
 
                 HelpOption helpOption = Configuration.findHelpOption(globalOptions);
                 if (helpOption != null) {
+                    startupReport.phase(StartupReport.HELP);
                     if (helpOption.getCommand() == null) {
 
                         // no command detected on the command line and no command name following after --help=
@@ -325,7 +509,8 @@ public class CommandLineApplication {
                 }
 
                 // attempt to instantiate the default command and execute it
-                command = InstanceFactory.getCommand(defaultCommandName);
+                command = registry == null ?
+                        InstanceFactory.getCommand(defaultCommandName) : registry.newCommand(defaultCommandName);
 
                 log.debug(applicationRuntime + "'s default command: " +  command);
 
@@ -344,6 +529,8 @@ public class CommandLineApplication {
             HelpOption helpOption = Configuration.findHelpOption(globalOptions);
             if (helpOption != null) {
 
+                startupReport.phase(StartupReport.HELP);
+
                 // inject the current command, if any - this will fail if the help is already configured with a command
 
                 helpOption.setCommand(command);
@@ -370,18 +557,52 @@ public class CommandLineApplication {
 
             if (command.needsRuntime()) {
 
-                log.debug("initializing the runtime ...");
+                startupReport.phase(StartupReport.RUNTIME_INIT);
+
+                boolean reusable = initializedRuntimes != null && command.canReuseRuntime();
+
+                ApplicationRuntime initializedRuntime = reusable ? initializedRuntimes.get(globalArguments) : null;
+
+                if (initializedRuntime != null) {
+
+                    log.debug("reusing runtime " + initializedRuntime + ", initialized for the same global options");
+
+                    initializedRuntime.setStderrOutputStream(getStderrOutputStream());
+                    initializedRuntime.setStdoutOutputStream(getStdoutOutputStream());
+                    applicationRuntime = initializedRuntime;
+                }
+                else {
+
+                    log.debug("initializing the runtime ...");
 
-                applicationRuntime.init(nativeConfiguration);
+                    applicationRuntime.init(nativeConfiguration);
 
-                log.debug("runtime initialized");
+                    log.debug("runtime initialized");
+
+                    if (reusable) {
+
+                        initializedRuntimes.put(globalArguments, applicationRuntime);
+                    }
+                }
             }
 
+            startupReport.phase(StartupReport.REQUIRED_OPTIONS);
+
             insureRequiredCommandOptionsArePresent(command);
 
             log.debug("executing command " + command + " ...");
 
-            command.execute(applicationRuntime);
+            startupReport.phase(StartupReport.EXECUTE);
+
+            try {
+
+                command.execute(applicationRuntime);
+            }
+            finally {
+
+                // the runtime's console buffers output
+                applicationRuntime.flush();
+            }
 
             log.debug("command successfully executed");
 
@@ -394,6 +615,10 @@ public class CommandLineApplication {
             stderrOutputStream.flush();
             return 1;
         }
+        finally {
+
+            startupReport.end();
+        }
     }
 
     // Protected -------------------------------------------------------------------------------------------------------
@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.clad;
+
+import io.novaordis.clad.application.ApplicationRuntime;
+import io.novaordis.clad.command.Command;
+import io.novaordis.clad.command.CommandCatalog;
+import io.novaordis.clad.command.CommandDescriptor;
+import io.novaordis.clad.discovery.ClasspathNameIndex;
+import io.novaordis.utilities.UserErrorException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable snapshot of the names an application resolves: the application name, the application runtime class,
+ * and the command classes available on the class path, keyed by simple class name. Built once per CladEngine, so
+ * invocations look up commands in a map nobody writes to, and are not affected by later changes of the
+ * application.name system property or of InstanceFactory.searchOrder. The help handling lists and looks up commands in
+ * the registry too.
+ *
+ * @see CladEngine
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+final class EngineRegistry implements CommandCatalog {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @param searchOrder InstanceFactory.DIRECTORIES_ARE_SEARCHED_FIRST or InstanceFactory.JARS_ARE_SEARCHED_FIRST.
+     *
+     * @exception UserErrorException if the application has no runtime, or its runtime name is ambiguous.
+     */
+    static EngineRegistry build(String applicationName, int searchOrder) throws Exception {
+
+        if (applicationName == null) {
+            throw new IllegalArgumentException("null application name");
+        }
+
+        ClasspathNameIndex index = ClasspathNameIndex.getInstance();
+        boolean jarsFirst = searchOrder == InstanceFactory.JARS_ARE_SEARCHED_FIRST;
+
+        String runtimeSimpleClassName =
+                InstanceFactory.toSimpleClassName(Util.normalizeLabel(applicationName), "ApplicationRuntime");
+
+        List<String> runtimes = index.getFullyQualifiedClassNames(runtimeSimpleClassName, jarsFirst);
+
+        if (runtimes.isEmpty()) {
+            throw new UserErrorException("no application runtime for application \"" + applicationName + "\"");
+        }
+
+        if (runtimes.size() > 1) {
+            throw new UserErrorException("more than one class matches " + runtimeSimpleClassName + ": " + runtimes);
+        }
+
+        Map<String, List<String>> commands = new HashMap<>();
+
+        for(String fqcn: index.getFullyQualifiedClassNamesWithSuffix("Command")) {
+
+            String simpleClassName = fqcn.substring(fqcn.lastIndexOf('.') + 1);
+
+            if (!commands.containsKey(simpleClassName)) {
+
+                commands.put(simpleClassName, Collections.unmodifiableList(
+                        new ArrayList<>(index.getFullyQualifiedClassNames(simpleClassName, jarsFirst))));
+            }
+        }
+
+        return new EngineRegistry(
+                applicationName, runtimes.get(0), commands, CommandDescriptor.getCommandDescriptors());
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final String applicationName;
+    private final String applicationRuntimeClassName;
+
+    // simple class name - fully qualified class names, more than one means ambiguity
+    private final Map<String, List<String>> commands;
+
+    // sorted by name
+    private final List<CommandDescriptor> commandDescriptors;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    /**
+     * Lists all the given command classes.
+     */
+    EngineRegistry(String applicationName, String applicationRuntimeClassName, Map<String, List<String>> commands) {
+
+        this(applicationName, applicationRuntimeClassName, commands, toCommandDescriptors(commands));
+    }
+
+    /**
+     * @param commandDescriptors the commands to list, sorted by name.
+     */
+    EngineRegistry(String applicationName, String applicationRuntimeClassName, Map<String, List<String>> commands,
+                   List<CommandDescriptor> commandDescriptors) {
+
+        this.applicationName = applicationName;
+        this.applicationRuntimeClassName = applicationRuntimeClassName;
+        this.commands = Collections.unmodifiableMap(new HashMap<>(commands));
+        this.commandDescriptors = Collections.unmodifiableList(new ArrayList<>(commandDescriptors));
+    }
+
+    // CommandCatalog implementation -----------------------------------------------------------------------------------
+
+    /**
+     * @param name the name of the command as specified on command line. May contain dashes, etc.
+     *
+     * @return a new, non-initialized Command instance, or null if the name does not designate a known command.
+     *
+     * @exception UserErrorException if more than one class matches the name.
+     */
+    @Override
+    public Command newCommand(String name) throws UserErrorException {
+
+        if (!InstanceFactory.canBePartOfAClassName(name)) {
+            return null;
+        }
+
+        String simpleClassName = InstanceFactory.toSimpleClassName(Util.normalizeLabel(name), "Command");
+
+        List<String> fqcns = commands.get(simpleClassName);
+
+        if (fqcns == null || fqcns.isEmpty()) {
+            return null;
+        }
+
+        if (fqcns.size() > 1) {
+            throw new UserErrorException("more than one class matches " + simpleClassName + ": " + fqcns);
+        }
+
+        return InstanceFactory.instantiateCommand(fqcns.get(0));
+    }
+
+    @Override
+    public List<CommandDescriptor> getCommandDescriptors() {
+
+        return commandDescriptors;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @Override
+    public String toString() {
+
+        return "EngineRegistry[" + applicationName + ", " + commands.size() + " command names]";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    String getApplicationName() {
+
+        return applicationName;
+    }
+
+    String getApplicationRuntimeClassName() {
+
+        return applicationRuntimeClassName;
+    }
+
+    /**
+     * @return a new, non-initialized application runtime instance.
+     */
+    ApplicationRuntime newApplicationRuntime() {
+
+        return CommandLineApplication.instantiateRuntime(applicationRuntimeClassName);
+    }
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private static List<CommandDescriptor> toCommandDescriptors(Map<String, List<String>> commands) {
+
+        List<CommandDescriptor> result = new ArrayList<>();
+
+        for(List<String> fqcns: commands.values()) {
+
+            for(String fqcn: fqcns) {
+
+                result.add(new CommandDescriptor(fqcn));
+            }
+        }
+
+        Collections.sort(result);
+
+        return result;
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
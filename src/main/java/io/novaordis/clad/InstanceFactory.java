@@ -17,6 +17,10 @@
 package io.novaordis.clad;
 
 import io.novaordis.clad.command.Command;
+import io.novaordis.clad.discovery.ClasspathNameIndex;
+import io.novaordis.clad.discovery.DirectoryWalker;
+import io.novaordis.clad.discovery.JarScanner;
+import io.novaordis.clad.discovery.Registries;
 import io.novaordis.utilities.UserErrorException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -53,9 +57,10 @@ public class InstanceFactory<I> {
     // Static ----------------------------------------------------------------------------------------------------------
 
     //
-    // whether directories or the JARs from the class path are searched first.
+    // whether directories or the JARs from the class path are searched first. CladEngine instances use the value in
+    // effect when they were built.
     //
-    public static int searchOrder = DIRECTORIES_ARE_SEARCHED_FIRST;
+    public static volatile int searchOrder = DIRECTORIES_ARE_SEARCHED_FIRST;
 
     /**
      * @param name the name of the Command as specified on command line. May contain dashes, etc.
@@ -80,43 +85,44 @@ public class InstanceFactory<I> {
             return null;
         }
 
-        //
-        // we identified a class file in the class path whose name matches a command class file pattern, so try to load
-        // it
-        //
-
-        Class commandClass;
-
-        try {
-            commandClass = InstanceFactory.class.getClassLoader().loadClass(commandClassName);
-        }
-        catch(Exception e) {
-            throw new IllegalStateException("failed to load Command class " + commandClassName);
-        }
-
-        try {
-            return (Command)commandClass.newInstance();
-        }
-        catch(Exception e) {
-            throw new IllegalStateException("failed to instantiate Command class " + commandClass);
-        }
+        return instantiateCommand(commandClassName);
     }
 
     /**
      * @return the fully qualified class name of the class that corresponds to the given prefix (which will be
      * camel-cased) and the given suffix (currently Command or ApplicationRuntime). It will return null if no such
      * class is detected on the classpath.
+     *
+     * Command and ApplicationRuntime classes are resolved from the class path name index, other suffixes trigger a
+     * class path scan.
+     *
+     * @see ClasspathNameIndex
      */
     public static String getFullyQualifiedClassName(String prefix, String suffix) throws Exception {
 
-        List<File> directories = getClasspathDirectories();
-        List<JarFile> jarFiles = getClasspathJars();
-
         String simpleClassName = toSimpleClassName(prefix, suffix);
-        String fullyQualifiedClassNameRegex = ".*\\." + simpleClassName;
 
         List<String> fqcns;
 
+        if (ClasspathNameIndex.isIndexed(suffix)) {
+
+            //
+            // hash lookup in the class path name index, which is built at most once per class path
+            //
+
+            fqcns = ClasspathNameIndex.getInstance().getFullyQualifiedClassNames(simpleClassName);
+
+            if (fqcns.size() > 1) {
+                throw new UserErrorException("more than one class matches " + simpleClassName + ": " + fqcns);
+            }
+
+            return fqcns.isEmpty() ? null : fqcns.get(0);
+        }
+
+        List<File> directories = getClasspathDirectories();
+
+        String fullyQualifiedClassNameRegex = ".*\\." + simpleClassName;
+
         //
         // by default directories have priority in search
         //
@@ -131,7 +137,7 @@ public class InstanceFactory<I> {
                 // Directories are searched now
                 //
 
-                fqcns = getFullyQualifiedClassNamesFromDirectories(fullyQualifiedClassNameRegex, directories);
+                fqcns = DirectoryWalker.findClasses(directories, simpleClassName);
 
             }
             else {
@@ -140,7 +146,7 @@ public class InstanceFactory<I> {
                 // JARs are searched now
                 //
 
-                fqcns = getFullyQualifiedClassNamesFromJars(fullyQualifiedClassNameRegex, jarFiles);
+                fqcns = getFullyQualifiedClassNamesFromJarFiles(fullyQualifiedClassNameRegex, getClasspathFiles());
             }
 
             if (fqcns.size() > 1) {
@@ -180,11 +186,15 @@ public class InstanceFactory<I> {
     }
 
     /**
-     * Recursively scan the given directories looking for files whose paths, relative to those directories, match
-     * the given pattern. Useful when looking for specific classes in a classpath directory.
+     * Recursively scan the given directories looking for classes whose fully qualified names match the given pattern.
+     * The directory trees are walked with DirectoryWalker: the pattern is only matched against class files, and
+     * directories that cannot be part of a package are skipped. Directories that cannot be read are logged and
+     * skipped.
      *
      * @param fullyQualifiedClassNameRegex the Java regular expression to match against the fully qualified name.
      *                                     Must NOT include .class at the end, that is appended internally.
+     *
+     * @see DirectoryWalker
      */
     public static List<String> getFullyQualifiedClassNamesFromDirectories(
             String fullyQualifiedClassNameRegex, List<File> dirs) {
@@ -193,29 +203,32 @@ public class InstanceFactory<I> {
             throw new IllegalArgumentException("the fully qualified class name regular expression must not end in '.class'");
         }
 
-        Pattern pattern = Pattern.compile(fullyQualifiedClassNameRegex + "\\.class");
+        final Pattern pattern = Pattern.compile(fullyQualifiedClassNameRegex);
 
-        List<String> result = new ArrayList<>();
+        final List<String> result = new ArrayList<>();
 
-        for(File dir: dirs) {
+        DirectoryWalker.Visitor visitor = new DirectoryWalker.Visitor() {
 
-            if (!dir.isDirectory()) {
-                continue;
+            @Override
+            public boolean visit(String className) {
+
+                if (pattern.matcher(className).matches()) {
+                    result.add(className);
+                }
+
+                return true;
             }
+        };
 
-            String dirName = dir.getPath();
+        for(File dir: dirs) {
 
-            //noinspection Convert2streamapi
-            for(String fileName: getFileNames(dir.getPath(), dir)) {
+            try {
 
-                String candidateClassName = fileName.substring(dirName.length() + 1);
-                candidateClassName = candidateClassName.replace(File.separator, ".");
+                DirectoryWalker.walk(dir, DirectoryWalker.CLASS_FILES, visitor);
+            }
+            catch(IOException e) {
 
-                if (pattern.matcher(candidateClassName).matches()) {
-                    candidateClassName =
-                            candidateClassName.substring(0, candidateClassName.length() - ".class".length());
-                    result.add(candidateClassName);
-                }
+                log.warn("failed to scan " + dir + ": " + e);
             }
         }
 
@@ -259,6 +272,39 @@ public class InstanceFactory<I> {
         return result;
     }
 
+    /**
+     * Same as getFullyQualifiedClassNamesFromJars(String, List), but the JARs are read with JarScanner: only their
+     * central directory is mapped, names are matched as raw bytes, and no file handle is left open.
+     *
+     * @param fullyQualifiedClassNameRegex the Java regular expression to match against the fully qualified name.
+     *                                     Must NOT include .class at the end, that is appended internally.
+     *
+     * @see JarScanner
+     */
+    public static List<String> getFullyQualifiedClassNamesFromJarFiles(
+            String fullyQualifiedClassNameRegex, List<File> jars) throws IOException {
+
+        if (fullyQualifiedClassNameRegex.endsWith(".class")) {
+            throw new IllegalArgumentException("the fully qualified class name regular expression must not end in '.class'");
+        }
+
+        Pattern pattern = Pattern.compile(fullyQualifiedClassNameRegex);
+
+        List<String> result = new ArrayList<>();
+
+        for(File jar: jars) {
+
+            for(String className: JarScanner.getClassNames(jar, JarScanner.CLASS_FILES)) {
+
+                if (pattern.matcher(className).matches()) {
+                    result.add(className);
+                }
+            }
+        }
+
+        return result;
+    }
+
     public static List<File> getClasspathDirectories() {
 
         //
@@ -300,8 +346,33 @@ public class InstanceFactory<I> {
         return directories;
     }
 
+    /**
+     * @return the class path JARs, opened. The caller owns the JarFile instances and must close them. Prefer
+     * getClasspathFiles() and JarScanner, which do not keep file handles open.
+     */
     public static List<JarFile> getClasspathJars() throws IOException {
 
+        List<JarFile> jarFiles = new ArrayList<>();
+
+        for(File f: getClasspathFiles()) {
+
+            //
+            // we assume it's a JAR
+            //
+
+            JarFile jarFile = new JarFile(f.getPath());
+            log.debug("JAR file: " + jarFile);
+            jarFiles.add(jarFile);
+        }
+
+        return jarFiles;
+    }
+
+    /**
+     * @return the class path elements that are files - we assume they're JARs. The files are not opened.
+     */
+    public static List<File> getClasspathFiles() {
+
         //
         // scan the classpath and look for classes named camelCased(prefix) + suffix.
         //
@@ -320,7 +391,7 @@ public class InstanceFactory<I> {
                     "no value found for system property '" + PATH_SEPARATOR_SYSTEM_PROPERTY_NAME + "'");
         }
 
-        List<JarFile> jarFiles = new ArrayList<>();
+        List<File> files = new ArrayList<>();
 
         for(StringTokenizer st = new StringTokenizer(classPath, pathSeparator); st.hasMoreTokens(); ) {
 
@@ -329,21 +400,62 @@ public class InstanceFactory<I> {
             File f = new File(path);
             if (f.isFile()) {
 
-                //
-                // we assume it's a JAR
-                //
-
-                JarFile jarFile = new JarFile(f.getPath());
-                log.debug("JAR file: " + jarFile);
-                jarFiles.add(jarFile);
+                files.add(f);
             }
         }
 
-        return jarFiles;
+        return files;
     }
 
     // Package Protected Static ----------------------------------------------------------------------------------------
 
+    /**
+     * Instantiates the given Command class, through a build-time generated registry if one covers it, reflectively
+     * otherwise.
+     *
+     * @return a non-initialized Command instance.
+     */
+    static Command instantiateCommand(String commandClassName) {
+
+        //
+        // classes covered by a build-time generated registry are instantiated without reflection
+        //
+
+        Command command;
+
+        try {
+            command = Registries.newCommand(commandClassName);
+        }
+        catch(Exception e) {
+            throw new IllegalStateException("failed to instantiate Command class " + commandClassName);
+        }
+
+        if (command != null) {
+            return command;
+        }
+
+        //
+        // we identified a class file in the class path whose name matches a command class file pattern, so try to load
+        // it
+        //
+
+        Class commandClass;
+
+        try {
+            commandClass = InstanceFactory.class.getClassLoader().loadClass(commandClassName);
+        }
+        catch(Exception e) {
+            throw new IllegalStateException("failed to load Command class " + commandClassName);
+        }
+
+        try {
+            return (Command)commandClass.newInstance();
+        }
+        catch(Exception e) {
+            throw new IllegalStateException("failed to instantiate Command class " + commandClass);
+        }
+    }
+
     static boolean canBePartOfAClassName(String s) {
 
         if (s == null || s.length() == 0) {
@@ -375,6 +487,32 @@ public class InstanceFactory<I> {
 
     // Public ----------------------------------------------------------------------------------------------------------
 
+    /**
+     * Same as instances(Class, List, List), for the whole class path. Command and ApplicationRuntime implementations
+     * are looked up in the class path name index, so no class path scan is performed if the index was already built.
+     *
+     * @see InstanceFactory#instances(Class, List, List)
+     */
+    public Set<I> instances(Class<? extends I> interfaceType) throws IOException {
+
+        String interfaceSimpleName = interfaceType.getSimpleName();
+
+        if (!ClasspathNameIndex.isIndexed(interfaceSimpleName)) {
+
+            String classNameRegex = ".*\\..+" + interfaceSimpleName;
+
+            List<String> fullyQualifiedClassNames =
+                    getFullyQualifiedClassNamesFromJarFiles(classNameRegex, getClasspathFiles());
+            fullyQualifiedClassNames.addAll(
+                    getFullyQualifiedClassNamesFromDirectories(classNameRegex, getClasspathDirectories()));
+
+            return instantiate(interfaceType, fullyQualifiedClassNames);
+        }
+
+        return instantiate(
+                interfaceType, ClasspathNameIndex.getInstance().getFullyQualifiedClassNamesWithSuffix(interfaceSimpleName));
+    }
+
     /**
      * Given a specific interface, and a list of JAR files and directories (assumed to be classpath roots) to look into,
      * return a list of instances of classes implementing that interface. All the classes are assumed to have a public
@@ -389,8 +527,6 @@ public class InstanceFactory<I> {
     public Set<I> instances(
             Class<? extends I> interfaceType, List<JarFile> jarFiles, List<File> directories) {
 
-        Set<I> result = new HashSet<>();
-
         String interfaceSimpleName = interfaceType.getSimpleName();
 
         String classNameRegex = ".*\\..+" + interfaceSimpleName;
@@ -402,6 +538,23 @@ public class InstanceFactory<I> {
         List<String> fullyQualifiedClassNames = new ArrayList<>(fullyQualifiedClassNamesFromJARs);
         fullyQualifiedClassNames.addAll(fullyQualifiedClassNamesFromDirectories);
 
+        return instantiate(interfaceType, fullyQualifiedClassNames);
+    }
+
+    // Static Package protected ----------------------------------------------------------------------------------------
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Static Private --------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private Set<I> instantiate(Class<? extends I> interfaceType, List<String> fullyQualifiedClassNames) {
+
+        Set<I> result = new HashSet<>();
+
         for(String fqcn: fullyQualifiedClassNames) {
 
             Class c;
@@ -436,44 +589,6 @@ public class InstanceFactory<I> {
         return result;
     }
 
-    // Static Package protected ----------------------------------------------------------------------------------------
-
-    /**
-     * @return all files contained by the given directory. The file name is relative to the given directory.
-     */
-    static List<String> getFileNames(String relativePath, File dir) {
-
-        List<String> result = new ArrayList<>();
-
-        if (!dir.isDirectory()) {
-            throw new IllegalArgumentException(dir + " is not a directory");
-        }
-
-        File[] content = dir.listFiles();
-
-        if (content != null) {
-
-            for (File f : content) {
-
-                if (f.isFile()) {
-                    result.add(relativePath + File.separator + f.getName());
-                } else if (f.isDirectory()) {
-                    result.addAll(getFileNames(relativePath + File.separator + f.getName(), f));
-                }
-            }
-        }
-
-        return result;
-    }
-
-    // Package protected -----------------------------------------------------------------------------------------------
-
-    // Protected -------------------------------------------------------------------------------------------------------
-
-    // Static Private --------------------------------------------------------------------------------------------------
-
-    // Private ---------------------------------------------------------------------------------------------------------
-
     // Inner classes ---------------------------------------------------------------------------------------------------
 
 }
@@ -0,0 +1,413 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.clad;
+
+import java.math.BigDecimal;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The minimal JSON support needed by the stdio server, so we don't add a JSON library to the application's class path.
+ *
+ * Values map to Java as follows: object - Map<String, Object> (insertion ordered), array - List<Object>, string -
+ * String, number - BigDecimal, true/false - Boolean, null - null.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+class Json {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    //
+    // the parser is recursive descent, so deeper input is rejected instead of overflowing the stack of the thread that
+    // reads the requests. Legitimate requests are two levels deep
+    //
+    static final int MAX_DEPTH = 256;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @exception ParseException if the text is not exactly one JSON value, optionally surrounded by whitespace.
+     */
+    static Object parse(String text) throws ParseException {
+
+        Json parser = new Json(text);
+
+        parser.skipWhitespace();
+        Object value = parser.readValue();
+        parser.skipWhitespace();
+
+        if (parser.position != text.length()) {
+            throw parser.error("unexpected content after the value");
+        }
+
+        return value;
+    }
+
+    /**
+     * Serializes a value built from the types parse() returns. Numbers other than BigDecimal are written with
+     * toString().
+     */
+    static String toJson(Object value) {
+
+        StringBuilder sb = new StringBuilder();
+        append(sb, value);
+        return sb.toString();
+    }
+
+    static void append(StringBuilder sb, Object value) {
+
+        if (value == null) {
+
+            sb.append("null");
+        }
+        else if (value instanceof String) {
+
+            appendString(sb, (String)value);
+        }
+        else if (value instanceof Number || value instanceof Boolean) {
+
+            sb.append(value);
+        }
+        else if (value instanceof Map) {
+
+            sb.append('{');
+
+            boolean first = true;
+
+            for(Map.Entry<?, ?> e: ((Map<?, ?>)value).entrySet()) {
+
+                if (!first) {
+                    sb.append(',');
+                }
+
+                first = false;
+                appendString(sb, String.valueOf(e.getKey()));
+                sb.append(':');
+                append(sb, e.getValue());
+            }
+
+            sb.append('}');
+        }
+        else if (value instanceof List) {
+
+            sb.append('[');
+
+            boolean first = true;
+
+            for(Object o: (List<?>)value) {
+
+                if (!first) {
+                    sb.append(',');
+                }
+
+                first = false;
+                append(sb, o);
+            }
+
+            sb.append(']');
+        }
+        else {
+
+            throw new IllegalArgumentException("cannot serialize " + value.getClass().getName() + " as JSON");
+        }
+    }
+
+    static void appendString(StringBuilder sb, String s) {
+
+        sb.append('"');
+
+        for(int i = 0; i < s.length(); i ++) {
+
+            char c = s.charAt(i);
+
+            switch(c) {
+
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                case '\b': sb.append("\\b"); break;
+                case '\f': sb.append("\\f"); break;
+                default:
+
+                    // U+2028 and U+2029 are valid in JSON strings, but not in JavaScript string literals
+                    if (c < 0x20 || c == '\u2028' || c == '\u2029') {
+                        sb.append(String.format("\\u%04x", (int)c));
+                    }
+                    else {
+                        sb.append(c);
+                    }
+            }
+        }
+
+        sb.append('"');
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private String text;
+    private int position;
+
+    // the number of objects and arrays currently open
+    private int depth;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    private Json(String text) {
+
+        this.text = text;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private Object readValue() throws ParseException {
+
+        if (position == text.length()) {
+            throw error("unexpected end of input");
+        }
+
+        char c = text.charAt(position);
+
+        if (c == '{' || c == '[') {
+
+            if (depth == MAX_DEPTH) {
+                throw error("nesting deeper than " + MAX_DEPTH + " levels");
+            }
+
+            depth ++;
+
+            Object value = c == '{' ? readObject() : readArray();
+
+            depth --;
+
+            return value;
+        }
+        else if (c == '"') {
+            return readString();
+        }
+        else if (c == '-' || (c >= '0' && c <= '9')) {
+            return readNumber();
+        }
+        else if (text.startsWith("true", position)) {
+            position += 4;
+            return Boolean.TRUE;
+        }
+        else if (text.startsWith("false", position)) {
+            position += 5;
+            return Boolean.FALSE;
+        }
+        else if (text.startsWith("null", position)) {
+            position += 4;
+            return null;
+        }
+
+        throw error("unexpected character '" + c + "'");
+    }
+
+    private Map<String, Object> readObject() throws ParseException {
+
+        Map<String, Object> object = new LinkedHashMap<>();
+
+        position ++;
+        skipWhitespace();
+
+        if (consume('}')) {
+            return object;
+        }
+
+        do {
+
+            skipWhitespace();
+
+            if (position == text.length() || text.charAt(position) != '"') {
+                throw error("expected a member name");
+            }
+
+            String name = readString();
+
+            skipWhitespace();
+            expect(':');
+            skipWhitespace();
+
+            object.put(name, readValue());
+
+            skipWhitespace();
+        }
+        while(consume(','));
+
+        expect('}');
+        return object;
+    }
+
+    private List<Object> readArray() throws ParseException {
+
+        List<Object> array = new ArrayList<>();
+
+        position ++;
+        skipWhitespace();
+
+        if (consume(']')) {
+            return array;
+        }
+
+        do {
+
+            skipWhitespace();
+            array.add(readValue());
+            skipWhitespace();
+        }
+        while(consume(','));
+
+        expect(']');
+        return array;
+    }
+
+    private String readString() throws ParseException {
+
+        // skip the opening quote
+        position ++;
+
+        StringBuilder sb = new StringBuilder();
+
+        while(position < text.length()) {
+
+            char c = text.charAt(position ++);
+
+            if (c == '"') {
+                return sb.toString();
+            }
+
+            if (c < 0x20) {
+                throw error("unescaped control character in string");
+            }
+
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+
+            if (position == text.length()) {
+                break;
+            }
+
+            c = text.charAt(position ++);
+
+            switch(c) {
+
+                case '"': sb.append('"'); break;
+                case '\\': sb.append('\\'); break;
+                case '/': sb.append('/'); break;
+                case 'n': sb.append('\n'); break;
+                case 'r': sb.append('\r'); break;
+                case 't': sb.append('\t'); break;
+                case 'b': sb.append('\b'); break;
+                case 'f': sb.append('\f'); break;
+                case 'u':
+
+                    if (position + 4 > text.length()) {
+                        throw error("truncated unicode escape");
+                    }
+
+                    try {
+                        sb.append((char)Integer.parseInt(text.substring(position, position + 4), 16));
+                    }
+                    catch(NumberFormatException e) {
+                        throw error("invalid unicode escape");
+                    }
+
+                    position += 4;
+                    break;
+
+                default:
+                    throw error("invalid escape '\\" + c + "'");
+            }
+        }
+
+        throw error("unterminated string");
+    }
+
+    private BigDecimal readNumber() throws ParseException {
+
+        int start = position;
+
+        while(position < text.length() && "+-0123456789.eE".indexOf(text.charAt(position)) != -1) {
+            position ++;
+        }
+
+        try {
+
+            return new BigDecimal(text.substring(start, position));
+        }
+        catch(NumberFormatException e) {
+
+            position = start;
+            throw error("invalid number");
+        }
+    }
+
+    private void skipWhitespace() {
+
+        while(position < text.length()) {
+
+            char c = text.charAt(position);
+
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+                break;
+            }
+
+            position ++;
+        }
+    }
+
+    private boolean consume(char c) {
+
+        if (position < text.length() && text.charAt(position) == c) {
+
+            position ++;
+            return true;
+        }
+
+        return false;
+    }
+
+    private void expect(char c) throws ParseException {
+
+        if (!consume(c)) {
+            throw error("expected '" + c + "'");
+        }
+    }
+
+    private ParseException error(String message) {
+
+        return new ParseException(message + " at position " + position, position);
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
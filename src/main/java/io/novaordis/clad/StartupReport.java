@@ -0,0 +1,427 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.clad;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Opt-in report of the cost of each startup phase: wall time, CPU time, bytes allocated by the main thread and classes
+ * loaded, plus the JVM uptime when the report was started (at main() entry). Enabled with
+ *
+ * -Dclad.startup.report=stderr|<file> [-Dclad.startup.report.format=text|json]
+ *
+ * The format defaults to json for files whose name ends in ".json", and to text otherwise. An unknown format is
+ * reported on stderr and replaced with text. The clad launcher sets the property when invoked with
+ * --startup-report[=<file>].
+ *
+ * CPU time and allocations are those of the thread that runs the phases, so work done by helper threads (the
+ * parallel class path scan) shows up only in the wall time. Metrics the JVM does not support are reported as -1.
+ *
+ * A disabled report does not touch the management beans, and its methods return immediately.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+public class StartupReport {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    public static final String STARTUP_REPORT_SYSTEM_PROPERTY_NAME = "clad.startup.report";
+    public static final String STARTUP_REPORT_FORMAT_SYSTEM_PROPERTY_NAME = "clad.startup.report.format";
+
+    public static final String STDERR = "stderr";
+
+    public static final String TEXT = "text";
+    public static final String JSON = "json";
+
+    //
+    // phases, in the order CommandLineApplication goes through them
+    //
+
+    public static final String LOGGING = "logging";
+    public static final String IDENTIFY_RUNTIME = "identify-runtime";
+    public static final String IDENTIFY_COMMAND = "identify-command";
+    public static final String GLOBAL_OPTIONS = "global-options";
+    public static final String DEFAULT_COMMAND = "default-command";
+    public static final String HELP = "help";
+    public static final String RUNTIME_INIT = "runtime-init";
+    public static final String REQUIRED_OPTIONS = "required-options";
+    public static final String EXECUTE = "execute";
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return a report configured from the system properties, disabled if -Dclad.startup.report is not set.
+     */
+    public static StartupReport fromSystemProperties() {
+
+        String destination = System.getProperty(STARTUP_REPORT_SYSTEM_PROPERTY_NAME);
+
+        if (destination == null || destination.trim().isEmpty()) {
+
+            return new StartupReport(null, null);
+        }
+
+        destination = destination.trim();
+
+        String format = System.getProperty(STARTUP_REPORT_FORMAT_SYSTEM_PROPERTY_NAME);
+
+        if (format == null) {
+
+            format = destination.endsWith(".json") ? JSON : TEXT;
+        }
+
+        format = format.trim().toLowerCase();
+
+        if (!TEXT.equals(format) && !JSON.equals(format)) {
+
+            //
+            // the report must not change the outcome of the command
+            //
+
+            System.err.println("[warning]: unknown startup report format \"" + format + "\", using " + TEXT);
+            format = TEXT;
+        }
+
+        return new StartupReport(destination, format);
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // null if disabled
+    private String destination;
+    private String format;
+
+    private ThreadMXBean threadBean;
+    private ClassLoadingMXBean classLoadingBean;
+    private boolean cpuTimeSupported;
+    private com.sun.management.ThreadMXBean allocationBean;
+
+    private long uptimeAtStart;
+
+    private List<Phase> phases;
+
+    // the phase in progress, with the start values of its metrics
+    private String currentName;
+    private long currentWall;
+    private long currentCpu;
+    private long currentAllocated;
+    private long currentClasses;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    /**
+     * @param destination "stderr", a file path, or null for a disabled report.
+     * @param format "text" or "json".
+     *
+     * @exception IllegalArgumentException on an unknown format.
+     */
+    public StartupReport(String destination, String format) {
+
+        this.destination = destination;
+        this.phases = new ArrayList<>();
+        this.uptimeAtStart = -1;
+
+        if (destination == null) {
+            return;
+        }
+
+        if (!TEXT.equals(format) && !JSON.equals(format)) {
+            throw new IllegalArgumentException("unknown startup report format \"" + format + "\"");
+        }
+
+        this.format = format;
+
+        this.uptimeAtStart = ManagementFactory.getRuntimeMXBean().getUptime();
+        this.threadBean = ManagementFactory.getThreadMXBean();
+        this.classLoadingBean = ManagementFactory.getClassLoadingMXBean();
+        this.cpuTimeSupported = threadBean.isCurrentThreadCpuTimeSupported() && threadBean.isThreadCpuTimeEnabled();
+
+        if (threadBean instanceof com.sun.management.ThreadMXBean) {
+
+            com.sun.management.ThreadMXBean b = (com.sun.management.ThreadMXBean)threadBean;
+
+            if (b.isThreadAllocatedMemorySupported() && b.isThreadAllocatedMemoryEnabled()) {
+                this.allocationBean = b;
+            }
+        }
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    public boolean isEnabled() {
+
+        return destination != null;
+    }
+
+    /**
+     * Ends the phase in progress, if any, and starts the given one.
+     */
+    public void phase(String name) {
+
+        if (destination == null) {
+            return;
+        }
+
+        end();
+
+        currentName = name;
+        currentClasses = classLoadingBean.getTotalLoadedClassCount();
+        currentAllocated = getAllocatedBytes();
+        currentCpu = getCpuTime();
+        currentWall = System.nanoTime();
+    }
+
+    /**
+     * Ends the phase in progress, if any.
+     */
+    public void end() {
+
+        if (destination == null || currentName == null) {
+            return;
+        }
+
+        long wall = System.nanoTime() - currentWall;
+        long cpu = cpuTimeSupported ? getCpuTime() - currentCpu : -1L;
+        long allocated = allocationBean != null ? getAllocatedBytes() - currentAllocated : -1L;
+        long classes = classLoadingBean.getTotalLoadedClassCount() - currentClasses;
+
+        phases.add(new Phase(currentName, wall, cpu, allocated, classes));
+
+        currentName = null;
+    }
+
+    /**
+     * @return the completed phases, in order. A phase entered more than once appears more than once.
+     */
+    public List<Phase> getPhases() {
+
+        return Collections.unmodifiableList(phases);
+    }
+
+    /**
+     * @return the JVM uptime, in milliseconds, when the report was created, or -1 if the report is disabled.
+     */
+    public long getUptimeAtStart() {
+
+        return uptimeAtStart;
+    }
+
+    /**
+     * Ends the phase in progress and writes the report to its destination. Failure to write is reported on stderr,
+     * but does not propagate: the report must not change the outcome of the command.
+     */
+    public void write() {
+
+        if (destination == null) {
+            return;
+        }
+
+        end();
+
+        String content = JSON.equals(format) ? toJson() : toText();
+
+        if (STDERR.equals(destination)) {
+
+            PrintStream err = System.err;
+            err.print(content);
+            err.flush();
+            return;
+        }
+
+        try {
+
+            Files.write(new File(destination).toPath(), content.getBytes(StandardCharsets.UTF_8));
+        }
+        catch(IOException e) {
+
+            System.err.println("[warning]: failed to write startup report to " + destination + ": " + e);
+        }
+    }
+
+    public String toText() {
+
+        StringBuilder sb = new StringBuilder();
+
+        sb.append("startup report, JVM uptime at start ").append(uptimeAtStart).append(" ms\n\n");
+        sb.append(String.format(Locale.US, "%-20s%12s%12s%16s%10s\n",
+                "phase", "wall ms", "cpu ms", "allocated KB", "classes"));
+
+        for(Phase p: phases) {
+
+            appendTextLine(sb, p.getName(), p.getWallNanos(), p.getCpuNanos(), p.getAllocatedBytes(),
+                    p.getClassesLoaded());
+        }
+
+        Phase total = getTotal();
+
+        appendTextLine(sb, "total", total.getWallNanos(), total.getCpuNanos(), total.getAllocatedBytes(),
+                total.getClassesLoaded());
+
+        return sb.toString();
+    }
+
+    /**
+     * @return a single-line JSON object.
+     */
+    public String toJson() {
+
+        StringBuilder sb = new StringBuilder();
+
+        sb.append("{\"uptimeAtStartMillis\":").append(uptimeAtStart).append(",\"phases\":[");
+
+        for(int i = 0; i < phases.size(); i ++) {
+
+            if (i > 0) {
+                sb.append(',');
+            }
+
+            appendJson(sb, phases.get(i));
+        }
+
+        sb.append("],\"total\":");
+
+        appendJson(sb, getTotal());
+
+        sb.append("}\n");
+
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+
+        return destination == null ? "disabled startup report" : "startup report (" + format + ") to " + destination;
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    Phase getTotal() {
+
+        long wall = 0;
+        long cpu = cpuTimeSupported ? 0 : -1L;
+        long allocated = allocationBean != null ? 0 : -1L;
+        long classes = 0;
+
+        for(Phase p: phases) {
+
+            wall += p.getWallNanos();
+            cpu += cpuTimeSupported ? p.getCpuNanos() : 0;
+            allocated += allocationBean != null ? p.getAllocatedBytes() : 0;
+            classes += p.getClassesLoaded();
+        }
+
+        return new Phase("total", wall, cpu, allocated, classes);
+    }
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private long getCpuTime() {
+
+        return cpuTimeSupported ? threadBean.getCurrentThreadCpuTime() : -1L;
+    }
+
+    private long getAllocatedBytes() {
+
+        return allocationBean != null ? allocationBean.getThreadAllocatedBytes(Thread.currentThread().getId()) : -1L;
+    }
+
+    private static void appendTextLine(
+            StringBuilder sb, String name, long wallNanos, long cpuNanos, long allocatedBytes, long classes) {
+
+        sb.append(String.format(Locale.US, "%-20s%12.3f%12s%16s%10d\n",
+                name,
+                wallNanos / 1000000d,
+                cpuNanos < 0 ? "n/a" : String.format(Locale.US, "%.3f", cpuNanos / 1000000d),
+                allocatedBytes < 0 ? "n/a" : String.format(Locale.US, "%.1f", allocatedBytes / 1024d),
+                classes));
+    }
+
+    private static void appendJson(StringBuilder sb, Phase p) {
+
+        sb.append("{\"name\":\"").append(p.getName()).
+                append("\",\"wallNanos\":").append(p.getWallNanos()).
+                append(",\"cpuNanos\":").append(p.getCpuNanos()).
+                append(",\"allocatedBytes\":").append(p.getAllocatedBytes()).
+                append(",\"classesLoaded\":").append(p.getClassesLoaded()).append('}');
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+    public static class Phase {
+
+        private String name;
+        private long wallNanos;
+        private long cpuNanos;
+        private long allocatedBytes;
+        private long classesLoaded;
+
+        Phase(String name, long wallNanos, long cpuNanos, long allocatedBytes, long classesLoaded) {
+
+            this.name = name;
+            this.wallNanos = wallNanos;
+            this.cpuNanos = cpuNanos;
+            this.allocatedBytes = allocatedBytes;
+            this.classesLoaded = classesLoaded;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getWallNanos() {
+            return wallNanos;
+        }
+
+        /**
+         * @return -1 if not supported.
+         */
+        public long getCpuNanos() {
+            return cpuNanos;
+        }
+
+        /**
+         * @return -1 if not supported.
+         */
+        public long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+
+        public long getClassesLoaded() {
+            return classesLoaded;
+        }
+
+        @Override
+        public String toString() {
+            return name + ": " + wallNanos + " ns";
+        }
+    }
+
+}
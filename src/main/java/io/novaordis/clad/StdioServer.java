@@ -0,0 +1,524 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.clad;
+
+import io.novaordis.clad.application.ApplicationRuntime;
+import io.novaordis.clad.application.InvocationContext;
+import io.novaordis.utilities.UserErrorException;
+import org.apache.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stdio server mode: --serve-stdio reads invocation requests from stdin and writes the responses to stdout, so a parent
+ * process (an orchestration tool, an editor) can keep one warm JVM for its whole lifetime instead of starting one per
+ * invocation. Messages are JSON objects, one per line:
+ *
+ * request:  {"id": <string|number>, "argv": ["arg", ...], "cwd": "<directory>", "env": {"NAME": "value", ...}}
+ * response: {"id": <id>, "exit": <exit-code>, "stdout": "<captured stdout>", "stderr": "<captured stderr>"}
+ *
+ * "cwd" defaults to the server's current directory, and "env" entries are added to the server's environment. Each
+ * request goes through the regular CommandLineApplication.run() path under its own InvocationContext, with an empty
+ * stdin, and with stdout and stderr captured and decoded with the platform charset, which the runtime's console and
+ * System.out encode with. Commands that allow it (Command.canReuseRuntime()) reuse the runtime initialized by an
+ * earlier request with the same global options, as in batch mode. A request that cannot be executed is answered with
+ * {"id": <id, or null if unknown>, "error": "<reason>"}, and a request whose execution fails unexpectedly with exit 1
+ * and "internal error: <reason>" as stderr.
+ *
+ * Requests execute concurrently, up to --serve-stdio-parallelism=N at a time (the number of processors by default), and
+ * the server stops reading stdin while N requests are in flight. Responses are written as requests complete, so they
+ * may come out of order: correlate them by id. On stdin EOF, the server waits for the requests in flight and exits with
+ * 0. As with the daemon, a command that calls System.exit() terminates the server.
+ *
+ * While the server runs, stdout carries only responses: what threads without an InvocationContext (logging, thread
+ * pools) write to System.out goes to stderr.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+class StdioServer {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final Logger log = Logger.getLogger(StdioServer.class);
+
+    public static final String SERVE_OPTION = "--serve-stdio";
+    public static final String PARALLELISM_OPTION = "--serve-stdio-parallelism";
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return the server described by the command line, or null if the command line does not request stdio server
+     * mode.
+     *
+     * @exception UserErrorException if the server options are invalid, or combined with other arguments.
+     */
+    static StdioServer fromArguments(String[] args) throws UserErrorException {
+
+        boolean serve = false;
+        String parallelism = null;
+        List<String> others = new ArrayList<>();
+
+        for(String a: args) {
+
+            if (SERVE_OPTION.equals(a)) {
+
+                serve = true;
+            }
+            else if (a.startsWith(PARALLELISM_OPTION + "=")) {
+
+                parallelism = a.substring(PARALLELISM_OPTION.length() + 1);
+            }
+            else {
+
+                others.add(a);
+            }
+        }
+
+        if (!serve) {
+
+            if (parallelism != null) {
+                throw new UserErrorException(PARALLELISM_OPTION + " can only be used with " + SERVE_OPTION);
+            }
+
+            return null;
+        }
+
+        if (!others.isEmpty()) {
+            throw new UserErrorException(
+                    SERVE_OPTION + " cannot be combined with other arguments: " + String.join(" ", others));
+        }
+
+        int n = Runtime.getRuntime().availableProcessors();
+
+        if (parallelism != null) {
+
+            try {
+                n = Integer.parseInt(parallelism);
+            }
+            catch(NumberFormatException e) {
+                n = 0;
+            }
+
+            if (n < 1) {
+                throw new UserErrorException("invalid " + PARALLELISM_OPTION + " value \"" + parallelism + "\"");
+            }
+        }
+
+        return new StdioServer(n);
+    }
+
+    /**
+     * Parses and validates a request line. Never returns null: a request that cannot be executed carries an error.
+     */
+    static Request parseRequest(String line) {
+
+        Object value;
+
+        try {
+
+            value = Json.parse(line);
+        }
+        catch(ParseException e) {
+
+            return new Request(null, "invalid JSON: " + e.getMessage());
+        }
+
+        if (!(value instanceof Map)) {
+            return new Request(null, "the request is not a JSON object");
+        }
+
+        Map<?, ?> object = (Map<?, ?>)value;
+
+        Object id = object.get("id");
+
+        if (!(id == null || id instanceof String || id instanceof BigDecimal)) {
+            return new Request(null, "\"id\" must be a string or a number");
+        }
+
+        Object argv = object.get("argv");
+
+        if (!(argv instanceof List)) {
+            return new Request(id, "missing \"argv\" array");
+        }
+
+        List<String> arguments = new ArrayList<>();
+
+        for(Object o: (List<?>)argv) {
+
+            if (!(o instanceof String)) {
+                return new Request(id, "\"argv\" elements must be strings");
+            }
+
+            arguments.add((String)o);
+
+            if (SERVE_OPTION.equals(o)) {
+                return new Request(id, "stdio servers cannot be nested");
+            }
+        }
+
+        File currentDirectory = null;
+        Object cwd = object.get("cwd");
+
+        if (cwd != null) {
+
+            if (!(cwd instanceof String)) {
+                return new Request(id, "\"cwd\" must be a string");
+            }
+
+            currentDirectory = new File((String)cwd);
+
+            if (!currentDirectory.isDirectory()) {
+                return new Request(id, "no such directory: " + cwd);
+            }
+        }
+
+        Map<String, String> environment = new HashMap<>();
+        Object env = object.get("env");
+
+        if (env != null) {
+
+            if (!(env instanceof Map)) {
+                return new Request(id, "\"env\" must be an object");
+            }
+
+            for(Map.Entry<?, ?> e: ((Map<?, ?>)env).entrySet()) {
+
+                if (!(e.getValue() instanceof String)) {
+                    return new Request(id, "\"env\" values must be strings");
+                }
+
+                environment.put((String)e.getKey(), (String)e.getValue());
+            }
+        }
+
+        return new Request(id, arguments, currentDirectory, environment);
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private int parallelism;
+
+    // the runtimes initialized by the requests executed on a thread, keyed by global arguments; runtimes are not
+    // shared between threads, because commands set the runtime's streams
+    private ThreadLocal<Map<List<String>, ApplicationRuntime>> initializedRuntimes;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    StdioServer(int parallelism) {
+
+        this.parallelism = parallelism;
+        this.initializedRuntimes = ThreadLocal.withInitial(HashMap::new);
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @Override
+    public String toString() {
+
+        return "stdio server (parallelism " + parallelism + ")";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    /**
+     * Serves the requests read from the given stream until EOF.
+     *
+     * @return 0.
+     */
+    int run(InputStream requests, OutputStream responses) throws Exception {
+
+        //
+        // code that writes to System.out and System.err directly must write into the request's streams
+        //
+
+        InvocationContext.installRoutingStreams();
+
+        InvocationContext parent = InvocationContext.get();
+
+        //
+        // the responses go to the process' stdout, which must not receive anything else
+        //
+
+        if (parent == null) {
+            InvocationContext.setUnboundStdoutToStderr(true);
+        }
+
+        File currentDirectory = parent == null ? new File(".") : parent.getCurrentDirectory();
+        Map<String, String> environment = parent == null ? System.getenv() : parent.getEnvironment();
+
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        Semaphore slots = new Semaphore(parallelism);
+
+        log.debug(this + " started");
+
+        try {
+
+            BufferedReader reader = new BufferedReader(new InputStreamReader(requests, StandardCharsets.UTF_8));
+
+            String line;
+
+            while((line = reader.readLine()) != null) {
+
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+
+                Request request = parseRequest(line);
+
+                if (request.getError() != null) {
+
+                    respond(responses, errorResponse(request));
+                    continue;
+                }
+
+                slots.acquire();
+
+                try {
+
+                    executor.execute(InvocationContext.wrap(
+                            new Invocation(request, currentDirectory, environment, responses, slots)));
+                }
+                catch(RuntimeException e) {
+
+                    slots.release();
+                    throw e;
+                }
+            }
+        }
+        finally {
+
+            executor.shutdown();
+
+            while(!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                log.debug(this + " waiting for the requests in flight");
+            }
+
+            if (parent == null) {
+                InvocationContext.setUnboundStdoutToStderr(false);
+            }
+
+            log.debug(this + " stopped");
+        }
+
+        return 0;
+    }
+
+    int getParallelism() {
+
+        return parallelism;
+    }
+
+    /**
+     * Executes a request with the given streams, in the given base directory and environment, which the request's cwd
+     * and env override.
+     *
+     * @return the exit code.
+     */
+    int execute(Request request, File currentDirectory, Map<String, String> environment,
+                OutputStream stdout, OutputStream stderr) throws IOException {
+
+        Map<String, String> env = environment;
+
+        if (!request.getEnvironment().isEmpty()) {
+
+            env = new HashMap<>(environment);
+            env.putAll(request.getEnvironment());
+        }
+
+        InvocationContext context = new InvocationContext(
+                request.getCurrentDirectory() == null ? currentDirectory : request.getCurrentDirectory(),
+                env, new ByteArrayInputStream(new byte[0]), stdout, stderr);
+
+        List<String> arguments = request.getArguments();
+
+        return CommandLineApplication.execute(
+                arguments.toArray(new String[arguments.size()]), context, initializedRuntimes.get());
+    }
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private static Map<String, Object> errorResponse(Request request) {
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("id", request.getId());
+        response.put("error", request.getError());
+        return response;
+    }
+
+    /**
+     * Writes one response line. Responses are written from several threads, each line must come out whole.
+     */
+    private static void respond(OutputStream responses, Map<String, Object> response) throws IOException {
+
+        byte[] bytes = (Json.toJson(response) + "\n").getBytes(StandardCharsets.UTF_8);
+
+        synchronized (responses) {
+
+            responses.write(bytes);
+            responses.flush();
+        }
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+    static class Request {
+
+        private Object id;
+        private List<String> arguments;
+        private File currentDirectory;
+        private Map<String, String> environment;
+        private String error;
+
+        Request(Object id, List<String> arguments, File currentDirectory, Map<String, String> environment) {
+
+            this.id = id;
+            this.arguments = arguments;
+            this.currentDirectory = currentDirectory;
+            this.environment = environment;
+        }
+
+        Request(Object id, String error) {
+
+            this.id = id;
+            this.error = error;
+        }
+
+        /**
+         * @return a String, a BigDecimal or null.
+         */
+        Object getId() {
+            return id;
+        }
+
+        List<String> getArguments() {
+            return arguments;
+        }
+
+        /**
+         * @return null if the request does not specify a current directory.
+         */
+        File getCurrentDirectory() {
+            return currentDirectory;
+        }
+
+        Map<String, String> getEnvironment() {
+            return environment;
+        }
+
+        /**
+         * @return the reason the request cannot be executed, or null if the request is valid.
+         */
+        String getError() {
+            return error;
+        }
+
+        @Override
+        public String toString() {
+
+            return "request " + Json.toJson(id) + (error != null ? " (" + error + ")" : ": " + arguments);
+        }
+    }
+
+    private class Invocation implements Runnable {
+
+        private Request request;
+        private File currentDirectory;
+        private Map<String, String> environment;
+        private OutputStream responses;
+        private Semaphore slots;
+
+        Invocation(Request request, File currentDirectory, Map<String, String> environment,
+                   OutputStream responses, Semaphore slots) {
+
+            this.request = request;
+            this.currentDirectory = currentDirectory;
+            this.environment = environment;
+            this.responses = responses;
+            this.slots = slots;
+        }
+
+        @Override
+        public void run() {
+
+            try {
+
+                ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+                ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+
+                int exitCode = execute(request, currentDirectory, environment, stdout, stderr);
+
+                Map<String, Object> response = new LinkedHashMap<>();
+                response.put("id", request.getId());
+                response.put("exit", exitCode);
+                response.put("stdout", new String(stdout.toByteArray(), Charset.defaultCharset()));
+                response.put("stderr", new String(stderr.toByteArray(), Charset.defaultCharset()));
+
+                respond(responses, response);
+            }
+            catch(Throwable t) {
+
+                log.error("failed to serve " + request, t);
+
+                //
+                // the client waits for a response for each id
+                //
+
+                Map<String, Object> response = new LinkedHashMap<>();
+                response.put("id", request.getId());
+                response.put("exit", 1);
+                response.put("stdout", "");
+                response.put("stderr", "internal error: " + t);
+
+                try {
+
+                    respond(responses, response);
+                }
+                catch(Throwable t2) {
+
+                    log.error("failed to send the internal error response for " + request, t2);
+                }
+            }
+            finally {
+
+                slots.release();
+            }
+        }
+    }
+}
@@ -16,6 +16,16 @@
 
 package io.novaordis.clad;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+
 /**
  * @author Ovidiu Feodorov <ovidiu@novaordis.com>
  * @since 1/31/16
@@ -24,9 +34,7 @@ public class Util {
 
     // Constants -------------------------------------------------------------------------------------------------------
 
-    // Static Attributes -----------------------------------------------------------------------------------------------
-
-    public static boolean normalizeLabelInvoked = false;
+    private static final Logger log = LoggerFactory.getLogger(Util.class);
 
     // Static ----------------------------------------------------------------------------------------------------------
 
@@ -36,27 +44,100 @@ public class Util {
      */
     public static String normalizeLabel(String name) {
 
-        normalizeLabelInvoked = true;
+        StringBuilder result = new StringBuilder(name.length());
 
-        String result = "";
         for(int i = 0; i < name.length(); i ++) {
 
             if (i == 0) {
 
-                result += Character.toUpperCase(name.charAt(i));
+                result.append(Character.toUpperCase(name.charAt(i)));
             }
             else if (name.charAt(i) == '-') {
 
                 if (i < name.length() - 1) {
-                    result += Character.toUpperCase(name.charAt(++i));
+                    result.append(Character.toUpperCase(name.charAt(++i)));
                 }
             }
             else {
-                result += name.charAt(i);
+                result.append(name.charAt(i));
             }
         }
 
-        return result;
+        return result.toString();
+    }
+
+    /**
+     * The reverse of normalizeLabel() applied to a command class name: derives the command name, as specified on
+     * command line, from the simple name of the command implementation class. For example, "CompoundNameCommand"
+     * becomes "compound-name".
+     */
+    public static String toCommandName(String simpleClassName) {
+
+        String s = simpleClassName.replaceAll("Command", "");
+
+        //
+        // detect camel case and inject dashes
+        //
+
+        StringBuilder name = new StringBuilder();
+        for(int i = 0; i < s.length(); i ++) {
+
+            char c = s.charAt(i);
+
+            if (Character.isUpperCase(c)) {
+
+                c = Character.toLowerCase(c);
+                if (i > 0) {
+                    name.append('-');
+                }
+            }
+            name.append(c);
+        }
+        return name.toString();
+    }
+
+    /**
+     * Derives the application name from the simple name of the application runtime class. For example,
+     * "TestApplicationRuntime" becomes "test".
+     *
+     * @exception IllegalArgumentException if the class name does not follow the &lt;name&gt;ApplicationRuntime
+     * pattern.
+     */
+    public static String toApplicationName(String simpleClassName) {
+
+        if (!simpleClassName.endsWith("ApplicationRuntime")) {
+            throw new IllegalArgumentException("non-standard application class name " + simpleClassName);
+        }
+
+        return simpleClassName.substring(0, simpleClassName.length() - "ApplicationRuntime".length()).toLowerCase();
+    }
+
+    /**
+     * Releases the mapping immediately, without waiting for the buffer to be garbage collected. Uses
+     * sun.misc.Unsafe.invokeCleaner() on Java 9 and newer and the buffer's cleaner on Java 8, looked up once. The
+     * buffer must not be accessed after this call.
+     */
+    public static void unmap(MappedByteBuffer b) {
+
+        try {
+
+            if (Unmapper.INVOKE_CLEANER != null) {
+
+                Unmapper.INVOKE_CLEANER.invokeExact(b);
+            }
+            else if (Unmapper.CLEANER != null) {
+
+                Object cleaner = Unmapper.CLEANER.invokeExact(b);
+
+                if (cleaner != null) {
+                    Unmapper.CLEAN.invokeExact(cleaner);
+                }
+            }
+        }
+        catch(Throwable t) {
+
+            log.debug("failed to unmap buffer, leaving it to the garbage collector: " + t);
+        }
     }
 
     // Attributes ------------------------------------------------------------------------------------------------------
@@ -76,4 +157,69 @@ public class Util {
 
     // Inner classes ---------------------------------------------------------------------------------------------------
 
+    /**
+     * The handles unmap() invokes, resolved when unmap() is first called. All null if the JDK offers no way to unmap a
+     * buffer, in which case the mappings are left to the garbage collector.
+     */
+    private static final class Unmapper {
+
+        // Java 9 and newer: (MappedByteBuffer)void
+        static final MethodHandle INVOKE_CLEANER;
+
+        // Java 8: (MappedByteBuffer)Object and (Object)void
+        static final MethodHandle CLEANER;
+        static final MethodHandle CLEAN;
+
+        static {
+
+            MethodHandle invokeCleaner = null;
+            MethodHandle cleaner = null;
+            MethodHandle clean = null;
+
+            try {
+
+                MethodHandles.Lookup lookup = MethodHandles.lookup();
+                Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+
+                try {
+
+                    Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+                    theUnsafe.setAccessible(true);
+
+                    invokeCleaner = lookup.
+                            findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class)).
+                            bindTo(theUnsafe.get(null)).
+                            asType(MethodType.methodType(void.class, MappedByteBuffer.class));
+                }
+                catch(NoSuchMethodException e) {
+
+                    //
+                    // Java 8: the buffer's own cleaner, reached through the public sun.nio.ch.DirectBuffer interface
+                    //
+
+                    Class<?> directBufferClass = Class.forName("sun.nio.ch.DirectBuffer");
+                    Class<?> cleanerClass = Class.forName("sun.misc.Cleaner");
+
+                    cleaner = lookup.
+                            findVirtual(directBufferClass, "cleaner", MethodType.methodType(cleanerClass)).
+                            asType(MethodType.methodType(Object.class, MappedByteBuffer.class));
+                    clean = lookup.
+                            findVirtual(cleanerClass, "clean", MethodType.methodType(void.class)).
+                            asType(MethodType.methodType(void.class, Object.class));
+                }
+            }
+            catch(Exception e) {
+
+                log.debug("cannot unmap buffers, leaving them to the garbage collector: " + e);
+                invokeCleaner = null;
+                cleaner = null;
+                clean = null;
+            }
+
+            INVOKE_CLEANER = invokeCleaner;
+            CLEANER = cleaner;
+            CLEAN = clean;
+        }
+    }
+
 }
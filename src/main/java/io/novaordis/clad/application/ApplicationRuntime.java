@@ -75,6 +75,18 @@ public interface ApplicationRuntime extends Console {
      */
     Set<Option> optionalGlobalOptions();
 
+    /**
+     * Specifies whether requiredGlobalOptions() and optionalGlobalOptions() compute the declarations, which may then
+     * differ from one invocation to another. The declarations of the other applications are compiled once per
+     * application runtime class, and not looked at again. By default, the declarations are constant.
+     *
+     * @see Command#computesOptions()
+     */
+    default boolean computesGlobalOptions() {
+
+        return false;
+    }
+
     /**
      * The method gives the application a chance to wrap the configuration into an application-specific and
      * install it internally, if it chooses so.
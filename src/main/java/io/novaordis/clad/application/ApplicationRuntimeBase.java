@@ -26,8 +26,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
-import java.io.IOException;
 import java.io.OutputStream;
+import java.util.Map;
 
 /**
  * @author Ovidiu Feodorov <ovidiu@novaordis.com>
@@ -46,6 +46,9 @@ public abstract class ApplicationRuntimeBase implements ApplicationRuntime {
     private OutputStream stdoutOutputStream;
     private OutputStream stderrOutputStream;
 
+    // backs info(), warn() and error(); created on first use for the current streams
+    private volatile BufferedConsole console;
+
     // the scope is configured to resolve environment properties by default
     private EncloseableScope rootScope;
 
@@ -55,19 +58,37 @@ public abstract class ApplicationRuntimeBase implements ApplicationRuntime {
 
     protected ApplicationRuntimeBase() {
 
+        InvocationContext context = InvocationContext.get();
+
         //
         // start with the default streams, they can be overwritten at any moment
         //
 
-        setStdoutOutputStream(System.out);
-        setStderrOutputStream(System.err);
+        setStdoutOutputStream(context == null ? System.out : context.getStdout());
+        setStderrOutputStream(context == null ? System.err : context.getStderr());
 
         this.rootScope = new ScopeImpl();
 
         //
-        // this is how we resolve environment variables
+        // this is how we resolve environment variables; if the invocation does not own the process, the environment
+        // is the invocation's, not the process'
         //
-        this.rootScope.setParent(new OSProcessScope());
+
+        if (context == null) {
+
+            this.rootScope.setParent(new OSProcessScope());
+        }
+        else {
+
+            ScopeImpl environment = new ScopeImpl();
+
+            for(Map.Entry<String, String> e: context.getEnvironment().entrySet()) {
+
+                environment.declare(e.getKey(), e.getValue());
+            }
+
+            this.rootScope.setParent(environment);
+        }
 
         log.debug(this + " constructed");
     }
@@ -99,70 +120,109 @@ public abstract class ApplicationRuntimeBase implements ApplicationRuntime {
     @Override
     public void setStdoutOutputStream(OutputStream os) {
 
+        flush();
         this.stdoutOutputStream = os;
+        this.console = null;
     }
 
+    /**
+     * Flushes the pending console output first, so what the caller writes to the stream follows it.
+     */
     @Override
     public OutputStream getStdoutOutputStream() {
 
+        flush();
         return stdoutOutputStream;
     }
 
     @Override
     public void setStderrOutputStream(OutputStream os) {
 
+        flush();
         this.stderrOutputStream = os;
+        this.console = null;
     }
 
+    /**
+     * Flushes the pending console output first, so what the caller writes to the stream follows it.
+     */
     @Override
     public OutputStream getStderrOutputStream() {
 
+        flush();
         return stderrOutputStream;
     }
 
     @Override
     public void info(String s) {
 
-        OutputStream stdout = getStdoutOutputStream();
+        getConsole().info(s);
+    }
 
-        try {
-            stdout.write((s + "\n").getBytes());
-        }
-        catch(IOException e) {
-            System.err.println("internal error: failed to write the application runtime stdout: " + e);
-        }
+    @Override
+    public void info(CharSequence s) {
+
+        getConsole().info(s);
+    }
+
+    @Override
+    public void info(char[] c, int offset, int length) {
+
+        getConsole().info(c, offset, length);
     }
 
     @Override
     public void warn(String s) {
 
-        OutputStream stdout = getStdoutOutputStream();
+        getConsole().warn(s);
+    }
 
-        try {
-            stdout.write(("[warn]: " + s + "\n").getBytes());
-        }
-        catch(IOException e) {
-            System.err.println("internal error: failed to write the application runtime stdout: " + e);
-        }
+    @Override
+    public void warn(CharSequence s) {
+
+        getConsole().warn(s);
+    }
+
+    @Override
+    public void warn(char[] c, int offset, int length) {
+
+        getConsole().warn(c, offset, length);
     }
 
     @Override
     public void error(String s) {
 
-        OutputStream stderr = getStderrOutputStream();
+        getConsole().error(s);
+    }
 
-        try {
-            stderr.write(("[error]: " + s + "\n").getBytes());
-        }
-        catch(IOException e) {
-            System.err.println("internal error: failed to write the application runtime stderr: " + e);
+    @Override
+    public void error(CharSequence s) {
+
+        getConsole().error(s);
+    }
+
+    @Override
+    public void error(char[] c, int offset, int length) {
+
+        getConsole().error(c, offset, length);
+    }
+
+    @Override
+    public void flush() {
+
+        BufferedConsole c = console;
+
+        if (c != null) {
+            c.flush();
         }
     }
 
     @Override
     public File getCurrentDirectory() {
 
-        return new File(".");
+        InvocationContext context = InvocationContext.get();
+
+        return context == null ? new File(".") : context.getCurrentDirectory();
     }
 
     @Override
@@ -207,6 +267,26 @@ public abstract class ApplicationRuntimeBase implements ApplicationRuntime {
 
     // Private ---------------------------------------------------------------------------------------------------------
 
+    private BufferedConsole getConsole() {
+
+        BufferedConsole c = console;
+
+        if (c == null) {
+
+            synchronized (this) {
+
+                c = console;
+
+                if (c == null) {
+
+                    console = c = new BufferedConsole(stdoutOutputStream, stderrOutputStream);
+                }
+            }
+        }
+
+        return c;
+    }
+
     // Inner classes ---------------------------------------------------------------------------------------------------
 
 }
@@ -0,0 +1,536 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.clad.application;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * A Console that encodes its lines with a reused CharsetEncoder into reused byte buffers, one per stream, instead of
+ * building a String and a byte[] for each line and writing each line to the (usually unbuffered) stream.
+ *
+ * Flush policy:
+ *
+ * 1. In line mode, used when stdout is the process' standard output and the process is attached to a terminal, every
+ *    line is flushed, so the output of interactive commands shows up as it is produced.
+ *
+ * 2. Otherwise (pipes, files, daemon or batch invocations) a stream is written when its buffer fills up, and flushed
+ *    by flush(), which CommandLineApplication calls when the command completes.
+ *
+ * 3. error() flushes the pending stdout content first, then the error line, so errors stay ordered relative to the
+ *    stdout output on a shared terminal or log.
+ *
+ * 4. The consoles that still hold output are flushed by a shutdown hook, so output is not lost if a command exits the
+ *    JVM with System.exit().
+ *
+ * Malformed and unmappable characters are replaced, as String.getBytes() does. The CharSequence and char[] overloads
+ * encode the characters without converting them to a String. The methods are synchronized, so lines written from
+ * different threads are not interleaved.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+public class BufferedConsole implements Console {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    public static final String WARN_PREFIX = "[warn]: ";
+    public static final String ERROR_PREFIX = "[error]: ";
+
+    private static final int CHUNK_SIZE = 4096;
+
+    private static final char[] NULL = "null".toCharArray();
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // the consoles that may hold output, flushed on JVM exit
+    private static final Set<BufferedConsole> consoles = Collections.newSetFromMap(new WeakHashMap<>());
+
+    private static boolean shutdownHookInstalled;
+
+    // java.io.Console.isTerminal(), available since Java 22, null on older JVMs
+    private static final Method CONSOLE_IS_TERMINAL = getConsoleIsTerminalMethod();
+
+    /**
+     * @return true if the stream is the process' standard output, and the process is attached to a terminal.
+     */
+    public static boolean isTerminal(OutputStream os) {
+
+        return os == System.out && isTerminal(System.console(), CONSOLE_IS_TERMINAL);
+    }
+
+    /**
+     * Since Java 22, System.console() returns a console even when the standard streams are redirected, and only
+     * Console.isTerminal() tells whether they are attached to a terminal. On older JVMs, a console is only available
+     * if they are.
+     *
+     * @param console the System.console() value, may be null.
+     * @param isTerminal the Console.isTerminal() method, null if not available.
+     */
+    static boolean isTerminal(Object console, Method isTerminal) {
+
+        if (console == null) {
+            return false;
+        }
+
+        if (isTerminal == null) {
+            return true;
+        }
+
+        try {
+
+            return Boolean.TRUE.equals(isTerminal.invoke(console));
+        }
+        catch(ReflectiveOperationException | RuntimeException e) {
+
+            return true;
+        }
+    }
+
+    private static Method getConsoleIsTerminalMethod() {
+
+        try {
+
+            return java.io.Console.class.getMethod("isTerminal");
+        }
+        catch(NoSuchMethodException e) {
+
+            return null;
+        }
+    }
+
+    private static void register(BufferedConsole c) {
+
+        synchronized (consoles) {
+
+            consoles.add(c);
+
+            if (!shutdownHookInstalled) {
+
+                Thread hook = new Thread(new FlushOnExit(), "clad console flush");
+
+                try {
+
+                    Runtime.getRuntime().addShutdownHook(hook);
+                    shutdownHookInstalled = true;
+                }
+                catch(IllegalStateException e) {
+
+                    // the JVM is already shutting down
+                }
+            }
+        }
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private Sink stdout;
+    private Sink stderr;
+
+    private boolean lineFlush;
+
+    private CharsetEncoder encoder;
+
+    // in write mode between lines; may hold the high surrogate of a pair split by a chunk boundary
+    private CharBuffer chars;
+
+    private int bufferSize;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    /**
+     * Uses the platform charset, line mode if stdout is a terminal, and the default buffer size.
+     */
+    public BufferedConsole(OutputStream stdout, OutputStream stderr) {
+
+        this(stdout, stderr, Charset.defaultCharset(), isTerminal(stdout), DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param lineFlush whether every line is flushed.
+     * @param bufferSize the size of each stream's buffer, in bytes. The buffers are allocated on first use.
+     */
+    public BufferedConsole(OutputStream stdout, OutputStream stderr, Charset charset, boolean lineFlush,
+                           int bufferSize) {
+
+        if (bufferSize < 16) {
+            throw new IllegalArgumentException("invalid buffer size " + bufferSize);
+        }
+
+        this.stdout = new Sink(stdout);
+        this.stderr = new Sink(stderr);
+        this.lineFlush = lineFlush;
+        this.bufferSize = bufferSize;
+
+        this.encoder = charset.newEncoder().
+                onMalformedInput(CodingErrorAction.REPLACE).
+                onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        this.chars = CharBuffer.allocate(CHUNK_SIZE);
+    }
+
+    // Console implementation ------------------------------------------------------------------------------------------
+
+    @Override
+    public void info(String s) {
+
+        info((CharSequence)s);
+    }
+
+    @Override
+    public synchronized void info(CharSequence s) {
+
+        line(stdout, null, s);
+    }
+
+    @Override
+    public synchronized void info(char[] c, int offset, int length) {
+
+        line(stdout, null, c, offset, length);
+    }
+
+    @Override
+    public void warn(String s) {
+
+        warn((CharSequence)s);
+    }
+
+    @Override
+    public synchronized void warn(CharSequence s) {
+
+        line(stdout, WARN_PREFIX, s);
+    }
+
+    @Override
+    public synchronized void warn(char[] c, int offset, int length) {
+
+        line(stdout, WARN_PREFIX, c, offset, length);
+    }
+
+    @Override
+    public void error(String s) {
+
+        error((CharSequence)s);
+    }
+
+    @Override
+    public synchronized void error(CharSequence s) {
+
+        stdout.flush();
+        line(stderr, ERROR_PREFIX, s);
+        stderr.flush();
+    }
+
+    @Override
+    public synchronized void error(char[] c, int offset, int length) {
+
+        stdout.flush();
+        line(stderr, ERROR_PREFIX, c, offset, length);
+        stderr.flush();
+    }
+
+    /**
+     * Writes and flushes the pending output, if any.
+     */
+    @Override
+    public synchronized void flush() {
+
+        stdout.flush();
+        stderr.flush();
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    public boolean isLineFlush() {
+
+        return lineFlush;
+    }
+
+    public OutputStream getStdoutOutputStream() {
+
+        return stdout.out;
+    }
+
+    public OutputStream getStderrOutputStream() {
+
+        return stderr.out;
+    }
+
+    /**
+     * @return the number of bytes written to the console, but not yet to the streams.
+     */
+    public synchronized int getPendingByteCount() {
+
+        return stdout.pending() + stderr.pending();
+    }
+
+    @Override
+    public String toString() {
+
+        return "BufferedConsole[" + encoder.charset() + (lineFlush ? ", line flush" : "") + "]";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private void line(Sink sink, String prefix, CharSequence s) {
+
+        if (prefix != null) {
+            append(sink, prefix, 0, prefix.length());
+        }
+
+        if (s == null) {
+            append(sink, NULL, 0, NULL.length);
+        }
+        else {
+            append(sink, s, 0, s.length());
+        }
+
+        endLine(sink);
+    }
+
+    private void line(Sink sink, String prefix, char[] c, int offset, int length) {
+
+        if (offset < 0 || length < 0 || offset > c.length - length) {
+            throw new IndexOutOfBoundsException("offset " + offset + ", length " + length + ", size " + c.length);
+        }
+
+        if (prefix != null) {
+            append(sink, prefix, 0, prefix.length());
+        }
+
+        append(sink, c, offset, offset + length);
+        endLine(sink);
+    }
+
+    private void append(Sink sink, CharSequence s, int start, int end) {
+
+        while(start < end) {
+
+            if (!chars.hasRemaining()) {
+                encode(sink, false);
+            }
+
+            int n = Math.min(end - start, chars.remaining());
+            int position = chars.position();
+
+            if (s instanceof String) {
+
+                ((String)s).getChars(start, start + n, chars.array(), position);
+            }
+            else {
+
+                char[] a = chars.array();
+
+                for(int i = 0; i < n; i ++) {
+                    a[position + i] = s.charAt(start + i);
+                }
+            }
+
+            chars.position(position + n);
+            start += n;
+        }
+    }
+
+    private void append(Sink sink, char[] c, int start, int end) {
+
+        while(start < end) {
+
+            if (!chars.hasRemaining()) {
+                encode(sink, false);
+            }
+
+            int n = Math.min(end - start, chars.remaining());
+            chars.put(c, start, n);
+            start += n;
+        }
+    }
+
+    private void endLine(Sink sink) {
+
+        if (!chars.hasRemaining()) {
+            encode(sink, false);
+        }
+
+        chars.put('\n');
+        encode(sink, true);
+
+        ByteBuffer bytes = sink.buffer();
+
+        while(encoder.flush(bytes).isOverflow()) {
+            sink.write();
+        }
+
+        encoder.reset();
+
+        if (lineFlush) {
+            sink.flush();
+        }
+    }
+
+    /**
+     * Encodes the accumulated characters, writing the stream's buffer out as many times as it fills up.
+     */
+    private void encode(Sink sink, boolean endOfInput) {
+
+        chars.flip();
+
+        ByteBuffer bytes = sink.buffer();
+
+        while(true) {
+
+            CoderResult r = encoder.encode(chars, bytes, endOfInput);
+
+            if (r.isOverflow()) {
+
+                sink.write();
+                continue;
+            }
+
+            // errors are replaced, so this is an underflow
+            break;
+        }
+
+        chars.compact();
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+    private class Sink {
+
+        private OutputStream out;
+
+        // array-backed, so it can be written to the stream without copying; null until first used
+        private ByteBuffer bytes;
+
+        private boolean failed;
+
+        // whether bytes were written to the stream since it was last flushed
+        private boolean unflushed;
+
+        Sink(OutputStream out) {
+
+            this.out = out;
+        }
+
+        ByteBuffer buffer() {
+
+            if (bytes == null) {
+
+                bytes = ByteBuffer.allocate(bufferSize);
+                register(BufferedConsole.this);
+            }
+
+            return bytes;
+        }
+
+        int pending() {
+
+            return bytes == null ? 0 : bytes.position();
+        }
+
+        /**
+         * Writes the buffer to the stream, without flushing the stream.
+         */
+        void write() {
+
+            if (bytes.position() == 0) {
+                return;
+            }
+
+            try {
+
+                out.write(bytes.array(), 0, bytes.position());
+            }
+            catch(IOException e) {
+
+                //
+                // reported once per stream, the console has no way to report errors to its callers
+                //
+
+                if (!failed) {
+
+                    failed = true;
+                    System.err.println("internal error: failed to write the application runtime output: " + e);
+                }
+            }
+
+            bytes.clear();
+            unflushed = true;
+        }
+
+        void flush() {
+
+            if (pending() == 0 && !unflushed) {
+                return;
+            }
+
+            write();
+            unflushed = false;
+
+            try {
+
+                out.flush();
+            }
+            catch(IOException e) {
+
+                if (!failed) {
+
+                    failed = true;
+                    System.err.println("internal error: failed to flush the application runtime output: " + e);
+                }
+            }
+        }
+    }
+
+    private static class FlushOnExit implements Runnable {
+
+        @Override
+        public void run() {
+
+            List<BufferedConsole> pending;
+
+            synchronized (consoles) {
+
+                pending = new ArrayList<>(consoles);
+            }
+
+            for(BufferedConsole c: pending) {
+
+                c.flush();
+            }
+        }
+    }
+}
@@ -17,6 +17,14 @@
 package io.novaordis.clad.application;
 
 /**
+ * The CharSequence and char[] overloads allow callers to write lines without building Strings. Their default
+ * implementations convert to String; BufferedConsole encodes the characters directly.
+ *
+ * Implementations may buffer output, in which case it becomes visible on flush(). Errors are flushed as they are
+ * written.
+ *
+ * @see BufferedConsole
+ *
  * @author Ovidiu Feodorov <ovidiu@novaordis.com>
  * @since 12/21/16
  */
@@ -33,14 +41,50 @@ public interface Console {
      */
     void info(String s);
 
+    default void info(CharSequence s) {
+
+        info(s == null ? null : s.toString());
+    }
+
+    default void info(char[] c, int offset, int length) {
+
+        info(new String(c, offset, length));
+    }
+
     /**
      * Sends to given string to stdout in "warning" mode, followed by a new line.
      */
     void warn(String s);
 
+    default void warn(CharSequence s) {
+
+        warn(s == null ? null : s.toString());
+    }
+
+    default void warn(char[] c, int offset, int length) {
+
+        warn(new String(c, offset, length));
+    }
+
     /**
      * Sends to given string to stderr in "error" mode, followed by a new line.
      */
     void error(String s);
 
+    default void error(CharSequence s) {
+
+        error(s == null ? null : s.toString());
+    }
+
+    default void error(char[] c, int offset, int length) {
+
+        error(new String(c, offset, length));
+    }
+
+    /**
+     * Writes the buffered output, if any. The default implementation does not buffer.
+     */
+    default void flush() {
+    }
+
 }
@@ -0,0 +1,255 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.clad.application;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * The process-level state of a command line invocation - current directory, environment and standard streams - when
+ * the invocation does not own the JVM it runs in, as is the case for invocations served by the clad daemon and for
+ * command lines run in batch mode.
+ *
+ * The context is bound to the thread that executes the invocation. It is not inherited by the threads that thread
+ * starts: pool threads created during an invocation (the common ForkJoin pool behind parallel streams, lazily created
+ * executors) outlive it, and would keep sending their output to a finished invocation. Work handed to other threads
+ * carries the context explicitly, through wrap(). When no context is bound, the invocation owns the process, and the
+ * runtime uses the process' own directory, environment and streams.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+public class InvocationContext {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    private static final ThreadLocal<InvocationContext> current = new ThreadLocal<>();
+
+    private static PrintStream originalOut;
+    private static PrintStream originalErr;
+    private static RoutingOutputStream routingOut;
+
+    /**
+     * @return the context bound to the current thread, or null if the invocation owns the process.
+     */
+    public static InvocationContext get() {
+
+        return current.get();
+    }
+
+    public static void set(InvocationContext context) {
+
+        current.set(context);
+    }
+
+    public static void remove() {
+
+        current.remove();
+    }
+
+    /**
+     * @return a Runnable that runs the given one with the context bound to the calling thread, if any, and restores the
+     * executing thread's own context when done.
+     */
+    public static Runnable wrap(Runnable r) {
+
+        InvocationContext context = current.get();
+
+        return () -> {
+
+            InvocationContext previous = current.get();
+            bind(context);
+
+            try {
+                r.run();
+            }
+            finally {
+                bind(previous);
+            }
+        };
+    }
+
+    /**
+     * @return a Callable that calls the given one with the context bound to the calling thread, if any, and restores
+     * the executing thread's own context when done.
+     */
+    public static <T> Callable<T> wrap(Callable<T> c) {
+
+        InvocationContext context = current.get();
+
+        return () -> {
+
+            InvocationContext previous = current.get();
+            bind(context);
+
+            try {
+                return c.call();
+            }
+            finally {
+                bind(previous);
+            }
+        };
+    }
+
+    /**
+     * Replaces System.out, System.err and System.in with streams that route to the current thread's context, if any,
+     * and to the original streams otherwise, so that code that uses System.out, System.err and System.in directly
+     * works with the invocation's streams. Safe to call more than once.
+     */
+    public static synchronized void installRoutingStreams() {
+
+        if (originalOut != null) {
+            return;
+        }
+
+        originalOut = System.out;
+        originalErr = System.err;
+
+        routingOut = new RoutingOutputStream(originalOut, false);
+
+        System.setOut(new PrintStream(routingOut, true));
+        System.setErr(new PrintStream(new RoutingOutputStream(originalErr, true), true));
+        System.setIn(new RoutingInputStream(System.in));
+    }
+
+    /**
+     * Restores the streams replaced by installRoutingStreams(). Does nothing if they were not replaced.
+     */
+    public static synchronized void uninstallRoutingStreams() {
+
+        if (originalOut == null) {
+            return;
+        }
+
+        System.setOut(originalOut);
+        System.setErr(originalErr);
+
+        if (System.in instanceof RoutingInputStream) {
+            System.setIn(((RoutingInputStream)System.in).getOriginal());
+        }
+
+        originalOut = null;
+        originalErr = null;
+        routingOut = null;
+    }
+
+    /**
+     * Sends what threads without a context write to System.out to the original System.err, or, with false, back to the
+     * original System.out. Used by hosts that write their own protocol to the process' stdout, where stray output would
+     * corrupt it.
+     *
+     * @exception IllegalStateException if the routing streams are not installed.
+     */
+    public static synchronized void setUnboundStdoutToStderr(boolean toStderr) {
+
+        if (routingOut == null) {
+            throw new IllegalStateException("routing streams not installed");
+        }
+
+        routingOut.setFallback(toStderr ? originalErr : null);
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private File currentDirectory;
+    private Map<String, String> environment;
+    private InputStream stdin;
+    private OutputStream stdout;
+    private OutputStream stderr;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    /**
+     * @exception IllegalArgumentException if any of the arguments is null.
+     */
+    public InvocationContext(File currentDirectory, Map<String, String> environment,
+                             InputStream stdin, OutputStream stdout, OutputStream stderr) {
+
+        if (currentDirectory == null || environment == null || stdin == null || stdout == null || stderr == null) {
+            throw new IllegalArgumentException("null invocation context component");
+        }
+
+        this.currentDirectory = currentDirectory;
+        this.environment = Collections.unmodifiableMap(new HashMap<>(environment));
+        this.stdin = stdin;
+        this.stdout = stdout;
+        this.stderr = stderr;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    public File getCurrentDirectory() {
+
+        return currentDirectory;
+    }
+
+    /**
+     * @return the invocation's environment variables. Never null, but may be empty. Unmodifiable.
+     */
+    public Map<String, String> getEnvironment() {
+
+        return environment;
+    }
+
+    public InputStream getStdin() {
+
+        return stdin;
+    }
+
+    public OutputStream getStdout() {
+
+        return stdout;
+    }
+
+    public OutputStream getStderr() {
+
+        return stderr;
+    }
+
+    @Override
+    public String toString() {
+
+        return "InvocationContext[" + currentDirectory + "]";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private static void bind(InvocationContext context) {
+
+        if (context == null) {
+            current.remove();
+        }
+        else {
+            current.set(context);
+        }
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
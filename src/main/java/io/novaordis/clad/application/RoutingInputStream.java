@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.clad.application;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Installed by InvocationContext.installRoutingStreams() as System.in: code that reads System.in directly reads the
+ * current invocation's standard input.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+class RoutingInputStream extends InputStream {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private InputStream original;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    RoutingInputStream(InputStream original) {
+
+        this.original = original;
+    }
+
+    // InputStream overrides -------------------------------------------------------------------------------------------
+
+    @Override
+    public int read() throws IOException {
+
+        return getSource().read();
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+
+        return getSource().read(b, off, len);
+    }
+
+    @Override
+    public int available() throws IOException {
+
+        return getSource().available();
+    }
+
+    /**
+     * Closes the invocation's standard input only.
+     */
+    @Override
+    public void close() throws IOException {
+
+        InvocationContext context = InvocationContext.get();
+
+        if (context != null) {
+            context.getStdin().close();
+        }
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    InputStream getOriginal() {
+
+        return original;
+    }
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private InputStream getSource() {
+
+        InvocationContext context = InvocationContext.get();
+
+        return context == null ? original : context.getStdin();
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.clad.application;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Installed by InvocationContext.installRoutingStreams() behind System.out and System.err: sends the output of code
+ * that writes to System.out or System.err directly to the current invocation's stream, and everything else to the
+ * fallback stream, which is the process' original stream unless the host reserves it (see setFallback()).
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+class RoutingOutputStream extends OutputStream {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private OutputStream original;
+    private boolean stderr;
+
+    // where the output of threads without a context goes
+    private volatile OutputStream fallback;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    /**
+     * @param stderr true if the stream stands for System.err, false if it stands for System.out.
+     */
+    RoutingOutputStream(OutputStream original, boolean stderr) {
+
+        this.original = original;
+        this.stderr = stderr;
+        this.fallback = original;
+    }
+
+    // OutputStream overrides ------------------------------------------------------------------------------------------
+
+    @Override
+    public void write(int b) throws IOException {
+
+        getTarget().write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+
+        getTarget().write(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+
+        getTarget().flush();
+    }
+
+    /**
+     * The underlying streams outlive whoever closes System.out or System.err, so closing is a flush.
+     */
+    @Override
+    public void close() throws IOException {
+
+        flush();
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    OutputStream getOriginal() {
+
+        return original;
+    }
+
+    /**
+     * @param fallback the stream that receives the output of threads without a context, instead of the original
+     *                 stream. Null restores the original stream.
+     */
+    void setFallback(OutputStream fallback) {
+
+        this.fallback = fallback == null ? original : fallback;
+    }
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private OutputStream getTarget() {
+
+        InvocationContext context = InvocationContext.get();
+
+        if (context == null) {
+            return fallback;
+        }
+
+        return stderr ? context.getStderr() : context.getStdout();
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
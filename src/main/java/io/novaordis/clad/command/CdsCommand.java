@@ -0,0 +1,318 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.clad.command;
+
+import io.novaordis.clad.CommandLineApplication;
+import io.novaordis.clad.InstanceFactory;
+import io.novaordis.clad.application.ApplicationRuntime;
+import io.novaordis.utilities.UserErrorException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Built-in command that produces an AppCDS (Application Class-Data Sharing) archive for the application, by performing
+ * a training run of the given command line in a separate JVM:
+ *
+ * <app> cds <command> [command options ...]
+ *
+ * The training JVM uses the same class path, main class and system properties as the current one. On Java 13 and
+ * newer, the training run produces a dynamic archive directly (-XX:ArchiveClassesAtExit). On Java 10 to 12, the
+ * training run dumps the loaded class list, and a second JVM produces a static archive from it (-Xshare:dump). Java 9
+ * and older are not supported.
+ *
+ * The class path must contain only JARs, which is the case when the application is started by the clad launcher.
+ *
+ * The archive (clad.jsa), the loaded class list (clad.classlist) and the class path the archive was built for
+ * (clad.classpath) are written in the directory designated by -Dclad.cds.dir, which the clad launcher sets to
+ * <home>/cds. The launcher uses the archive with -XX:SharedArchiveFile if it exists and its class path matches.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+public class CdsCommand extends CommandBase {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final Logger log = LoggerFactory.getLogger(CdsCommand.class);
+
+    public static final String CDS_DIRECTORY_SYSTEM_PROPERTY_NAME = "clad.cds.dir";
+
+    public static final String ARCHIVE_FILE_NAME = "clad.jsa";
+    public static final String CLASS_LIST_FILE_NAME = "clad.classlist";
+    public static final String CLASS_PATH_FILE_NAME = "clad.classpath";
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @param specificationVersion the value of the "java.specification.version" system property: "1.8", "11", etc.
+     *
+     * @return the Java feature version (8, 11, ...) or -1 if the value cannot be parsed.
+     */
+    public static int toJavaFeatureVersion(String specificationVersion) {
+
+        if (specificationVersion == null) {
+            return -1;
+        }
+
+        String s = specificationVersion.startsWith("1.") ? specificationVersion.substring(2) : specificationVersion;
+
+        int i = s.indexOf('.');
+
+        if (i != -1) {
+            s = s.substring(0, i);
+        }
+
+        try {
+
+            return Integer.parseInt(s);
+        }
+        catch(NumberFormatException e) {
+
+            return -1;
+        }
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // the training run command line arguments (global options and command)
+    private List<String> trainingArguments;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public CdsCommand() {
+
+        this.trainingArguments = new ArrayList<>();
+    }
+
+    // Command implementation ------------------------------------------------------------------------------------------
+
+    @Override
+    public boolean needsRuntime() {
+        return false;
+    }
+
+    /**
+     * All arguments that follow the command belong to the training command line, and they are consumed, so the global
+     * option parser does not see them. Arguments that precede the command (global options) are replayed in the
+     * training run, but left in the list.
+     */
+    @Override
+    public void configure(int from, List<String> commandLineArguments) throws Exception {
+
+        if (commandLineArguments.size() <= from) {
+            throw new UserErrorException("no training command line specified");
+        }
+
+        trainingArguments = new ArrayList<>(commandLineArguments);
+
+        while(commandLineArguments.size() > from) {
+
+            commandLineArguments.remove(commandLineArguments.size() - 1);
+        }
+    }
+
+    @Override
+    public void execute(ApplicationRuntime runtime) throws Exception {
+
+        int javaVersion = toJavaFeatureVersion(System.getProperty("java.specification.version"));
+
+        if (javaVersion < 10) {
+            throw new UserErrorException(
+                    "application class-data sharing requires Java 10 or newer, the current version is " +
+                            System.getProperty("java.specification.version"));
+        }
+
+        //
+        // the JVM refuses to archive classes loaded from directories, or even start with a non-empty class path
+        // directory when creating an archive
+        //
+
+        List<File> directories = InstanceFactory.getClasspathDirectories();
+
+        if (!directories.isEmpty()) {
+            throw new UserErrorException(
+                    "class-data sharing requires a class path that contains only JARs, but it contains " + directories);
+        }
+
+        File dir = getCdsDirectory();
+
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new UserErrorException("failed to create CDS directory " + dir);
+        }
+
+        String classPath = System.getProperty(InstanceFactory.JAVA_CLASS_PATH_SYSTEM_PROPERTY_NAME);
+
+        File archive = new File(dir, ARCHIVE_FILE_NAME);
+        File classList = new File(dir, CLASS_LIST_FILE_NAME);
+        File classPathFile = new File(dir, CLASS_PATH_FILE_NAME);
+
+        //
+        // a stale class path file would make the launcher use a half-written or stale archive
+        //
+
+        Files.deleteIfExists(classPathFile.toPath());
+        Files.deleteIfExists(archive.toPath());
+
+        List<String> jvmArguments = getInheritedJvmArguments();
+
+        run(getTrainingCommandLine(javaVersion, classPath, jvmArguments, archive, classList));
+
+        if (javaVersion < 13) {
+
+            run(getDumpCommandLine(javaVersion, classPath, jvmArguments, archive, classList));
+        }
+
+        if (!archive.isFile()) {
+            throw new UserErrorException("the JVM did not produce " + archive);
+        }
+
+        Files.write(classPathFile.toPath(), classPath.getBytes(StandardCharsets.UTF_8));
+
+        runtime.info("CDS archive " + archive + " created");
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    public List<String> getTrainingArguments() {
+
+        return trainingArguments;
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    /**
+     * @return the directory designated by -Dclad.cds.dir.
+     */
+    File getCdsDirectory() throws UserErrorException {
+
+        String s = System.getProperty(CDS_DIRECTORY_SYSTEM_PROPERTY_NAME);
+
+        if (s == null) {
+            throw new UserErrorException(
+                    "no CDS directory specified, run the application with the clad launcher or use -D" +
+                            CDS_DIRECTORY_SYSTEM_PROPERTY_NAME + "=<dir>");
+        }
+
+        return new File(s);
+    }
+
+    /**
+     * The first (or only, on Java 13 and newer) JVM: runs the training command line and records the loaded classes.
+     */
+    List<String> getTrainingCommandLine(
+            int javaVersion, String classPath, List<String> jvmArguments, File archive, File classList) {
+
+        List<String> commandLine = new ArrayList<>();
+
+        commandLine.add(getJavaExecutable());
+
+        if (javaVersion >= 13) {
+
+            commandLine.add("-XX:ArchiveClassesAtExit=" + archive.getPath());
+        }
+        else {
+
+            commandLine.add("-Xshare:off");
+        }
+
+        commandLine.add("-XX:DumpLoadedClassList=" + classList.getPath());
+        commandLine.add("-cp");
+        commandLine.add(classPath);
+        commandLine.addAll(jvmArguments);
+        commandLine.add(CommandLineApplication.class.getName());
+        commandLine.addAll(trainingArguments);
+
+        return commandLine;
+    }
+
+    /**
+     * The second JVM, only needed before Java 13: builds a static archive from the class list.
+     */
+    List<String> getDumpCommandLine(
+            int javaVersion, String classPath, List<String> jvmArguments, File archive, File classList) {
+
+        List<String> commandLine = new ArrayList<>();
+
+        commandLine.add(getJavaExecutable());
+        commandLine.add("-Xshare:dump");
+
+        if (javaVersion == 10) {
+
+            commandLine.add("-XX:+UseAppCDS");
+        }
+
+        commandLine.add("-XX:SharedClassListFile=" + classList.getPath());
+        commandLine.add("-XX:SharedArchiveFile=" + archive.getPath());
+        commandLine.add("-cp");
+        commandLine.add(classPath);
+        commandLine.addAll(jvmArguments);
+
+        return commandLine;
+    }
+
+    /**
+     * @return the system property definitions the current JVM was started with, except those that relate to class-data
+     * sharing. The class path, memory settings and debugging agents are not inherited.
+     */
+    List<String> getInheritedJvmArguments() {
+
+        List<String> result = new ArrayList<>();
+
+        for(String a: ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+
+            if (a.startsWith("-D") && !a.startsWith("-D" + CDS_DIRECTORY_SYSTEM_PROPERTY_NAME + "=")) {
+
+                result.add(a);
+            }
+        }
+
+        return result;
+    }
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private static String getJavaExecutable() {
+
+        return new File(new File(System.getProperty("java.home"), "bin"), "java").getPath();
+    }
+
+    private static void run(List<String> commandLine) throws IOException, InterruptedException, UserErrorException {
+
+        log.debug("executing " + commandLine);
+
+        Process p = new ProcessBuilder(commandLine).inheritIO().start();
+
+        int exitCode = p.waitFor();
+
+        if (exitCode != 0) {
+            throw new UserErrorException("CDS training JVM exited with " + exitCode + ": " + commandLine);
+        }
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -63,6 +63,18 @@ public interface Command extends Comparable<Command> {
      */
     boolean needsRuntime();
 
+    /**
+     * Specifies whether the command can execute with a runtime that was already initialized for an earlier command line
+     * with the same global options, instead of a freshly initialized one. Only consulted when several command lines
+     * are executed in the same JVM, as is the case in batch mode. A command should only allow it if its execution does
+     * not depend on, nor modify, state the runtime accumulates between executions. By default, commands get a freshly
+     * initialized runtime for each command line.
+     */
+    default boolean canReuseRuntime() {
+
+        return false;
+    }
+
     /**
      * The declaration of this command's required options. These are option definitions only, the command instance
      * is not expected to maintain any state inside the option instances, they can be recreated on each invocation.
@@ -79,6 +91,18 @@ public interface Command extends Comparable<Command> {
      */
     Set<Option> optionalOptions();
 
+    /**
+     * Specifies whether requiredOptions() and optionalOptions() compute the declarations, which may then differ from
+     * one invocation to another. The declarations of the other commands are compiled once per command class, and not
+     * looked at again. By default, the declarations are constant.
+     *
+     * @see io.novaordis.clad.option.OptionSchema#forOwner(Class, Set, Set, boolean)
+     */
+    default boolean computesOptions() {
+
+        return false;
+    }
+
     /**
      * All command line arguments remaining after global option processing are fed into the command so the command
      * instance has a chance to identify the options that belong to it and configure itself.
@@ -16,10 +16,12 @@
 
 package io.novaordis.clad.command;
 
+import io.novaordis.clad.Util;
 import io.novaordis.clad.option.Option;
+import io.novaordis.clad.option.OptionList;
 import io.novaordis.clad.option.OptionParser;
+import io.novaordis.clad.option.OptionSchema;
 
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
@@ -36,13 +38,13 @@ public abstract class CommandBase implements Command {
 
     // Attributes ------------------------------------------------------------------------------------------------------
 
-    private List<Option> options;
+    private OptionList options;
 
     // Constructors ----------------------------------------------------------------------------------------------------
 
     protected CommandBase() {
 
-        this.options = new ArrayList<>();
+        this.options = new OptionList();
     }
 
     // Command implementation ------------------------------------------------------------------------------------------
@@ -60,24 +62,7 @@ public abstract class CommandBase implements Command {
     @Override
     public String getName() {
 
-        String s = getClass().getSimpleName();
-        s = s.replaceAll("Command", "");
-        // detect camel case and inject dashes
-        String name = "";
-        for(int i = 0; i < s.length(); i ++) {
-
-            char c = s.charAt(i);
-
-            if (Character.isUpperCase(c)) {
-
-                c = Character.toLowerCase(c);
-                if (i > 0) {
-                    name += '-';
-                }
-            }
-            name += c;
-        }
-        return name;
+        return Util.toCommandName(getClass().getSimpleName());
     }
 
     @Override
@@ -126,17 +111,7 @@ public abstract class CommandBase implements Command {
     @Override
     public Option getOption(Option model) {
 
-        if (model == null) {
-            return null;
-        }
-
-        for(Option o: options) {
-            if (model.equals(o)) {
-                return o;
-            }
-        }
-
-        return null;
+        return options.get(model);
     }
 
     @Override
@@ -150,11 +125,18 @@ public abstract class CommandBase implements Command {
      * from the argument list. In most cases, this behavior is all subclasses need, and they should use it. The method
      * can be overridden when the command expects arguments, other than declared options. The override must process
      * the know arguments and remove them from the argument list, leaving the unknown arguments in the list.
+     *
+     * The declarations are compiled once per command class, or revalidated on each invocation if the command computes
+     * them (computesOptions()).
+     *
+     * @see OptionSchema#forOwner(Class, Set, Set, boolean)
      */
     @Override
     public void configure(int from, List<String> commandLineArguments) throws Exception {
 
-        this.options = OptionParser.parse(from, commandLineArguments, requiredOptions(), optionalOptions());
+        OptionSchema schema =
+                OptionSchema.forOwner(getClass(), requiredOptions(), optionalOptions(), computesOptions());
+        this.options = OptionParser.parse(from, commandLineArguments, schema);
     }
 
     // Public ----------------------------------------------------------------------------------------------------------
@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.clad.command;
+
+import io.novaordis.utilities.UserErrorException;
+
+import java.util.List;
+
+/**
+ * The commands an application resolves by name, when they do not simply come from the class path: the help handling
+ * looks up the command named by --help=<command-name>, and lists the commands (@COMMANDS@), in the same catalog the
+ * command line's command is looked up in.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+public interface CommandCatalog {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @param name the name of the command as specified on command line. May contain dashes, etc.
+     *
+     * @return a new, non-initialized Command instance, or null if the name does not designate a known command.
+     *
+     * @exception UserErrorException if more than one class matches the name.
+     */
+    Command newCommand(String name) throws UserErrorException;
+
+    /**
+     * @return the descriptors of all commands in the catalog, sorted by name.
+     */
+    List<CommandDescriptor> getCommandDescriptors();
+
+}
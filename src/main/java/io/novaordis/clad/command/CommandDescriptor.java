@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.clad.command;
+
+import io.novaordis.clad.Util;
+import io.novaordis.clad.discovery.ClasspathNameIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Command metadata - name, help file path and help availability - derived from the command's fully qualified class
+ * name, using the same conventions as CommandBase, without loading or instantiating the command class. It allows
+ * listing commands without running their static initializers or pulling in their dependencies.
+ *
+ * @see CommandBase#getName()
+ * @see CommandBase#getHelpFilePath()
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+public class CommandDescriptor implements Comparable<CommandDescriptor> {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final Logger log = LoggerFactory.getLogger(CommandDescriptor.class);
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return the help file path, relative to the class path, of the command implemented by the given class, according
+     * to the CommandBase convention: the help file is named after the command and lives in the class' package.
+     */
+    public static String toHelpFilePath(String commandClassName) {
+
+        int i = commandClassName.lastIndexOf('.');
+        String simpleClassName = commandClassName.substring(i + 1);
+        String packagePath = i < 0 ? "" : commandClassName.substring(0, i).replace('.', '/') + "/";
+        return packagePath + Util.toCommandName(simpleClassName) + ".txt";
+    }
+
+    /**
+     * @return the descriptors of all commands available on the class path, sorted by name. The commands listed by the
+     * build-time discovery index are not loaded. The classes found by scanning, whose names merely follow the naming
+     * convention, are loaded, but not initialized, to weed out those that are not concrete Command implementations.
+     */
+    public static List<CommandDescriptor> getCommandDescriptors() throws Exception {
+
+        ClasspathNameIndex index = ClasspathNameIndex.getInstance();
+
+        List<CommandDescriptor> result = new ArrayList<>();
+
+        for(String className: index.getFullyQualifiedClassNamesWithSuffix("Command")) {
+
+            if (!index.isFromDiscoveryIndex(className) && !isCommandImplementation(className)) {
+                continue;
+            }
+
+            result.add(new CommandDescriptor(className));
+        }
+
+        Collections.sort(result);
+
+        return result;
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private String className;
+    private String name;
+    private String helpFilePath;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    /**
+     * @param className the fully qualified name of the command class.
+     */
+    public CommandDescriptor(String className) {
+
+        if (className == null) {
+            throw new IllegalArgumentException("null class name");
+        }
+
+        this.className = className;
+        this.name = Util.toCommandName(className.substring(className.lastIndexOf('.') + 1));
+        this.helpFilePath = toHelpFilePath(className);
+    }
+
+    // Comparable implementation ---------------------------------------------------------------------------------------
+
+    @Override
+    public int compareTo(CommandDescriptor o) {
+
+        int c = name.compareTo(o.name);
+        return c != 0 ? c : className.compareTo(o.className);
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    public String getClassName() {
+
+        return className;
+    }
+
+    /**
+     * @return the command name, as used on command line.
+     */
+    public String getName() {
+
+        return name;
+    }
+
+    /**
+     * @return the relative path of the help file associated with the command. The path is relative to class path.
+     */
+    public String getHelpFilePath() {
+
+        return helpFilePath;
+    }
+
+    /**
+     * @return true if the help file exists on the class path. The file is not read.
+     */
+    public boolean isHelpAvailable() {
+
+        return CommandDescriptor.class.getClassLoader().getResource(helpFilePath) != null;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+
+        return o instanceof CommandDescriptor && className.equals(((CommandDescriptor)o).className);
+    }
+
+    @Override
+    public int hashCode() {
+
+        return className.hashCode();
+    }
+
+    @Override
+    public String toString() {
+
+        return name + " (" + className + ")";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    /**
+     * Loads, but does not initialize, the class.
+     */
+    private static boolean isCommandImplementation(String className) {
+
+        Class<?> c;
+
+        try {
+
+            c = Class.forName(className, false, CommandDescriptor.class.getClassLoader());
+        }
+        catch(Throwable t) {
+
+            log.debug("failed to load class " + className + ": " + t);
+            return false;
+        }
+
+        return Command.class.isAssignableFrom(c) &&
+                !c.isInterface() &&
+                Modifier.isPublic(c.getModifiers()) &&
+                !Modifier.isAbstract(c.getModifiers());
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
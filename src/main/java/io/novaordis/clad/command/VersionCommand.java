@@ -66,13 +66,19 @@ public class VersionCommand extends CommandBase {
         sb.append("version ").append((version == null ? "N/A" : version)).append("\n");
         sb.append("release date ").append((releaseDate == null ? "N/A" : releaseDate)).append("\n");
 
-        if (os == null) {
+        //
+        // write to the runtime's stdout, so embedded and concurrent invocations get their own output
+        //
+
+        OutputStream out = os != null ? os : runtime != null ? runtime.getStdoutOutputStream() : null;
+
+        if (out == null) {
             System.out.print(sb);
         }
         else {
             try {
-                os.write(sb.toString().getBytes());
-                os.flush();
+                out.write(sb.toString().getBytes());
+                out.flush();
             }
             catch(IOException e) {
 
@@ -19,10 +19,10 @@ package io.novaordis.clad.configuration;
 import io.novaordis.clad.option.VerboseOption;
 import io.novaordis.utilities.UserErrorException;
 import io.novaordis.clad.option.Option;
+import io.novaordis.clad.option.OptionList;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -48,19 +48,30 @@ public class ConfigurationImpl implements Configuration {
 
     // Constructors ----------------------------------------------------------------------------------------------------
 
+    /**
+     * Reads the application name from the application.name system property.
+     */
     public ConfigurationImpl() throws UserErrorException {
 
         //
         // we expect to find the application name in the environment
         //
 
-        this.applicationName = System.getProperty(APPLICATION_NAME_SYSTEM_PROPERTY_NAME);
+        this(System.getProperty(APPLICATION_NAME_SYSTEM_PROPERTY_NAME));
+    }
+
+    /**
+     * Does not consult the system properties, for applications embedded in a process that runs more than one.
+     */
+    public ConfigurationImpl(String applicationName) throws UserErrorException {
 
         if (applicationName == null) {
             throw new UserErrorException("no '" + APPLICATION_NAME_SYSTEM_PROPERTY_NAME + "' system property set");
         }
 
-        this.globalOptions = new ArrayList<>();
+        this.applicationName = applicationName;
+
+        this.globalOptions = new OptionList();
 
         this.genericLabels = new HashMap<>();
 
@@ -88,6 +99,12 @@ public class ConfigurationImpl implements Configuration {
             return null;
         }
 
+        if (globalOptions instanceof OptionList) {
+
+            // the parser's output, indexed by literal
+            return ((OptionList)globalOptions).get(model);
+        }
+
         for(Option o: globalOptions) {
 
             if (model.equals(o)) {
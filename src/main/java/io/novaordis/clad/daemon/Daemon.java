@@ -0,0 +1,431 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.clad.daemon;
+
+import io.novaordis.clad.CommandLineApplication;
+import io.novaordis.clad.application.InvocationContext;
+import io.novaordis.clad.configuration.Configuration;
+import io.novaordis.utilities.logging.StderrVerboseLogging;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A JVM that stays up between invocations and runs them on behalf of DaemonClient, so the invocations do not pay for
+ * JVM startup, class loading, discovery and JIT warm-up. The daemon listens on a loopback port and only accepts
+ * connections that present the secret token published in its state file (see DaemonState).
+ *
+ * Each invocation runs with its own InvocationContext: the client's current directory, environment and standard
+ * streams. The runtime's getCurrentDirectory(), root scope and output streams, as well as System.out, System.err and
+ * System.in, resolve to the invocation's, and each invocation gets its own configuration and runtime instance, as it
+ * would in a fresh JVM. Invocations are served one at a time, because commands may still touch JVM-wide state (system
+ * properties, static fields, logging levels).
+ *
+ * Limitations: a command that calls System.exit() terminates the daemon, and code that resolves relative paths with
+ * new File(...) instead of the runtime's current directory resolves them against the daemon's directory. Interrupting
+ * the client does not interrupt the invocation.
+ *
+ * The daemon exits when no invocation arrives for -Dclad.daemon.idle.timeout seconds (30 minutes by default), or when
+ * a client sends STOP.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+public class Daemon {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final Logger log = LoggerFactory.getLogger(Daemon.class);
+
+    public static final String IDLE_TIMEOUT_SYSTEM_PROPERTY_NAME = "clad.daemon.idle.timeout";
+
+    public static final long DEFAULT_IDLE_TIMEOUT_SECONDS = 30 * 60L;
+
+    // how long a connected client has to send the invocation header
+    public static final int HEADER_TIMEOUT_MS = 10000;
+
+    public static final int STDIN_BUFFER_SIZE = 64 * 1024;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    public static void main(String[] args) throws Exception {
+
+        StderrVerboseLogging.init();
+
+        String s = System.getProperty(IDLE_TIMEOUT_SYSTEM_PROPERTY_NAME);
+        long idleTimeoutSeconds = s == null ? DEFAULT_IDLE_TIMEOUT_SECONDS : Long.parseLong(s);
+
+        File stateFile = DaemonState.getStateFile(
+                DaemonState.getDirectory(),
+                System.getProperty(Configuration.APPLICATION_NAME_SYSTEM_PROPERTY_NAME),
+                System.getProperty("java.class.path"));
+
+        Daemon daemon = new Daemon(stateFile, idleTimeoutSeconds * 1000L);
+        daemon.start();
+        daemon.serve();
+
+        System.exit(0);
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private File stateFile;
+    private long idleTimeoutMs;
+
+    private ServerSocket serverSocket;
+    private DaemonState state;
+
+    private volatile boolean stopped;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    /**
+     * @param idleTimeoutMs zero means the daemon never times out.
+     */
+    public Daemon(File stateFile, long idleTimeoutMs) {
+
+        if (idleTimeoutMs < 0 || idleTimeoutMs > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("invalid idle timeout " + idleTimeoutMs + " ms");
+        }
+
+        this.stateFile = stateFile;
+        this.idleTimeoutMs = idleTimeoutMs;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * Binds the loopback port and publishes the state file. Clients can connect as soon as the method returns.
+     */
+    public void start() throws IOException {
+
+        InvocationContext.installRoutingStreams();
+
+        serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        serverSocket.setSoTimeout((int)idleTimeoutMs);
+
+        state = new DaemonState(serverSocket.getLocalPort(), DaemonState.newToken(), getPid());
+        state.write(stateFile);
+
+        log.debug(state + " started, state file " + stateFile);
+    }
+
+    /**
+     * Serves invocations until the daemon is idle for longer than the idle timeout, or is stopped. Removes the state
+     * file on exit.
+     */
+    public void serve() throws IOException {
+
+        if (serverSocket == null) {
+            throw new IllegalStateException(this + " not started");
+        }
+
+        try {
+
+            while(!stopped) {
+
+                Socket socket;
+
+                try {
+
+                    socket = serverSocket.accept();
+                }
+                catch(SocketTimeoutException e) {
+
+                    log.debug(this + " idle for " + idleTimeoutMs + " ms, exiting");
+                    break;
+                }
+                catch(IOException e) {
+
+                    if (stopped) {
+                        break;
+                    }
+
+                    throw e;
+                }
+
+                try {
+
+                    handle(socket);
+                }
+                catch(Exception e) {
+
+                    log.warn("failed to serve invocation: " + e);
+                }
+                finally {
+
+                    try {
+                        socket.close();
+                    }
+                    catch(IOException e) {
+                        log.debug("failed to close " + socket, e);
+                    }
+                }
+            }
+        }
+        finally {
+
+            close();
+        }
+    }
+
+    /**
+     * Makes serve() return as soon as the current invocation, if any, completes.
+     */
+    public void stop() {
+
+        stopped = true;
+
+        try {
+
+            if (serverSocket != null) {
+                serverSocket.close();
+            }
+        }
+        catch(IOException e) {
+
+            log.debug("failed to close " + serverSocket, e);
+        }
+    }
+
+    /**
+     * @return the state published by the daemon, or null if the daemon was not started.
+     */
+    public DaemonState getState() {
+
+        return state;
+    }
+
+    @Override
+    public String toString() {
+
+        return state == null ? "daemon (not started)" : state.toString();
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    /**
+     * Reads the invocation header, runs the invocation and sends the exit code.
+     */
+    void handle(Socket socket) throws IOException {
+
+        socket.setSoTimeout(HEADER_TIMEOUT_MS);
+
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+        DaemonProtocol.Frame frame = DaemonProtocol.read(in);
+
+        if (frame == null || frame.getType() != DaemonProtocol.TOKEN ||
+                !MessageDigest.isEqual(
+                        frame.getPayload(), state.getToken().getBytes(StandardCharsets.UTF_8))) {
+
+            log.warn("rejected connection from " + socket.getRemoteSocketAddress() + ": invalid token");
+            return;
+        }
+
+        File currentDirectory = null;
+        Map<String, String> environment = new HashMap<>();
+        List<String> arguments = new ArrayList<>();
+
+        while((frame = DaemonProtocol.read(in)) != null) {
+
+            byte type = frame.getType();
+
+            if (type == DaemonProtocol.DIRECTORY) {
+
+                currentDirectory = new File(frame.getPayloadAsString());
+            }
+            else if (type == DaemonProtocol.ENVIRONMENT) {
+
+                String s = frame.getPayloadAsString();
+                int i = s.indexOf('=');
+
+                if (i > 0) {
+                    environment.put(s.substring(0, i), s.substring(i + 1));
+                }
+            }
+            else if (type == DaemonProtocol.ARGUMENT) {
+
+                arguments.add(frame.getPayloadAsString());
+            }
+            else if (type == DaemonProtocol.STOP) {
+
+                log.debug(this + " stopped by client");
+                stop();
+                DaemonProtocol.write(out, DaemonProtocol.EXIT, 0);
+                return;
+            }
+            else if (type == DaemonProtocol.RUN) {
+
+                if (currentDirectory == null) {
+                    throw new IOException("no current directory in the invocation header");
+                }
+
+                socket.setSoTimeout(0);
+                run(in, out, currentDirectory, environment, arguments);
+                return;
+            }
+            else {
+
+                throw new IOException("unexpected " + frame + " in the invocation header");
+            }
+        }
+
+        throw new IOException("connection closed before the invocation header was complete");
+    }
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private void run(DataInputStream in, DataOutputStream out, File currentDirectory,
+                     Map<String, String> environment, List<String> arguments) throws IOException {
+
+        PipedInputStream stdin = new PipedInputStream(STDIN_BUFFER_SIZE);
+        PipedOutputStream stdinSink = new PipedOutputStream(stdin);
+
+        Thread pump = new Thread(new StdinPump(in, stdinSink), "clad daemon stdin");
+        pump.setDaemon(true);
+        pump.start();
+
+        PrintStream stdout = new PrintStream(new FrameOutputStream(out, DaemonProtocol.STDOUT), true);
+        PrintStream stderr = new PrintStream(new FrameOutputStream(out, DaemonProtocol.STDERR), true);
+
+        InvocationContext.set(new InvocationContext(currentDirectory, environment, stdin, stdout, stderr));
+
+        int exitCode;
+
+        try {
+
+            log.debug(this + " running " + arguments + " in " + currentDirectory);
+
+            exitCode = CommandLineApplication.execute(arguments.toArray(new String[arguments.size()]), stdout, stderr);
+        }
+        catch(Throwable t) {
+
+            log.error("internal error", t);
+            stderr.println("[error]: internal error: " + t);
+            exitCode = 1;
+        }
+        finally {
+
+            InvocationContext.remove();
+            stdin.close();
+        }
+
+        stdout.flush();
+        stderr.flush();
+
+        DaemonProtocol.write(out, DaemonProtocol.EXIT, exitCode);
+    }
+
+    private void close() {
+
+        stop();
+
+        //
+        // only remove the state file if it is still ours, a newer daemon may have replaced it
+        //
+
+        if (state != null && state.equals(DaemonState.read(stateFile)) && !stateFile.delete()) {
+
+            log.warn("failed to delete " + stateFile);
+        }
+    }
+
+    private static long getPid() {
+
+        String name = ManagementFactory.getRuntimeMXBean().getName();
+        int i = name.indexOf('@');
+
+        try {
+
+            return Long.parseLong(i == -1 ? name : name.substring(0, i));
+        }
+        catch(NumberFormatException e) {
+
+            return -1L;
+        }
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+    /**
+     * Copies STDIN frames into the invocation's standard input, until STDIN_EOF or until the client goes away.
+     */
+    private static class StdinPump implements Runnable {
+
+        private DataInputStream in;
+        private PipedOutputStream sink;
+
+        StdinPump(DataInputStream in, PipedOutputStream sink) {
+
+            this.in = in;
+            this.sink = sink;
+        }
+
+        @Override
+        public void run() {
+
+            try {
+
+                DaemonProtocol.Frame frame;
+
+                while((frame = DaemonProtocol.read(in)) != null && frame.getType() == DaemonProtocol.STDIN) {
+
+                    sink.write(frame.getPayload());
+                    sink.flush();
+                }
+            }
+            catch(IOException e) {
+
+                // the client went away, or the invocation completed and closed its standard input
+                log.debug("stdin pump: " + e);
+            }
+            finally {
+
+                try {
+                    sink.close();
+                }
+                catch(IOException e) {
+                    log.debug("failed to close the invocation's standard input", e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,463 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.clad.daemon;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The thin client of the clad daemon: forwards the command line, current directory, environment and standard input to
+ * the daemon serving the current application and class path, copies the invocation's output to its own stdout and
+ * stderr, and exits with the invocation's exit code. If no daemon is running, the client spawns one, with the same
+ * JVM, class path and system properties it was started with, and waits for it to come up.
+ *
+ * The client deliberately depends on nothing but the JDK and this package, so it loads only a few classes. It is
+ * started by the clad launcher when --daemon is used. -Dclad.daemon.stop=true stops the daemon instead of running an
+ * invocation.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+public class DaemonClient {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    public static final String STOP_SYSTEM_PROPERTY_NAME = "clad.daemon.stop";
+
+    public static final int CONNECT_TIMEOUT_MS = 1000;
+
+    // how long to wait for a spawned daemon to publish its state
+    public static final long SPAWN_TIMEOUT_MS = 30000L;
+
+    private static final long SPAWN_POLL_INTERVAL_MS = 20L;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    public static void main(String[] args) throws Exception {
+
+        File stateFile = DaemonState.getStateFile(
+                DaemonState.getDirectory(),
+                // Configuration.APPLICATION_NAME_SYSTEM_PROPERTY_NAME, not referenced to keep the client small
+                System.getProperty("application.name"),
+                System.getProperty("java.class.path"));
+
+        int exitCode;
+
+        if (Boolean.getBoolean(STOP_SYSTEM_PROPERTY_NAME)) {
+
+            DaemonClient client = new DaemonClient(stateFile, false);
+            exitCode = client.stop() ? 0 : 1;
+
+            if (exitCode != 0) {
+                System.err.println("[error]: no daemon running for " + stateFile);
+            }
+        }
+        else {
+
+            DaemonClient client = new DaemonClient(stateFile, true);
+            exitCode = client.invoke(
+                    args, new File(System.getProperty("user.dir")), System.getenv(), System.in, System.out, System.err);
+        }
+
+        //
+        // the stdin pump may still be blocked reading standard input, which can hold up an orderly JVM shutdown by
+        // hundreds of milliseconds; the client has no shutdown hooks, so flush and halt
+        //
+
+        System.out.flush();
+        System.err.flush();
+        Runtime.getRuntime().halt(exitCode);
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private File stateFile;
+    private boolean autoSpawn;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    /**
+     * @param autoSpawn whether to spawn a daemon if none is running.
+     */
+    public DaemonClient(File stateFile, boolean autoSpawn) {
+
+        this.stateFile = stateFile;
+        this.autoSpawn = autoSpawn;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * Runs an invocation in the daemon.
+     *
+     * @return the invocation's exit code, or 1 if the daemon could not be reached, or went away during the invocation,
+     * in which case the reason is written to stderr.
+     */
+    public int invoke(String[] args, File currentDirectory, Map<String, String> environment,
+                      InputStream stdin, OutputStream stdout, OutputStream stderr) throws IOException {
+
+        Connection connection;
+
+        try {
+
+            connection = connect();
+        }
+        catch(IOException e) {
+
+            stderr.write(("[error]: failed to spawn the daemon: " + e.getMessage() + "\n").getBytes());
+            stderr.flush();
+            return 1;
+        }
+
+        if (connection == null) {
+
+            stderr.write(("[error]: failed to reach the daemon (" + stateFile + ")\n").getBytes());
+            stderr.flush();
+            return 1;
+        }
+
+        Socket socket = connection.socket;
+
+        try {
+
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+            DaemonProtocol.write(out, DaemonProtocol.TOKEN, connection.state.getToken());
+            DaemonProtocol.write(out, DaemonProtocol.DIRECTORY, currentDirectory.getAbsolutePath());
+
+            for(Map.Entry<String, String> e: environment.entrySet()) {
+
+                DaemonProtocol.write(out, DaemonProtocol.ENVIRONMENT, e.getKey() + "=" + e.getValue());
+            }
+
+            for(String a: args) {
+
+                DaemonProtocol.write(out, DaemonProtocol.ARGUMENT, a);
+            }
+
+            DaemonProtocol.write(out, DaemonProtocol.RUN, new byte[0], 0, 0);
+
+            //
+            // the invocation may never read its standard input, so the pump must not keep the client alive
+            //
+
+            Thread pump = new Thread(new StdinPump(stdin, out), "clad client stdin");
+            pump.setDaemon(true);
+            pump.start();
+
+            DaemonProtocol.Frame frame;
+
+            while((frame = DaemonProtocol.read(in)) != null) {
+
+                byte type = frame.getType();
+
+                if (type == DaemonProtocol.STDOUT) {
+
+                    stdout.write(frame.getPayload());
+                    stdout.flush();
+                }
+                else if (type == DaemonProtocol.STDERR) {
+
+                    stderr.write(frame.getPayload());
+                    stderr.flush();
+                }
+                else if (type == DaemonProtocol.EXIT) {
+
+                    return frame.getPayloadAsInt();
+                }
+                else {
+
+                    throw new IOException("unexpected " + frame);
+                }
+            }
+
+            stderr.write("[error]: the daemon closed the connection before the invocation completed\n".getBytes());
+            stderr.flush();
+            return 1;
+        }
+        catch(IOException e) {
+
+            //
+            // the daemon went away, or rejected the connection while we were still sending the header
+            //
+
+            stderr.write(("[error]: the daemon closed the connection before the invocation completed: " +
+                    e.getMessage() + "\n").getBytes());
+            stderr.flush();
+            return 1;
+        }
+        finally {
+
+            socket.close();
+        }
+    }
+
+    /**
+     * Stops the daemon, if one is running. Never spawns one.
+     *
+     * @return true if a running daemon acknowledged the stop request.
+     */
+    public boolean stop() throws IOException {
+
+        Connection connection = connect(DaemonState.read(stateFile));
+
+        if (connection == null) {
+            return false;
+        }
+
+        Socket socket = connection.socket;
+
+        try {
+
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+            DaemonProtocol.write(out, DaemonProtocol.TOKEN, connection.state.getToken());
+            DaemonProtocol.write(out, DaemonProtocol.STOP, new byte[0], 0, 0);
+
+            DaemonProtocol.Frame frame = DaemonProtocol.read(in);
+
+            return frame != null && frame.getType() == DaemonProtocol.EXIT;
+        }
+        finally {
+
+            socket.close();
+        }
+    }
+
+    public File getStateFile() {
+
+        return stateFile;
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    /**
+     * @return the command line that starts a daemon equivalent to this JVM: same Java executable, class path and JVM
+     * arguments, except debugging agents and the client-only system properties.
+     */
+    static List<String> getDaemonCommandLine(List<String> jvmArguments) {
+
+        List<String> commandLine = new ArrayList<>();
+
+        commandLine.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getPath());
+
+        for(String a: jvmArguments) {
+
+            if (a.startsWith("-agentlib:") || a.startsWith("-javaagent:") || a.startsWith("-Xrunjdwp") ||
+                    a.startsWith("-D" + STOP_SYSTEM_PROPERTY_NAME + "=") || a.startsWith("-Dclad.startup.report")) {
+                continue;
+            }
+
+            commandLine.add(a);
+        }
+
+        commandLine.add("-cp");
+        commandLine.add(System.getProperty("java.class.path"));
+        commandLine.add(Daemon.class.getName());
+
+        return commandLine;
+    }
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return a connection to the daemon, or null if no daemon could be reached.
+     */
+    private Connection connect() throws IOException {
+
+        Connection connection = connect(DaemonState.read(stateFile));
+
+        if (connection != null || !autoSpawn) {
+            return connection;
+        }
+
+        //
+        // serialize the spawning among concurrent clients, and check again once we hold the lock, another client may
+        // have spawned the daemon in the meantime
+        //
+
+        File dir = stateFile.getAbsoluteFile().getParentFile();
+
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("failed to create " + dir);
+        }
+
+        File lockFile = new File(dir, stateFile.getName() + ".lock");
+
+        try(RandomAccessFile raf = new RandomAccessFile(lockFile, "rw");
+            FileChannel channel = raf.getChannel()) {
+
+            FileLock lock = channel.lock();
+
+            try {
+
+                connection = connect(DaemonState.read(stateFile));
+
+                return connection != null ? connection : spawn();
+            }
+            finally {
+
+                lock.release();
+            }
+        }
+    }
+
+    private Connection spawn() throws IOException {
+
+        if (stateFile.exists() && !stateFile.delete()) {
+            throw new IOException("failed to delete stale " + stateFile);
+        }
+
+        File logFile = new File(stateFile.getPath() + ".log");
+
+        ProcessBuilder pb = new ProcessBuilder(
+                getDaemonCommandLine(ManagementFactory.getRuntimeMXBean().getInputArguments()));
+        pb.redirectErrorStream(true);
+        pb.redirectOutput(ProcessBuilder.Redirect.appendTo(logFile));
+
+        Process process = pb.start();
+        process.getOutputStream().close();
+
+        long deadline = System.currentTimeMillis() + SPAWN_TIMEOUT_MS;
+
+        while(System.currentTimeMillis() < deadline) {
+
+            Connection connection = connect(DaemonState.read(stateFile));
+
+            if (connection != null) {
+                return connection;
+            }
+
+            if (!process.isAlive()) {
+                throw new IOException("the daemon exited with " + process.exitValue() + ", see " + logFile);
+            }
+
+            try {
+                Thread.sleep(SPAWN_POLL_INTERVAL_MS);
+            }
+            catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @param state may be null, in which case the method returns null.
+     */
+    private static Connection connect(DaemonState state) {
+
+        if (state == null) {
+            return null;
+        }
+
+        Socket socket = new Socket();
+
+        try {
+
+            socket.connect(
+                    new InetSocketAddress(InetAddress.getLoopbackAddress(), state.getPort()), CONNECT_TIMEOUT_MS);
+            return new Connection(state, socket);
+        }
+        catch(IOException e) {
+
+            try {
+                socket.close();
+            }
+            catch(IOException e2) {
+                // ignore
+            }
+
+            return null;
+        }
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+    private static class Connection {
+
+        private DaemonState state;
+        private Socket socket;
+
+        Connection(DaemonState state, Socket socket) {
+
+            this.state = state;
+            this.socket = socket;
+        }
+    }
+
+    /**
+     * Forwards the client's standard input to the daemon, followed by STDIN_EOF.
+     */
+    private static class StdinPump implements Runnable {
+
+        private InputStream stdin;
+        private DataOutputStream out;
+
+        StdinPump(InputStream stdin, DataOutputStream out) {
+
+            this.stdin = stdin;
+            this.out = out;
+        }
+
+        @Override
+        public void run() {
+
+            byte[] buffer = new byte[8192];
+
+            try {
+
+                int n;
+
+                while((n = stdin.read(buffer)) != -1) {
+
+                    if (n > 0) {
+                        DaemonProtocol.write(out, DaemonProtocol.STDIN, buffer, 0, n);
+                    }
+                }
+
+                DaemonProtocol.write(out, DaemonProtocol.STDIN_EOF, new byte[0], 0, 0);
+            }
+            catch(IOException e) {
+
+                // the invocation completed and the connection was closed
+            }
+        }
+    }
+}
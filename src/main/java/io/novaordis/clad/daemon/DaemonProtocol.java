@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.clad.daemon;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The wire protocol spoken between DaemonClient and Daemon over a loopback socket. Everything is sent as frames:
+ *
+ * <type:1 byte><payload-length:4 bytes, big endian><payload>
+ *
+ * An invocation starts with a header sent by the client: TOKEN, then any number of DIRECTORY, ENVIRONMENT
+ * ("name=value") and ARGUMENT frames, in any order, terminated by RUN. The daemon then streams STDOUT and STDERR frames
+ * back, while the client streams STDIN frames followed by STDIN_EOF. The daemon ends the invocation with an EXIT frame
+ * carrying the exit code as a 4 byte integer, and closes the connection. A header terminated by STOP instead of RUN
+ * shuts the daemon down after it acknowledges with EXIT.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+public class DaemonProtocol {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // client to daemon
+    public static final byte TOKEN = 'T';
+    public static final byte DIRECTORY = 'D';
+    public static final byte ENVIRONMENT = 'E';
+    public static final byte ARGUMENT = 'A';
+    public static final byte RUN = 'C';
+    public static final byte STOP = 'S';
+    public static final byte STDIN = 'I';
+    public static final byte STDIN_EOF = '.';
+
+    // daemon to client
+    public static final byte STDOUT = 'O';
+    public static final byte STDERR = 'R';
+    public static final byte EXIT = 'X';
+
+    // larger writes are split over several frames
+    public static final int MAX_PAYLOAD_LENGTH = 64 * 1024;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * Writes and flushes one or more frames of the given type, depending on the length of the content. Safe to call
+     * concurrently for the same stream: the frames of a call are not interleaved with frames written by other threads.
+     */
+    public static void write(DataOutputStream out, byte type, byte[] content, int offset, int length)
+            throws IOException {
+
+        synchronized (out) {
+
+            do {
+
+                int chunk = Math.min(length, MAX_PAYLOAD_LENGTH);
+
+                out.writeByte(type);
+                out.writeInt(chunk);
+                out.write(content, offset, chunk);
+
+                offset += chunk;
+                length -= chunk;
+            }
+            while(length > 0);
+
+            out.flush();
+        }
+    }
+
+    public static void write(DataOutputStream out, byte type, String content) throws IOException {
+
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        write(out, type, bytes, 0, bytes.length);
+    }
+
+    public static void write(DataOutputStream out, byte type, int content) throws IOException {
+
+        write(out, type, ByteBuffer.allocate(4).putInt(content).array(), 0, 4);
+    }
+
+    /**
+     * @return the next frame, or null if the stream ended cleanly, on a frame boundary.
+     *
+     * @exception IOException if the stream ended inside a frame, or the frame is larger than MAX_PAYLOAD_LENGTH.
+     */
+    public static Frame read(DataInputStream in) throws IOException {
+
+        int type = in.read();
+
+        if (type == -1) {
+            return null;
+        }
+
+        int length;
+
+        try {
+            length = in.readInt();
+        }
+        catch(EOFException e) {
+            throw new EOFException("truncated frame");
+        }
+
+        if (length < 0 || length > MAX_PAYLOAD_LENGTH) {
+            throw new IOException("invalid frame length " + length);
+        }
+
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+
+        return new Frame((byte)type, payload);
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    private DaemonProtocol() {
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+    public static class Frame {
+
+        private byte type;
+        private byte[] payload;
+
+        public Frame(byte type, byte[] payload) {
+
+            this.type = type;
+            this.payload = payload;
+        }
+
+        public byte getType() {
+
+            return type;
+        }
+
+        public byte[] getPayload() {
+
+            return payload;
+        }
+
+        public String getPayloadAsString() {
+
+            return new String(payload, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * @exception IOException if the payload is not a 4 byte integer.
+         */
+        public int getPayloadAsInt() throws IOException {
+
+            if (payload.length != 4) {
+                throw new IOException("expected a 4 byte payload, got " + payload.length + " bytes");
+            }
+
+            return ByteBuffer.wrap(payload).getInt();
+        }
+
+        @Override
+        public String toString() {
+
+            return "'" + (char)type + "' frame (" + payload.length + " bytes)";
+        }
+    }
+}
@@ -0,0 +1,291 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.clad.daemon;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.SecureRandom;
+import java.util.Properties;
+import java.util.zip.CRC32;
+
+/**
+ * What a client needs to know to reach a running daemon: the loopback port it listens on and the secret token it
+ * expects. The state is published in a file only the owner can read, so only the user who started the daemon can
+ * run invocations in it.
+ *
+ * There is one state file per application and class path fingerprint, so a daemon never serves invocations for a
+ * class path it was not started with: upgrading a JAR changes the fingerprint, and the next invocation spawns a new
+ * daemon, while the old one runs out its idle timeout. The state files live in ~/.clad/daemon by default, the
+ * location can be changed with -Dclad.daemon.dir=...
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+public class DaemonState {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    public static final String DIRECTORY_SYSTEM_PROPERTY_NAME = "clad.daemon.dir";
+
+    // relative to the user's home directory
+    public static final String DEFAULT_DIRECTORY_NAME = ".clad/daemon";
+
+    public static final String DEFAULT_APPLICATION_NAME = "clad";
+
+    private static final String PORT = "port";
+    private static final String TOKEN = "token";
+    private static final String PID = "pid";
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    public static File getDirectory() {
+
+        String s = System.getProperty(DIRECTORY_SYSTEM_PROPERTY_NAME);
+
+        return s != null ? new File(s) : new File(System.getProperty("user.home"), DEFAULT_DIRECTORY_NAME);
+    }
+
+    /**
+     * @param applicationName may be null, in which case DEFAULT_APPLICATION_NAME is used.
+     */
+    public static File getStateFile(File directory, String applicationName, String classPath) {
+
+        String name = applicationName == null ? DEFAULT_APPLICATION_NAME : applicationName.replaceAll("[^\\w.-]", "_");
+
+        return new File(directory, name + "-" + fingerprint(classPath) + ".daemon");
+    }
+
+    /**
+     * @return a fingerprint of the JVM and the class path: the Java home, and the absolute path, size and last
+     * modification time of each class path entry. Cheap to compute, as it only stats the entries.
+     */
+    public static String fingerprint(String classPath) {
+
+        CRC32 crc = new CRC32();
+
+        StringBuilder sb = new StringBuilder(System.getProperty("java.home"));
+
+        for(String s: classPath.split(File.pathSeparator)) {
+
+            if (s.isEmpty()) {
+                continue;
+            }
+
+            File f = new File(s).getAbsoluteFile();
+            sb.append('\n').append(f.getPath()).append(' ').append(f.length()).append(' ').append(f.lastModified());
+        }
+
+        crc.update(sb.toString().getBytes(StandardCharsets.UTF_8));
+
+        return String.format("%08x", crc.getValue());
+    }
+
+    /**
+     * @return a new random token, in hexadecimal form.
+     */
+    public static String newToken() {
+
+        byte[] bytes = new byte[16];
+        new SecureRandom().nextBytes(bytes);
+
+        StringBuilder sb = new StringBuilder();
+
+        for(byte b: bytes) {
+
+            sb.append(String.format("%02x", b & 0xff));
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * @return the state stored in the given file, or null if the file does not exist or cannot be parsed.
+     */
+    public static DaemonState read(File file) {
+
+        if (!file.isFile()) {
+            return null;
+        }
+
+        Properties p = new Properties();
+
+        try(InputStream is = new FileInputStream(file)) {
+
+            p.load(is);
+
+            return new DaemonState(
+                    Integer.parseInt(p.getProperty(PORT)), p.getProperty(TOKEN), Long.parseLong(p.getProperty(PID)));
+        }
+        catch(Exception e) {
+
+            return null;
+        }
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private int port;
+    private String token;
+    private long pid;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    /**
+     * @param pid the daemon's process ID, informative only. -1 if not known.
+     *
+     * @exception IllegalArgumentException on invalid port or null token.
+     */
+    public DaemonState(int port, String token, long pid) {
+
+        if (port <= 0 || port > 65535) {
+            throw new IllegalArgumentException("invalid port " + port);
+        }
+
+        if (token == null) {
+            throw new IllegalArgumentException("null token");
+        }
+
+        this.port = port;
+        this.token = token;
+        this.pid = pid;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    public int getPort() {
+
+        return port;
+    }
+
+    public String getToken() {
+
+        return token;
+    }
+
+    public long getPid() {
+
+        return pid;
+    }
+
+    /**
+     * Writes the state into a temporary file readable only by the owner, and then moves it in place, so readers never
+     * see a partially written file.
+     */
+    public void write(File file) throws IOException {
+
+        File dir = file.getAbsoluteFile().getParentFile();
+
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("failed to create " + dir);
+        }
+
+        Path tmp;
+
+        try {
+
+            tmp = Files.createTempFile(
+                    dir.toPath(), file.getName(), ".tmp",
+                    PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        }
+        catch(UnsupportedOperationException e) {
+
+            //
+            // not a POSIX file system, fall back to the portable API
+            //
+
+            tmp = Files.createTempFile(dir.toPath(), file.getName(), ".tmp");
+            File f = tmp.toFile();
+
+            //noinspection ResultOfMethodCallIgnored
+            f.setReadable(false, false);
+            //noinspection ResultOfMethodCallIgnored
+            f.setReadable(true, true);
+            //noinspection ResultOfMethodCallIgnored
+            f.setWritable(false, false);
+            //noinspection ResultOfMethodCallIgnored
+            f.setWritable(true, true);
+        }
+
+        try {
+
+            Properties p = new Properties();
+            p.setProperty(PORT, Integer.toString(port));
+            p.setProperty(TOKEN, token);
+            p.setProperty(PID, Long.toString(pid));
+
+            try(OutputStream os = Files.newOutputStream(tmp)) {
+
+                p.store(os, null);
+            }
+
+            try {
+
+                Files.move(tmp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch(AtomicMoveNotSupportedException e) {
+
+                Files.move(tmp, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        finally {
+
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+
+        if (!(o instanceof DaemonState)) {
+            return false;
+        }
+
+        DaemonState that = (DaemonState)o;
+
+        return port == that.port && token.equals(that.token) && pid == that.pid;
+    }
+
+    @Override
+    public int hashCode() {
+
+        return 31 * port + token.hashCode();
+    }
+
+    @Override
+    public String toString() {
+
+        return "daemon " + (pid == -1 ? "" : "(pid " + pid + ") ") + "on port " + port;
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.clad.discovery;
+
+import io.novaordis.clad.application.ApplicationRuntime;
+import io.novaordis.clad.command.CdsCommand;
+import io.novaordis.clad.command.Command;
+import io.novaordis.clad.command.VersionCommand;
+
+/**
+ * The registry of the built-in commands. clad itself is compiled without annotation processing, so this registry is
+ * maintained by hand, and must be kept in sync with the built-in META-INF/clad/index and with the native-image
+ * configuration under META-INF/native-image/clad/io.novaordis.clad.discovery.BuiltInRegistry.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+public class BuiltInRegistry implements Registry {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Registry implementation -----------------------------------------------------------------------------------------
+
+    @Override
+    public Command newCommand(String className) {
+
+        switch(className) {
+
+            case "io.novaordis.clad.command.CdsCommand":
+                return new CdsCommand();
+
+            case "io.novaordis.clad.command.VersionCommand":
+                return new VersionCommand();
+
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public ApplicationRuntime newApplicationRuntime(String className) {
+
+        return null;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
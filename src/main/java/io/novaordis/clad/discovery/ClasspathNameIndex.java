@@ -0,0 +1,335 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.clad.discovery;
+
+import io.novaordis.clad.InstanceFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An in-memory index of the discoverable (Command and ApplicationRuntime) classes available on the class path: simple
+ * class name - fully qualified class names. The index is built lazily, at most once per class path, from the
+ * build-time discovery index and a single pass over the class path entries the discovery index does not cover (no
+ * pass at all, if all entries carry an index resource), and all command and application runtime lookups go through
+ * it, so resolving a command line argument that is not a command name is a hash probe and not a class path walk.
+ *
+ * The classes found in directories and the classes found in JARs are kept apart, so lookups honor
+ * InstanceFactory.searchOrder. More than one fully qualified class name for a simple name means ambiguity.
+ *
+ * @see DiscoveryIndex
+ * @see DiscoveryCache
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+public class ClasspathNameIndex {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final Logger log = LoggerFactory.getLogger(ClasspathNameIndex.class);
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    private static ClasspathNameIndex instance;
+
+    /**
+     * @return the index corresponding to the current class path, building it if necessary.
+     */
+    public static synchronized ClasspathNameIndex getInstance() throws IOException {
+
+        String classPath = System.getProperty(InstanceFactory.JAVA_CLASS_PATH_SYSTEM_PROPERTY_NAME);
+
+        if (instance == null || !instance.classPath.equals(classPath)) {
+
+            instance = build(classPath);
+        }
+
+        return instance;
+    }
+
+    /**
+     * Discards the current index, the next getInstance() invocation will rebuild it. Useful for long-lived processes
+     * whose class path directories change.
+     */
+    public static synchronized void reset() {
+
+        instance = null;
+    }
+
+    /**
+     * @return true if classes with the given suffix are indexed.
+     */
+    public static boolean isIndexed(String suffix) {
+
+        return DiscoveryCache.isCached(suffix);
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private String classPath;
+
+    // simple class name - fully qualified class names
+    private Map<String, List<String>> directoryClasses;
+    private Map<String, List<String>> jarClasses;
+
+    // the class names that came from the build-time discovery index
+    private Set<String> discoveryIndexClasses;
+
+    private boolean builtFromDiscoveryIndex;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    ClasspathNameIndex(String classPath) {
+
+        this.classPath = classPath;
+        this.directoryClasses = new HashMap<>();
+        this.jarClasses = new HashMap<>();
+        this.discoveryIndexClasses = new HashSet<>();
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return the fully qualified names of the classes with the given simple name, respecting the search order: if
+     * the class is found in directories (or JARs, depending on the search order), the other type of class path
+     * entries is not consulted. May return an empty list, but never null. More than one element in the list means
+     * the name is ambiguous.
+     *
+     * @see InstanceFactory#searchOrder
+     */
+    public List<String> getFullyQualifiedClassNames(String simpleClassName) {
+
+        return getFullyQualifiedClassNames(
+                simpleClassName, InstanceFactory.searchOrder == InstanceFactory.JARS_ARE_SEARCHED_FIRST);
+    }
+
+    /**
+     * Same as getFullyQualifiedClassNames(String), with an explicit search order instead of InstanceFactory's.
+     */
+    public List<String> getFullyQualifiedClassNames(String simpleClassName, boolean jarsFirst) {
+
+        List<String> result = (jarsFirst ? jarClasses : directoryClasses).get(simpleClassName);
+
+        if (result == null) {
+
+            result = (jarsFirst ? directoryClasses : jarClasses).get(simpleClassName);
+        }
+
+        return result == null ? Collections.<String>emptyList() : Collections.unmodifiableList(result);
+    }
+
+    /**
+     * @return the fully qualified names of all indexed classes whose simple name ends with the given suffix, JAR
+     * classes first. Never null.
+     */
+    public List<String> getFullyQualifiedClassNamesWithSuffix(String suffix) {
+
+        List<String> result = new ArrayList<>();
+
+        for(Map<String, List<String>> m: Arrays.asList(jarClasses, directoryClasses)) {
+
+            for(Map.Entry<String, List<String>> e: m.entrySet()) {
+
+                String simpleClassName = e.getKey();
+
+                if (simpleClassName.length() > suffix.length() && simpleClassName.endsWith(suffix)) {
+
+                    result.addAll(e.getValue());
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * @return true if the index was built from the build-time discovery index alone, because all class path entries
+     * carry an index resource. In that case, all indexed classes are known to be public, concrete Command or
+     * ApplicationRuntime implementations.
+     */
+    public boolean isBuiltFromDiscoveryIndex() {
+
+        return builtFromDiscoveryIndex;
+    }
+
+    /**
+     * @return true if the given class is listed by the build-time discovery index, and thus known to be a public,
+     * concrete Command or ApplicationRuntime implementation. The classes found by scanning the class path are only
+     * known to follow the naming convention.
+     */
+    public boolean isFromDiscoveryIndex(String fullyQualifiedClassName) {
+
+        return discoveryIndexClasses.contains(fullyQualifiedClassName);
+    }
+
+    /**
+     * @return true if all indexed classes whose simple name ends with the given suffix are listed by the build-time
+     * discovery index, that is, scanning the class path entries without an index resource found none.
+     */
+    public boolean isCoveredByDiscoveryIndex(String suffix) {
+
+        for(String fqcn: getFullyQualifiedClassNamesWithSuffix(suffix)) {
+
+            if (!discoveryIndexClasses.contains(fqcn)) {
+
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    @Override
+    public String toString() {
+
+        return "ClasspathNameIndex[" + directoryClasses.size() + " directory names, " + jarClasses.size() + " JAR names]";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    void addFromDiscoveryIndex(String fullyQualifiedClassName, boolean fromJar) {
+
+        add(fullyQualifiedClassName, fromJar);
+        discoveryIndexClasses.add(fullyQualifiedClassName);
+    }
+
+    void add(String fullyQualifiedClassName, boolean fromJar) {
+
+        String simpleClassName = fullyQualifiedClassName.substring(fullyQualifiedClassName.lastIndexOf('.') + 1);
+
+        Map<String, List<String>> m = fromJar ? jarClasses : directoryClasses;
+
+        List<String> fqcns = m.get(simpleClassName);
+
+        if (fqcns == null) {
+
+            fqcns = new ArrayList<>(1);
+            m.put(simpleClassName, fqcns);
+        }
+
+        //
+        // the same class may be present in more than one class path entry, that is not an ambiguity
+        //
+
+        if (!fqcns.contains(fullyQualifiedClassName)) {
+
+            fqcns.add(fullyQualifiedClassName);
+        }
+    }
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private static ClasspathNameIndex build(String classPath) throws IOException {
+
+        long t0 = System.currentTimeMillis();
+
+        ClasspathNameIndex index = new ClasspathNameIndex(classPath);
+
+        DiscoveryIndex discoveryIndex = DiscoveryIndex.getInstance();
+
+        List<File> directories = InstanceFactory.getClasspathDirectories();
+        List<File> jars = InstanceFactory.getClasspathFiles();
+
+        if (discoveryIndex != null) {
+
+            //
+            // the build-time index is authoritative for the class path entries that carry it, and only for those;
+            // the other entries (built without annotation processing) are scanned
+            //
+
+            for(DiscoveryIndex.Entry e: discoveryIndex.getEntries()) {
+
+                index.addFromDiscoveryIndex(e.getClassName(), e.isFromJar());
+            }
+
+            directories = notIndexed(directories, discoveryIndex);
+            jars = notIndexed(jars, discoveryIndex);
+
+            if (directories.isEmpty() && jars.isEmpty()) {
+
+                index.builtFromDiscoveryIndex = true;
+
+                log.debug(index + " built from " + discoveryIndex);
+                return index;
+            }
+        }
+
+        DiscoveryCache cache = DiscoveryCache.getInstance();
+
+        ClasspathScanner scanner = new ClasspathScanner(ClasspathScanner.getDefaultParallelism(), cache);
+
+        scanner.scan(directories, jars);
+
+        for(String fqcn: scanner.getDirectoryClassNames()) {
+
+            index.add(fqcn, false);
+        }
+
+        for(String fqcn: scanner.getJarClassNames()) {
+
+            index.add(fqcn, true);
+        }
+
+        if (cache != null) {
+
+            try {
+
+                cache.save();
+            }
+            catch(IOException e) {
+
+                log.warn("failed to save the discovery cache " + cache.getFile() + ": " + e);
+            }
+        }
+
+        log.debug(index + " built by scanning " + directories.size() + " directories and " + jars.size() +
+                " JARs with " + scanner + " in " + (System.currentTimeMillis() - t0) + " ms");
+
+        return index;
+    }
+
+    private static List<File> notIndexed(List<File> classpathEntries, DiscoveryIndex discoveryIndex) {
+
+        List<File> result = new ArrayList<>();
+
+        for(File f: classpathEntries) {
+
+            if (!discoveryIndex.isIndexed(f)) {
+
+                result.add(f);
+            }
+        }
+
+        return result;
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
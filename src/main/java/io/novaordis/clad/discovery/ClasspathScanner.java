@@ -0,0 +1,367 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.clad.discovery;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Scans class path directories and JARs for discoverable (Command and ApplicationRuntime) classes, when neither a
+ * build-time discovery index nor a cached result is available.
+ *
+ * The scan can be fanned out over a ForkJoin pool: one task per JAR, and one task per directory in each class path
+ * directory tree. The results are merged in a deterministic order, regardless of the parallelism: JARs in class path
+ * order, directories in class path order and, within a directory tree, in lexicographic path order. Directory classes
+ * and JAR classes are reported separately, so the caller can apply the search order.
+ *
+ * The parallelism defaults to the number of available processors, and can be set with -Dclad.scan.parallelism=N.
+ * A parallelism of 1 scans serially, on the calling thread.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+public class ClasspathScanner {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final Logger log = LoggerFactory.getLogger(ClasspathScanner.class);
+
+    public static final String PARALLELISM_SYSTEM_PROPERTY_NAME = "clad.scan.parallelism";
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return the value of -Dclad.scan.parallelism, or the number of available processors if not set or invalid.
+     */
+    public static int getDefaultParallelism() {
+
+        String s = System.getProperty(PARALLELISM_SYSTEM_PROPERTY_NAME);
+
+        if (s != null) {
+
+            try {
+
+                int p = Integer.parseInt(s.trim());
+
+                if (p > 0) {
+                    return p;
+                }
+            }
+            catch(NumberFormatException e) {
+
+                // fall through
+            }
+
+            log.warn("invalid " + PARALLELISM_SYSTEM_PROPERTY_NAME + " value \"" + s + "\", ignoring it");
+        }
+
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private int parallelism;
+
+    // may be null, in which case JARs are always scanned
+    private DiscoveryCache cache;
+
+    private JarScanner.EntryNameFilter filter;
+    private DirectoryWalker.FileNameFilter directoryFilter;
+
+    private List<String> directoryClassNames;
+    private List<String> jarClassNames;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    /**
+     * @param cache the cache to get JAR content from. May be null.
+     */
+    public ClasspathScanner(int parallelism, DiscoveryCache cache) {
+
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("invalid parallelism " + parallelism);
+        }
+
+        this.parallelism = parallelism;
+        this.cache = cache;
+        this.filter = JarScanner.suffixFilter(DiscoveryCache.SUFFIXES);
+        this.directoryFilter = DirectoryWalker.suffixFilter(DiscoveryCache.SUFFIXES);
+        this.directoryClassNames = new ArrayList<>();
+        this.jarClassNames = new ArrayList<>();
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * Scans the given directories and JARs. The results of successive invocations accumulate.
+     */
+    public void scan(List<File> directories, List<File> jars) throws IOException {
+
+        ScanTask task = new ScanTask(directories, jars);
+
+        try {
+
+            if (parallelism == 1 || directories.size() + jars.size() == 0) {
+
+                task.compute();
+            }
+            else {
+
+                ForkJoinPool pool = new ForkJoinPool(parallelism);
+
+                try {
+
+                    pool.invoke(task);
+                }
+                finally {
+
+                    pool.shutdown();
+                }
+            }
+        }
+        catch(UncheckedIOException e) {
+
+            //
+            // tasks cannot throw checked exceptions; the pool may also re-wrap exceptions thrown on other threads
+            //
+
+            Throwable t = e;
+
+            while(t != null && !(t instanceof IOException)) {
+                t = t.getCause();
+            }
+
+            throw t != null ? (IOException)t : new IOException(e);
+        }
+
+        directoryClassNames.addAll(task.directoryClassNames);
+        jarClassNames.addAll(task.jarClassNames);
+    }
+
+    /**
+     * @return the fully qualified names of the discoverable classes found in directories.
+     */
+    public List<String> getDirectoryClassNames() {
+
+        return directoryClassNames;
+    }
+
+    /**
+     * @return the fully qualified names of the discoverable classes found in JARs.
+     */
+    public List<String> getJarClassNames() {
+
+        return jarClassNames;
+    }
+
+    public int getParallelism() {
+
+        return parallelism;
+    }
+
+    @Override
+    public String toString() {
+
+        return "ClasspathScanner[parallelism=" + parallelism + "]";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private boolean isParallel() {
+
+        return parallelism > 1;
+    }
+
+    /**
+     * Runs the given tasks, concurrently if the scan is parallel, and concatenates their results in task order.
+     */
+    private List<String> run(List<? extends RecursiveTask<List<String>>> tasks) {
+
+        if (isParallel()) {
+
+            for(RecursiveTask<List<String>> t: tasks) {
+                t.fork();
+            }
+        }
+
+        List<String> result = new ArrayList<>();
+
+        for(RecursiveTask<List<String>> t: tasks) {
+
+            result.addAll(isParallel() ? t.join() : t.invoke());
+        }
+
+        return result;
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+    private class ScanTask extends RecursiveTask<List<String>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private List<File> directories;
+        private List<File> jars;
+
+        private List<String> directoryClassNames;
+        private List<String> jarClassNames;
+
+        private ScanTask(List<File> directories, List<File> jars) {
+
+            this.directories = directories;
+            this.jars = jars;
+        }
+
+        @Override
+        protected List<String> compute() {
+
+            List<RecursiveTask<List<String>>> jarTasks = new ArrayList<>();
+
+            for(File f: jars) {
+                jarTasks.add(new JarTask(f));
+            }
+
+            List<RecursiveTask<List<String>>> directoryTasks = new ArrayList<>();
+
+            for(File d: directories) {
+
+                if (d.isDirectory()) {
+                    directoryTasks.add(new DirectoryTask(d.toPath(), ""));
+                }
+            }
+
+            //
+            // JARs are usually the larger units of work, start them first
+            //
+
+            if (isParallel()) {
+
+                for(RecursiveTask<List<String>> t: jarTasks) {
+                    t.fork();
+                }
+            }
+
+            directoryClassNames = run(directoryTasks);
+
+            jarClassNames = new ArrayList<>();
+
+            for(RecursiveTask<List<String>> t: jarTasks) {
+
+                jarClassNames.addAll(isParallel() ? t.join() : t.invoke());
+            }
+
+            return null;
+        }
+    }
+
+    private class JarTask extends RecursiveTask<List<String>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private File jar;
+
+        private JarTask(File jar) {
+
+            this.jar = jar;
+        }
+
+        @Override
+        protected List<String> compute() {
+
+            try {
+
+                return cache != null ? cache.getClassNames(jar) : JarScanner.getClassNames(jar, filter);
+            }
+            catch(IOException e) {
+
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private class DirectoryTask extends RecursiveTask<List<String>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private Path dir;
+
+        // the package corresponding to the directory, followed by '.', or the empty string for a class path root
+        private String packagePrefix;
+
+        private DirectoryTask(Path dir, String packagePrefix) {
+
+            this.dir = dir;
+            this.packagePrefix = packagePrefix;
+        }
+
+        @Override
+        protected List<String> compute() {
+
+            List<String> classNames = new ArrayList<>();
+            List<String> names = new ArrayList<>();
+
+            try {
+
+                DirectoryWalker.list(dir, packagePrefix, directoryFilter, classNames, names);
+            }
+            catch(IOException e) {
+
+                //
+                // an unreadable directory contributes nothing, like it would to the class loader
+                //
+
+                log.debug("failed to read " + dir + ": " + e);
+                return new ArrayList<>();
+            }
+
+            //
+            // classes in the default package are not discoverable
+            //
+
+            List<String> result = packagePrefix.isEmpty() ? new ArrayList<String>() : classNames;
+
+            List<DirectoryTask> subdirectories = new ArrayList<>();
+
+            for(String name: names) {
+
+                subdirectories.add(new DirectoryTask(dir.resolve(name), packagePrefix + name + "."));
+            }
+
+            //
+            // the classes of a directory precede the classes of its subdirectories
+            //
+
+            result.addAll(run(subdirectories));
+
+            return result;
+        }
+    }
+
+}
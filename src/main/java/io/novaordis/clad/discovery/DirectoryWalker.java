@@ -0,0 +1,292 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.clad.discovery;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Walks class path directory trees looking for class files, without building the list of all files first. Each
+ * directory is read with a DirectoryStream, class file names are matched on the fly against a FileNameFilter (no
+ * regular expressions), and matches are handed to a Visitor as fully qualified class names as soon as they are found.
+ * The visitor can stop the walk.
+ *
+ * Only files whose name ends in ".class" are considered, and directories whose names are not valid Java identifiers
+ * (META-INF, resource directories such as "test-data", etc.) are not descended into, since they cannot contain
+ * classes. Within a directory, entries are visited in lexicographic order, files before subdirectories, so the walk
+ * order does not depend on the file system.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+public class DirectoryWalker {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    public static final String CLASS_EXTENSION = ".class";
+
+    /**
+     * Accepts all class files.
+     */
+    public static final FileNameFilter CLASS_FILES = new FileNameFilter() {
+
+        @Override
+        public boolean accept(String fileName) {
+
+            return true;
+        }
+    };
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return a filter that accepts the class files whose simple class name ends with one of the given suffixes,
+     * without being just the suffix.
+     */
+    public static FileNameFilter suffixFilter(String... suffixes) {
+
+        final String[] endings = new String[suffixes.length];
+
+        for(int i = 0; i < suffixes.length; i ++) {
+
+            endings[i] = suffixes[i] + CLASS_EXTENSION;
+        }
+
+        return new FileNameFilter() {
+
+            @Override
+            public boolean accept(String fileName) {
+
+                for(String ending: endings) {
+
+                    if (fileName.length() > ending.length() && fileName.endsWith(ending)) {
+                        return true;
+                    }
+                }
+
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @return a filter that accepts the class files of the classes with the given simple name.
+     */
+    public static FileNameFilter simpleNameFilter(String simpleClassName) {
+
+        final String fileName = simpleClassName + CLASS_EXTENSION;
+
+        return new FileNameFilter() {
+
+            @Override
+            public boolean accept(String n) {
+
+                return n.equals(fileName);
+            }
+        };
+    }
+
+    /**
+     * @return true if a directory with the given name may be part of a package hierarchy.
+     */
+    public static boolean isPackageDirectoryName(String name) {
+
+        if (name.isEmpty() || !Character.isJavaIdentifierStart(name.charAt(0))) {
+            return false;
+        }
+
+        for(int i = 1; i < name.length(); i ++) {
+
+            if (!Character.isJavaIdentifierPart(name.charAt(i))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Walks the given class path root.
+     *
+     * @return false if the visitor stopped the walk, true otherwise.
+     */
+    public static boolean walk(File root, FileNameFilter filter, Visitor visitor) throws IOException {
+
+        if (!root.isDirectory()) {
+            return true;
+        }
+
+        return walk(root.toPath(), "", filter, visitor);
+    }
+
+    /**
+     * Walks the given class path roots, in order.
+     *
+     * @return false if the visitor stopped the walk, true otherwise.
+     */
+    public static boolean walk(List<File> roots, FileNameFilter filter, Visitor visitor) throws IOException {
+
+        for(File root: roots) {
+
+            if (!walk(root, filter, visitor)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Looks up the classes with the given simple name that live in a named package. The walk stops as soon as a second
+     * class is found, since that already proves ambiguity.
+     *
+     * @return a list with zero, one or two fully qualified class names.
+     */
+    public static List<String> findClasses(List<File> roots, String simpleClassName) throws IOException {
+
+        final List<String> result = new ArrayList<>(2);
+
+        walk(roots, simpleNameFilter(simpleClassName), new Visitor() {
+
+            @Override
+            public boolean visit(String className) {
+
+                if (className.indexOf('.') > 0) {
+                    result.add(className);
+                }
+
+                return result.size() < 2;
+            }
+        });
+
+        return result;
+    }
+
+    /**
+     * Reads a single directory, without descending into its subdirectories. The walk is built on it, and so is the
+     * parallel scan, which walks each subdirectory in its own task.
+     *
+     * @param packagePrefix the package corresponding to the directory, followed by '.', or the empty string.
+     * @param classNames an empty list that will receive the fully qualified names of the matching classes, in
+     *                   lexicographic order.
+     * @param subdirectories an empty list that will receive the names of the subdirectories that may be part of a
+     *                       package hierarchy, in lexicographic order.
+     */
+    static void list(Path dir, String packagePrefix, FileNameFilter filter, List<String> classNames,
+                     List<String> subdirectories) throws IOException {
+
+        List<String> classFiles = new ArrayList<>();
+
+        try(DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+
+            for(Path p: stream) {
+
+                String name = p.getFileName().toString();
+
+                if (name.endsWith(CLASS_EXTENSION)) {
+
+                    if (filter.accept(name)) {
+                        classFiles.add(name);
+                    }
+                }
+                else if (isPackageDirectoryName(name) && Files.isDirectory(p)) {
+
+                    subdirectories.add(name);
+                }
+            }
+        }
+
+        Collections.sort(classFiles);
+
+        for(String name: classFiles) {
+
+            classNames.add(packagePrefix + name.substring(0, name.length() - CLASS_EXTENSION.length()));
+        }
+
+        Collections.sort(subdirectories);
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    private DirectoryWalker() {
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    /**
+     * @param packagePrefix the package corresponding to the directory, followed by '.', or the empty string.
+     */
+    private static boolean walk(Path dir, String packagePrefix, FileNameFilter filter, Visitor visitor)
+            throws IOException {
+
+        List<String> classNames = new ArrayList<>();
+        List<String> subdirectories = new ArrayList<>();
+
+        list(dir, packagePrefix, filter, classNames, subdirectories);
+
+        for(String className: classNames) {
+
+            if (!visitor.visit(className)) {
+                return false;
+            }
+        }
+
+        for(String name: subdirectories) {
+
+            if (!walk(dir.resolve(name), packagePrefix + name + ".", filter, visitor)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+    public interface FileNameFilter {
+
+        /**
+         * @param fileName the name of a class file, including the .class extension, without any directory.
+         */
+        boolean accept(String fileName);
+    }
+
+    public interface Visitor {
+
+        /**
+         * @param className the fully qualified name of a matching class.
+         *
+         * @return true to continue the walk, false to stop it.
+         */
+        boolean visit(String className);
+    }
+
+}
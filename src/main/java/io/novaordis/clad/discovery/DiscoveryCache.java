@@ -0,0 +1,361 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.clad.discovery;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A persistent, per-user cache of JAR scan results. For each class path JAR, the cache stores the fully qualified
+ * names of all classes whose simple name ends in one of the discoverable suffixes (Command, ApplicationRuntime),
+ * keyed by the JAR's fingerprint: absolute path, size and last modification time. A JAR is re-scanned only if its
+ * fingerprint changed since the last run.
+ *
+ * Class path directories are not cached: a recompiled class file deep inside the directory tree does not change the
+ * directory's own size or modification time, so a cheap fingerprint cannot be computed for it.
+ *
+ * The cache file is ~/.clad/discovery-cache by default, the location can be changed with -Dclad.cache.file=... and the
+ * cache can be turned off with -Dclad.disable.cache=true. The cache is best-effort: a missing or corrupted cache file
+ * only means the JARs will be scanned, and failure to save the cache is logged and ignored.
+ *
+ * The file format is line-based:
+ *
+ * jar <size> <last-modified> <absolute-path>
+ * class <fully-qualified-class-name>
+ * class <fully-qualified-class-name>
+ * ...
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+public class DiscoveryCache {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final Logger log = LoggerFactory.getLogger(DiscoveryCache.class);
+
+    public static final String CACHE_FILE_SYSTEM_PROPERTY_NAME = "clad.cache.file";
+    public static final String DISABLE_CACHE_SYSTEM_PROPERTY_NAME = "clad.disable.cache";
+
+    // relative to the user's home directory
+    public static final String DEFAULT_CACHE_FILE_NAME = ".clad/discovery-cache";
+
+    public static final String[] SUFFIXES = { "Command", "ApplicationRuntime" };
+
+    private static final String JAR = "jar";
+    private static final String CLASS = "class";
+
+    private static final JarScanner.EntryNameFilter DISCOVERABLE = JarScanner.suffixFilter(SUFFIXES);
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    private static volatile DiscoveryCache instance;
+
+    /**
+     * @return the JVM-wide cache instance, or null if the cache was disabled.
+     */
+    public static DiscoveryCache getInstance() {
+
+        if (Boolean.getBoolean(DISABLE_CACHE_SYSTEM_PROPERTY_NAME)) {
+
+            return null;
+        }
+
+        if (instance == null) {
+
+            synchronized (DiscoveryCache.class) {
+
+                if (instance == null) {
+
+                    String s = System.getProperty(CACHE_FILE_SYSTEM_PROPERTY_NAME);
+
+                    File file = s != null ?
+                            new File(s) : new File(System.getProperty("user.home"), DEFAULT_CACHE_FILE_NAME);
+
+                    instance = new DiscoveryCache(file);
+                }
+            }
+        }
+
+        return instance;
+    }
+
+    /**
+     * @return true if the classes with the given suffix are cached.
+     */
+    public static boolean isCached(String suffix) {
+
+        for(String s: SUFFIXES) {
+
+            if (s.equals(suffix)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @return true if the given JAR entry name designates a class that lives in a named package and whose simple name
+     * ends in one of the discoverable suffixes, and it is not just the suffix.
+     */
+    static boolean isDiscoverable(String entryName) {
+
+        byte[] bytes = entryName.getBytes(StandardCharsets.UTF_8);
+        return DISCOVERABLE.accept(bytes, bytes.length);
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private File file;
+
+    // absolute path - record, sorted so the file content is stable
+    private Map<String, Record> records;
+
+    private boolean dirty;
+
+    private int scanCount;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    /**
+     * Loads the content of the given file, if it exists.
+     */
+    public DiscoveryCache(File file) {
+
+        this.file = file;
+        this.records = new TreeMap<>();
+
+        if (file.isFile()) {
+
+            try {
+
+                load();
+            }
+            catch(Exception e) {
+
+                log.debug("failed to load discovery cache " + file + ", starting with an empty cache", e);
+                records.clear();
+            }
+        }
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return the fully qualified names of the discoverable classes contained by the given JAR. The result comes from
+     * cache if the JAR's fingerprint did not change, otherwise the JAR is scanned and the cache is updated in memory.
+     * Use save() to persist the changes. Safe to call concurrently, the JARs are scanned outside the lock.
+     */
+    public List<String> getClassNames(File jar) throws IOException {
+
+        String path = jar.getAbsolutePath();
+        long size = jar.length();
+        long lastModified = jar.lastModified();
+
+        Record r;
+
+        synchronized (this) {
+
+            r = records.get(path);
+        }
+
+        if (r != null && r.size == size && r.lastModified == lastModified) {
+
+            return r.classNames;
+        }
+
+        log.debug("scanning " + path + (r == null ? "" : ", its fingerprint changed"));
+
+        List<String> classNames = scan(jar);
+
+        synchronized (this) {
+
+            scanCount ++;
+            records.put(path, new Record(size, lastModified, classNames));
+            dirty = true;
+        }
+
+        return classNames;
+    }
+
+    /**
+     * Writes the cache to disk, if it was modified since it was loaded. Records of JARs that no longer exist are
+     * dropped. The file is replaced atomically, so concurrent clad processes never see a partially written file.
+     */
+    public synchronized void save() throws IOException {
+
+        if (!dirty) {
+            return;
+        }
+
+        for(Iterator<String> i = records.keySet().iterator(); i.hasNext(); ) {
+
+            if (!new File(i.next()).isFile()) {
+
+                i.remove();
+            }
+        }
+
+        File dir = file.getAbsoluteFile().getParentFile();
+
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("failed to create directory " + dir);
+        }
+
+        File temp = File.createTempFile(file.getName(), ".tmp", dir);
+
+        try {
+
+            try(Writer w = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temp), StandardCharsets.UTF_8))) {
+
+                w.write("# clad discovery cache, do not edit\n");
+
+                for(Map.Entry<String, Record> e: records.entrySet()) {
+
+                    Record r = e.getValue();
+
+                    w.write(JAR + " " + r.size + " " + r.lastModified + " " + e.getKey() + "\n");
+
+                    for(String className: r.classNames) {
+
+                        w.write(CLASS + " " + className + "\n");
+                    }
+                }
+            }
+
+            try {
+
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch(AtomicMoveNotSupportedException e) {
+
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        finally {
+
+            if (temp.exists() && !temp.delete()) {
+                log.debug("failed to delete " + temp);
+            }
+        }
+
+        dirty = false;
+    }
+
+    public File getFile() {
+
+        return file;
+    }
+
+    @Override
+    public String toString() {
+
+        return "DiscoveryCache[" + file + "]";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    /**
+     * @return the number of JARs this instance had to scan because they were not cached, or their fingerprint
+     * changed.
+     */
+    synchronized int getScanCount() {
+
+        return scanCount;
+    }
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private void load() throws IOException {
+
+        try(BufferedReader br =
+                    new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+
+            Record current = null;
+            String line;
+
+            while((line = br.readLine()) != null) {
+
+                if (line.startsWith(JAR + " ")) {
+
+                    String[] tokens = line.split(" ", 4);
+
+                    if (tokens.length != 4) {
+                        throw new IOException("invalid discovery cache line: " + line);
+                    }
+
+                    current = new Record(Long.parseLong(tokens[1]), Long.parseLong(tokens[2]), new ArrayList<>());
+                    records.put(tokens[3], current);
+                }
+                else if (line.startsWith(CLASS + " ")) {
+
+                    if (current == null) {
+                        throw new IOException("class without jar: " + line);
+                    }
+
+                    current.classNames.add(line.substring(CLASS.length() + 1));
+                }
+            }
+        }
+    }
+
+    private static List<String> scan(File jar) throws IOException {
+
+        List<String> result = JarScanner.getClassNames(jar, DISCOVERABLE);
+        return result.isEmpty() ? Collections.<String>emptyList() : result;
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+    private static class Record {
+
+        private long size;
+        private long lastModified;
+        private List<String> classNames;
+
+        private Record(long size, long lastModified, List<String> classNames) {
+
+            this.size = size;
+            this.lastModified = lastModified;
+            this.classNames = classNames;
+        }
+    }
+
+}
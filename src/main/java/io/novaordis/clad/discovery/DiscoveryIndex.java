@@ -0,0 +1,420 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.clad.discovery;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.StringTokenizer;
+import java.util.TreeSet;
+
+/**
+ * The build-time discovery index: the content of all META-INF/clad/index resources available on the class path. The
+ * resources are generated at compile time by DiscoveryIndexProcessor, and list the Command and ApplicationRuntime
+ * implementations contained by the corresponding class path entry, so InstanceFactory can resolve command and
+ * application runtime classes without walking the class path.
+ *
+ * The index resource format is line-based, '#' starts a comment:
+ *
+ * command <command-name> <fully-qualified-class-name>
+ * application <application-name> <fully-qualified-class-name>
+ *
+ * An index resource is authoritative only for the class path entry that carries it: the entries without an index
+ * resource (JARs built without annotation processing, for example) are still scanned (see ClasspathNameIndex). The
+ * index can be turned off with -Dclad.disable.index=true.
+ *
+ * @see DiscoveryIndexProcessor
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+public class DiscoveryIndex {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final Logger log = LoggerFactory.getLogger(DiscoveryIndex.class);
+
+    public static final String INDEX_RESOURCE_NAME = "META-INF/clad/index";
+
+    public static final String DISABLE_INDEX_SYSTEM_PROPERTY_NAME = "clad.disable.index";
+
+    public static final String COMMAND = "command";
+    public static final String APPLICATION = "application";
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    private static volatile boolean loaded = false;
+    private static volatile DiscoveryIndex instance;
+
+    /**
+     * @return the index built from all index resources available to the class loader that loaded clad, or null if
+     * there are no index resources on the class path or the index was disabled. The index is loaded once per JVM.
+     */
+    public static DiscoveryIndex getInstance() throws IOException {
+
+        if (Boolean.getBoolean(DISABLE_INDEX_SYSTEM_PROPERTY_NAME)) {
+
+            return null;
+        }
+
+        if (!loaded) {
+
+            synchronized (DiscoveryIndex.class) {
+
+                if (!loaded) {
+
+                    instance = load(DiscoveryIndex.class.getClassLoader());
+                    loaded = true;
+                }
+            }
+        }
+
+        return instance;
+    }
+
+    /**
+     * @return the index built from all index resources available to the given class loader, or null if no index
+     * resource was found.
+     */
+    public static DiscoveryIndex load(ClassLoader classLoader) throws IOException {
+
+        Enumeration<URL> urls = classLoader.getResources(INDEX_RESOURCE_NAME);
+
+        if (!urls.hasMoreElements()) {
+
+            log.debug("no " + INDEX_RESOURCE_NAME + " found on class path");
+            return null;
+        }
+
+        DiscoveryIndex index = new DiscoveryIndex();
+
+        while(urls.hasMoreElements()) {
+
+            URL url = urls.nextElement();
+
+            log.debug("loading discovery index " + url);
+
+            //
+            // class path directories are exposed as "file:" URLs, JAR content as "jar:file:...!/" URLs
+            //
+
+            boolean fromJar = "jar".equals(url.getProtocol());
+
+            try(InputStream is = url.openStream()) {
+
+                index.read(new InputStreamReader(is, StandardCharsets.UTF_8), fromJar);
+            }
+
+            File classpathEntry = toClasspathEntry(url);
+
+            if (classpathEntry == null) {
+
+                log.debug("cannot tell which class path entry " + url + " belongs to");
+            }
+            else {
+
+                index.classpathEntries.add(canonical(classpathEntry));
+            }
+        }
+
+        return index;
+    }
+
+    /**
+     * @return the class path directory or JAR the given index resource URL belongs to, or null if the URL is neither
+     * a "file:" nor a "jar:file:" URL.
+     */
+    static File toClasspathEntry(URL indexResourceUrl) {
+
+        String protocol = indexResourceUrl.getProtocol();
+
+        try {
+
+            if ("file".equals(protocol)) {
+
+                // <directory>/META-INF/clad/index
+                File f = new File(indexResourceUrl.toURI());
+                return f.getParentFile().getParentFile().getParentFile();
+            }
+
+            if ("jar".equals(protocol)) {
+
+                // jar:file:<jar>!/META-INF/clad/index
+                String path = indexResourceUrl.getPath();
+                int i = path.indexOf("!/");
+
+                if (i == -1) {
+                    return null;
+                }
+
+                URL jarUrl = new URL(path.substring(0, i));
+                return "file".equals(jarUrl.getProtocol()) ? new File(jarUrl.toURI()) : null;
+            }
+        }
+        catch(MalformedURLException | URISyntaxException | IllegalArgumentException e) {
+
+            log.debug("invalid index resource URL " + indexResourceUrl + ": " + e);
+        }
+
+        return null;
+    }
+
+    static File canonical(File f) {
+
+        try {
+
+            return f.getCanonicalFile();
+        }
+        catch(IOException e) {
+
+            return f.getAbsoluteFile();
+        }
+    }
+
+    /**
+     * @return a digest of the command names and class names, which does not depend on the order of the entries, or on
+     * duplicates (the same index resource reachable twice). It identifies the command list the application help shows.
+     */
+    static String toCommandFingerprint(Collection<Entry> entries) {
+
+        Set<String> commands = new TreeSet<>();
+
+        for(Entry e: entries) {
+
+            if (COMMAND.equals(e.getKind())) {
+
+                commands.add(e.toString());
+            }
+        }
+
+        MessageDigest digest;
+
+        try {
+
+            digest = MessageDigest.getInstance("SHA-256");
+        }
+        catch(NoSuchAlgorithmException e) {
+
+            // every Java platform implementation must support SHA-256
+            throw new IllegalStateException(e);
+        }
+
+        for(String c: commands) {
+
+            digest.update(c.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte)'\n');
+        }
+
+        StringBuilder sb = new StringBuilder();
+
+        for(byte b: digest.digest()) {
+
+            sb.append(String.format("%02x", b & 0xff));
+        }
+
+        return sb.toString();
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private List<Entry> entries;
+
+    // the class path entries that carry an index resource, canonical files
+    private Set<File> classpathEntries;
+
+    // lazily computed
+    private volatile String commandFingerprint;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    DiscoveryIndex() {
+
+        this.entries = new ArrayList<>();
+        this.classpathEntries = new HashSet<>();
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return the underlying storage, handle with care.
+     */
+    public List<Entry> getEntries() {
+
+        return entries;
+    }
+
+    /**
+     * @param kind COMMAND or APPLICATION.
+     */
+    public List<Entry> getEntries(String kind) {
+
+        List<Entry> result = new ArrayList<>();
+
+        for(Entry e: entries) {
+
+            if (e.getKind().equals(kind)) {
+
+                result.add(e);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * @return true if the given class path directory or JAR carries an index resource, so its Command and
+     * ApplicationRuntime implementations are known without scanning it.
+     */
+    public boolean isIndexed(File classpathEntry) {
+
+        return classpathEntries.contains(canonical(classpathEntry));
+    }
+
+    /**
+     * @return the fingerprint of the command entries, the same for all indexes that list the same commands.
+     */
+    public String getCommandFingerprint() {
+
+        if (commandFingerprint == null) {
+
+            commandFingerprint = toCommandFingerprint(entries);
+        }
+
+        return commandFingerprint;
+    }
+
+    @Override
+    public String toString() {
+
+        return "DiscoveryIndex[" + entries.size() + " entries]";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    /**
+     * Reads index content and adds it to the index. Malformed lines are logged and skipped.
+     *
+     * @param fromJar whether the content came from a JAR or from a class path directory.
+     */
+    void read(Reader reader, boolean fromJar) throws IOException {
+
+        BufferedReader br = new BufferedReader(reader);
+
+        String line;
+
+        while((line = br.readLine()) != null) {
+
+            line = line.trim();
+
+            if (line.isEmpty() || line.startsWith("#")) {
+
+                continue;
+            }
+
+            StringTokenizer st = new StringTokenizer(line);
+
+            if (st.countTokens() != 3) {
+
+                log.warn("invalid discovery index line \"" + line + "\", ignoring it");
+                continue;
+            }
+
+            String kind = st.nextToken();
+
+            if (!COMMAND.equals(kind) && !APPLICATION.equals(kind)) {
+
+                log.warn("unknown discovery index entry kind \"" + kind + "\", ignoring it");
+                continue;
+            }
+
+            entries.add(new Entry(kind, st.nextToken(), st.nextToken(), fromJar));
+            commandFingerprint = null;
+        }
+    }
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+    public static class Entry {
+
+        private String kind;
+        private String name;
+        private String className;
+        private boolean fromJar;
+
+        public Entry(String kind, String name, String className, boolean fromJar) {
+
+            this.kind = kind;
+            this.name = name;
+            this.className = className;
+            this.fromJar = fromJar;
+        }
+
+        /**
+         * @return COMMAND or APPLICATION.
+         */
+        public String getKind() {
+            return kind;
+        }
+
+        /**
+         * @return the command name or the application name.
+         */
+        public String getName() {
+            return name;
+        }
+
+        public String getClassName() {
+            return className;
+        }
+
+        public String getSimpleClassName() {
+            return className.substring(className.lastIndexOf('.') + 1);
+        }
+
+        public boolean isFromJar() {
+            return fromJar;
+        }
+
+        @Override
+        public String toString() {
+            return kind + " " + name + " " + className;
+        }
+    }
+
+}
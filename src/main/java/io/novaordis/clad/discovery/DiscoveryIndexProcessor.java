@@ -0,0 +1,900 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.clad.discovery;
+
+import io.novaordis.clad.Util;
+import io.novaordis.clad.application.ApplicationRuntime;
+import io.novaordis.clad.command.Command;
+import io.novaordis.clad.command.CommandDescriptor;
+import io.novaordis.clad.option.DynamicMacroResolver;
+import io.novaordis.clad.option.MacroResolver;
+import io.novaordis.clad.option.PrerenderedHelp;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.Processor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Annotation processor that does not process annotations: it inspects all types being compiled and writes the
+ * META-INF/clad/index resource listing the Command and ApplicationRuntime implementations, so they can be resolved
+ * at runtime without a class path scan.
+ *
+ * The processor is registered in META-INF/services/javax.annotation.processing.Processor, so it runs automatically
+ * when compiling any module that has clad on its compilation class path. It claims the annotations present in the
+ * sources only if no other processor on the processor path declares support for them, so it does not hide annotations
+ * from other processors, and compilations with -Xlint:processing do not warn about unclaimed annotations.
+ *
+ * On incremental compilation, the entries of an already existing index are preserved, as long as their classes still
+ * exist.
+ *
+ * In addition to the index, the processor generates:
+ *
+ * 1. A Registry implementation that instantiates without reflection the indexed classes that have a public
+ *    no-argument constructor declaring no checked exceptions, and its META-INF/services registration. The factory
+ *    methods switch on the class name, so no class is loaded before it is instantiated. The registry
+ *    class is placed in the package of the first indexed class and named CladRegistry_<hash>, where the hash is
+ *    derived from the names of all indexed classes, unless a fully qualified name is specified with
+ *    -Aclad.registry=<class-name>. Modules that index classes in the same package thus generate different registries.
+ *    The compilation fails if a class with the registry's name already exists on the class path, and it is not the
+ *    registry generated by a previous compilation into the same output directory.
+ *
+ * 2. GraalVM native-image reachability metadata (reflect-config.json and resource-config.json) under
+ *    META-INF/native-image/clad/<registry-class-name>/, covering the indexed classes, the index, the registry and the
+ *    help files, so a native image of the application needs no hand-written configuration.
+ *
+ * 3. The help of each indexed application, rendered with @COMMANDS@ resolved (see PrerenderedHelp), so displaying it
+ *    does not require listing the commands and looking up their help files at runtime. The command list includes the
+ *    commands indexed by the dependencies found on the processor's class path, and the rendered help is stamped with
+ *    the fingerprint of the combined index. The help file must be available when the processor runs: in the class
+ *    output directory (Maven copies the resources there before compiling) or on the class path. If the run time class
+ *    path lists other commands, the fingerprints do not match and the help is rendered dynamically, as it is when the
+ *    application was built without the processor.
+ *
+ * @see DiscoveryIndex
+ * @see Registry
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+@SupportedAnnotationTypes("*")
+@SupportedOptions(DiscoveryIndexProcessor.REGISTRY_OPTION_NAME)
+public class DiscoveryIndexProcessor extends AbstractProcessor {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    public static final String REGISTRY_OPTION_NAME = "clad.registry";
+
+    // the prefix of the default registry simple class name, see toDefaultRegistryClassName()
+    public static final String REGISTRY_SIMPLE_CLASS_NAME = "CladRegistry";
+
+    public static final String REGISTRY_SERVICE_RESOURCE_NAME = "META-INF/services/" + Registry.class.getName();
+
+    public static final String NATIVE_IMAGE_DIRECTORY = "META-INF/native-image/clad/";
+
+    public static final String PROCESSOR_SERVICE_RESOURCE_NAME = "META-INF/services/" + Processor.class.getName();
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @param pattern a supported annotation type, as returned by Processor.getSupportedAnnotationTypes(): "*", a
+     *                fully qualified name or a "name.*" prefix, optionally preceded by a module name and a '/'.
+     */
+    static boolean supports(String pattern, String annotationName) {
+
+        pattern = pattern.substring(pattern.indexOf('/') + 1);
+
+        if ("*".equals(pattern)) {
+            return true;
+        }
+
+        if (pattern.endsWith(".*")) {
+            return annotationName.startsWith(pattern.substring(0, pattern.length() - 1));
+        }
+
+        return pattern.equals(annotationName);
+    }
+
+    /**
+     * @param indexedClassNames the fully qualified names of all indexed classes, sorted.
+     *
+     * @return <package-of-the-first-class>.CladRegistry_<hash>. The hash only depends on the class names, so the name
+     * is the same for every build of the same classes.
+     */
+    static String toDefaultRegistryClassName(Collection<String> indexedClassNames) {
+
+        String first = indexedClassNames.iterator().next();
+        int hash = new ArrayList<>(indexedClassNames).hashCode();
+
+        return first.substring(0, first.lastIndexOf('.') + 1) +
+                REGISTRY_SIMPLE_CLASS_NAME + "_" + String.format("%08x", hash);
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // fully qualified class name - entry, sorted so the generated content is reproducible
+    private Map<String, DiscoveryIndex.Entry> entries = new TreeMap<>();
+
+    // the fully qualified names of the indexed classes that can be instantiated with a public no-argument constructor
+    private Set<String> instantiable = new TreeSet<>();
+
+    // true once the registry source generation was attempted, whether it succeeded or not
+    private boolean registryAttempted;
+
+    // null until the registry source is generated
+    private String registryClassName;
+
+    // null until the index is written
+    private URI indexUri;
+
+    // the annotation types supported by the other processors found on the processor path
+    private Set<String> otherProcessorsAnnotationTypes;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // AbstractProcessor overrides -------------------------------------------------------------------------------------
+
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnvironment) {
+
+        super.init(processingEnvironment);
+
+        otherProcessorsAnnotationTypes = readOtherProcessorsAnnotationTypes();
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnvironment) {
+
+        if (roundEnvironment.processingOver()) {
+
+            if (!entries.isEmpty()) {
+
+                writeIndex();
+                writePrerenderedHelp();
+            }
+
+            if (registryClassName != null) {
+
+                writeServiceRegistration();
+                writeNativeImageConfiguration();
+            }
+
+            return false;
+        }
+
+        TypeElement commandType = processingEnv.getElementUtils().getTypeElement(Command.class.getName());
+        TypeElement runtimeType = processingEnv.getElementUtils().getTypeElement(ApplicationRuntime.class.getName());
+
+        for(Element e: roundEnvironment.getRootElements()) {
+
+            if (!isCandidate(e)) {
+                continue;
+            }
+
+            TypeElement type = (TypeElement)e;
+            String simpleName = type.getSimpleName().toString();
+            String className = type.getQualifiedName().toString();
+
+            if (simpleName.endsWith("Command") && isSubtype(type, commandType)) {
+
+                add(type, new DiscoveryIndex.Entry(
+                        DiscoveryIndex.COMMAND, Util.toCommandName(simpleName), className, false));
+            }
+            else if (simpleName.endsWith("ApplicationRuntime") && isSubtype(type, runtimeType)) {
+
+                add(type, new DiscoveryIndex.Entry(
+                        DiscoveryIndex.APPLICATION, Util.toApplicationName(simpleName), className, false));
+            }
+        }
+
+        //
+        // the registry source is generated in the first round that finds something to index, so it gets compiled in
+        // the next round. Classes that show up in later rounds (generated by other processors) are indexed, but
+        // instantiated reflectively
+        //
+
+        if (!registryAttempted && !entries.isEmpty()) {
+
+            registryAttempted = true;
+            mergeExistingIndex();
+            writeRegistry();
+        }
+
+        return isClaimable(annotations);
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return true if no other processor on the processor path supports any of the given annotations. Claiming them
+     * is then harmless, and spares the compilation a warning about annotations no processor claimed.
+     */
+    private boolean isClaimable(Set<? extends TypeElement> annotations) {
+
+        for(TypeElement a: annotations) {
+
+            String name = a.getQualifiedName().toString();
+
+            for(String pattern: otherProcessorsAnnotationTypes) {
+
+                if (supports(pattern, name)) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * The processors are not instantiated: their @SupportedAnnotationTypes is read from the class. A processor whose
+     * class cannot be loaded or does not carry the annotation is assumed to support all annotation types.
+     */
+    private Set<String> readOtherProcessorsAnnotationTypes() {
+
+        Set<String> result = new TreeSet<>();
+
+        ClassLoader classLoader = getClass().getClassLoader();
+
+        try {
+
+            Enumeration<URL> urls = classLoader.getResources(PROCESSOR_SERVICE_RESOURCE_NAME);
+
+            while(urls.hasMoreElements()) {
+
+                try(BufferedReader br = new BufferedReader(
+                        new InputStreamReader(urls.nextElement().openStream(), StandardCharsets.UTF_8))) {
+
+                    String line;
+
+                    while((line = br.readLine()) != null) {
+
+                        int i = line.indexOf('#');
+                        String className = (i == -1 ? line : line.substring(0, i)).trim();
+
+                        if (className.isEmpty() || className.equals(getClass().getName())) {
+                            continue;
+                        }
+
+                        SupportedAnnotationTypes supported = null;
+
+                        try {
+
+                            supported = Class.forName(className, false, classLoader)
+                                    .getAnnotation(SupportedAnnotationTypes.class);
+                        }
+                        catch(ClassNotFoundException | LinkageError e) {
+
+                            // unknown, handled below
+                        }
+
+                        if (supported == null) {
+
+                            result.add("*");
+                        }
+                        else {
+
+                            result.addAll(Arrays.asList(supported.value()));
+                        }
+                    }
+                }
+            }
+        }
+        catch(IOException e) {
+
+            result.add("*");
+        }
+
+        return result;
+    }
+
+    /**
+     * Only public, concrete, top-level classes that live in a named package can be found by the class path scan, so
+     * only those are indexed.
+     */
+    private boolean isCandidate(Element e) {
+
+        if (e.getKind() != ElementKind.CLASS) {
+            return false;
+        }
+
+        Set<Modifier> modifiers = e.getModifiers();
+
+        if (!modifiers.contains(Modifier.PUBLIC) || modifiers.contains(Modifier.ABSTRACT)) {
+            return false;
+        }
+
+        Element enclosing = e.getEnclosingElement();
+
+        return enclosing instanceof PackageElement && !((PackageElement)enclosing).isUnnamed();
+    }
+
+    private boolean isSubtype(TypeElement type, TypeElement supertype) {
+
+        if (supertype == null) {
+            return false;
+        }
+
+        Types types = processingEnv.getTypeUtils();
+        TypeMirror erasure = types.erasure(supertype.asType());
+        return types.isAssignable(types.erasure(type.asType()), erasure);
+    }
+
+    private void add(TypeElement type, DiscoveryIndex.Entry entry) {
+
+        entries.put(entry.getClassName(), entry);
+
+        if (hasPublicNoArgumentConstructor(type)) {
+
+            instantiable.add(entry.getClassName());
+        }
+    }
+
+    /**
+     * The implicit default constructor of a public class is public, and it is present among the enclosed elements. A
+     * constructor that declares checked exceptions cannot be invoked from the registry's factory methods, which declare
+     * none, so the class is instantiated reflectively.
+     */
+    private boolean hasPublicNoArgumentConstructor(TypeElement type) {
+
+        for(ExecutableElement c: ElementFilter.constructorsIn(type.getEnclosedElements())) {
+
+            if (c.getParameters().isEmpty() && c.getModifiers().contains(Modifier.PUBLIC)) {
+                return !throwsCheckedExceptions(c);
+            }
+        }
+
+        return false;
+    }
+
+    private boolean throwsCheckedExceptions(ExecutableElement e) {
+
+        Types types = processingEnv.getTypeUtils();
+        TypeMirror runtimeException =
+                processingEnv.getElementUtils().getTypeElement(RuntimeException.class.getName()).asType();
+        TypeMirror error = processingEnv.getElementUtils().getTypeElement(Error.class.getName()).asType();
+
+        for(TypeMirror t: e.getThrownTypes()) {
+
+            if (!types.isAssignable(t, runtimeException) && !types.isAssignable(t, error)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Preserves the entries of an existing index (incremental compilation), as long as their classes still exist.
+     */
+    private void mergeExistingIndex() {
+
+        Filer filer = processingEnv.getFiler();
+
+        try {
+
+            FileObject existing = filer.getResource(StandardLocation.CLASS_OUTPUT, "", DiscoveryIndex.INDEX_RESOURCE_NAME);
+
+            DiscoveryIndex previous = new DiscoveryIndex();
+
+            try(InputStream is = existing.openInputStream()) {
+
+                previous.read(new InputStreamReader(is, StandardCharsets.UTF_8), false);
+            }
+
+            for(DiscoveryIndex.Entry e: previous.getEntries()) {
+
+                if (entries.containsKey(e.getClassName())) {
+                    continue;
+                }
+
+                TypeElement type = processingEnv.getElementUtils().getTypeElement(e.getClassName());
+
+                if (type != null) {
+
+                    add(type, e);
+                }
+            }
+        }
+        catch(IOException e) {
+
+            // no previous index, that is fine
+        }
+    }
+
+    private void writeIndex() {
+
+        Filer filer = processingEnv.getFiler();
+
+        try {
+
+            FileObject index = filer.createResource(StandardLocation.CLASS_OUTPUT, "", DiscoveryIndex.INDEX_RESOURCE_NAME);
+            indexUri = index.toUri();
+
+            try(OutputStream os = index.openOutputStream()) {
+
+                PrintWriter pw = new PrintWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8));
+
+                pw.print("#\n# clad discovery index, generated by " + getClass().getName() + ", do not edit\n#\n");
+
+                for(DiscoveryIndex.Entry e: entries.values()) {
+
+                    pw.print(e + "\n");
+                }
+
+                pw.flush();
+            }
+        }
+        catch(IOException e) {
+
+            processingEnv.getMessager().printMessage(
+                    Diagnostic.Kind.ERROR, "failed to write " + DiscoveryIndex.INDEX_RESOURCE_NAME + ": " + e);
+        }
+    }
+
+    private void writePrerenderedHelp() {
+
+        List<DiscoveryIndex.Entry> all = new ArrayList<>(entries.values());
+        all.addAll(readDependencyIndexes());
+
+        Set<CommandDescriptor> commands = new TreeSet<>();
+
+        for(DiscoveryIndex.Entry e: all) {
+
+            if (DiscoveryIndex.COMMAND.equals(e.getKind())) {
+
+                commands.add(new CommandDescriptor(e.getClassName()));
+            }
+        }
+
+        String commandList = DynamicMacroResolver.renderCommandList(
+                new ArrayList<>(commands), c -> readResource(c.getHelpFilePath()) != null);
+
+        MacroResolver resolver = new CommandListResolver(commandList);
+        String fingerprint = DiscoveryIndex.toCommandFingerprint(all);
+
+        for(DiscoveryIndex.Entry e: entries.values()) {
+
+            if (!DiscoveryIndex.APPLICATION.equals(e.getKind())) {
+                continue;
+            }
+
+            //
+            // the ApplicationRuntimeBase convention
+            //
+
+            String c = e.getClassName();
+            String helpFilePath = c.substring(0, c.lastIndexOf('.')).replace('.', '/') + "/" + e.getName() + ".txt";
+            byte[] help = readResource(helpFilePath);
+
+            if (help == null) {
+
+                processingEnv.getMessager().printMessage(
+                        Diagnostic.Kind.NOTE, helpFilePath + " not available, " + c + " help not pre-rendered");
+                continue;
+            }
+
+            try {
+
+                byte[] rendered = PrerenderedHelp.render(help, resolver, fingerprint);
+                write(PrerenderedHelp.toResourceName(helpFilePath), rendered);
+            }
+            catch(Exception ex) {
+
+                processingEnv.getMessager().printMessage(
+                        Diagnostic.Kind.ERROR, "failed to pre-render " + helpFilePath + ": " + ex);
+            }
+        }
+    }
+
+    /**
+     * @return the entries of the index resources on the processor's class path, other than the one being generated.
+     */
+    private List<DiscoveryIndex.Entry> readDependencyIndexes() {
+
+        DiscoveryIndex dependencies = new DiscoveryIndex();
+
+        try {
+
+            Enumeration<URL> urls = getClass().getClassLoader().getResources(DiscoveryIndex.INDEX_RESOURCE_NAME);
+
+            while(urls.hasMoreElements()) {
+
+                URL url = urls.nextElement();
+
+                if (indexUri != null && "file".equals(url.getProtocol()) &&
+                        Paths.get(url.toURI()).normalize().equals(Paths.get(indexUri).normalize())) {
+                    continue;
+                }
+
+                try(InputStream is = url.openStream()) {
+
+                    boolean fromJar = "jar".equals(url.getProtocol());
+                    dependencies.read(new InputStreamReader(is, StandardCharsets.UTF_8), fromJar);
+                }
+            }
+        }
+        catch(IOException | URISyntaxException | RuntimeException e) {
+
+            processingEnv.getMessager().printMessage(
+                    Diagnostic.Kind.WARNING, "failed to read the dependencies' discovery indexes: " + e);
+        }
+
+        return dependencies.getEntries();
+    }
+
+    /**
+     * @return the content of the resource, from the class output directory or from the processor's class path, or
+     * null if the resource is not available.
+     */
+    private byte[] readResource(String resourceName) {
+
+        InputStream is;
+
+        try {
+
+            Filer filer = processingEnv.getFiler();
+            is = filer.getResource(StandardLocation.CLASS_OUTPUT, "", resourceName).openInputStream();
+        }
+        catch(IOException | RuntimeException e) {
+
+            is = getClass().getClassLoader().getResourceAsStream(resourceName);
+        }
+
+        if (is == null) {
+
+            return null;
+        }
+
+        try {
+
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int r;
+
+            while((r = is.read(buffer)) != -1) {
+
+                baos.write(buffer, 0, r);
+            }
+
+            return baos.toByteArray();
+        }
+        catch(IOException e) {
+
+            return null;
+        }
+        finally {
+
+            try {
+                is.close();
+            }
+            catch(IOException e) {
+                // ignore
+            }
+        }
+    }
+
+    private void writeRegistry() {
+
+        String option = processingEnv.getOptions().get(REGISTRY_OPTION_NAME);
+        String className;
+
+        if (option != null && !option.trim().isEmpty()) {
+
+            className = option.trim();
+        }
+        else {
+
+            className = toDefaultRegistryClassName(entries.keySet());
+        }
+
+        //
+        // another module's registry with the same name would hide one of the two from ServiceLoader, and from the
+        // native-image configuration; a registry generated into the same output directory is ours, from a previous
+        // compilation
+        //
+
+        if (processingEnv.getElementUtils().getTypeElement(className) != null &&
+                !readRegisteredProviders().contains(className)) {
+
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "registry class " + className + " already exists on the class path, specify a unique " +
+                            "name with -A" + REGISTRY_OPTION_NAME + "=<class-name>");
+            return;
+        }
+
+        int i = className.lastIndexOf('.');
+        String packageName = i < 0 ? null : className.substring(0, i);
+        String simpleClassName = className.substring(i + 1);
+
+        List<Element> originatingElements = new ArrayList<>();
+
+        for(String c: instantiable) {
+
+            originatingElements.add(processingEnv.getElementUtils().getTypeElement(c));
+        }
+
+        try {
+
+            JavaFileObject source = processingEnv.getFiler().createSourceFile(
+                    className, originatingElements.toArray(new Element[originatingElements.size()]));
+
+            try(Writer w = source.openWriter()) {
+
+                PrintWriter pw = new PrintWriter(w);
+
+                if (packageName != null) {
+                    pw.print("package " + packageName + ";\n\n");
+                }
+
+                pw.print("/**\n * Generated by " + getClass().getName() + ", do not edit.\n */\n");
+                pw.print("public class " + simpleClassName + " implements " + Registry.class.getName() + " {\n\n");
+                pw.print("    @Override\n");
+                pw.print("    public " + Command.class.getName() + " newCommand(String className) {\n\n");
+                printSwitch(pw, DiscoveryIndex.COMMAND);
+                pw.print("    }\n\n");
+                pw.print("    @Override\n");
+                pw.print("    public " + ApplicationRuntime.class.getName() +
+                        " newApplicationRuntime(String className) {\n\n");
+                printSwitch(pw, DiscoveryIndex.APPLICATION);
+                pw.print("    }\n}\n");
+                pw.flush();
+            }
+
+            registryClassName = className;
+        }
+        catch(IOException e) {
+
+            processingEnv.getMessager().printMessage(
+                    Diagnostic.Kind.ERROR, "failed to generate " + className + ": " + e);
+        }
+    }
+
+    /**
+     * Prints the body of a factory method: a switch on the class name, which instantiates the classes of the given kind.
+     */
+    private void printSwitch(PrintWriter pw, String kind) {
+
+        pw.print("        switch(className) {\n\n");
+
+        for(String c: instantiable) {
+
+            if (kind.equals(entries.get(c).getKind())) {
+
+                pw.print("            case \"" + c + "\":\n");
+                pw.print("                return new " + c + "();\n\n");
+            }
+        }
+
+        pw.print("            default:\n");
+        pw.print("                return null;\n");
+        pw.print("        }\n");
+    }
+
+    /**
+     * Preserves the providers already registered in the same output directory, as long as their classes still exist.
+     */
+    private void writeServiceRegistration() {
+
+        Set<String> providers = new TreeSet<>();
+
+        for(String p: readRegisteredProviders()) {
+
+            if (processingEnv.getElementUtils().getTypeElement(p) != null) {
+
+                providers.add(p);
+            }
+        }
+
+        providers.add(registryClassName);
+
+        StringBuilder sb = new StringBuilder();
+
+        for(String p: providers) {
+            sb.append(p).append('\n');
+        }
+
+        write(REGISTRY_SERVICE_RESOURCE_NAME, sb.toString());
+    }
+
+    /**
+     * @return the Registry providers registered in the output directory, by a previous compilation. May be empty.
+     */
+    private Set<String> readRegisteredProviders() {
+
+        Set<String> providers = new TreeSet<>();
+
+        try {
+
+            FileObject existing = processingEnv.getFiler().getResource(
+                    StandardLocation.CLASS_OUTPUT, "", REGISTRY_SERVICE_RESOURCE_NAME);
+
+            try(BufferedReader br = new BufferedReader(
+                    new InputStreamReader(existing.openInputStream(), StandardCharsets.UTF_8))) {
+
+                String line;
+
+                while((line = br.readLine()) != null) {
+
+                    int i = line.indexOf('#');
+                    line = (i < 0 ? line : line.substring(0, i)).trim();
+
+                    if (!line.isEmpty()) {
+
+                        providers.add(line);
+                    }
+                }
+            }
+        }
+        catch(IOException e) {
+
+            // no previous registration, that is fine
+        }
+
+        return providers;
+    }
+
+    private void writeNativeImageConfiguration() {
+
+        String directory = NATIVE_IMAGE_DIRECTORY + registryClassName + "/";
+
+        //
+        // reflection is still needed when the registry is disabled, and for the indexed classes it does not cover
+        //
+
+        StringBuilder sb = new StringBuilder("[\n");
+
+        sb.append("  {\n    \"name\" : \"").append(registryClassName).append("\",\n");
+        sb.append("    \"methods\" : [ { \"name\" : \"<init>\", \"parameterTypes\" : [] } ]\n  }");
+
+        for(DiscoveryIndex.Entry e: entries.values()) {
+
+            sb.append(",\n  {\n    \"name\" : \"").append(e.getClassName()).append("\"");
+
+            if (instantiable.contains(e.getClassName())) {
+
+                sb.append(",\n    \"methods\" : [ { \"name\" : \"<init>\", \"parameterTypes\" : [] } ]");
+            }
+
+            sb.append("\n  }");
+        }
+
+        sb.append("\n]\n");
+
+        write(directory + "reflect-config.json", sb.toString());
+
+        List<String> resources = new ArrayList<>();
+
+        resources.add(DiscoveryIndex.INDEX_RESOURCE_NAME);
+        resources.add(REGISTRY_SERVICE_RESOURCE_NAME);
+
+        for(DiscoveryIndex.Entry e: entries.values()) {
+
+            String c = e.getClassName();
+            resources.add(c.substring(0, c.lastIndexOf('.')).replace('.', '/') + "/" + e.getName() + ".txt");
+        }
+
+        sb = new StringBuilder("{\n  \"resources\" : {\n    \"includes\" : [\n");
+
+        for(int i = 0; i < resources.size(); i ++) {
+
+            sb.append("      { \"pattern\" : \"\\\\Q").append(resources.get(i)).append("\\\\E\" }");
+            sb.append(i < resources.size() - 1 ? ",\n" : "\n");
+        }
+
+        sb.append("    ]\n  }\n}\n");
+
+        write(directory + "resource-config.json", sb.toString());
+    }
+
+    private void write(String resourceName, String content) {
+
+        write(resourceName, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void write(String resourceName, byte[] content) {
+
+        try {
+
+            FileObject f = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", resourceName);
+
+            try(OutputStream os = f.openOutputStream()) {
+
+                os.write(content);
+            }
+        }
+        catch(IOException e) {
+
+            processingEnv.getMessager().printMessage(
+                    Diagnostic.Kind.ERROR, "failed to write " + resourceName + ": " + e);
+        }
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+    /**
+     * Resolves COMMANDS to the command list known at build time, and leaves the other macros unresolved, as
+     * DynamicMacroResolver does.
+     */
+    private static class CommandListResolver implements MacroResolver {
+
+        private String commandList;
+
+        CommandListResolver(String commandList) {
+
+            this.commandList = commandList;
+        }
+
+        @Override
+        public String resolveMacro(String macroName) {
+
+            return DynamicMacroResolver.COMMANDS.equals(macroName) ? commandList : null;
+        }
+    }
+}
@@ -0,0 +1,359 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.clad.discovery;
+
+import io.novaordis.clad.Util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lists the entries of a JAR by reading the ZIP end-of-central-directory and central directory records directly,
+ * through a memory mapping of the file region that contains them. Unlike JarFile.entries(), no JarEntry is built, and
+ * entry names are matched against the filter on their raw bytes, so a String is created only for the entries that are
+ * accepted.
+ *
+ * The file channel is closed and the mappings are released before scan() returns, whether it succeeds or not. The
+ * JDK does not offer a public API to unmap a MappedByteBuffer, so the mappings are released through the JDK internal
+ * cleaner, when available; if not, they are left to the garbage collector.
+ *
+ * ZIP64 archives are supported. Multi-disk archives are not, and they are not valid JARs anyway.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+public class JarScanner {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final int EOCD_SIGNATURE = 0x06054b50;
+    private static final int EOCD_LENGTH = 22;
+    private static final int ZIP64_EOCD_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int ZIP64_EOCD_LOCATOR_LENGTH = 20;
+    private static final int ZIP64_EOCD_SIGNATURE = 0x06064b50;
+    private static final int ZIP64_EOCD_LENGTH = 56;
+    private static final int CENTRAL_DIRECTORY_HEADER_SIGNATURE = 0x02014b50;
+    private static final int CENTRAL_DIRECTORY_HEADER_LENGTH = 46;
+    private static final int MAX_COMMENT_LENGTH = 0xffff;
+
+    private static final byte[] CLASS_EXTENSION = ".class".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * Accepts all class files.
+     */
+    public static final EntryNameFilter CLASS_FILES = new EntryNameFilter() {
+
+        @Override
+        public boolean accept(byte[] name, int length) {
+
+            return endsWith(name, length, CLASS_EXTENSION);
+        }
+    };
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return a filter that accepts the class files that live in a named package and whose simple name ends with one of
+     * the given suffixes, without being just the suffix.
+     */
+    public static EntryNameFilter suffixFilter(String... suffixes) {
+
+        final byte[][] endings = new byte[suffixes.length][];
+
+        for(int i = 0; i < suffixes.length; i ++) {
+
+            endings[i] = (suffixes[i] + ".class").getBytes(StandardCharsets.US_ASCII);
+        }
+
+        return new EntryNameFilter() {
+
+            @Override
+            public boolean accept(byte[] name, int length) {
+
+                for(byte[] ending: endings) {
+
+                    int start = length - ending.length;
+
+                    if (start > 1 && endsWith(name, length, ending) && name[start - 1] != '/') {
+
+                        for(int i = start - 2; i > 0; i --) {
+
+                            if (name[i] == '/') {
+                                return true;
+                            }
+                        }
+                    }
+                }
+
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @return the fully qualified names of the classes whose entries are accepted by the filter, in central directory
+     * order.
+     */
+    public static List<String> getClassNames(File jar, EntryNameFilter filter) throws IOException {
+
+        List<String> entryNames = scan(jar, filter);
+
+        for(int i = 0; i < entryNames.size(); i ++) {
+
+            String n = entryNames.get(i);
+            entryNames.set(i, n.substring(0, n.length() - CLASS_EXTENSION.length).replace('/', '.'));
+        }
+
+        return entryNames;
+    }
+
+    /**
+     * @return the names of the entries accepted by the filter, in central directory order. The names are decoded as
+     * UTF-8, which is what the JDK's jar tool writes.
+     *
+     * @exception IOException if the file cannot be read, or it is not a valid ZIP archive.
+     */
+    public static List<String> scan(File jar, EntryNameFilter filter) throws IOException {
+
+        List<String> result = new ArrayList<>();
+
+        try(FileChannel channel = FileChannel.open(jar.toPath(), StandardOpenOption.READ)) {
+
+            long size = channel.size();
+
+            if (size < EOCD_LENGTH) {
+                throw new IOException(jar + " is not a ZIP archive: too short");
+            }
+
+            //
+            // the end of central directory record is at the end of the file, followed only by an optional comment
+            //
+
+            long tailStart = Math.max(0, size - EOCD_LENGTH - MAX_COMMENT_LENGTH - ZIP64_EOCD_LOCATOR_LENGTH);
+            MappedByteBuffer tail = map(channel, tailStart, size - tailStart);
+
+            long centralDirectoryStart;
+            long centralDirectorySize;
+            long entryCount;
+
+            try {
+
+                int eocd = findEndOfCentralDirectory(tail);
+
+                if (eocd < 0) {
+                    throw new IOException(jar + " is not a ZIP archive: no end of central directory record");
+                }
+
+                entryCount = tail.getShort(eocd + 10) & 0xffff;
+                centralDirectorySize = tail.getInt(eocd + 12) & 0xffffffffL;
+                long centralDirectoryOffset = tail.getInt(eocd + 16) & 0xffffffffL;
+                long eocdPosition = tailStart + eocd;
+
+                int locator = eocd - ZIP64_EOCD_LOCATOR_LENGTH;
+
+                if (locator >= 0 && tail.getInt(locator) == ZIP64_EOCD_LOCATOR_SIGNATURE) {
+
+                    long zip64EocdPosition = tail.getLong(locator + 8);
+
+                    ByteBuffer zip64Eocd = ByteBuffer.allocate(ZIP64_EOCD_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+                    readFully(channel, zip64Eocd, zip64EocdPosition);
+
+                    if (zip64Eocd.getInt(0) != ZIP64_EOCD_SIGNATURE) {
+                        throw new IOException(jar + ": invalid ZIP64 end of central directory record");
+                    }
+
+                    entryCount = zip64Eocd.getLong(32);
+                    centralDirectorySize = zip64Eocd.getLong(40);
+                    centralDirectoryOffset = zip64Eocd.getLong(48);
+                    eocdPosition = zip64EocdPosition;
+                }
+
+                //
+                // the central directory immediately precedes the end of central directory record; computing its start
+                // this way also accounts for archives with a prefix (self-extracting, launcher scripts)
+                //
+
+                centralDirectoryStart = eocdPosition - centralDirectorySize;
+
+                if (centralDirectoryStart < 0 || centralDirectoryOffset > centralDirectoryStart) {
+                    throw new IOException(jar + ": invalid central directory location");
+                }
+            }
+            finally {
+
+                Util.unmap(tail);
+            }
+
+            if (centralDirectorySize == 0) {
+                return result;
+            }
+
+            if (centralDirectorySize > Integer.MAX_VALUE) {
+                throw new IOException(jar + ": central directory too large (" + centralDirectorySize + " bytes)");
+            }
+
+            MappedByteBuffer cd = map(channel, centralDirectoryStart, centralDirectorySize);
+
+            try {
+
+                readCentralDirectory(jar, cd, entryCount, filter, result);
+            }
+            finally {
+
+                Util.unmap(cd);
+            }
+        }
+
+        return result;
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    private JarScanner() {
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    static boolean endsWith(byte[] name, int length, byte[] ending) {
+
+        int start = length - ending.length;
+
+        if (start < 0) {
+            return false;
+        }
+
+        for(int i = 0; i < ending.length; i ++) {
+
+            if (name[start + i] != ending[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return the position of the end of central directory record within the buffer, or -1.
+     */
+    private static int findEndOfCentralDirectory(ByteBuffer tail) {
+
+        for(int i = tail.limit() - EOCD_LENGTH; i >= 0; i --) {
+
+            //
+            // the comment length must also be consistent with the record's position, a comment may contain the
+            // signature bytes
+            //
+
+            if (tail.getInt(i) == EOCD_SIGNATURE &&
+                    i + EOCD_LENGTH + (tail.getShort(i + 20) & 0xffff) == tail.limit()) {
+
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private static void readCentralDirectory(
+            File jar, ByteBuffer cd, long entryCount, EntryNameFilter filter, List<String> result) throws IOException {
+
+        // reused across entries, only grows if an unusually long name is encountered
+        byte[] name = new byte[256];
+
+        int position = 0;
+        int limit = cd.limit();
+
+        for(long i = 0; i < entryCount; i ++) {
+
+            if (position + CENTRAL_DIRECTORY_HEADER_LENGTH > limit ||
+                    cd.getInt(position) != CENTRAL_DIRECTORY_HEADER_SIGNATURE) {
+
+                throw new IOException(jar + ": invalid central directory header at offset " + position);
+            }
+
+            int nameLength = cd.getShort(position + 28) & 0xffff;
+            int extraLength = cd.getShort(position + 30) & 0xffff;
+            int commentLength = cd.getShort(position + 32) & 0xffff;
+            int nameStart = position + CENTRAL_DIRECTORY_HEADER_LENGTH;
+
+            if (nameStart + nameLength > limit) {
+                throw new IOException(jar + ": truncated central directory entry at offset " + position);
+            }
+
+            if (nameLength > name.length) {
+                name = new byte[Math.max(nameLength, name.length * 2)];
+            }
+
+            for(int j = 0; j < nameLength; j ++) {
+
+                name[j] = cd.get(nameStart + j);
+            }
+
+            if (filter.accept(name, nameLength)) {
+
+                result.add(new String(name, 0, nameLength, StandardCharsets.UTF_8));
+            }
+
+            position = nameStart + nameLength + extraLength + commentLength;
+        }
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, long position, long size) throws IOException {
+
+        MappedByteBuffer b = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+        b.order(ByteOrder.LITTLE_ENDIAN);
+        return b;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer b, long position) throws IOException {
+
+        while(b.hasRemaining()) {
+
+            if (channel.read(b, position + b.position()) < 0) {
+                throw new IOException("unexpected end of file");
+            }
+        }
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+    public interface EntryNameFilter {
+
+        /**
+         * @param name the raw bytes of the entry name. Only the first 'length' bytes are valid, and the array is reused
+         *             between invocations, so it must not be retained.
+         */
+        boolean accept(byte[] name, int length);
+    }
+
+}
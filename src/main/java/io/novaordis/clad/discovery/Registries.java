@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.clad.discovery;
+
+import io.novaordis.clad.application.ApplicationRuntime;
+import io.novaordis.clad.command.Command;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+/**
+ * The union of all Registry implementations available on the class path, loaded once per JVM. Command and
+ * ApplicationRuntime classes covered by a registry are instantiated through it, the others reflectively. If more than
+ * one registry covers a class, the first one found on the class path instantiates it.
+ *
+ * The registries can be ignored with -Dclad.disable.registry=true.
+ *
+ * @see Registry
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+public class Registries {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final Logger log = LoggerFactory.getLogger(Registries.class);
+
+    public static final String DISABLE_REGISTRY_SYSTEM_PROPERTY_NAME = "clad.disable.registry";
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    private static volatile List<Registry> registries;
+
+    /**
+     * @return a new instance of the given Command class, or null if no registry covers it.
+     *
+     * @exception RuntimeException thrown by the constructor.
+     */
+    public static Command newCommand(String className) {
+
+        if (Boolean.getBoolean(DISABLE_REGISTRY_SYSTEM_PROPERTY_NAME)) {
+            return null;
+        }
+
+        for(Registry r: load()) {
+
+            Command c = r.newCommand(className);
+
+            if (c != null) {
+                return c;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @return a new instance of the given ApplicationRuntime class, or null if no registry covers it.
+     *
+     * @exception RuntimeException thrown by the constructor.
+     */
+    public static ApplicationRuntime newApplicationRuntime(String className) {
+
+        if (Boolean.getBoolean(DISABLE_REGISTRY_SYSTEM_PROPERTY_NAME)) {
+            return null;
+        }
+
+        for(Registry r: load()) {
+
+            ApplicationRuntime a = r.newApplicationRuntime(className);
+
+            if (a != null) {
+                return a;
+            }
+        }
+
+        return null;
+    }
+
+    private static List<Registry> load() {
+
+        List<Registry> result = registries;
+
+        if (result != null) {
+            return result;
+        }
+
+        synchronized (Registries.class) {
+
+            if (registries != null) {
+                return registries;
+            }
+
+            result = new ArrayList<>();
+
+            Iterator<Registry> i = ServiceLoader.load(Registry.class, Registries.class.getClassLoader()).iterator();
+
+            while(true) {
+
+                try {
+
+                    if (!i.hasNext()) {
+                        break;
+                    }
+
+                    Registry r = i.next();
+                    result.add(r);
+                    log.debug("loaded " + r.getClass().getName());
+                }
+                catch(ServiceConfigurationError e) {
+
+                    //
+                    // a broken registry only means reflective instantiation for the classes it covers
+                    //
+
+                    log.warn("failed to load command registry: " + e.getMessage());
+                }
+            }
+
+            registries = result = Collections.unmodifiableList(result);
+            return result;
+        }
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    private Registries() {
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.clad.discovery;
+
+import io.novaordis.clad.application.ApplicationRuntime;
+import io.novaordis.clad.command.Command;
+
+/**
+ * A build-time generated factory for the Command and ApplicationRuntime implementations of a module, which allows
+ * instantiating them without reflection. The implementations are generated by DiscoveryIndexProcessor and registered
+ * as services (META-INF/services/io.novaordis.clad.discovery.Registry).
+ *
+ * The factory methods switch on the class name and invoke the constructor directly, so loading a registry neither
+ * loads the classes it covers nor links a call site per class: only the class that is instantiated is.
+ *
+ * @see Registries
+ * @see DiscoveryIndexProcessor
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+public interface Registry {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @param className the fully qualified name of a Command class.
+     *
+     * @return a new instance of the class, or null if this registry does not cover it.
+     */
+    Command newCommand(String className);
+
+    /**
+     * @param className the fully qualified name of an ApplicationRuntime class.
+     *
+     * @return a new instance of the class, or null if this registry does not cover it.
+     */
+    ApplicationRuntime newApplicationRuntime(String className);
+
+}
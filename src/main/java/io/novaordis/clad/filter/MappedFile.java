@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.clad.filter;
+
+import io.novaordis.clad.Util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Read access to a file of any size through a memory mapped window, which is moved as the file is read. A mapping
+ * cannot be larger than 2 GB, so the files that are larger are read a window at a time.
+ *
+ * The previous window is unmapped when the window moves, and the current one when the instance is closed, so a buffer
+ * returned by window() must not be used after the next window() or close() call. The channel is not closed.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+final class MappedFile implements Closeable {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private FileChannel channel;
+    private long size;
+    private int windowSize;
+
+    private MappedByteBuffer window;
+    private long windowStart;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    MappedFile(FileChannel channel, int windowSize) throws IOException {
+
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("invalid window size " + windowSize);
+        }
+
+        this.channel = channel;
+        this.size = channel.size();
+        this.windowSize = windowSize;
+    }
+
+    // Closeable implementation ----------------------------------------------------------------------------------------
+
+    @Override
+    public void close() {
+
+        if (window != null) {
+
+            Util.unmap(window);
+            window = null;
+        }
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @Override
+    public String toString() {
+
+        return "MappedFile[" + size + " bytes" +
+                (window == null ? "" : ", window " + windowStart + "-" + getWindowEnd()) + "]";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    long size() {
+
+        return size;
+    }
+
+    /**
+     * Moves the window, if necessary, so it contains the bytes between position and position + length, or up to the
+     * end of the file. The byte at file position p is at index p - getWindowStart() in the returned buffer.
+     *
+     * @param length must not be larger than the window size.
+     */
+    MappedByteBuffer window(long position, int length) throws IOException {
+
+        if (position < 0 || position > size) {
+            throw new IndexOutOfBoundsException("position " + position + " outside the file (" + size + " bytes)");
+        }
+
+        if (length > windowSize) {
+            throw new IllegalArgumentException("length " + length + " larger than the window size " + windowSize);
+        }
+
+        long end = Math.min(position + length, size);
+
+        if (window == null || position < windowStart || end > getWindowEnd()) {
+
+            close();
+
+            window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(windowSize, size - position));
+            windowStart = position;
+        }
+
+        return window;
+    }
+
+    /**
+     * @return the file position of the first byte of the current window.
+     */
+    long getWindowStart() {
+
+        return windowStart;
+    }
+
+    /**
+     * @return the file position that follows the last byte of the current window.
+     */
+    long getWindowEnd() {
+
+        return windowStart + window.limit();
+    }
+
+    /**
+     * @return the position of the first occurrence of the byte in the [from, to) file region, or -1.
+     */
+    long indexOf(byte b, long from, long to) throws IOException {
+
+        for(long position = from; position < to; ) {
+
+            MappedByteBuffer w = window(position, 1);
+
+            int start = (int)(position - windowStart);
+            int end = (int)(Math.min(to, getWindowEnd()) - windowStart);
+
+            for(int i = start; i < end; i ++) {
+
+                if (w.get(i) == b) {
+                    return windowStart + i;
+                }
+            }
+
+            position = windowStart + end;
+        }
+
+        return -1;
+    }
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,398 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.clad.filter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * One of TimeOrderedMerge's inputs: reads the channel a record at a time. A record is a line with a timestamp,
+ * followed by the lines without one; the lines that precede the first record are skipped.
+ *
+ * With read-ahead, a background thread fills the next buffers while the current one is consumed. The buffers are
+ * recycled, so the memory used is READ_AHEAD_BUFFERS times the buffer size, plus the longest record.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+final class MergeInput implements Closeable {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final Logger log = LoggerFactory.getLogger(MergeInput.class);
+
+    // one being consumed, one being filled, one ready
+    static final int READ_AHEAD_BUFFERS = 3;
+
+    // queued by the read-ahead thread after the last buffer
+    private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private String name;
+    private ReadableByteChannel channel;
+    private TimestampParser parser;
+    private int timestampOffset;
+
+    // null without read-ahead
+    private BlockingQueue<ByteBuffer> filled;
+    private BlockingQueue<ByteBuffer> free;
+    private Thread reader;
+    private volatile IOException readFailure;
+
+    private ByteBuffer current;
+    private boolean eof;
+
+    //
+    // the current record, the first line of the next record, and the line being read; all lines end with '\n'
+    //
+
+    private byte[] record;
+    private int recordLength;
+    private long timestamp;
+
+    private byte[] next;
+    private int nextLength;
+    private long nextTimestamp;
+    private boolean hasNext;
+
+    private byte[] line;
+    private int lineLength;
+
+    private boolean started;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    /**
+     * @param readAhead whether to read on a background thread, started with the instance.
+     */
+    MergeInput(String name, ReadableByteChannel channel, TimestampParser parser, int timestampOffset,
+               int bufferSize, boolean readAhead) {
+
+        this.name = name;
+        this.channel = channel;
+        this.parser = parser;
+        this.timestampOffset = timestampOffset;
+
+        this.record = new byte[256];
+        this.next = new byte[256];
+        this.line = new byte[256];
+
+        if (!readAhead) {
+
+            this.current = ByteBuffer.allocate(bufferSize);
+            this.current.flip();
+            return;
+        }
+
+        this.free = new ArrayBlockingQueue<>(READ_AHEAD_BUFFERS);
+        this.filled = new ArrayBlockingQueue<>(READ_AHEAD_BUFFERS + 1);
+
+        for(int i = 0; i < READ_AHEAD_BUFFERS; i ++) {
+            free.add(ByteBuffer.allocate(bufferSize));
+        }
+
+        this.reader = new Thread(new ReadAhead(), "clad read-ahead " + name);
+        this.reader.setDaemon(true);
+        this.reader.start();
+    }
+
+    // Closeable implementation ----------------------------------------------------------------------------------------
+
+    /**
+     * Stops the read-ahead thread, if any, and closes the channel.
+     */
+    @Override
+    public void close() throws IOException {
+
+        if (reader != null) {
+            reader.interrupt();
+        }
+
+        channel.close();
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @Override
+    public String toString() {
+
+        return name;
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    /**
+     * Reads the next record.
+     *
+     * @return false if there are no more records.
+     */
+    boolean advance() throws IOException {
+
+        if (!started) {
+
+            started = true;
+
+            while(!hasNext && readLine()) {
+
+                readNext();
+            }
+        }
+
+        if (!hasNext) {
+            return false;
+        }
+
+        byte[] b = record;
+        record = next;
+        recordLength = nextLength;
+        timestamp = nextTimestamp;
+        next = b;
+        hasNext = false;
+
+        while(!hasNext && readLine()) {
+
+            if (!readNext()) {
+
+                // a continuation line
+                record = ensureCapacity(record, recordLength + lineLength);
+                System.arraycopy(line, 0, record, recordLength, lineLength);
+                recordLength += lineLength;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * The current record, valid until the next advance() call.
+     */
+    byte[] getRecord() {
+
+        return record;
+    }
+
+    int getRecordLength() {
+
+        return recordLength;
+    }
+
+    long getTimestamp() {
+
+        return timestamp;
+    }
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    /**
+     * If the line just read has a timestamp, makes it the first line of the next record.
+     */
+    private boolean readNext() {
+
+        long t = parser.parse(line, timestampOffset, lineLength - 1);
+
+        if (t == TimestampParser.NO_TIMESTAMP) {
+            return false;
+        }
+
+        byte[] b = next;
+        next = line;
+        nextLength = lineLength;
+        nextTimestamp = t;
+        line = b;
+        hasNext = true;
+        return true;
+    }
+
+    /**
+     * Reads the next line, and terminates it with '\n' if it is the last one and it is not terminated.
+     *
+     * @return false at the end of the input.
+     */
+    private boolean readLine() throws IOException {
+
+        lineLength = 0;
+
+        while(true) {
+
+            if ((current == null || !current.hasRemaining()) && !fill()) {
+
+                if (lineLength == 0) {
+                    return false;
+                }
+
+                line = ensureCapacity(line, lineLength + 1);
+                line[lineLength ++] = '\n';
+                return true;
+            }
+
+            byte[] a = current.array();
+            int start = current.arrayOffset() + current.position();
+            int limit = current.arrayOffset() + current.limit();
+
+            int i = start;
+
+            while(i < limit && a[i] != '\n') {
+                i ++;
+            }
+
+            boolean complete = i < limit;
+            int n = i - start + (complete ? 1 : 0);
+
+            line = ensureCapacity(line, lineLength + n);
+            System.arraycopy(a, start, line, lineLength, n);
+            lineLength += n;
+            current.position(current.position() + n);
+
+            if (complete) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Makes the next buffer current.
+     *
+     * @return false at the end of the input.
+     */
+    private boolean fill() throws IOException {
+
+        if (eof) {
+            return false;
+        }
+
+        if (filled == null) {
+
+            current.clear();
+
+            int n;
+
+            while((n = channel.read(current)) == 0) {
+
+                if (!current.hasRemaining()) {
+                    break;
+                }
+            }
+
+            current.flip();
+            eof = n < 0;
+            return !eof;
+        }
+
+        if (current != null) {
+            free.add(current);
+        }
+
+        try {
+
+            current = filled.take();
+        }
+        catch(InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while reading " + name);
+        }
+
+        if (current == END) {
+
+            eof = true;
+
+            if (readFailure != null) {
+                throw new IOException("failed to read " + name, readFailure);
+            }
+
+            return false;
+        }
+
+        return true;
+    }
+
+    private static byte[] ensureCapacity(byte[] a, int capacity) {
+
+        return capacity <= a.length ? a : Arrays.copyOf(a, Math.max(capacity, a.length * 2));
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+    /**
+     * Fills the free buffers, until the end of the input or until the input is closed.
+     */
+    private class ReadAhead implements Runnable {
+
+        @Override
+        public void run() {
+
+            try {
+
+                int n = 0;
+
+                while(n >= 0) {
+
+                    ByteBuffer b = free.take();
+                    b.clear();
+
+                    while(b.hasRemaining() && (n = channel.read(b)) >= 0) {
+                        // keep filling, large reads are cheaper
+                    }
+
+                    b.flip();
+
+                    if (b.hasRemaining()) {
+                        filled.add(b);
+                    }
+                    else {
+                        free.add(b);
+                    }
+                }
+            }
+            catch(InterruptedException e) {
+
+                log.debug(name + " read-ahead interrupted");
+            }
+            catch(IOException e) {
+
+                if (Thread.currentThread().isInterrupted()) {
+
+                    log.debug(name + " read-ahead interrupted: " + e);
+                }
+                else {
+
+                    readFailure = e;
+                }
+            }
+            finally {
+
+                filled.add(END);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,359 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.clad.filter;
+
+import io.novaordis.clad.option.TimestampOption;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Merges time sorted inputs (logs, load test results from several hosts) into one time sorted stream, restricted to a
+ * time range. The records - see TimeRangeFilter - are written whole, in timestamp order; records with the same
+ * timestamp are written in the order of the inputs. The lines that precede an input's first record are not written,
+ * and the last record of an input is terminated with a new line if it is not.
+ *
+ * Files start at the first record in range, found with TimeRangeFilter.seek(), and are not read past the first record
+ * past the end of the range. Each input is read with large reads, by a read-ahead thread, into a fixed number of
+ * recycled buffers, and the next record is chosen with a heap of input indexes keyed by the records' timestamps. The
+ * memory used depends on the number of inputs, the buffer size and the longest record, not on the size of the inputs.
+ *
+ * Records with relative timestamps (HH:mm:ss) are recognized if the range has a reference day, see
+ * TimeRangeFilter.setReferenceDay().
+ *
+ * Instances are not thread-safe.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+public class TimeOrderedMerge {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    public static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private TimeRangeFilter range;
+
+    private int bufferSize;
+
+    private boolean readAhead;
+
+    // the heap: input indexes, ordered by the timestamps of the inputs' current records
+    private int[] heap;
+    private int heapSize;
+    private long[] keys;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    /**
+     * @param from the start of the range, may be null.
+     * @param to the end of the range, may be null.
+     *
+     * @see TimeRangeFilter#TimeRangeFilter(TimestampOption, TimestampOption)
+     */
+    public TimeOrderedMerge(TimestampOption from, TimestampOption to) {
+
+        this(new TimeRangeFilter(from, to));
+    }
+
+    /**
+     * @param range provides the range, the time zone, the timestamp offset and the reference day.
+     */
+    public TimeOrderedMerge(TimeRangeFilter range) {
+
+        if (range == null) {
+            throw new IllegalArgumentException("null range");
+        }
+
+        this.range = range;
+        this.bufferSize = DEFAULT_BUFFER_SIZE;
+        this.readAhead = true;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    public TimeRangeFilter getRange() {
+
+        return range;
+    }
+
+    /**
+     * @param bufferSize the size of the read buffers (each input uses MergeInput.READ_AHEAD_BUFFERS of them, or one
+     *                   without read-ahead) and of the output buffer.
+     */
+    public void setBufferSize(int bufferSize) {
+
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("invalid buffer size " + bufferSize);
+        }
+
+        this.bufferSize = bufferSize;
+    }
+
+    public int getBufferSize() {
+
+        return bufferSize;
+    }
+
+    /**
+     * @param readAhead whether each input is read by a background thread (the default), or by the merging thread.
+     */
+    public void setReadAhead(boolean readAhead) {
+
+        this.readAhead = readAhead;
+    }
+
+    public boolean isReadAhead() {
+
+        return readAhead;
+    }
+
+    /**
+     * @return the number of bytes written.
+     */
+    public long merge(List<Path> files, OutputStream out) throws IOException {
+
+        return merge(files, Channels.newChannel(out));
+    }
+
+    /**
+     * @return the number of bytes written.
+     */
+    public long merge(List<Path> files, WritableByteChannel out) throws IOException {
+
+        List<FileChannel> channels = new ArrayList<>();
+
+        try {
+
+            for(Path p: files) {
+
+                channels.add(FileChannel.open(p, StandardOpenOption.READ));
+            }
+
+            return mergeChannels(channels, out);
+        }
+        finally {
+
+            for(FileChannel c: channels) {
+                c.close();
+            }
+        }
+    }
+
+    /**
+     * Merges inputs that are not files, or files that are already open. The FileChannels are positioned at the first
+     * record in range, the other channels are read from their current position. The channels are closed.
+     *
+     * @return the number of bytes written.
+     */
+    public long mergeChannels(List<? extends ReadableByteChannel> channels, WritableByteChannel out)
+            throws IOException {
+
+        List<MergeInput> inputs = new ArrayList<>();
+
+        try {
+
+            for(ReadableByteChannel c: channels) {
+
+                if (c instanceof FileChannel) {
+
+                    FileChannel fc = (FileChannel)c;
+                    fc.position(range.seek(fc));
+                }
+
+                TimestampParser parser = new TimestampParser(range.getZone());
+                parser.setReferenceDay(range.getReferenceDay());
+
+                inputs.add(new MergeInput(
+                        c.toString(), c, parser, range.getTimestampOffset(), bufferSize, readAhead));
+            }
+
+            return mergeInputs(inputs, out);
+        }
+        finally {
+
+            for(MergeInput i: inputs) {
+                i.close();
+            }
+
+            for(ReadableByteChannel c: channels) {
+                c.close();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+
+        return "TimeOrderedMerge" + range;
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private long mergeInputs(List<MergeInput> inputs, WritableByteChannel out) throws IOException {
+
+        heap = new int[inputs.size()];
+        keys = new long[inputs.size()];
+        heapSize = 0;
+
+        for(int i = 0; i < inputs.size(); i ++) {
+
+            if (nextInRange(inputs.get(i))) {
+
+                keys[i] = inputs.get(i).getTimestamp();
+                heap[heapSize ++] = i;
+            }
+        }
+
+        for(int i = heapSize / 2 - 1; i >= 0; i --) {
+            siftDown(i);
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(bufferSize);
+
+        long written = 0;
+
+        while(heapSize > 0) {
+
+            int top = heap[0];
+            MergeInput input = inputs.get(top);
+
+            written += input.getRecordLength();
+            write(input.getRecord(), input.getRecordLength(), buffer, out);
+
+            if (nextInRange(input)) {
+
+                keys[top] = input.getTimestamp();
+            }
+            else {
+
+                heap[0] = heap[-- heapSize];
+            }
+
+            siftDown(0);
+        }
+
+        buffer.flip();
+        drain(buffer, out);
+
+        return written;
+    }
+
+    /**
+     * Advances the input to its next record in range.
+     *
+     * @return false if the input has no more records in range.
+     */
+    private boolean nextInRange(MergeInput input) throws IOException {
+
+        while(input.advance()) {
+
+            long t = input.getTimestamp();
+
+            if (t >= range.getTo()) {
+                return false;
+            }
+
+            if (t >= range.getFrom()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private void siftDown(int i) {
+
+        int e = heap[i];
+
+        while(true) {
+
+            int child = 2 * i + 1;
+
+            if (child >= heapSize) {
+                break;
+            }
+
+            if (child + 1 < heapSize && precedes(heap[child + 1], heap[child])) {
+                child ++;
+            }
+
+            if (!precedes(heap[child], e)) {
+                break;
+            }
+
+            heap[i] = heap[child];
+            i = child;
+        }
+
+        heap[i] = e;
+    }
+
+    /**
+     * @return true if the current record of input a is to be written before the current record of input b.
+     */
+    private boolean precedes(int a, int b) {
+
+        return keys[a] < keys[b] || (keys[a] == keys[b] && a < b);
+    }
+
+    private static void write(byte[] b, int length, ByteBuffer buffer, WritableByteChannel out) throws IOException {
+
+        if (length > buffer.remaining()) {
+
+            buffer.flip();
+            drain(buffer, out);
+            buffer.clear();
+        }
+
+        if (length > buffer.remaining()) {
+
+            drain(ByteBuffer.wrap(b, 0, length), out);
+            return;
+        }
+
+        buffer.put(b, 0, length);
+    }
+
+    private static void drain(ByteBuffer buffer, WritableByteChannel out) throws IOException {
+
+        while(buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
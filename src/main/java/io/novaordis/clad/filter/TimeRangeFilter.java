@@ -0,0 +1,430 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.clad.filter;
+
+import io.novaordis.clad.option.TimestampOption;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+/**
+ * Selects the records of timestamped, line-oriented input (logs, load test results) that fall in a time range,
+ * usually declared with --from/--to TimestampOptions. The range includes its start and excludes its end. A record
+ * is a line that carries a timestamp, in TimestampParser's format, at a fixed offset (0 by default, see
+ * setTimestampOffset()), followed by the lines that do not (stack traces, for example).
+ *
+ * Files sorted by time are filtered without being read in full: seek() binary searches the memory mapped file for the
+ * first record in range, and filter() copies from there, with FileChannel.transferTo(), up to the first record past
+ * the end of the range. A multi-gigabyte file costs a few dozen probes and the read of the range, instead of a full
+ * read. The binary search relies on the order; after the start, records out of order are tolerated: those before the
+ * range are not copied.
+ *
+ * Input that cannot be mapped (a stream, a decompressed file) can be filtered a line at a time, with accept().
+ *
+ * Instances are not thread-safe.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+public class TimeRangeFilter {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // how much of the line the timestamp parser may read: the longest timestamp, and enough to see past a fraction of
+    // a second's milliseconds
+    private static final int TIMESTAMP_WINDOW = TimestampParser.MAX_LENGTH + 5;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private long from;
+    private long to;
+
+    private TimestampParser parser;
+
+    private int timestampOffset;
+
+    private int windowSize;
+
+    // accept() state: whether the current record is in range, and whether a record past the end of the range was seen
+    private boolean accepting;
+    private boolean pastTheEnd;
+
+    // the timestamp of the record nextRecord() found last
+    private long lastTimestamp;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    /**
+     * @param from the start of the range. Null, or an option without value, means the range is not bounded.
+     * @param to the end of the range. Null, or an option without value, means the range is not bounded.
+     *
+     * The timestamps are read in the time zone of the 'from' option, or the 'to' option if 'from' is null.
+     */
+    public TimeRangeFilter(TimestampOption from, TimestampOption to) {
+
+        this(from == null || from.getValue() == null ? Long.MIN_VALUE : from.getEpochMillis(),
+                to == null || to.getValue() == null ? Long.MAX_VALUE : to.getEpochMillis(),
+                from != null ? from.getZone() : to != null ? to.getZone() : ZoneId.systemDefault());
+    }
+
+    /**
+     * @param from the start of the range, in milliseconds since the epoch, inclusive. Long.MIN_VALUE if not bounded.
+     * @param to the end of the range, in milliseconds since the epoch, exclusive. Long.MAX_VALUE if not bounded.
+     * @param zone the time zone the timestamps are read in.
+     */
+    public TimeRangeFilter(long from, long to, ZoneId zone) {
+
+        if (from > to) {
+            throw new IllegalArgumentException("the start of the range (" + from + ") follows its end (" + to + ")");
+        }
+
+        this.from = from;
+        this.to = to;
+        this.parser = new TimestampParser(zone);
+        this.windowSize = MappedFile.DEFAULT_WINDOW_SIZE;
+
+        reset();
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    public long getFrom() {
+
+        return from;
+    }
+
+    public long getTo() {
+
+        return to;
+    }
+
+    public ZoneId getZone() {
+
+        return parser.getZone();
+    }
+
+    /**
+     * @param offset the position of the timestamp in the line, in bytes (or characters, for accept(CharSequence)).
+     */
+    public void setTimestampOffset(int offset) {
+
+        if (offset < 0) {
+            throw new IllegalArgumentException("negative timestamp offset " + offset);
+        }
+
+        this.timestampOffset = offset;
+    }
+
+    public int getTimestampOffset() {
+
+        return timestampOffset;
+    }
+
+    /**
+     * Makes the filter accept records with relative timestamps (HH:mm:ss), resolved against the day.
+     *
+     * @see TimestampParser#setReferenceDay(LocalDate)
+     */
+    public void setReferenceDay(LocalDate day) {
+
+        parser.setReferenceDay(day);
+    }
+
+    /**
+     * @return the day relative timestamps are resolved against, or null if records with relative timestamps are not
+     * recognized.
+     */
+    public LocalDate getReferenceDay() {
+
+        return parser.getReferenceDay();
+    }
+
+    public boolean accept(long epochMillis) {
+
+        return epochMillis >= from && epochMillis < to;
+    }
+
+    /**
+     * Decides on the next line of the input. Lines without a timestamp belong to the record started by the last line
+     * that has one, and are accepted or rejected with it; the lines that precede the first record are accepted only if
+     * the range has no start.
+     *
+     * @param line the line, without the line terminator.
+     */
+    public boolean accept(CharSequence line) {
+
+        return next(parser.parse(line, timestampOffset, line.length()));
+    }
+
+    /**
+     * @see TimeRangeFilter#accept(CharSequence)
+     */
+    public boolean accept(byte[] line, int offset, int length) {
+
+        return next(parser.parse(line, offset + timestampOffset, offset + length));
+    }
+
+    /**
+     * @return true if accept() saw a record past the end of the range. The rest of a time sorted input can be
+     * skipped.
+     */
+    public boolean isPastTheEnd() {
+
+        return pastTheEnd;
+    }
+
+    /**
+     * Resets the accept() state, to filter another input.
+     */
+    public void reset() {
+
+        accepting = from == Long.MIN_VALUE;
+        pastTheEnd = false;
+    }
+
+    /**
+     * Binary searches a time sorted file for the first record in range.
+     *
+     * @return the position of the first line of the first record whose timestamp is not before the start of the
+     * range, or the size of the file if there is none. 0 if the range has no start.
+     */
+    public long seek(FileChannel channel) throws IOException {
+
+        if (from == Long.MIN_VALUE) {
+            return 0L;
+        }
+
+        try(MappedFile file = new MappedFile(channel, windowSize)) {
+
+            return seek(file);
+        }
+    }
+
+    /**
+     * Copies the records in range from a time sorted file, starting with the one seek() finds and ending before the
+     * first record past the end of the range.
+     *
+     * @return the number of bytes written.
+     */
+    public long filter(FileChannel in, WritableByteChannel out) throws IOException {
+
+        try(MappedFile file = new MappedFile(in, windowSize)) {
+
+            long position = from == Long.MIN_VALUE ? 0L : seek(file);
+            long size = file.size();
+
+            long written = 0;
+
+            // the start of the region to be copied, or -1 if the current record is not in range
+            long regionStart = position;
+
+            while(position < size) {
+
+                long lineStart = position;
+                long newLine = file.indexOf((byte)'\n', lineStart, size);
+                position = newLine == -1 ? size : newLine + 1;
+
+                long timestamp = timestamp(file, lineStart, newLine == -1 ? size : newLine);
+
+                if (timestamp == TimestampParser.NO_TIMESTAMP) {
+                    continue;
+                }
+
+                if (timestamp >= to) {
+
+                    position = lineStart;
+                    break;
+                }
+
+                if (timestamp < from && regionStart != -1) {
+
+                    written += transfer(in, regionStart, lineStart, out);
+                    regionStart = -1;
+                }
+                else if (timestamp >= from && regionStart == -1) {
+
+                    regionStart = lineStart;
+                }
+            }
+
+            if (regionStart != -1) {
+                written += transfer(in, regionStart, position, out);
+            }
+
+            return written;
+        }
+    }
+
+    /**
+     * @see TimeRangeFilter#filter(FileChannel, WritableByteChannel)
+     */
+    public long filter(Path file, OutputStream out) throws IOException {
+
+        try(FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+
+            return filter(in, Channels.newChannel(out));
+        }
+    }
+
+    @Override
+    public String toString() {
+
+        return "TimeRangeFilter[" + (from == Long.MIN_VALUE ? "" : from) + ", " + (to == Long.MAX_VALUE ? "" : to) +
+                ")";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    void setWindowSize(int windowSize) {
+
+        this.windowSize = windowSize;
+    }
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    /**
+     * @param timestamp the timestamp of the next line, or NO_TIMESTAMP.
+     */
+    private boolean next(long timestamp) {
+
+        if (timestamp != TimestampParser.NO_TIMESTAMP) {
+
+            accepting = accept(timestamp);
+            pastTheEnd |= timestamp >= to;
+        }
+
+        return accepting;
+    }
+
+    /**
+     * Invariant: the first record that is not before the range starts in [lo, hi), or at 'found'; lo is a line start,
+     * and [hi, found) holds no record. Each probe halves [lo, hi), at the cost of reading the line it lands in, and the
+     * lines without a timestamp that follow it.
+     */
+    private long seek(MappedFile file) throws IOException {
+
+        long lo = 0;
+        long hi = file.size();
+        long found = hi;
+
+        while(lo < hi) {
+
+            long mid = lo + (hi - lo) / 2;
+
+            // the first line that starts at or after mid
+            long lineStart = mid;
+
+            if (mid > lo) {
+
+                long newLine = file.indexOf((byte)'\n', mid - 1, hi);
+                lineStart = newLine == -1 ? hi : newLine + 1;
+            }
+
+            long record = nextRecord(file, lineStart, hi);
+
+            if (record == -1) {
+
+                // no record starts in [mid, hi)
+                hi = mid;
+            }
+            else if (lastTimestamp < from) {
+
+                long newLine = file.indexOf((byte)'\n', record, hi);
+                lo = newLine == -1 ? hi : newLine + 1;
+            }
+            else {
+
+                hi = record;
+                found = record;
+            }
+        }
+
+        return found;
+    }
+
+    /**
+     * @param position a line start.
+     *
+     * @return the start of the first record that starts in [position, limit), or -1. Its timestamp is in lastTimestamp.
+     */
+    private long nextRecord(MappedFile file, long position, long limit) throws IOException {
+
+        while(position < limit) {
+
+            long newLine = file.indexOf((byte)'\n', position, file.size());
+            long lineEnd = newLine == -1 ? file.size() : newLine;
+
+            long timestamp = timestamp(file, position, lineEnd);
+
+            if (timestamp != TimestampParser.NO_TIMESTAMP) {
+
+                lastTimestamp = timestamp;
+                return position;
+            }
+
+            position = lineEnd + 1;
+        }
+
+        return -1;
+    }
+
+    /**
+     * @return the timestamp of the line, or NO_TIMESTAMP.
+     */
+    private long timestamp(MappedFile file, long lineStart, long lineEnd) throws IOException {
+
+        long position = lineStart + timestampOffset;
+
+        if (position >= lineEnd) {
+            return TimestampParser.NO_TIMESTAMP;
+        }
+
+        MappedByteBuffer window = file.window(position, TIMESTAMP_WINDOW);
+
+        long limit = Math.min(lineEnd, file.getWindowEnd());
+
+        return parser.parse(window, (int)(position - file.getWindowStart()), (int)(limit - file.getWindowStart()));
+    }
+
+    private static long transfer(FileChannel in, long from, long to, WritableByteChannel out) throws IOException {
+
+        long position = from;
+
+        while(position < to) {
+
+            position += in.transferTo(position, to - position, out);
+        }
+
+        return to - from;
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
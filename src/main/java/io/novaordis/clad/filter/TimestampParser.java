@@ -0,0 +1,490 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.clad.filter;
+
+import io.novaordis.clad.option.TimestampOption;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+
+/**
+ * Parses timestamps in TimestampOption's full format family (MM/dd/yy HH:mm:ss) directly from bytes or characters,
+ * into milliseconds since the epoch, without allocating: no String, Date or java.time object is created, except when
+ * the zone offset has to be looked up, once per offset period (between two daylight saving time transitions, for
+ * example).
+ *
+ * The result is the one TimestampOption.getEpochMillis() produces for the same text, in the same time zone: the fields
+ * may have any number of digits, out of range values roll over, and a two digit year is placed within the hundred
+ * years that start at TimestampOption.TWO_DIGIT_YEAR_START, while other years are taken literally. Unlike
+ * TimestampOption, which ignores it, the parser reads a fraction of a second, after '.' or ',' ("07/25/16
+ * 14:01:02,345"). It does not accept the spaces before the fields and the signs TimestampOption accepts, and limits
+ * years to four digits and the other fields to nine.
+ *
+ * Relative timestamps (HH:mm:ss) are accepted only if a reference day is set, see setReferenceDay().
+ *
+ * The timestamp must start at the given position. Whatever follows it is ignored, and getEnd() tells where it ended.
+ *
+ * Instances are not thread-safe: they cache the zone offset and the end of the last timestamp.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+public final class TimestampParser {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    /**
+     * Returned when the text does not start with a timestamp.
+     */
+    public static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+    /**
+     * The longest timestamp the parser reads, excluding the fraction of a second: five nine digit fields, a four digit
+     * year and the five separators. The fraction may have any number of digits.
+     */
+    public static final int MAX_LENGTH = 5 * 9 + 4 + 5;
+
+    private static final int MAX_YEAR_DIGITS = 4;
+    private static final int MAX_FIELD_DIGITS = 9;
+
+    private static final int SECONDS_PER_DAY = 24 * 3600;
+
+    // the days between 0000-01-01 and 1970-01-01, see LocalDate.toEpochDay()
+    private static final long DAYS_0000_TO_1970 = 146097L * 5L - (30L * 365L + 7L);
+
+    // TimestampOption.TWO_DIGIT_YEAR_START, in local seconds since the epoch
+    private static final long TWO_DIGIT_YEAR_START =
+            TimestampOption.TWO_DIGIT_YEAR_START.toEpochSecond(ZoneOffset.UTC);
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return the first day of the month, counted from 1970-01-01. Same algorithm as LocalDate.toEpochDay().
+     */
+    static long epochDay(long year, int month) {
+
+        long total = 365 * year;
+
+        if (year >= 0) {
+
+            total += (year + 3) / 4 - (year + 99) / 100 + (year + 399) / 400;
+        }
+        else {
+
+            total -= year / -4 - year / -100 + year / -400;
+        }
+
+        total += (367 * month - 362) / 12;
+
+        if (month > 2) {
+
+            total --;
+
+            if (!isLeap(year)) {
+                total --;
+            }
+        }
+
+        return total - DAYS_0000_TO_1970;
+    }
+
+    private static boolean isLeap(long year) {
+
+        return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private ZoneId zone;
+
+    // null if relative timestamps are not accepted
+    private LocalDate referenceDay;
+    private long referenceEpochDay;
+
+    // the cached offset, and the local time range it is the only valid offset for, in seconds since the local epoch
+    private int offsetSeconds;
+    private long offsetValidFrom;
+    private long offsetValidTo;
+
+    // the source of the timestamp being parsed, only one is not null
+    private byte[] array;
+    private ByteBuffer buffer;
+    private CharSequence chars;
+
+    // the value of the last field read
+    private long value;
+
+    private int end;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public TimestampParser(ZoneId zone) {
+
+        if (zone == null) {
+            throw new IllegalArgumentException("null zone");
+        }
+
+        this.zone = zone;
+
+        // nothing cached
+        this.offsetValidFrom = Long.MAX_VALUE;
+        this.offsetValidTo = Long.MIN_VALUE;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @param position the index of the first byte of the timestamp.
+     * @param limit the index of the first byte that is not to be read.
+     *
+     * @return the timestamp, in milliseconds since the epoch, or NO_TIMESTAMP.
+     */
+    public long parse(byte[] bytes, int position, int limit) {
+
+        array = bytes;
+
+        try {
+
+            return parse(position, limit);
+        }
+        finally {
+
+            array = null;
+        }
+    }
+
+    /**
+     * Reads the buffer with absolute gets; its position and limit are not used and not changed.
+     *
+     * @see TimestampParser#parse(byte[], int, int)
+     */
+    public long parse(ByteBuffer bytes, int position, int limit) {
+
+        buffer = bytes;
+
+        try {
+
+            return parse(position, limit);
+        }
+        finally {
+
+            buffer = null;
+        }
+    }
+
+    /**
+     * @see TimestampParser#parse(byte[], int, int)
+     */
+    public long parse(CharSequence s, int position, int limit) {
+
+        chars = s;
+
+        try {
+
+            return parse(position, limit);
+        }
+        finally {
+
+            chars = null;
+        }
+    }
+
+    /**
+     * @return the index that follows the last timestamp successfully parsed.
+     */
+    public int getEnd() {
+
+        return end;
+    }
+
+    public ZoneId getZone() {
+
+        return zone;
+    }
+
+    /**
+     * Makes the parser accept relative timestamps (HH:mm:ss), and resolve them against the day, like
+     * TimestampOption.setReferenceDay() does.
+     *
+     * @param day null if relative timestamps are not to be accepted, which is the default.
+     */
+    public void setReferenceDay(LocalDate day) {
+
+        this.referenceDay = day;
+        this.referenceEpochDay = day == null ? 0L : day.toEpochDay();
+    }
+
+    /**
+     * @return the day relative timestamps are resolved against, or null if they are not accepted.
+     */
+    public LocalDate getReferenceDay() {
+
+        return referenceDay;
+    }
+
+    @Override
+    public String toString() {
+
+        return "TimestampParser[" + zone + "]";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private long parse(int position, int limit) {
+
+        int i;
+
+        if ((i = field(position, limit, MAX_FIELD_DIGITS)) < 0) {
+            return NO_TIMESTAMP;
+        }
+
+        long epochDay;
+        long year = 0;
+        int monthOfYear = 0;
+        boolean twoDigitYear = false;
+
+        if (separator(i, limit, '/')) {
+
+            long month = value;
+
+            if ((i = field(i + 1, limit, MAX_FIELD_DIGITS)) < 0 || !separator(i, limit, '/')) {
+                return NO_TIMESTAMP;
+            }
+
+            long day = value;
+
+            int yearStart = i + 1;
+
+            if ((i = field(yearStart, limit, MAX_YEAR_DIGITS)) < 0 || !separator(i, limit, ' ')) {
+                return NO_TIMESTAMP;
+            }
+
+            year = value;
+            twoDigitYear = i - yearStart == 2;
+
+            if (twoDigitYear) {
+
+                int base = TimestampOption.TWO_DIGIT_YEAR_BASE;
+                year += base - base % 100;
+
+                if (year < base) {
+                    year += 100;
+                }
+            }
+
+            //
+            // lenient resolution, the way LocalDate resolves in ResolverStyle.LENIENT: the months are added to January
+            // of the year, and the days to the first of the month
+            //
+
+            year += Math.floorDiv(month - 1, 12);
+            monthOfYear = (int)Math.floorMod(month - 1, 12) + 1;
+
+            epochDay = epochDay(year, monthOfYear) + day - 1;
+
+            i ++;
+        }
+        else if (referenceDay != null && separator(i, limit, ':')) {
+
+            epochDay = referenceEpochDay;
+
+            i = position;
+        }
+        else {
+
+            return NO_TIMESTAMP;
+        }
+
+        if ((i = time(i, limit)) < 0) {
+            return NO_TIMESTAMP;
+        }
+
+        end = i;
+
+        // the time is added to the beginning of the day, hours past 23 roll over into the next days
+        long localSeconds = epochDay * SECONDS_PER_DAY + value / 1000;
+
+        if (twoDigitYear && localSeconds < TWO_DIGIT_YEAR_START) {
+
+            //
+            // the two digit year century starts within TWO_DIGIT_YEAR_BASE, the dates before it belong to the next
+            // century
+            //
+
+            localSeconds += (epochDay(year + 100, monthOfYear) - epochDay(year, monthOfYear)) * SECONDS_PER_DAY;
+        }
+
+        return (localSeconds - offset(localSeconds)) * 1000 + value % 1000;
+    }
+
+    /**
+     * Reads HH:mm:ss, and an optional fraction of a second, into 'value', as milliseconds.
+     *
+     * @return the index that follows the time, or -1.
+     */
+    private int time(int position, int limit) {
+
+        int i;
+
+        if ((i = field(position, limit, MAX_FIELD_DIGITS)) < 0 || !separator(i, limit, ':')) {
+            return -1;
+        }
+
+        long hours = value;
+
+        if ((i = field(i + 1, limit, MAX_FIELD_DIGITS)) < 0 || !separator(i, limit, ':')) {
+            return -1;
+        }
+
+        long minutes = value;
+
+        if ((i = field(i + 1, limit, MAX_FIELD_DIGITS)) < 0) {
+            return -1;
+        }
+
+        long seconds = value;
+
+        //
+        // only the first three digits of the fraction count
+        //
+
+        long millis = 0;
+
+        if (i + 1 < limit && (at(i) == '.' || at(i) == ',') && isDigit(at(i + 1))) {
+
+            int scale = 100;
+
+            for(i ++; i < limit && isDigit(at(i)); i ++) {
+
+                millis += (at(i) - '0') * scale;
+                scale /= 10;
+            }
+        }
+
+        value = ((hours * 60 + minutes) * 60 + seconds) * 1000 + millis;
+        return i;
+    }
+
+    /**
+     * Reads an unsigned decimal field into 'value'.
+     *
+     * @return the index that follows the field, or -1 if there is no digit at the position, or more than maxDigits.
+     */
+    private int field(int position, int limit, int maxDigits) {
+
+        long v = 0;
+        int i = position;
+
+        for(; i < limit && isDigit(at(i)); i ++) {
+
+            if (i - position == maxDigits) {
+                return -1;
+            }
+
+            v = v * 10 + at(i) - '0';
+        }
+
+        if (i == position) {
+            return -1;
+        }
+
+        value = v;
+        return i;
+    }
+
+    private boolean separator(int i, int limit, char c) {
+
+        return i < limit && at(i) == c;
+    }
+
+    private int at(int i) {
+
+        if (array != null) {
+            return array[i];
+        }
+
+        if (buffer != null) {
+            return buffer.get(i);
+        }
+
+        return chars.charAt(i);
+    }
+
+    private static boolean isDigit(int c) {
+
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * @return the zone offset, in seconds, that applies to the local time. In a gap or an overlap, the offset before
+     * the transition applies, as it does for LocalDateTime.atZone().
+     */
+    private int offset(long localSeconds) {
+
+        if (localSeconds >= offsetValidFrom && localSeconds < offsetValidTo) {
+            return offsetSeconds;
+        }
+
+        ZoneRules rules = zone.getRules();
+
+        int offset = rules.getOffset(LocalDateTime.ofEpochSecond(localSeconds, 0, ZoneOffset.UTC)).getTotalSeconds();
+
+        //
+        // cache the offset for the local times between the previous and the next transition, outside their gaps
+        // and overlaps
+        //
+
+        Instant instant = Instant.ofEpochSecond(localSeconds - offset);
+
+        ZoneOffsetTransition previous = rules.previousTransition(instant.plusSeconds(1));
+        ZoneOffsetTransition next = rules.nextTransition(instant);
+
+        long from = previous == null ? Long.MIN_VALUE :
+                Math.max(localSeconds(previous.getDateTimeBefore()), localSeconds(previous.getDateTimeAfter()));
+
+        long to = next == null ? Long.MAX_VALUE :
+                Math.min(localSeconds(next.getDateTimeBefore()), localSeconds(next.getDateTimeAfter()));
+
+        if (from <= localSeconds && localSeconds < to) {
+
+            offsetSeconds = offset;
+            offsetValidFrom = from;
+            offsetValidTo = to;
+        }
+
+        return offset;
+    }
+
+    private static long localSeconds(LocalDateTime t) {
+
+        return t.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.clad.option;
+
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * The command line arguments being parsed, read by index. The arguments that are parsed into options are marked as
+ * consumed instead of being removed, so consuming an argument does not shift the rest of the list. The list the
+ * arguments came from is updated once, when parsing completes (see compact()).
+ *
+ * Not thread-safe.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+final class ArgumentTokens {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final String[] tokens;
+    private final int size;
+    private final BitSet consumed;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    /**
+     * @param tokens the arguments. The array is not copied, and compact() reuses it.
+     * @param size the number of arguments in the array, starting with position 0.
+     */
+    ArgumentTokens(String[] tokens, int size) {
+
+        if (size < 0 || size > tokens.length) {
+            throw new IllegalArgumentException("invalid size " + size);
+        }
+
+        this.tokens = tokens;
+        this.size = size;
+        this.consumed = new BitSet(size);
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    int size() {
+
+        return size;
+    }
+
+    String get(int index) {
+
+        return tokens[index];
+    }
+
+    /**
+     * @return the position of the first argument at or after index that was not consumed, or size() if there is none.
+     */
+    int first(int index) {
+
+        return Math.min(consumed.nextClearBit(index), size);
+    }
+
+    /**
+     * @return the position of the first argument after index that was not consumed, or size() if there is none.
+     */
+    int next(int index) {
+
+        return first(index + 1);
+    }
+
+    void consume(int index) {
+
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("" + index);
+        }
+
+        consumed.set(index);
+    }
+
+    boolean isConsumed(int index) {
+
+        return consumed.get(index);
+    }
+
+    /**
+     * Replaces the arguments of the list, starting with position 'from', with the arguments that were not consumed, in
+     * order. The list positions before 'from' are left alone.
+     */
+    void compact(List<String> list, int from) {
+
+        int w = from;
+
+        for(int i = first(from); i < size; i = next(i)) {
+            tokens[w ++] = tokens[i];
+        }
+
+        write(list, from, tokens, w);
+    }
+
+    /**
+     * Replaces the elements of the list, starting with position 'from', with the elements of the array between 'from'
+     * and 'size', and removes the elements that follow.
+     */
+    static void write(List<String> list, int from, String[] array, int size) {
+
+        int common = Math.min(size, list.size());
+
+        for(int i = from; i < common; i ++) {
+            list.set(i, array[i]);
+        }
+
+        if (list.size() > size) {
+
+            // a single range removal, not one shift per element
+            list.subList(Math.max(size, from), list.size()).clear();
+        }
+        else {
+
+            for(int i = common; i < size; i ++) {
+                list.add(array[i]);
+            }
+        }
+    }
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -16,13 +16,11 @@
 
 package io.novaordis.clad.option;
 
-import io.novaordis.clad.InstanceFactory;
-import io.novaordis.clad.command.Command;
+import io.novaordis.clad.command.CommandCatalog;
+import io.novaordis.clad.command.CommandDescriptor;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
-import java.util.Set;
+import java.util.function.Predicate;
 
 /**
  * @author Ovidiu Feodorov <ovidiu@novaordis.com>
@@ -34,12 +32,33 @@ public class DynamicMacroResolver implements MacroResolver {
 
     public static final String COMMANDS = "COMMANDS";
 
+    public static final String NO_HELP_ANNOTATION = " (no in-line help found)";
+
     // Static ----------------------------------------------------------------------------------------------------------
 
     // Attributes ------------------------------------------------------------------------------------------------------
 
+    // null means the commands available on the class path
+    private CommandCatalog commands;
+
     // Constructors ----------------------------------------------------------------------------------------------------
 
+    /**
+     * Lists the commands available on the class path.
+     */
+    public DynamicMacroResolver() {
+
+        this(null);
+    }
+
+    /**
+     * @param commands the commands to list. Null means the commands available on the class path.
+     */
+    public DynamicMacroResolver(CommandCatalog commands) {
+
+        this.commands = commands;
+    }
+
     // MacroResolver implementation ------------------------------------------------------------------------------------
 
     @Override
@@ -49,44 +68,49 @@ public class DynamicMacroResolver implements MacroResolver {
             return null;
         }
 
-        String s = "";
+        //
+        // command metadata only, no command class is instantiated, or even loaded if the discovery index is available
+        //
+
+        List<CommandDescriptor> descriptors =
+                commands == null ? CommandDescriptor.getCommandDescriptors() : commands.getCommandDescriptors();
+
+        return renderCommandList(descriptors, CommandDescriptor::isHelpAvailable);
+    }
 
-        InstanceFactory<Command> i = new InstanceFactory<>();
+    // Public ----------------------------------------------------------------------------------------------------------
 
-        Set<Command> commands = i.instances(
-                Command.class, InstanceFactory.getClasspathJars(), InstanceFactory.getClasspathDirectories());
+    /**
+     * Renders the value of the COMMANDS macro: one indented line per command, with the commands that have no help
+     * annotated. Also used at build time, by DiscoveryIndexProcessor, to pre-render the application help.
+     *
+     * @param commands the commands, in the order they are listed in.
+     */
+    public static String renderCommandList(List<CommandDescriptor> commands, Predicate<CommandDescriptor> hasHelp) {
 
-        List<Command> commandList = new ArrayList<>(commands);
-        Collections.sort(commandList);
+        StringBuilder sb = new StringBuilder();
 
         //
         // iterate over the list of commands and determine the max display width
         //
-        int width = maxDisplayWidth(commandList);
-
-        for(Command c: commandList) {
 
-            String helpFilePath = c.getHelpFilePath();
-            byte[] helpContent = HelpOption.getHelpContent(helpFilePath);
-            boolean helpAvailable = helpContent.length > 0;
+        String format = "  %1$-" + maxDisplayWidth(commands) + "s";
 
-            String format = "  %1$-" + width + "s";
+        for(CommandDescriptor c: commands) {
 
-            s += String.format(format, c.getName());
+            sb.append(String.format(format, c.getName()));
 
-            if (!helpAvailable) {
+            if (!hasHelp.test(c)) {
 
-                s += " (no in-line help found)";
+                sb.append(NO_HELP_ANNOTATION);
             }
 
-            s += "\n";
+            sb.append('\n');
         }
 
-        return s;
+        return sb.toString();
     }
 
-    // Public ----------------------------------------------------------------------------------------------------------
-
     // Package protected -----------------------------------------------------------------------------------------------
 
     // Protected -------------------------------------------------------------------------------------------------------
@@ -95,9 +119,9 @@ public class DynamicMacroResolver implements MacroResolver {
 
     // Private Static --------------------------------------------------------------------------------------------------
 
-    private static int maxDisplayWidth(List<Command> commandList) {
+    private static int maxDisplayWidth(List<CommandDescriptor> commandList) {
         int width = -1;
-        for(Command c: commandList) {
+        for(CommandDescriptor c: commandList) {
             if (c.getName().length() > width) {
                 width = c.getName().length();
             }
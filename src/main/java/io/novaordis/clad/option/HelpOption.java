@@ -18,15 +18,16 @@ package io.novaordis.clad.option;
 
 import io.novaordis.clad.application.ApplicationRuntime;
 import io.novaordis.clad.command.Command;
+import io.novaordis.clad.command.CommandCatalog;
+import io.novaordis.clad.discovery.ClasspathNameIndex;
+import io.novaordis.clad.discovery.DiscoveryIndex;
 import io.novaordis.utilities.UserErrorException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
-import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * @author Ovidiu Feodorov <ovidiu@novaordis.com>
@@ -44,52 +45,19 @@ public class HelpOption extends OptionBase {
     public static final String NO_COMMAND_HELP_FOUND_TEXT = "[warn]: no in-line help found for command";
     public static final String NO_APPLICATION_HELP_FOUND_TEXT = "[warn]: no in-line application help found";
 
-    private static final Pattern MACRO_PATTERN = Pattern.compile("@\\w+@");
-
     // Static ----------------------------------------------------------------------------------------------------------
 
     // Package Protected Static ----------------------------------------------------------------------------------------
 
+    /**
+     * Resolves the macros in the content, recursively: a macro whose value contains macros is resolved in its turn.
+     * Macros that cannot be resolved are left in place.
+     */
     static byte[] resolveMacros(byte[] helpContent, MacroResolver macroResolver) throws Exception {
 
-        //
-        // look for macros and resolve them recursively
-        //
-
-        String resolvedContent = new String(helpContent);
-
-        while(true) {
-
-            Matcher m = MACRO_PATTERN.matcher(resolvedContent);
-
-            if (m.find()) {
-                //
-                // replace the macro and re-search
-                //
-                int start = m.start();
-                int end = m.end();
-                String macroName = resolvedContent.substring(start + 1, end - 1);
-                String resolvedMacro = macroResolver.resolveMacro(macroName);
-
-                if (resolvedMacro == null) {
-                    //
-                    // leave the macro in place so we know we couldn't resolve it
-                    //
-                    resolvedMacro = "@" + macroName + "@";
-                }
-
-                resolvedContent = resolvedContent.substring(0, start) + resolvedMacro + resolvedContent.substring(end);
-                continue;
-            }
-
-            //
-            // no more macros
-            //
-
-            break;
-        }
-
-        return resolvedContent.getBytes();
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(helpContent.length);
+        HelpTemplate.parse(helpContent).render(baos, macroResolver);
+        return baos.toByteArray();
     }
 
     // Attributes ------------------------------------------------------------------------------------------------------
@@ -101,13 +69,24 @@ public class HelpOption extends OptionBase {
 
     private ApplicationRuntime application;
 
+    // null means the commands available on the class path
+    private CommandCatalog commands;
+
     private MacroResolver dynamicMacroResolver;
 
     // Constructors ----------------------------------------------------------------------------------------------------
 
     public HelpOption() {
+        this(null);
+    }
+
+    /**
+     * @param commands the commands the application help lists. Null means the commands available on the class path.
+     */
+    public HelpOption(CommandCatalog commands) {
         super(SHORT_LITERAL, LONG_LITERAL);
-        dynamicMacroResolver = new DynamicMacroResolver();
+        this.commands = commands;
+        dynamicMacroResolver = new DynamicMacroResolver(commands);
     }
 
     // OptionBase overrides --------------------------------------------------------------------------------------------
@@ -167,13 +146,8 @@ public class HelpOption extends OptionBase {
             // a command name was specified after "help" on command line
             //
 
-            String helpFilePath = command.getHelpFilePath();
-            byte[] helpContent = getHelpContent(helpFilePath);
-            if (helpContent.length == 0) {
-                helpContent = (NO_COMMAND_HELP_FOUND_TEXT + " '" + command.getName() + "'\n").getBytes();
-            }
-            outputStream.write(helpContent);
-            outputStream.flush();
+            display(command.getHelpFilePath(), NO_COMMAND_HELP_FOUND_TEXT + " '" + command.getName() + "'\n",
+                    null, outputStream);
         }
         else {
 
@@ -195,18 +169,39 @@ public class HelpOption extends OptionBase {
 
     public void displayGenericApplicationHelpAndResolveMacros(OutputStream outputStream) throws Exception {
 
+        String helpFilePath = application.getHelpFilePath();
+
         //
-        // display generic application help and resolve macros
+        // help pre-rendered at build time is only valid if the class path lists the same commands as it did then, and
+        // the class path entries without an index resource contribute none; it does not apply to a command catalog
         //
 
-        String helpFilePath = application.getHelpFilePath();
-        byte[] helpContent = getHelpContent(helpFilePath);
-        if (helpContent.length == 0) {
-            helpContent = (NO_APPLICATION_HELP_FOUND_TEXT + "'\n").getBytes();
+        DiscoveryIndex index = commands == null ? DiscoveryIndex.getInstance() : null;
+        PrerenderedHelp prerendered = index == null ? null : PrerenderedHelp.load(helpFilePath);
+
+        if (prerendered != null && !ClasspathNameIndex.getInstance().isCoveredByDiscoveryIndex("Command")) {
+
+            log.debug("commands found outside the discovery index, resolving macros dynamically");
+            prerendered = null;
         }
-        helpContent = resolveMacros(helpContent, dynamicMacroResolver);
-        outputStream.write(helpContent);
-        outputStream.flush();
+
+        if (prerendered != null) {
+
+            if (prerendered.getFingerprint().equals(index.getCommandFingerprint())) {
+
+                prerendered.write(outputStream);
+                outputStream.flush();
+                return;
+            }
+
+            log.debug(prerendered + " does not match the class path, resolving macros dynamically");
+        }
+
+        //
+        // display generic application help and resolve macros
+        //
+
+        display(helpFilePath, NO_APPLICATION_HELP_FOUND_TEXT + "'\n", dynamicMacroResolver, outputStream);
     }
 
     @Override
@@ -226,34 +221,38 @@ public class HelpOption extends OptionBase {
      */
     static byte[] getHelpContent(String helpFilePath) throws Exception {
 
-        InputStream is = HelpOption.class.getClassLoader().getResourceAsStream(helpFilePath);
+        HelpTemplate template = HelpTemplate.load(helpFilePath);
+        return template == null ? new byte[0] : template.getContent();
+    }
 
-        if (is == null) {
-            //
-            // help file not found
-            //
-            log.debug("help file " + helpFilePath + " not found");
-            return new byte[0];
-        }
+    // Protected -------------------------------------------------------------------------------------------------------
 
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        int r, last = -1;
-        while ((r = is.read()) != -1) {
-            baos.write(r);
-            last = r;
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    /**
+     * Streams the help, with the macros resolved, or the fallback text if there is no help resource.
+     *
+     * @param macroResolver may be null, in which case the macros are not resolved.
+     */
+    private static void display(String helpFilePath, String fallback, MacroResolver macroResolver,
+                                OutputStream outputStream) throws Exception {
+
+        HelpTemplate template = HelpTemplate.load(helpFilePath);
+
+        if (template == null) {
+
+            outputStream.write(fallback.getBytes(HelpTemplate.CHARSET));
         }
+        else {
 
-        if (last != '\n') {
-            baos.write('\n');
+            OutputStream os = new BufferedOutputStream(outputStream);
+            template.render(os, macroResolver);
+            os.flush();
         }
 
-        return baos.toByteArray();
+        outputStream.flush();
     }
 
-    // Protected -------------------------------------------------------------------------------------------------------
-
-    // Private ---------------------------------------------------------------------------------------------------------
-
     // Inner classes ---------------------------------------------------------------------------------------------------
 
 }
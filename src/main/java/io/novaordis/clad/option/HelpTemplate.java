@@ -0,0 +1,319 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.clad.option;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A help resource, parsed once into literal segments and @MACRO@ markers, and rendered by streaming the literal bytes
+ * and the resolved macros to the output. The markers are the strings that match "@\w+@", found in a single pass over
+ * the bytes, without decoding the resource.
+ *
+ * Help resources, and the rendered help, are UTF-8 (CHARSET). The resource is read in bulk and terminated with a new
+ * line if it is not. Templates are immutable, and are cached per resource path for the life of the class loader, so
+ * long-lived processes (the daemon, CladEngine) read and parse each help resource once.
+ *
+ * A macro whose value contains markers is rendered recursively, down to MAX_MACRO_DEPTH levels. Markers that cannot
+ * be resolved are rendered as they are.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+final class HelpTemplate {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final Logger log = LoggerFactory.getLogger(HelpTemplate.class);
+
+    static final Charset CHARSET = StandardCharsets.UTF_8;
+
+    static final int MAX_MACRO_DEPTH = 8;
+
+    private static final int READ_BUFFER_SIZE = 8192;
+
+    // cached for the resources that do not exist
+    private static final HelpTemplate MISSING = new HelpTemplate(new byte[0], new int[0], new String[0]);
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    private static final ConcurrentMap<String, HelpTemplate> cache = new ConcurrentHashMap<>();
+
+    /**
+     * @param helpFilePath the name of the resource, relative to the class path.
+     *
+     * @return the template, or null if there is no such resource.
+     */
+    static HelpTemplate load(String helpFilePath) throws IOException {
+
+        HelpTemplate t = cache.get(helpFilePath);
+
+        if (t == null) {
+
+            t = read(helpFilePath);
+            HelpTemplate previous = cache.putIfAbsent(helpFilePath, t);
+            t = previous == null ? t : previous;
+        }
+
+        return t == MISSING ? null : t;
+    }
+
+    /**
+     * Finds the markers, the way "@\w+@" matches them: leftmost first, without overlap.
+     */
+    static HelpTemplate parse(byte[] content) {
+
+        List<String> macros = new ArrayList<>();
+        int[] bounds = new int[8];
+        int segments = 0;
+
+        int literalStart = 0;
+        int i = 0;
+
+        while(i < content.length) {
+
+            if (content[i] != '@') {
+
+                i ++;
+                continue;
+            }
+
+            int j = i + 1;
+
+            while(j < content.length && isWordCharacter(content[j])) {
+                j ++;
+            }
+
+            if (j == i + 1 || j == content.length || content[j] != '@') {
+
+                // not a marker, but the '@' that ended the scan may start one
+                i = j;
+                continue;
+            }
+
+            if (bounds.length < 2 * (segments + 2)) {
+                bounds = Arrays.copyOf(bounds, 2 * bounds.length);
+            }
+
+            if (literalStart < i) {
+
+                bounds[2 * segments] = literalStart;
+                bounds[2 * segments + 1] = i;
+                macros.add(null);
+                segments ++;
+            }
+
+            bounds[2 * segments] = i;
+            bounds[2 * segments + 1] = j + 1;
+            macros.add(new String(content, i + 1, j - i - 1, StandardCharsets.US_ASCII));
+            segments ++;
+
+            i = literalStart = j + 1;
+        }
+
+        if (literalStart < content.length) {
+
+            if (bounds.length < 2 * (segments + 1)) {
+                bounds = Arrays.copyOf(bounds, 2 * bounds.length);
+            }
+
+            bounds[2 * segments] = literalStart;
+            bounds[2 * segments + 1] = content.length;
+            macros.add(null);
+            segments ++;
+        }
+
+        return new HelpTemplate(content, Arrays.copyOf(bounds, 2 * segments), macros.toArray(new String[segments]));
+    }
+
+    static void clearCache() {
+
+        cache.clear();
+    }
+
+    /**
+     * Reads the resource in bulk.
+     *
+     * @return the content, terminated with a new line, or null if there is no such resource.
+     */
+    static byte[] readResource(String resourceName) throws IOException {
+
+        InputStream is = HelpTemplate.class.getClassLoader().getResourceAsStream(resourceName);
+
+        if (is == null) {
+
+            log.debug("help file " + resourceName + " not found");
+            return null;
+        }
+
+        byte[] content = new byte[READ_BUFFER_SIZE];
+        int length = 0;
+
+        try {
+
+            int r;
+
+            while((r = is.read(content, length, content.length - length)) != -1) {
+
+                length += r;
+
+                if (length == content.length) {
+                    content = Arrays.copyOf(content, 2 * content.length);
+                }
+            }
+        }
+        finally {
+
+            is.close();
+        }
+
+        return terminate(content, length);
+    }
+
+    /**
+     * @return the first length bytes of the content, terminated with a new line. The array may be reused.
+     */
+    static byte[] terminate(byte[] content, int length) {
+
+        if (length > 0 && content[length - 1] == '\n') {
+
+            return length == content.length ? content : Arrays.copyOf(content, length);
+        }
+
+        byte[] result = Arrays.copyOf(content, length + 1);
+        result[length] = '\n';
+        return result;
+    }
+
+    private static HelpTemplate read(String helpFilePath) throws IOException {
+
+        byte[] content = readResource(helpFilePath);
+        return content == null ? MISSING : parse(content);
+    }
+
+    private static boolean isWordCharacter(byte b) {
+
+        return b >= 'a' && b <= 'z' || b >= 'A' && b <= 'Z' || b >= '0' && b <= '9' || b == '_';
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private byte[] content;
+
+    // segment i spans [bounds[2i], bounds[2i + 1]) in content
+    private int[] bounds;
+
+    // the name of the macro of each segment, or null for literal segments
+    private String[] macros;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    private HelpTemplate(byte[] content, int[] bounds, String[] macros) {
+
+        this.content = content;
+        this.bounds = bounds;
+        this.macros = macros;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @Override
+    public String toString() {
+
+        return "HelpTemplate[" + content.length + " bytes, " + macros.length + " segments]";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    /**
+     * @return a copy of the unresolved content.
+     */
+    byte[] getContent() {
+
+        return content.clone();
+    }
+
+    /**
+     * @return the names of the macros, in the order they appear in, including duplicates.
+     */
+    List<String> getMacros() {
+
+        List<String> result = new ArrayList<>();
+
+        for(String m: macros) {
+
+            if (m != null) {
+                result.add(m);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Writes the content, with the macros resolved. The output stream is not flushed.
+     *
+     * @param resolver may be null, in which case the markers are written as they are.
+     */
+    void render(OutputStream out, MacroResolver resolver) throws Exception {
+
+        render(out, resolver, 0);
+    }
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private void render(OutputStream out, MacroResolver resolver, int depth) throws Exception {
+
+        for(int i = 0; i < macros.length; i ++) {
+
+            int start = bounds[2 * i];
+            int end = bounds[2 * i + 1];
+
+            String value = macros[i] == null || resolver == null ? null : resolver.resolveMacro(macros[i]);
+
+            if (value == null) {
+
+                out.write(content, start, end - start);
+            }
+            else if (depth < MAX_MACRO_DEPTH && value.indexOf('@') != -1) {
+
+                parse(value.getBytes(CHARSET)).render(out, resolver, depth + 1);
+            }
+            else {
+
+                out.write(value.getBytes(CHARSET));
+            }
+        }
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.clad.option;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * The options parsed from a command line. A List, for compatibility, that is also indexed by literal, so finding the
+ * option equal with a model (same type, same short or same long literal) is a table lookup and not a scan.
+ *
+ * The index is built on the first lookup after a modification of the list, and it assumes the literals of the options
+ * do not change while they are in the list. Like ArrayList, the class is not thread-safe.
+ *
+ * @see OptionSchema
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+public class OptionList extends AbstractList<Option> implements RandomAccess {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final int SHORT_LITERAL_TABLE_SIZE = 128;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final List<Option> options;
+
+    // the positions of the options with a given literal, in list order; null if the index must be rebuilt
+    private List<Integer>[] shortLiterals;
+    private Map<Character, List<Integer>> otherShortLiterals;
+    private Map<String, List<Integer>> longLiterals;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public OptionList() {
+
+        this.options = new ArrayList<>();
+    }
+
+    public OptionList(Collection<? extends Option> options) {
+
+        this.options = new ArrayList<>(options);
+    }
+
+    // AbstractList overrides ------------------------------------------------------------------------------------------
+
+    @Override
+    public Option get(int index) {
+
+        return options.get(index);
+    }
+
+    @Override
+    public int size() {
+
+        return options.size();
+    }
+
+    @Override
+    public Option set(int index, Option option) {
+
+        shortLiterals = null;
+        return options.set(index, option);
+    }
+
+    @Override
+    public void add(int index, Option option) {
+
+        modCount ++;
+        shortLiterals = null;
+        options.add(index, option);
+    }
+
+    @Override
+    public Option remove(int index) {
+
+        modCount ++;
+        shortLiterals = null;
+        return options.remove(index);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+
+        return o instanceof Option ? get((Option)o) != null : options.contains(o);
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return the first option in the list equal with the model, or null if there is none.
+     *
+     * @see Option#equals(Object)
+     */
+    public Option get(Option model) {
+
+        if (model == null) {
+            return null;
+        }
+
+        if (shortLiterals == null) {
+            index();
+        }
+
+        int position = Integer.MAX_VALUE;
+
+        Character c = model.getShortLiteral();
+
+        if (c != null) {
+
+            position = first(c < SHORT_LITERAL_TABLE_SIZE ? shortLiterals[c] : otherShortLiterals.get(c), model);
+        }
+
+        String s = model.getLongLiteral();
+
+        if (s != null) {
+
+            position = Math.min(position, first(longLiterals.get(s), model));
+        }
+
+        return position == Integer.MAX_VALUE ? null : options.get(position);
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private void index() {
+
+        List<Integer>[] shorts = new List[SHORT_LITERAL_TABLE_SIZE];
+        otherShortLiterals = new HashMap<>();
+        longLiterals = new HashMap<>();
+
+        for(int i = 0; i < options.size(); i ++) {
+
+            Option o = options.get(i);
+
+            Character c = o.getShortLiteral();
+
+            if (c != null) {
+
+                if (c < SHORT_LITERAL_TABLE_SIZE) {
+
+                    if (shorts[c] == null) {
+                        shorts[c] = new ArrayList<>(1);
+                    }
+
+                    shorts[c].add(i);
+                }
+                else {
+
+                    otherShortLiterals.computeIfAbsent(c, k -> new ArrayList<>(1)).add(i);
+                }
+            }
+
+            String s = o.getLongLiteral();
+
+            if (s != null) {
+
+                longLiterals.computeIfAbsent(s, k -> new ArrayList<>(1)).add(i);
+            }
+        }
+
+        shortLiterals = shorts;
+    }
+
+    /**
+     * @return the first position whose option is equal with the model, or Integer.MAX_VALUE.
+     */
+    private int first(List<Integer> positions, Option model) {
+
+        if (positions != null) {
+
+            for(int i: positions) {
+
+                if (model.equals(options.get(i))) {
+                    return i;
+                }
+            }
+        }
+
+        return Integer.MAX_VALUE;
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
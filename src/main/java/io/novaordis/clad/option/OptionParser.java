@@ -14,14 +14,17 @@
  * limitations under the License.
  */
 
+
 package io.novaordis.clad.option;
 
 import io.novaordis.clad.InstanceFactory;
 import io.novaordis.utilities.UserErrorException;
 import io.novaordis.clad.command.Command;
+import io.novaordis.clad.command.CommandCatalog;
 import org.apache.log4j.Logger;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Set;
 
@@ -35,6 +38,13 @@ public class OptionParser {
 
     private static final Logger log = Logger.getLogger(OptionParser.class);
 
+    private static final String VERBOSE_LONG_LITERAL = "--" + VerboseOption.LONG_LITERAL;
+    private static final String VERBOSE_SHORT_LITERAL = "-" + VerboseOption.SHORT_LITERAL;
+
+    private static final String HELP_LONG_LITERAL = "--" + HelpOption.LONG_LITERAL;
+    private static final String HELP_SHORT_LITERAL = "-" + HelpOption.SHORT_LITERAL;
+    private static final String HELP_COMMAND_PREFIX = "--" + HelpOption.LONG_LITERAL + "=";
+
     // Static ----------------------------------------------------------------------------------------------------------
 
     /**
@@ -50,148 +60,215 @@ public class OptionParser {
     public static List<Option> parse(int from, List<String> commandLineArguments,
                                      Set<Option> required, Set<Option> optional) throws Exception {
 
+        return parse(from, commandLineArguments, OptionSchema.compile(required, optional));
+    }
+
+    /**
+     * Same as parse(int, List, Set, Set), with the declarations compiled in advance: whether a parsed option is
+     * declared is decided with table lookups.
+     *
+     * The time spent parsing is linear in the number of arguments: the arguments are visited once, the arguments parsed
+     * into options are marked as consumed and the list is compacted once, at the end. The list is compacted even if
+     * parsing fails.
+     *
+     * @return the parsed options, indexed by literal.
+     */
+    public static OptionList parse(int from, List<String> commandLineArguments, OptionSchema schema)
+            throws Exception {
+
+        return parse(from, commandLineArguments, schema, null);
+    }
+
+    /**
+     * Same as parse(int, List, OptionSchema), with the command named by a --help=<command-name> option, and the
+     * commands the help lists, looked up in the given catalog.
+     *
+     * @param commands null means the commands available on the class path.
+     */
+    public static OptionList parse(int from, List<String> commandLineArguments, OptionSchema schema,
+                                   CommandCatalog commands) throws Exception {
+
         //
         // pre-parse to handle single quotes and double quotes
         //
 
-        coalesceQuotedSections(from, commandLineArguments);
+        String[] args = commandLineArguments.toArray(new String[commandLineArguments.size()]);
+        int size = coalesceQuotedSections(args, from);
 
-        List<Option> options = new ArrayList<>();
+        ArgumentTokens tokens = new ArgumentTokens(args, size);
+        OptionList options = new OptionList();
 
-        String current;
+        try {
 
-        for(int i = from; i < commandLineArguments.size(); i++) {
+            parse(tokens, from, schema, commands, options);
+        }
+        finally {
 
-            current = commandLineArguments.get(i);
+            tokens.compact(commandLineArguments, from);
+        }
 
-            if (("--" + VerboseOption.LONG_LITERAL).equals(current) ||
-                    ("-" + VerboseOption.SHORT_LITERAL).equals(current)) {
+        //
+        // Do not check for required options yet, that check belongs in the command or application.
+        //
 
-                VerboseOption verboseOption = new VerboseOption();
-                if(required.contains(verboseOption) || optional.contains(verboseOption)) {
-                    commandLineArguments.remove(i--);
-                    options.add(verboseOption);
-                }
-            }
-            else if (handledHelpOption(i, commandLineArguments, options)) {
+        return options;
+    }
 
-                //
-                // handled as help option - this is handled out-of-band and the list of required and optional options
-                // is not consulted
-                //
+    /**
+     * @return true if the option is a required option (is either in the required set, or is equivalent with an
+     * option in the required set)
+     */
+    public static boolean isRequiredOption(Option option, Set<Option> required) {
 
-                //noinspection UnnecessaryContinue
-                continue;
+        for(Option o: required) {
+            if (o.equals(option) || o.isEquivalentWith(option)) {
+                return true;
             }
-            else if (current.startsWith("--")) {
+        }
 
-                String longLiteralOptionString = commandLineArguments.get(i);
-                Option option = parseLongLiteralOption(longLiteralOptionString, commandLineArguments, i + 1);
+        return false;
+    }
 
-                if (isRequiredOption(option, required) || isOptionalOption(option, optional)) {
-                    commandLineArguments.remove(i--);
-                    options.add(option);
-                    copyLiterals(option, required, optional);
-                }
+    /**
+     * @return true if the option is a optional option (is either in the optional set, or is equivalent with an
+     * option in the optional set)
+     */
+    public static boolean isOptionalOption(Option option, Set<Option> optional) {
+
+        for(Option o: optional) {
+            if (o.equals(option) || o.isEquivalentWith(option)) {
+                return true;
             }
-            else if (current.startsWith("-")) {
+        }
 
-                if (current.length() == 1) {
-                    // "-" - currently we have no use for it, advertise it as a user error
-                    throw new UserErrorException("invalid option: '-'");
-                }
+        return false;
+    }
 
-                //
-                // short option candidate - we only use the character following '-' and we ignore the rest
-                //
+    /**
+     * Coalesces strings between single and double quotes in place withing the argument list. Works by side-effect.
+     * @param from - only start from 'from', leave the first arguments untouched.
+     */
+    public static void coalesceQuotedSections(int from, List<String> commandLineArguments) throws UserErrorException {
 
-                char shortLiteral = current.charAt(1);
+        String[] args = commandLineArguments.toArray(new String[commandLineArguments.size()]);
+        int size = coalesceQuotedSections(args, from);
+        ArgumentTokens.write(commandLineArguments, from, args, size);
+    }
 
-                Option candidateOption;
+    /**
+     * The method applies type heuristics by attempting to figure out the correct option type from the string
+     * representation. The logic assumes that timestamp values (and timestamp values only) may or
+     * may be not enclosed in quotes, so, for example, both --from=07/23/16 14:00:00 and --from="=07/23/16 14:00:00"
+     * should be valid and recognized as valid timestamp values by the parser.
 
-                if (i == (commandLineArguments.size() - 1) || commandLineArguments.get(i + 1).startsWith("-")) {
+     *
+     * @param nextCommandLineSections needed because we can specify timestamps without quotes. If used, the used
+     *                                sections will be removed from the array. The method must be prepared to handle
+     *                                the cases when the list is null or empty.
+     */
+    public static Object typeHeuristics(String value, List<String> nextCommandLineSections) {
 
-                    // boolean option
-                    candidateOption = new BooleanOption(shortLiteral);
-                }
-                else {
+        if (value == null) {
+            return null;
+        }
 
-                    String valueAsString = commandLineArguments.get(i + 1);
-                    Object value = typeHeuristics(valueAsString, null);
-                    if (value instanceof String) {
-                        candidateOption = new StringOption(shortLiteral);
-                        ((StringOption)candidateOption).setValue((String)value);
+        //
+        // first try timestamps
+        //
 
-                    }
-                    else if (value instanceof Long) {
-                        candidateOption = new LongOption(shortLiteral);
-                        ((LongOption)candidateOption).setValue((Long)value);
+        if (TimestampOption.isTimestampOptionValue(value)) {
+            return value;
+        }
 
-                    }
-                    else if (value instanceof Double) {
-                        candidateOption = new DoubleOption(shortLiteral);
-                        ((DoubleOption)candidateOption).setValue((Double)value);
-                    }
-                    else {
-                        throw new RuntimeException("NOT YET IMPLEMENTED " + value);
-                    }
-                }
+        //
+        // timestamp is a special case in that we allow space separated sections of the timestamp to be specified
+        // on command line without quote enclosure
+        //
 
-                if (required.contains(candidateOption) || optional.contains(candidateOption)) {
+        if (nextCommandLineSections != null && nextCommandLineSections.size() > 0) {
 
-                    //
-                    // only add if we know about it
-                    //
+            String next = String.valueOf(nextCommandLineSections.get(0));
 
-                    options.add(candidateOption);
-                    copyLiterals(candidateOption, required, optional);
-                    if (candidateOption instanceof BooleanOption) {
-                        // remove one
-                        commandLineArguments.remove(i);
-                    }
-                    else {
-                        // remove two
-                        commandLineArguments.remove(i);
-                        commandLineArguments.remove(i--);
-                    }
-                }
-            }
-            else {
+            if (ValueClassifier.isTimestamp(value, next)) {
 
-                log.debug("unknown option \"" + current + "\", ignoring it");
+                nextCommandLineSections.remove(0);
+                return value + " " + next;
             }
         }
 
         //
-        // Do not check for required options yet, that check belongs in the command or application.
+        // numeric value, boolean or string, decided lexically: a failed numeric conversion is an exception
         //
 
-        return options;
+        return ValueClassifier.classify(value);
     }
 
     /**
-     * @return true if the option is a required option (is either in the required set, or is equivalent with an
-     * option in the required set)
+     * The method applies type heuristics. The logic assumes that timestamp values (and timestamp values only) may or
+     * may be not enclosed in quotes, so, for example, both --from=07/23/16 14:00:00 and --from="=07/23/16 14:00:00"
+     * should be valid and recognized as valid timestamp values by the parser.
+     *
+     * @param commandLineArguments the current command line arguments list. We need it in order to handle space-separate
+     *                             options that are not enclosed by quotes.
+     * @param nextArgumentIndex - position in the command line argument list of the next argument that can be used
+     *                          when looking for timestamps. The method must be prepared to handle the case when the
+     *                          index is out out bounds, in which case it should be ignored.
      */
-    public static boolean isRequiredOption(Option option, Set<Option> required) {
+    public static Option parseLongLiteralOption(
+            String longLiteralOptionString, List<String> commandLineArguments, int nextArgumentIndex)
+            throws UserErrorException {
 
-        for(Option o: required) {
-            if (o.equals(option) || o.isEquivalentWith(option)) {
-                return true;
-            }
+        boolean hasNext = commandLineArguments != null &&
+                nextArgumentIndex >= 0 && nextArgumentIndex < commandLineArguments.size();
+
+        //
+        // the timestamp heuristics only look at the next argument
+        //
+
+        List<String> next = new ArrayList<>(1);
+
+        if (hasNext) {
+            next.add(commandLineArguments.get(nextArgumentIndex));
         }
 
-        return false;
+        Option option = parseLongLiteralOption(longLiteralOptionString, next);
+
+        if (hasNext && next.isEmpty()) {
+
+            //
+            // we used the next argument for the timestamp
+            //
+
+            commandLineArguments.remove(nextArgumentIndex);
+        }
+
+        return option;
     }
 
+// Attributes ------------------------------------------------------------------------------------------------------
+
+// Constructors ----------------------------------------------------------------------------------------------------
+
+// Public ----------------------------------------------------------------------------------------------------------
+
+// Static Package protected ----------------------------------------------------------------------------------------
+
     /**
-     * @return true if the option is a optional option (is either in the optional set, or is equivalent with an
-     * option in the optional set)
+     * @return true if it detected and successfully handled a help option. If the option is detected, both the
+     * command line argument list and the option list are modified by side effect: the corresponding argument
+     * (arguments) are removed and the HelpOption instance is added to the options list.
      */
-    public static boolean isOptionalOption(Option option, Set<Option> optional) {
+    static boolean handledHelpOption(int index, List<String> commandLineArguments, List<Option> options)
+            throws Exception {
 
-        for(Option o: optional) {
-            if (o.equals(option) || o.isEquivalentWith(option)) {
+        for(int i = index; i < commandLineArguments.size(); i ++) {
+
+            String current = commandLineArguments.get(i);
+
+            if (isHelpOption(current)) {
+
+                commandLineArguments.remove(i);
+                options.add(newHelpOption(current, null));
                 return true;
             }
         }
@@ -200,19 +277,25 @@ public class OptionParser {
     }
 
     /**
-     * Coalesces strings between single and double quotes in place withing the argument list. Works by side-effect.
-     * @param from - only start from 'from', leave the first arguments untouched.
+     * The array based implementation of coalesceQuotedSections(int, List): the arguments are coalesced in place and
+     * the array is compacted as it is traversed.
+     *
+     * @return the number of arguments in the array after coalescing. The array positions after it are undefined.
      */
-    public static void coalesceQuotedSections(int from, List<String> commandLineArguments) throws UserErrorException {
+    static int coalesceQuotedSections(String[] args, int from) throws UserErrorException {
 
         StringBuilder doubleQuoted = null;
         StringBuilder singleQuoted = null;
+
+        // the position of the argument that opened the current quoted section
         int index = -1;
-        int toRemoveCount = 0;
 
-        for(int i = from; i < commandLineArguments.size(); i++) {
+        // the position the next argument is written at
+        int w = from;
 
-            String current = commandLineArguments.get(i);
+        for(int i = from; i < args.length; i++) {
+
+            String current = args[i];
 
             int doubleQuoteIndex, singleQuoteIndex = -1;
 
@@ -247,13 +330,16 @@ public class OptionParser {
                 current = current.substring(0, separatorIndex) + current.substring(separatorIndex + 1);
                 doubleQuoted = doubleQuote ? new StringBuilder(current) : null;
                 singleQuoted = singleQuote ? new StringBuilder(current) : null;
-                index = i;
 
+                //
+                // the argument stays as it is until the section is closed, the section may never be
+                //
+
+                index = w;
+                args[w ++] = args[i];
             }
             else if (doubleQuoted != null || singleQuoted != null) {
 
-                toRemoveCount ++;
-
                 if ((current.endsWith("\"") && current.length() > 1 && current.charAt(current.length() - 2) != '\\') ||
                         (current.endsWith("'") && current.length() > 1 && current.charAt(current.length() - 2) != '\\'))
                 {
@@ -275,21 +361,11 @@ public class OptionParser {
                     }
 
                     //
-                    // replace in place
+                    // replace in place and drop the components, by writing the next argument after the section
                     //
 
-                    commandLineArguments.set(index, doubleQuote ? doubleQuoted.toString() : singleQuoted.toString());
-
-                    //
-                    // remove components
-                    //
-
-                    for(int j = 0; j < toRemoveCount; j ++) {
-                        commandLineArguments.remove(index + 1);
-                        i--;
-                    }
-
-                    toRemoveCount = 0;
+                    args[index] = doubleQuote ? doubleQuoted.toString() : singleQuoted.toString();
+                    w = index + 1;
 
                     if (doubleQuote) {
                         doubleQuoted = null;
@@ -298,133 +374,225 @@ public class OptionParser {
                         singleQuoted = null;
                     }
                 }
-                else if (doubleQuoted != null) {
-                    doubleQuoted.append(" ").append(current);
-                }
-                else //noinspection ConstantConditions
-                    if (singleQuoted != null) {
-                        singleQuoted.append(" ").append(current);
+                else {
+
+                    if (doubleQuoted != null) {
+                        doubleQuoted.append(" ").append(current);
                     }
+                    else //noinspection ConstantConditions
+                        if (singleQuoted != null) {
+                            singleQuoted.append(" ").append(current);
+                        }
+
+                    args[w ++] = args[i];
+                }
+            }
+            else {
+
+                args[w ++] = args[i];
             }
         }
 
         //
-        // at this point the commandLineArguments list may contain escaped quotes - replace them with simple quotes
+        // at this point the arguments may contain escaped quotes - replace them with simple quotes
         //
 
-        for(int i = from; i < commandLineArguments.size(); i++) {
+        for(int i = from; i < w; i++) {
+
+            String arg = args[i];
 
-            String arg = commandLineArguments.get(i);
-            arg = arg.replaceAll("\\\\", "");
-            commandLineArguments.set(i, arg);
+            if (arg.indexOf('\\') != -1) {
+                args[i] = arg.replace("\\", "");
+            }
         }
 
+        return w;
     }
 
-    /**
-     * The method applies type heuristics by attempting to figure out the correct option type from the string
-     * representation. The logic assumes that timestamp values (and timestamp values only) may or
-     * may be not enclosed in quotes, so, for example, both --from=07/23/16 14:00:00 and --from="=07/23/16 14:00:00"
-     * should be valid and recognized as valid timestamp values by the parser.
+// Package protected -----------------------------------------------------------------------------------------------
 
-     *
-     * @param nextCommandLineSections needed because we can specify timestamps without quotes. If used, the used
-     *                                sections will be removed from the array. The method must be prepared to handle
-     *                                the cases when the list is null or empty.
-     */
-    public static Object typeHeuristics(String value, List<String> nextCommandLineSections) {
+// Protected -------------------------------------------------------------------------------------------------------
 
-        if (value == null) {
-            return null;
-        }
+// Private ---------------------------------------------------------------------------------------------------------
 
-        //
-        // first try timestamps
-        //
+// Private Static --------------------------------------------------------------------------------------------------
 
-        if (TimestampOption.isTimestampOptionValue(value)) {
-            return value;
-        }
+    private static void parse(ArgumentTokens tokens, int from, OptionSchema schema, CommandCatalog commands,
+                              OptionList options) throws Exception {
+
+        int size = tokens.size();
 
         //
-        // timestamp is a special case in that we allow space separated sections of the timestamp to be specified
-        // on command line without quote enclosure
+        // a help option is handled wherever it is, before the argument at the current position; the positions of the
+        // help options are found once
         //
 
-        if (nextCommandLineSections != null && nextCommandLineSections.size() > 0) {
+        BitSet helpOptions = new BitSet(size);
 
-            String timestampCandidateValue = value + " " + nextCommandLineSections.get(0);
-            if (TimestampOption.isTimestampOptionValue(timestampCandidateValue)) {
+        for(int i = from; i < size; i ++) {
 
-                nextCommandLineSections.remove(0);
-                return timestampCandidateValue;
+            if (isHelpOption(tokens.get(i))) {
+                helpOptions.set(i);
             }
         }
 
-        //
-        // attempt to convert to numeric value
-        //
+        int nextHelpOption = helpOptions.nextSetBit(from);
 
-        try {
+        // reused for every long literal option, the timestamp heuristics only look at the next argument
+        List<String> next = new ArrayList<>(1);
 
-            return Long.parseLong(value);
+        for(int i = tokens.first(from); i < size; i = tokens.next(i)) {
 
-        }
-        catch (Exception e) {
+            String current = tokens.get(i);
 
-            // ignore, keep trying
-        }
+            if (nextHelpOption != -1 && nextHelpOption < i) {
 
-        //
-        // not a long, that's OK
-        //
+                //
+                // help options the parser moved past without seeing them are left alone
+                //
 
-        try {
+                nextHelpOption = helpOptions.nextSetBit(i);
+            }
 
-            return Double.parseDouble(value);
+            if (VERBOSE_LONG_LITERAL.equals(current) || VERBOSE_SHORT_LITERAL.equals(current)) {
 
-        }
-        catch (Exception e) {
+                VerboseOption verboseOption = new VerboseOption();
+                if(schema.isDeclared(verboseOption)) {
+                    tokens.consume(i);
+                    options.add(verboseOption);
+                }
+            }
+            else if (nextHelpOption != -1) {
 
-            // ignore, keep trying
-        }
+                //
+                // handled as help option - this is handled out-of-band and the list of required and optional options
+                // is not consulted
+                //
 
-        //
-        // not a double, that's OK
-        //
+                int helpOptionIndex = nextHelpOption;
+                nextHelpOption = helpOptions.nextSetBit(helpOptionIndex + 1);
+                tokens.consume(helpOptionIndex);
+                options.add(newHelpOption(tokens.get(helpOptionIndex), commands));
+
+                //
+                // the parser moves past the current position: the argument at the current position, or the one that
+                // follows it if the help option was at the current position, is not parsed
+                //
+
+                i = tokens.first(i);
+            }
+            else if (current.startsWith("--")) {
 
-        String lc = value.toLowerCase();
+                int nextIndex = tokens.next(i);
 
-        if ("true".equals(lc)) {
+                next.clear();
 
-            return Boolean.TRUE;
-        }
+                if (nextIndex < size) {
+                    next.add(tokens.get(nextIndex));
+                }
 
-        if ("false".equals(lc)) {
+                Option option = parseLongLiteralOption(current, next);
 
-            return Boolean.FALSE;
-        }
+                if (nextIndex < size && next.isEmpty()) {
 
-        //
-        // string
-        //
+                    //
+                    // we used the next argument for the timestamp
+                    //
+
+                    tokens.consume(nextIndex);
+                }
+
+                if (schema.isDeclared(option)) {
+                    tokens.consume(i);
+                    // literals first, the list indexes the option by its literals
+                    schema.copyLiterals(option);
+                    options.add(option);
+                }
+            }
+            else if (current.startsWith("-")) {
+
+                if (current.length() == 1) {
+                    // "-" - currently we have no use for it, advertise it as a user error
+                    throw new UserErrorException("invalid option: '-'");
+                }
+
+                //
+                // short option candidate - we only use the character following '-' and we ignore the rest
+                //
+
+                char shortLiteral = current.charAt(1);
+
+                int nextIndex = tokens.next(i);
+
+                Option candidateOption;
 
-        return value;
+                if (nextIndex == size || tokens.get(nextIndex).startsWith("-")) {
+
+                    // boolean option
+                    candidateOption = new BooleanOption(shortLiteral);
+                }
+                else {
+
+                    String valueAsString = tokens.get(nextIndex);
+                    Object value = typeHeuristics(valueAsString, null);
+                    if (value instanceof String) {
+                        candidateOption = new StringOption(shortLiteral);
+                        ((StringOption)candidateOption).setValue((String)value);
+
+                    }
+                    else if (value instanceof Long) {
+                        candidateOption = new LongOption(shortLiteral);
+                        ((LongOption)candidateOption).setValue((Long)value);
+
+                    }
+                    else if (value instanceof Double) {
+                        candidateOption = new DoubleOption(shortLiteral);
+                        ((DoubleOption)candidateOption).setValue((Double)value);
+                    }
+                    else {
+                        throw new RuntimeException("NOT YET IMPLEMENTED " + value);
+                    }
+                }
+
+                if (schema.isDeclared(candidateOption)) {
+
+                    //
+                    // only add if we know about it
+                    //
+
+                    schema.copyLiterals(candidateOption);
+                    options.add(candidateOption);
+
+                    tokens.consume(i);
+
+                    if (candidateOption instanceof BooleanOption) {
+
+                        //
+                        // the parser moves past the current position: the argument that follows a boolean short
+                        // option is not parsed
+                        //
+
+                        i = tokens.first(i);
+                    }
+                    else {
+
+                        // consume the value too
+                        tokens.consume(nextIndex);
+                    }
+                }
+            }
+            else {
+
+                log.debug("unknown option \"" + current + "\", ignoring it");
+            }
+        }
     }
 
     /**
-     * The method applies type heuristics. The logic assumes that timestamp values (and timestamp values only) may or
-     * may be not enclosed in quotes, so, for example, both --from=07/23/16 14:00:00 and --from="=07/23/16 14:00:00"
-     * should be valid and recognized as valid timestamp values by the parser.
-     *
-     * @param commandLineArguments the current command line arguments list. We need it in order to handle space-separate
-     *                             options that are not enclosed by quotes.
-     * @param nextArgumentIndex - position in the command line argument list of the next argument that can be used
-     *                          when looking for timestamps. The method must be prepared to handle the case when the
-     *                          index is out out bounds, in which case it should be ignored.
+     * @param nextCommandLineSections the argument that follows the option, if any, which is removed from the list if
+     *                                used as part of a timestamp.
      */
-    public static Option parseLongLiteralOption(
-            String longLiteralOptionString, List<String> commandLineArguments, int nextArgumentIndex)
+    private static Option parseLongLiteralOption(String longLiteralOptionString, List<String> nextCommandLineSections)
             throws UserErrorException {
 
         if (longLiteralOptionString == null) {
@@ -457,15 +625,7 @@ public class OptionParser {
             valueAsString = longLiteralOptionString.substring(i + 1);
         }
 
-        List<String> theRestOfTheCommandLineArgs = new ArrayList<>();
-        if (commandLineArguments != null) {
-            for (int k = nextArgumentIndex; k < commandLineArguments.size(); k++) {
-                theRestOfTheCommandLineArgs.add(commandLineArguments.get(k));
-            }
-        }
-        int remainingArgCount = theRestOfTheCommandLineArgs.size();
-
-        Object o = typeHeuristics(valueAsString, theRestOfTheCommandLineArgs);
+        Object o = typeHeuristics(valueAsString, nextCommandLineSections);
 
         if (o instanceof Long) {
             LongOption option = new LongOption(optionName);
@@ -486,25 +646,12 @@ public class OptionParser {
 
             if (TimestampOption.isTimestampOptionValue((String)o)) {
 
-                TimestampOption option = new TimestampOption(optionName, (String) o);
-
                 //
-                // timestamp is a special case where heuristics may use the next command line argument (we allow timestamps
-                // to be specified without quotes), so if this is the case, adjust the command line accordingly
+                // timestamp is a special case where heuristics may use the next command line argument (we allow
+                // timestamps to be specified without quotes), in which case the argument was removed from the list
                 //
-                int differenceInArgumentCount = remainingArgCount - theRestOfTheCommandLineArgs.size();
-                if (differenceInArgumentCount > 1) {
-                    throw new RuntimeException(
-                            "not prepared to handle the case when we use more than one trailing arguments for the timestamp");
-                }
-                if (commandLineArguments != null && differenceInArgumentCount == 1) {
-                    //
-                    // we used arguments for the timestamp
-                    //
-                    commandLineArguments.remove(nextArgumentIndex);
-                }
 
-                return option;
+                return new TimestampOption(optionName, (String) o);
             }
             else {
 
@@ -519,93 +666,39 @@ public class OptionParser {
         }
     }
 
-// Attributes ------------------------------------------------------------------------------------------------------
-
-// Constructors ----------------------------------------------------------------------------------------------------
+    private static boolean isHelpOption(String argument) {
 
-// Public ----------------------------------------------------------------------------------------------------------
-
-// Static Package protected ----------------------------------------------------------------------------------------
+        return HELP_LONG_LITERAL.equals(argument) ||
+                HelpOption.LONG_LITERAL.equals(argument) ||
+                HELP_SHORT_LITERAL.equals(argument) ||
+                argument.startsWith(HELP_COMMAND_PREFIX);
+    }
 
     /**
-     * @return true if it detected and successfully handled a help option. If the option is detected, both the
-     * command line argument list and the option list are modified by side effect: the corresponding argument
-     * (arguments) are removed and the HelpOption instance is added to the options list.
+     * @param argument a help option argument.
+     * @param commands null means the commands available on the class path.
+     *
+     * @exception UserErrorException if the help option names a command that does not exist.
      */
-    static boolean handledHelpOption(int index, List<String> commandLineArguments, List<Option> options)
-            throws Exception {
+    private static HelpOption newHelpOption(String argument, CommandCatalog commands) throws Exception {
 
-        int i = index;
-        for(; i < commandLineArguments.size(); i ++) {
-
-            String current = commandLineArguments.get(i);
-
-            if (("--" + HelpOption.LONG_LITERAL).equals(current) ||
-                    HelpOption.LONG_LITERAL.equals(current) ||
-                    ("-" + HelpOption.SHORT_LITERAL).equals(current))  {
-
-                commandLineArguments.remove(i);
-                options.add(new HelpOption());
-                return true;
-            }
-            else if (current.startsWith("--" + HelpOption.LONG_LITERAL + "=")) {
-                String commandName = current.substring(("--" + HelpOption.LONG_LITERAL + "=").length());
+        HelpOption option = new HelpOption(commands);
 
-                Command command = InstanceFactory.getCommand(commandName);
+        if (argument.startsWith(HELP_COMMAND_PREFIX)) {
 
-                commandLineArguments.remove(i);
+            String commandName = argument.substring(HELP_COMMAND_PREFIX.length());
 
-                if (command == null) {
-                    throw new UserErrorException("unknown command: '" + commandName + "'");
-                }
+            Command command =
+                    commands == null ? InstanceFactory.getCommand(commandName) : commands.newCommand(commandName);
 
-                HelpOption option = new HelpOption();
-                option.setCommand(command);
-                options.add(option);
-                return true;
+            if (command == null) {
+                throw new UserErrorException("unknown command: '" + commandName + "'");
             }
-        }
-
-        return false;
-    }
-
-// Package protected -----------------------------------------------------------------------------------------------
-
-// Protected -------------------------------------------------------------------------------------------------------
-
-// Private ---------------------------------------------------------------------------------------------------------
-
-// Private Static --------------------------------------------------------------------------------------------------
-
-    private static void copyLiterals(Option option, Set<Option> required, Set<Option> optional) {
 
-        for(Option o: required) {
-            if (o.equals(option)) {
-                Character shortLiteral = o.getShortLiteral();
-                if (shortLiteral != null) {
-                    option.setShortLiteral(shortLiteral);
-                }
-                String longLiteral = o.getLongLiteral();
-                if (longLiteral != null) {
-                    option.setLongLiteral(longLiteral);
-                }
-                break;
-            }
+            option.setCommand(command);
         }
 
-        for(Option o: optional) {
-            if (o.equals(option)) {
-                Character shortLiteral = o.getShortLiteral();
-                if (shortLiteral != null) {
-                    option.setShortLiteral(shortLiteral);
-                }
-                String longLiteral = o.getLongLiteral();
-                if (longLiteral != null) {
-                    option.setLongLiteral(longLiteral);
-                }
-                break;
-            }
-        }
+        return option;
     }
 
     // Inner classes ---------------------------------------------------------------------------------------------------
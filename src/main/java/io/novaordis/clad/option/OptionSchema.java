@@ -0,0 +1,388 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.clad.option;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The compiled form of a set of required and a set of optional option declarations: the declarations are indexed by
+ * literal, so deciding whether a parsed option is declared, required or optional is a table lookup and not a scan of
+ * the declaration sets. Short literals index a 128 entry array (non-ASCII short literals fall back to a map), long
+ * literals a hash map.
+ *
+ * An option is recognized if it is equal with a declared option (same type, same short or same long literal), or with
+ * an option in the equivalence set of a declared option. The equivalents are indexed under their own literals when the
+ * schema is compiled, so equivalence costs nothing at parse time.
+ *
+ * A schema is immutable and can be shared by threads. It does not reflect later changes of the declared options.
+ *
+ * @see OptionParser#parse(int, java.util.List, OptionSchema)
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+public final class OptionSchema {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    public static final OptionSchema EMPTY = compile(Collections.<Option>emptySet(), Collections.<Option>emptySet());
+
+    private static final int SHORT_LITERAL_TABLE_SIZE = 128;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // owner class - the schema compiled for it (the last one, for owners that compute their declarations)
+    private static final Map<Class<?>, OptionSchema> cache = new ConcurrentHashMap<>();
+
+    /**
+     * Compiles the declarations, without caching.
+     */
+    public static OptionSchema compile(Set<Option> required, Set<Option> optional) {
+
+        return new OptionSchema(required, optional, signature(required, optional));
+    }
+
+    /**
+     * Returns the schema of the given declarations, compiled once per owner class (the Command or ApplicationRuntime
+     * implementation that declares them) and reused without looking at the declarations again: the owner's
+     * declarations must be constant.
+     *
+     * @see OptionSchema#forOwner(Class, Set, Set, boolean)
+     */
+    public static OptionSchema forOwner(Class<?> owner, Set<Option> required, Set<Option> optional) {
+
+        return forOwner(owner, required, optional, false);
+    }
+
+    /**
+     * @param revalidate if true, the schema compiled for the owner class is reused only for as long as the owner
+     *                   declares the same options: the declarations are compared by type and literals. For owners that
+     *                   compute their declarations (Command.computesOptions(),
+     *                   ApplicationRuntime.computesGlobalOptions()).
+     *
+     * @see OptionSchema#forOwner(Class, Set, Set)
+     */
+    public static OptionSchema forOwner(Class<?> owner, Set<Option> required, Set<Option> optional,
+                                        boolean revalidate) {
+
+        OptionSchema schema = cache.get(owner);
+
+        if (schema != null && !revalidate) {
+            return schema;
+        }
+
+        String signature = signature(required, optional);
+
+        if (schema == null || !schema.signature.equals(signature)) {
+
+            schema = new OptionSchema(required, optional, signature);
+            cache.put(owner, schema);
+        }
+
+        return schema;
+    }
+
+    /**
+     * Describes the declarations by type and literals, in iteration order, so equal signatures mean equal schemas.
+     * Equal declarations iterated in a different order yield different signatures, which only costs a recompilation.
+     */
+    static String signature(Set<Option> required, Set<Option> optional) {
+
+        if (required == null) {
+            throw new IllegalArgumentException("null required option set");
+        }
+
+        if (optional == null) {
+            throw new IllegalArgumentException("null optional option set");
+        }
+
+        StringBuilder sb = new StringBuilder();
+
+        for(Option o: required) {
+            appendSignature(sb.append('R'), o, true);
+        }
+
+        for(Option o: optional) {
+            appendSignature(sb.append('O'), o, true);
+        }
+
+        return sb.toString();
+    }
+
+    private static void appendSignature(StringBuilder sb, Option o, boolean withEquivalents) {
+
+        sb.append(o.getClass().getName()).append(' ').append(o.getShortLiteral()).append(' ').
+                append(o.getLongLiteral());
+
+        if (withEquivalents) {
+
+            for(Option e: o.getEquivalentOptions()) {
+                appendSignature(sb.append('~'), e, false);
+            }
+        }
+
+        sb.append(';');
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final Set<Option> required;
+    private final Set<Option> optional;
+    private final String signature;
+
+    private final Entry[] shortLiterals;
+    private final Map<Character, Entry> otherShortLiterals;
+    private final Map<String, Entry> longLiterals;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    private OptionSchema(Set<Option> required, Set<Option> optional, String signature) {
+
+        this.required = Collections.unmodifiableSet(new LinkedHashSet<>(required));
+        this.optional = Collections.unmodifiableSet(new LinkedHashSet<>(optional));
+        this.signature = signature;
+
+        this.shortLiterals = new Entry[SHORT_LITERAL_TABLE_SIZE];
+        this.otherShortLiterals = new HashMap<>();
+        this.longLiterals = new HashMap<>();
+
+        //
+        // the direct declarations are indexed first, so they take precedence over equivalents, and within each kind,
+        // required before optional, the order in which OptionParser used to consult them
+        //
+
+        for(Option o: required) {
+            index(o, o, true, false);
+        }
+
+        for(Option o: optional) {
+            index(o, o, false, false);
+        }
+
+        for(Option o: required) {
+            for(Option e: o.getEquivalentOptions()) {
+                index(e, o, true, true);
+            }
+        }
+
+        for(Option o: optional) {
+            for(Option e: o.getEquivalentOptions()) {
+                index(e, o, false, true);
+            }
+        }
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return true if the option is declared, or is equivalent with a declared option.
+     */
+    public boolean isDeclared(Option option) {
+
+        return isRequired(option) || isOptional(option);
+    }
+
+    /**
+     * @return true if the option is a required option, or is equivalent with a required option.
+     *
+     * @see OptionParser#isRequiredOption(Option, Set)
+     */
+    public boolean isRequired(Option option) {
+
+        return find(option, true) != null;
+    }
+
+    /**
+     * @return true if the option is an optional option, or is equivalent with an optional option.
+     *
+     * @see OptionParser#isOptionalOption(Option, Set)
+     */
+    public boolean isOptional(Option option) {
+
+        return find(option, false) != null;
+    }
+
+    /**
+     * Completes the literals of a parsed option (which only carries the literal it was specified with) with the
+     * literals of the declaration it is equal with. The optional declaration wins if the option is declared both as
+     * required and optional. Options that are only equivalent with a declaration are left alone.
+     */
+    public void copyLiterals(Option option) {
+
+        for(boolean isRequired: new boolean[] { true, false }) {
+
+            Entry e = find(option, isRequired);
+
+            if (e == null || e.equivalent) {
+                continue;
+            }
+
+            if (e.declaration.getShortLiteral() != null) {
+                option.setShortLiteral(e.declaration.getShortLiteral());
+            }
+
+            if (e.declaration.getLongLiteral() != null) {
+                option.setLongLiteral(e.declaration.getLongLiteral());
+            }
+        }
+    }
+
+    /**
+     * @return the required declarations. The set cannot be modified.
+     */
+    public Set<Option> getRequired() {
+
+        return required;
+    }
+
+    /**
+     * @return the optional declarations. The set cannot be modified.
+     */
+    public Set<Option> getOptional() {
+
+        return optional;
+    }
+
+    @Override
+    public String toString() {
+
+        return "OptionSchema[" + required.size() + " required, " + optional.size() + " optional]";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    /**
+     * Indexes the model under each of its literals, with one chain entry per literal.
+     */
+    private void index(Option model, Option declaration, boolean isRequired, boolean isEquivalent) {
+
+        Character c = model.getShortLiteral();
+
+        if (c != null) {
+
+            Entry e = new Entry(model, declaration, isRequired, isEquivalent);
+
+            if (c < SHORT_LITERAL_TABLE_SIZE) {
+
+                shortLiterals[c] = append(shortLiterals[c], e);
+            }
+            else {
+
+                otherShortLiterals.put(c, append(otherShortLiterals.get(c), e));
+            }
+        }
+
+        String s = model.getLongLiteral();
+
+        if (s != null) {
+
+            longLiterals.put(s, append(longLiterals.get(s), new Entry(model, declaration, isRequired, isEquivalent)));
+        }
+    }
+
+    /**
+     * @return the first entry whose model equals the option - the first entry with the option's type among the
+     * entries indexed under the option's literals.
+     */
+    private Entry find(Option option, boolean isRequired) {
+
+        if (option == null) {
+            return null;
+        }
+
+        Character c = option.getShortLiteral();
+
+        if (c != null) {
+
+            Entry e = find(c < SHORT_LITERAL_TABLE_SIZE ? shortLiterals[c] : otherShortLiterals.get(c), option,
+                    isRequired);
+
+            if (e != null) {
+                return e;
+            }
+        }
+
+        String s = option.getLongLiteral();
+
+        return s == null ? null : find(longLiterals.get(s), option, isRequired);
+    }
+
+    private static Entry find(Entry chain, Option option, boolean isRequired) {
+
+        for(Entry e = chain; e != null; e = e.next) {
+
+            if (e.required == isRequired && e.model.getClass().equals(option.getClass())) {
+                return e;
+            }
+        }
+
+        return null;
+    }
+
+    private static Entry append(Entry chain, Entry e) {
+
+        if (chain == null) {
+            return e;
+        }
+
+        Entry last = chain;
+
+        while(last.next != null) {
+            last = last.next;
+        }
+
+        last.next = e;
+        return chain;
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+    /**
+     * A declared option, or an option equivalent with a declared option, indexed under one of its literals. Entries
+     * indexed under the same literal are chained.
+     */
+    private static class Entry {
+
+        // the option a parsed option must be equal with
+        private final Option model;
+
+        // the declaration that brought the model in
+        private final Option declaration;
+
+        private final boolean required;
+        private final boolean equivalent;
+
+        private Entry next;
+
+        Entry(Option model, Option declaration, boolean required, boolean equivalent) {
+
+            this.model = model;
+            this.declaration = declaration;
+            this.required = required;
+            this.equivalent = equivalent;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.clad.option;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Application help rendered at build time, with @COMMANDS@ resolved against the commands known to the build, so
+ * displaying it does not require listing the commands and looking up their help files. The resources are generated by
+ * DiscoveryIndexProcessor, under META-INF/clad/help/, named after the help file they were rendered from.
+ *
+ * The first line of the resource is "fingerprint <command-fingerprint>", the fingerprint of the discovery index the
+ * help was rendered with (see DiscoveryIndex.getCommandFingerprint()). The rest is the rendered help. The help is only
+ * valid as long as the class path yields the same fingerprint.
+ *
+ * @see io.novaordis.clad.discovery.DiscoveryIndexProcessor
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+public final class PrerenderedHelp {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final Logger log = LoggerFactory.getLogger(PrerenderedHelp.class);
+
+    public static final String DIRECTORY = "META-INF/clad/help/";
+
+    public static final String FINGERPRINT_PREFIX = "fingerprint ";
+
+    // cached for the help files that were not pre-rendered
+    private static final PrerenderedHelp MISSING = new PrerenderedHelp("", new byte[0], 0);
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    private static final ConcurrentMap<String, PrerenderedHelp> cache = new ConcurrentHashMap<>();
+
+    /**
+     * @param helpFilePath the help file, relative to the class path.
+     *
+     * @return the name of the resource the pre-rendered help file is stored under.
+     */
+    public static String toResourceName(String helpFilePath) {
+
+        return DIRECTORY + helpFilePath;
+    }
+
+    /**
+     * Renders the content of a help file into the content of a pre-rendered help resource.
+     *
+     * @param helpContent the help file content, not necessarily terminated with a new line.
+     */
+    public static byte[] render(byte[] helpContent, MacroResolver resolver, String fingerprint) throws Exception {
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(2 * helpContent.length + 128);
+        baos.write((FINGERPRINT_PREFIX + fingerprint + "\n").getBytes(HelpTemplate.CHARSET));
+        HelpTemplate.parse(HelpTemplate.terminate(helpContent, helpContent.length)).render(baos, resolver);
+        return baos.toByteArray();
+    }
+
+    /**
+     * @param helpFilePath the help file, relative to the class path.
+     *
+     * @return the pre-rendered help, or null if the help file was not pre-rendered, or the resource is not valid.
+     */
+    static PrerenderedHelp load(String helpFilePath) throws IOException {
+
+        PrerenderedHelp h = cache.get(helpFilePath);
+
+        if (h == null) {
+
+            h = read(helpFilePath);
+            PrerenderedHelp previous = cache.putIfAbsent(helpFilePath, h);
+            h = previous == null ? h : previous;
+        }
+
+        return h == MISSING ? null : h;
+    }
+
+    static void clearCache() {
+
+        cache.clear();
+    }
+
+    private static PrerenderedHelp read(String helpFilePath) throws IOException {
+
+        String resourceName = toResourceName(helpFilePath);
+        byte[] content = HelpTemplate.readResource(resourceName);
+
+        if (content == null) {
+
+            return MISSING;
+        }
+
+        // the content is terminated with a new line
+        int i = 0;
+
+        while(content[i] != '\n') {
+            i ++;
+        }
+
+        String header = new String(content, 0, i, HelpTemplate.CHARSET);
+
+        if (!header.startsWith(FINGERPRINT_PREFIX)) {
+
+            log.warn("invalid pre-rendered help " + resourceName + ", ignoring it");
+            return MISSING;
+        }
+
+        return new PrerenderedHelp(header.substring(FINGERPRINT_PREFIX.length()).trim(), content, i + 1);
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private String fingerprint;
+
+    private byte[] content;
+
+    // where the help starts, after the header
+    private int offset;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    private PrerenderedHelp(String fingerprint, byte[] content, int offset) {
+
+        this.fingerprint = fingerprint;
+        this.content = content;
+        this.offset = offset;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return the command fingerprint of the class path the help was rendered on.
+     */
+    public String getFingerprint() {
+
+        return fingerprint;
+    }
+
+    /**
+     * Writes the help. The output stream is not flushed.
+     */
+    public void write(OutputStream outputStream) throws IOException {
+
+        outputStream.write(content, offset, content.length - offset);
+    }
+
+    @Override
+    public String toString() {
+
+        return "PrerenderedHelp[" + fingerprint + "]";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -14,33 +14,63 @@
  * limitations under the License.
  */
 
+
 package io.novaordis.clad.option;
 
 import java.text.DateFormat;
-import java.text.ParseException;
+import java.text.Format;
+import java.text.ParsePosition;
 import java.text.SimpleDateFormat;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.Period;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.ResolverStyle;
+import java.time.temporal.ChronoField;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAccessor;
+import java.time.temporal.TemporalQueries;
+import java.util.Date;
+import java.util.TimeZone;
 
 /**
  * Used to declare timestamp options. A timestamp option represents a point in time, with millisecond precision.
- * The option instance does not store the parsed numeric timestamp value, just the string representation. However,
- * the string value is parsed during the instance construction to detect invalid formats. The current implementation
- * relies on a built-in default timestamp format, but it could be improved in the future to allow for a pluggable
- * format.
+ * The option instance keeps the string representation, and the value parsed when the string is set, which is exposed
+ * as getEpochMillis(). Invalid values are rejected when they are set.
  *
  * The default built-in full timestamp format is:
  *
  * MM/dd/yy HH:mm:ss
  *
- * The format does not provide for an explicitly declared timezone, and the users of the TimestampOption instances must
- * account for that and adjust the values in case the events' timestamp are declared with a specific timezone offset.
+ * The format does not provide for an explicitly declared timezone. The values are resolved in the option's time zone,
+ * the JVM's default time zone unless setZone() says otherwise. A full format that parses a zone or an offset (see
+ * setFormatters()) overrides the option's time zone for the values that carry one.
  *
  * A "relative" format that can be used to declare timestamps within the boundaries of the same day is:
  *
  * HH:mm:ss
  *
+ * Relative values are resolved against the option's reference day (see setReferenceDay()), the current day by
+ * default.
+ *
+ * The formats are lenient, the way the java.text formats they replaced were: the fields may have fewer or more digits
+ * than the pattern letters, and out of range values roll over ("13/01/16 00:00:00" is January 1st, 2017). The two
+ * digit year is placed within 80 years before and 20 years after the time the class is loaded (TWO_DIGIT_YEAR_START).
+ * As with SimpleDateFormat.parse(), a format only has to match the beginning of the value ("12:00:00.123" is
+ * 12:00:00). The values the default formatters do not match, but SimpleDateFormat did (spaces before the fields, signs,
+ * non-ASCII digits), are parsed with SimpleDateFormat, so the options accept the same values they always did.
+ *
  * No quotation marks are necessary around the timestamp string, the parser knows how to handle the space between the
  * date section and the time section.
  *
+ * The formatters are immutable, so options can be parsed concurrently. An instance, like any other option, is not
+ * meant to be modified concurrently.
+ *
  * @author Ovidiu Feodorov <ovidiu@novaordis.com>
  * @since 1/26/16
  */
@@ -50,25 +80,177 @@ public class TimestampOption extends OptionBase {
 
     public static final String DEFAULT_FORMAT_AS_STRING = "MM/dd/yy HH:mm:ss";
 
+    public static final String DEFAULT_RELATIVE_FORMAT_AS_STRING =
+            DEFAULT_FORMAT_AS_STRING.substring(DEFAULT_FORMAT_AS_STRING.indexOf(' ') + 1);
+
+    /**
+     * Two digit years are placed within the hundred years that start at this moment, 80 years before the class was
+     * loaded, the way SimpleDateFormat places them. The century is picked for the whole date and time, not just for
+     * the year: if the start is 10/17/1946, "01/01/46 00:00:00" is in 2046, and "12/01/46 00:00:00" is in 1946.
+     */
+    public static final LocalDateTime TWO_DIGIT_YEAR_START =
+            LocalDateTime.now().minusYears(80).truncatedTo(ChronoUnit.SECONDS);
+
+    /**
+     * The year of TWO_DIGIT_YEAR_START: a two digit year designates a year between this one and 99 years later.
+     */
+    public static final int TWO_DIGIT_YEAR_BASE = TWO_DIGIT_YEAR_START.getYear();
+
+    public static final DateTimeFormatter DEFAULT_FULL_FORMATTER = new DateTimeFormatterBuilder().
+            parseLenient().
+            appendValue(ChronoField.MONTH_OF_YEAR, 2).
+            appendLiteral('/').
+            appendValue(ChronoField.DAY_OF_MONTH, 2).
+            appendLiteral('/').
+            appendValueReduced(ChronoField.YEAR, 2, 2, TWO_DIGIT_YEAR_BASE).
+            appendLiteral(' ').
+            append(timeFormatter()).
+            toFormatter().
+            withResolverStyle(ResolverStyle.LENIENT);
+
+    public static final DateTimeFormatter DEFAULT_RELATIVE_FORMATTER = timeFormatter();
+
+    /**
+     * Shared, and DateFormat instances are not thread-safe: use it from one thread only, or use an instance's
+     * getFullFormat(), which is not shared.
+     *
+     * @deprecated the option is parsed with DEFAULT_FULL_FORMATTER, which is immutable.
+     */
+    @Deprecated
     public static final DateFormat DEFAULT_FULL_FORMAT = new SimpleDateFormat(DEFAULT_FORMAT_AS_STRING);
 
+    // the java.text adapters parse without throwing exceptions on mismatch; they are immutable, like the formatters
+    private static final Format DEFAULT_FULL_PARSER = DEFAULT_FULL_FORMATTER.toFormat();
+    private static final Format DEFAULT_RELATIVE_PARSER = DEFAULT_RELATIVE_FORMATTER.toFormat();
+
+    // the SimpleDateFormat fallback parses in UTC, which yields the local date and time as parsed
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+    private static final Date LEGACY_TWO_DIGIT_YEAR_START = Date.from(TWO_DIGIT_YEAR_START.toInstant(ZoneOffset.UTC));
+
     // Static ----------------------------------------------------------------------------------------------------------
 
+    /**
+     * @return true if the value is a valid TimestampOption value in the default formats, without parsing it (see
+     * ValueClassifier). A null value is valid.
+     */
     public static boolean isTimestampOptionValue(String value) {
 
-        try {
-            new TimestampOption(null, value);
-            return true;
-        }
-        catch(IllegalArgumentException e) {
+        return value == null || ValueClassifier.isTimestamp(value);
+    }
+
+    /**
+     * Builds a formatter with the leniency of the default formatters, to be installed with setFormatters().
+     *
+     * @see DateTimeFormatter#ofPattern(String)
+     */
+    public static DateTimeFormatter toFormatter(String pattern) {
+
+        return new DateTimeFormatterBuilder().
+                parseLenient().
+                appendPattern(pattern).
+                toFormatter().
+                withResolverStyle(ResolverStyle.LENIENT);
+    }
+
+    private static DateTimeFormatter timeFormatter() {
+
+        return new DateTimeFormatterBuilder().
+                parseLenient().
+                appendValue(ChronoField.HOUR_OF_DAY, 2).
+                appendLiteral(':').
+                appendValue(ChronoField.MINUTE_OF_HOUR, 2).
+                appendLiteral(':').
+                appendValue(ChronoField.SECOND_OF_MINUTE, 2).
+                toFormatter().
+                withResolverStyle(ResolverStyle.LENIENT);
+    }
+
+    /**
+     * @return true if the year of a value in the default full format has two digits, and was therefore placed relative
+     * to TWO_DIGIT_YEAR_BASE. Years with more or fewer digits are taken literally.
+     */
+    private static boolean hasTwoDigitYear(String value) {
+
+        int i = value.indexOf('/');
+        i = i < 0 ? -1 : value.indexOf('/', i + 1);
+
+        if (i < 0) {
             return false;
         }
+
+        int digits = 0;
+
+        for(i ++; i < value.length() && Character.isDigit(value.charAt(i)); i ++) {
+            digits ++;
+        }
+
+        return digits == 2;
+    }
+
+    /**
+     * @return the resolved fields, or null if the format does not match the beginning of the text. Like
+     * SimpleDateFormat.parse(), ignores whatever follows the match.
+     */
+    private static TemporalAccessor parse(Format parser, String text) {
+
+        ParsePosition position = new ParsePosition(0);
+
+        Object result = parser.parseObject(text, position);
+
+        return position.getErrorIndex() >= 0 ? null : (TemporalAccessor)result;
+    }
+
+    /**
+     * Parses the text with a lenient SimpleDateFormat, the way the option did before it was built on java.time.
+     *
+     * @return the local date and time, or null if the format does not match the beginning of the text.
+     */
+    private static LocalDateTime legacyParse(String pattern, String text) {
+
+        SimpleDateFormat format = new SimpleDateFormat(pattern);
+        format.setTimeZone(UTC);
+        format.set2DigitYearStart(LEGACY_TWO_DIGIT_YEAR_START);
+
+        Date date = format.parse(text, new ParsePosition(0));
+
+        if (date == null) {
+            return null;
+        }
+
+        long ms = date.getTime();
+
+        return LocalDateTime.ofEpochSecond(
+                Math.floorDiv(ms, 1000L), (int)Math.floorMod(ms, 1000L) * 1000000, ZoneOffset.UTC);
     }
 
     // Attributes ------------------------------------------------------------------------------------------------------
 
     private String value;
     private boolean relative;
+
+    private DateTimeFormatter fullFormatter;
+    private DateTimeFormatter relativeFormatter;
+    private Format fullParser;
+    private Format relativeParser;
+
+    private ZoneId zone;
+
+    // null means the current day
+    private LocalDate referenceDay;
+
+    //
+    // the parsed value: the date and time (and the zone, if the value carries one) for full values, the time and the
+    // days the time overflowed into for relative values
+    //
+
+    private LocalDateTime dateTime;
+    private ZoneId valueZone;
+    private LocalTime time;
+    private Period excessDays;
+
+    private long epochMillis;
+
+    // java.text forms of the default formats, created on demand
     private DateFormat fullFormat;
     private DateFormat relativeFormat;
 
@@ -99,10 +281,11 @@ public class TimestampOption extends OptionBase {
 
         super(shortLiteral, longLiteral);
 
-        this.fullFormat = DEFAULT_FULL_FORMAT;
-
-        this.relativeFormat =
-                new SimpleDateFormat(DEFAULT_FORMAT_AS_STRING.substring(DEFAULT_FORMAT_AS_STRING.indexOf(' ') + 1));
+        this.fullFormatter = DEFAULT_FULL_FORMATTER;
+        this.relativeFormatter = DEFAULT_RELATIVE_FORMATTER;
+        this.fullParser = DEFAULT_FULL_PARSER;
+        this.relativeParser = DEFAULT_RELATIVE_PARSER;
+        this.zone = ZoneId.systemDefault();
 
         setValue(value);
     }
@@ -116,6 +299,10 @@ public class TimestampOption extends OptionBase {
 
             value = null;
             relative = false;
+            dateTime = null;
+            valueZone = null;
+            time = null;
+            excessDays = null;
             return;
         }
 
@@ -123,10 +310,11 @@ public class TimestampOption extends OptionBase {
             throw new IllegalArgumentException("value is not a String");
         }
 
-        Object[] result = validateValue((String)o);
+        String s = (String)o;
 
-        this.value = (String)result[0];
-        this.relative = (Boolean)result[1];
+        if (!parse(s, fullParser, relativeParser)) {
+            throw new IllegalArgumentException("\"" + s + "\" does not match neither format (full or relative)");
+        }
     }
 
     @Override
@@ -142,13 +330,130 @@ public class TimestampOption extends OptionBase {
 
     // Public ----------------------------------------------------------------------------------------------------------
 
+    /**
+     * @return the point in time the value represents, in milliseconds since the epoch. The value was parsed and
+     * resolved when it was set, or when the time zone, the reference day or the formats changed.
+     *
+     * @exception IllegalStateException if the option has no value.
+     */
+    public long getEpochMillis() {
+
+        if (value == null) {
+            throw new IllegalStateException(this + " has no value");
+        }
+
+        return epochMillis;
+    }
+
+    /**
+     * Replaces the formats the values are parsed with, and re-parses the current value, if any. The formatters should
+     * be lenient and resolve leniently, like the ones built by toFormatter(), if they are to accept the values the
+     * default formats accept.
+     *
+     * @param full must yield a date, and may yield a time and a zone or an offset.
+     * @param relative must yield a time. Null if the option does not accept relative values.
+     *
+     * @exception IllegalArgumentException if the current value does not match the new formats. The formats are not
+     * replaced.
+     */
+    public void setFormatters(DateTimeFormatter full, DateTimeFormatter relative) {
+
+        if (full == null) {
+            throw new IllegalArgumentException("null full formatter");
+        }
+
+        Format fp = full.toFormat();
+        Format rp = relative == null ? null : relative.toFormat();
+
+        if (value != null && !parse(value, fp, rp)) {
+
+            throw new IllegalArgumentException(
+                    "\"" + value + "\" does not match neither of the new formats (full or relative)");
+        }
+
+        this.fullFormatter = full;
+        this.relativeFormatter = relative;
+        this.fullParser = fp;
+        this.relativeParser = rp;
+    }
+
+    public DateTimeFormatter getFullFormatter() {
+
+        return fullFormatter;
+    }
+
+    /**
+     * @return may return null if the option does not accept relative values.
+     */
+    public DateTimeFormatter getRelativeFormatter() {
+
+        return relativeFormatter;
+    }
+
+    /**
+     * Sets the time zone the values are resolved in, unless they carry their own.
+     */
+    public void setZone(ZoneId zone) {
+
+        if (zone == null) {
+            throw new IllegalArgumentException("null zone");
+        }
+
+        this.zone = zone;
+        resolve();
+    }
+
+    public ZoneId getZone() {
+
+        return zone;
+    }
+
+    /**
+     * Sets the day relative values are resolved against.
+     *
+     * @param day null means the current day (in the option's time zone) at the time the value is resolved.
+     */
+    public void setReferenceDay(LocalDate day) {
+
+        this.referenceDay = day;
+        resolve();
+    }
+
+    /**
+     * @return the reference day, or null if relative values are resolved against the current day.
+     */
+    public LocalDate getReferenceDay() {
+
+        return referenceDay;
+    }
+
+    /**
+     * @return the java.text form of the default full format, in the option's time zone. Not shared, and not used to
+     * parse the value.
+     */
     public DateFormat getFullFormat() {
 
+        if (fullFormat == null) {
+
+            fullFormat = new SimpleDateFormat(DEFAULT_FORMAT_AS_STRING);
+            fullFormat.setTimeZone(TimeZone.getTimeZone(zone));
+        }
+
         return fullFormat;
     }
 
+    /**
+     * @return the java.text form of the default relative format, in the option's time zone. Not shared, and not used
+     * to parse the value.
+     */
     public DateFormat getRelativeFormat() {
 
+        if (relativeFormat == null) {
+
+            relativeFormat = new SimpleDateFormat(DEFAULT_RELATIVE_FORMAT_AS_STRING);
+            relativeFormat.setTimeZone(TimeZone.getTimeZone(zone));
+        }
+
         return relativeFormat;
     }
 
@@ -173,46 +478,143 @@ public class TimestampOption extends OptionBase {
     // Private ---------------------------------------------------------------------------------------------------------
 
     /**
-     * @throws IllegalArgumentException on invalid value.
+     * Parses and resolves the value. Installs it only if both succeed.
      *
-     * @return an array that has on the first position the validated value as string - may be adjusted, trimmed, etc.
-     * and on the second the boolean value of "is relative"
+     * @return false if the value matches neither format, or cannot be represented as milliseconds since the epoch.
      */
-    private Object[] validateValue(String value) throws IllegalArgumentException {
+    private boolean parse(String s, Format fullParser, Format relativeParser) {
 
-        Object[] result = new Object[2];
+        TemporalAccessor parsed = parse(fullParser, s);
 
-        try {
+        if (parsed != null) {
+
+            LocalDate d = parsed.query(TemporalQueries.localDate());
+
+            if (d != null) {
+
+                LocalTime lt = parsed.query(TemporalQueries.localTime());
+                LocalDateTime dt = d.atTime(lt == null ? LocalTime.MIDNIGHT : lt);
+
+                //
+                // the formatter places the two digit year by year only, the dates that fall before the start of the
+                // two digit year century belong to the next century
+                //
 
-            getFullFormat().parse(value);
+                if (fullParser == DEFAULT_FULL_PARSER && dt.isBefore(TWO_DIGIT_YEAR_START) && hasTwoDigitYear(s)) {
 
-            result[0] = value;
-            result[1] = false;
-            return result;
+                    dt = dt.plusYears(100);
+                }
 
+                if (install(s, dt, parsed.query(TemporalQueries.zone()), null, null)) {
+                    return true;
+                }
+            }
         }
-        catch(ParseException e) {
-            // ignore, try next
+
+        if (relativeParser != null && (parsed = parse(relativeParser, s)) != null &&
+                install(s, null, null,
+                        parsed.query(TemporalQueries.localTime()), parsed.query(DateTimeFormatter.parsedExcessDays()))) {
+
+            return true;
         }
 
-        try {
+        //
+        // the values the default formatters reject may still be valid SimpleDateFormat values
+        //
 
-            getRelativeFormat().parse(value);
+        if (fullParser == DEFAULT_FULL_PARSER) {
 
-            result[0] = value;
-            result[1] = true;
-            return result;
+            LocalDateTime dt = legacyParse(DEFAULT_FORMAT_AS_STRING, s);
 
+            if (dt != null && install(s, dt, null, null, null)) {
+                return true;
+            }
         }
-        catch(ParseException e) {
 
-            throw new IllegalArgumentException("\"" + value + "\" does not match neither format (full or relative)");
+        if (relativeParser == DEFAULT_RELATIVE_PARSER) {
+
+            LocalDateTime dt = legacyParse(DEFAULT_RELATIVE_FORMAT_AS_STRING, s);
+
+            if (dt != null) {
+
+                //
+                // the time is parsed on January 1st 1970, the hours past 23 spill into the next days
+                //
+
+                Period ed = Period.ofDays((int)ChronoUnit.DAYS.between(LocalDate.ofEpochDay(0), dt.toLocalDate()));
+
+                if (install(s, null, null, dt.toLocalTime(), ed)) {
+                    return true;
+                }
+            }
         }
+
+        return false;
     }
 
-    // Inner classes ---------------------------------------------------------------------------------------------------
+    /**
+     * Installs a parsed value, full (dt) or relative (t, ed), and resolves it.
+     *
+     * @return false, with the previous value left in place, if the value cannot be represented as milliseconds since
+     * the epoch.
+     */
+    private boolean install(String s, LocalDateTime dt, ZoneId vz, LocalTime t, Period ed) {
+
+        String previousValue = value;
+        boolean previousRelative = relative;
+        LocalDateTime previousDateTime = dateTime;
+        ZoneId previousValueZone = valueZone;
+        LocalTime previousTime = time;
+        Period previousExcessDays = excessDays;
+
+        this.value = s;
+        this.relative = dt == null;
+        this.dateTime = dt;
+        this.valueZone = vz;
+        this.time = t;
+        this.excessDays = ed;
 
+        try {
 
+            resolve();
+            return true;
+        }
+        catch(DateTimeException | ArithmeticException e) {
+
+            this.value = previousValue;
+            this.relative = previousRelative;
+            this.dateTime = previousDateTime;
+            this.valueZone = previousValueZone;
+            this.time = previousTime;
+            this.excessDays = previousExcessDays;
+            return false;
+        }
+    }
+
+    /**
+     * Computes the epoch value of the parsed value.
+     */
+    private void resolve() {
+
+        if (value == null) {
+            return;
+        }
+
+        LocalDateTime resolved;
+
+        if (relative) {
+
+            LocalDate day = referenceDay != null ? referenceDay : LocalDate.now(zone);
+            resolved = day.atTime(time).plus(excessDays);
+        }
+        else {
 
+            resolved = dateTime;
+        }
+
+        epochMillis = resolved.atZone(valueZone != null ? valueZone : zone).toInstant().toEpochMilli();
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
 
 }
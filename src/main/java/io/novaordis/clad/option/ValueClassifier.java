@@ -0,0 +1,458 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.clad.option;
+
+/**
+ * Classifies command line values (timestamp, integer, floating point, boolean, string) by looking at their characters,
+ * in a single pass, the same way OptionParser.typeHeuristics() did by trial and error (a timestamp parse, then
+ * Long.parseLong(), then Double.parseDouble()), but without the failed parse attempts and their exceptions. The only
+ * allocation is the value that is returned.
+ *
+ * The timestamp lexer mirrors the lenient java.text.SimpleDateFormat parsing of TimestampOption's full
+ * (DEFAULT_FORMAT_AS_STRING) and relative formats: a numeric field may be preceded by spaces or tabs and is followed by
+ * the literal separator, and anything may follow the last field. The lexer decides on its own values made of ASCII
+ * digits and separators - the overwhelming majority. It defers to the formats for the others (signs, non-ASCII digits,
+ * the NaN and infinity symbols, very long numbers), which the formats accept too.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+final class ValueClassifier {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final int NO = 0;
+    private static final int YES = 1;
+    private static final int UNKNOWN = 2;
+
+    // the separators between the numeric fields of TimestampOption's full and relative formats
+    private static final char[] FULL_FORMAT_SEPARATORS = { '/', '/', ' ', ':', ':' };
+    private static final char[] RELATIVE_FORMAT_SEPARATORS = { ':', ':' };
+
+    // longer numeric fields are left to the formats
+    private static final int MAX_TIMESTAMP_FIELD_DIGITS = 9;
+
+    // any number with this many decimal digits fits in a long
+    private static final int MAX_SAFE_LONG_DIGITS = 18;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return true if the value is a valid TimestampOption value.
+     *
+     * @see TimestampOption#isTimestampOptionValue(String)
+     */
+    static boolean isTimestamp(String value) {
+
+        return isTimestamp(value, null);
+    }
+
+    /**
+     * @param next if not null, the value that follows, and the method answers for value + " " + next, without
+     *             building the string.
+     *
+     * @return true if the value (or the value, a space and the next value) is a valid TimestampOption value.
+     */
+    static boolean isTimestamp(String value, String next) {
+
+        int result = lexTimestamp(value, next);
+
+        if (result == UNKNOWN) {
+
+            return parsesAsTimestamp(next == null ? value : value + " " + next);
+        }
+
+        return result == YES;
+    }
+
+    /**
+     * Classifies a value that is not a timestamp.
+     *
+     * @return a Long, a Double, a Boolean, or the value itself if it is neither, exactly like Long.parseLong(),
+     * Double.parseDouble() and a case insensitive comparison with "true" and "false", in this order.
+     */
+    static Object classify(String value) {
+
+        Object number = toLong(value);
+
+        if (number != null) {
+            return number;
+        }
+
+        number = toDouble(value);
+
+        if (number != null) {
+            return number;
+        }
+
+        if (equalsLowerCase(value, "true")) {
+            return Boolean.TRUE;
+        }
+
+        if (equalsLowerCase(value, "false")) {
+            return Boolean.FALSE;
+        }
+
+        return value;
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    private ValueClassifier() {
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return YES, NO or UNKNOWN, if the formats must decide.
+     */
+    private static int lexTimestamp(String value, String next) {
+
+        //
+        // both formats need two ':' separators
+        //
+
+        int colons = count(value, ':') + (next == null ? 0 : count(next, ':'));
+
+        if (colons < 2) {
+            return NO;
+        }
+
+        int full = lexTimestamp(value, next, FULL_FORMAT_SEPARATORS);
+
+        if (full == YES) {
+            return YES;
+        }
+
+        int relative = lexTimestamp(value, next, RELATIVE_FORMAT_SEPARATORS);
+
+        if (relative == YES) {
+            return YES;
+        }
+
+        return full == NO && relative == NO ? NO : UNKNOWN;
+    }
+
+    /**
+     * Matches the numeric fields and the separators of one format against value + " " + next (or value, if next is
+     * null).
+     */
+    private static int lexTimestamp(String value, String next, char[] separators) {
+
+        int length = next == null ? value.length() : value.length() + 1 + next.length();
+
+        int i = 0;
+
+        for(int field = 0; ; field ++) {
+
+            //
+            // SimpleDateFormat skips spaces and tabs before a numeric field
+            //
+
+            char c;
+
+            while(i < length && ((c = charAt(value, next, i)) == ' ' || c == '\t')) {
+                i ++;
+            }
+
+            if (i == length) {
+                return NO;
+            }
+
+            c = charAt(value, next, i);
+
+            if (c == '/' || c == ':') {
+                return NO;
+            }
+
+            if (c < '0' || c > '9') {
+
+                // a sign, a non-ASCII digit, a NaN or an infinity symbol may be a number
+                return UNKNOWN;
+            }
+
+            int start = i;
+
+            while(i < length && (c = charAt(value, next, i)) >= '0' && c <= '9') {
+                i ++;
+            }
+
+            if (i - start > MAX_TIMESTAMP_FIELD_DIGITS) {
+                return UNKNOWN;
+            }
+
+            if (field == separators.length) {
+
+                // the format ignores whatever follows the last field
+                return YES;
+            }
+
+            if (i == length) {
+                return NO;
+            }
+
+            c = charAt(value, next, i);
+
+            if (c == separators[field]) {
+
+                i ++;
+            }
+            else if (c == '/' || c == ':' || c == ' ' || c == '\t') {
+
+                return NO;
+            }
+            else {
+
+                // the number may go on (a non-ASCII digit, an exponent)
+                return UNKNOWN;
+            }
+        }
+    }
+
+    private static char charAt(String value, String next, int i) {
+
+        int length = value.length();
+
+        if (i < length) {
+            return value.charAt(i);
+        }
+
+        return i == length ? ' ' : next.charAt(i - length - 1);
+    }
+
+    private static int count(String s, char c) {
+
+        int count = 0;
+
+        for(int i = 0; i < s.length() && count < 2; i ++) {
+
+            if (s.charAt(i) == c) {
+                count ++;
+            }
+        }
+
+        return count;
+    }
+
+    private static boolean parsesAsTimestamp(String value) {
+
+        try {
+
+            new TimestampOption(null, value);
+            return true;
+        }
+        catch(IllegalArgumentException e) {
+
+            return false;
+        }
+    }
+
+    /**
+     * @return the Long Long.parseLong() would return, or null if it would fail.
+     */
+    private static Long toLong(String value) {
+
+        int length = value.length();
+        int i = 0;
+
+        if (length > 0 && (value.charAt(0) == '-' || value.charAt(0) == '+')) {
+            i ++;
+        }
+
+        if (i == length) {
+            return null;
+        }
+
+        long result = 0;
+
+        for(int j = i; j < length; j ++) {
+
+            char c = value.charAt(j);
+
+            if (c < '0' || c > '9') {
+
+                if (Character.isDigit(c)) {
+
+                    // Long.parseLong() accepts all decimal digits
+                    return parseLong(value);
+                }
+
+                return null;
+            }
+
+            result = result * 10 + (c - '0');
+        }
+
+        if (length - i > MAX_SAFE_LONG_DIGITS) {
+
+            // may overflow
+            return parseLong(value);
+        }
+
+        return value.charAt(0) == '-' ? -result : result;
+    }
+
+    private static Long parseLong(String value) {
+
+        try {
+
+            return Long.parseLong(value);
+        }
+        catch(NumberFormatException e) {
+
+            return null;
+        }
+    }
+
+    /**
+     * @return the Double Double.parseDouble() would return, or null if it would fail.
+     */
+    private static Double toDouble(String value) {
+
+        //
+        // Double.parseDouble() trims the value
+        //
+
+        int start = 0;
+        int end = value.length();
+
+        while(start < end && value.charAt(start) <= ' ') {
+            start ++;
+        }
+
+        while(end > start && value.charAt(end - 1) <= ' ') {
+            end --;
+        }
+
+        int i = start;
+
+        if (i < end && (value.charAt(i) == '-' || value.charAt(i) == '+')) {
+            i ++;
+        }
+
+        if (i == end) {
+            return null;
+        }
+
+        if (value.startsWith("NaN", i) && i + 3 == end) {
+            return Double.NaN;
+        }
+
+        if (value.startsWith("Infinity", i) && i + 8 == end) {
+            return value.charAt(start) == '-' ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+        }
+
+        if (i + 1 < end && value.charAt(i) == '0' && (value.charAt(i + 1) == 'x' || value.charAt(i + 1) == 'X')) {
+
+            // hexadecimal floating point
+            try {
+
+                return Double.parseDouble(value);
+            }
+            catch(NumberFormatException e) {
+
+                return null;
+            }
+        }
+
+        //
+        // Digits [. [Digits]] | . Digits, then an optional exponent and an optional type suffix
+        //
+
+        int digits = 0;
+
+        for(; i < end && isAsciiDigit(value.charAt(i)); i ++) {
+            digits ++;
+        }
+
+        if (i < end && value.charAt(i) == '.') {
+
+            for(i ++; i < end && isAsciiDigit(value.charAt(i)); i ++) {
+                digits ++;
+            }
+        }
+
+        if (digits == 0) {
+            return null;
+        }
+
+        if (i < end && (value.charAt(i) == 'e' || value.charAt(i) == 'E')) {
+
+            i ++;
+
+            if (i < end && (value.charAt(i) == '-' || value.charAt(i) == '+')) {
+                i ++;
+            }
+
+            int exponentDigits = 0;
+
+            for(; i < end && isAsciiDigit(value.charAt(i)); i ++) {
+                exponentDigits ++;
+            }
+
+            if (exponentDigits == 0) {
+                return null;
+            }
+        }
+
+        if (i < end && "fFdD".indexOf(value.charAt(i)) != -1) {
+            i ++;
+        }
+
+        if (i != end) {
+            return null;
+        }
+
+        // the lexer established the value is valid, the conversion cannot fail
+        return Double.parseDouble(value);
+    }
+
+    private static boolean isAsciiDigit(char c) {
+
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * @return the same as value.toLowerCase().equals(lowerCase), for an ASCII lower case string that does not contain
+     * 'i' (the only letter whose lower case form depends on the locale).
+     */
+    private static boolean equalsLowerCase(String value, String lowerCase) {
+
+        if (value.length() != lowerCase.length()) {
+            return false;
+        }
+
+        for(int i = 0; i < value.length(); i ++) {
+
+            if (Character.toLowerCase(value.charAt(i)) != lowerCase.charAt(i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,392 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.clad;
+
+import io.novaordis.clad.application.InvocationContext;
+import io.novaordis.clad.application.TestApplicationRuntime;
+import io.novaordis.clad.command.MockCommand;
+import io.novaordis.clad.configuration.Configuration;
+import io.novaordis.clad.option.StringOption;
+import io.novaordis.utilities.UserErrorException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+public class BatchTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private File scratchDir;
+    private File batchFile;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @Before
+    public void setUp() throws Exception {
+
+        String basedir = System.getProperty("basedir");
+        assertNotNull(basedir);
+
+        scratchDir = new File(basedir, "target/test-scratch/batch");
+        assertTrue(scratchDir.isDirectory() || scratchDir.mkdirs());
+
+        batchFile = new File(scratchDir, "batch.txt");
+
+        System.setProperty(Configuration.APPLICATION_NAME_SYSTEM_PROPERTY_NAME, "test");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+
+        TestApplicationRuntime.reset();
+        MockCommand.reset();
+        InvocationContext.uninstallRoutingStreams();
+        System.clearProperty(Configuration.APPLICATION_NAME_SYSTEM_PROPERTY_NAME);
+
+        File[] files = scratchDir.listFiles();
+
+        if (files != null) {
+            for(File f: files) {
+                assertTrue(f.delete());
+            }
+        }
+    }
+
+    // fromArguments() -------------------------------------------------------------------------------------------------
+
+    @Test
+    public void fromArguments_NotABatch() throws Exception {
+
+        assertNull(Batch.fromArguments(new String[] { "version", "--something" }));
+    }
+
+    @Test
+    public void fromArguments_BatchOptionsAfterCommand() throws Exception {
+
+        //
+        // the command's own options, not batch options
+        //
+
+        assertNull(Batch.fromArguments(
+                new String[] { "-v", "some-command", "--batch=a", "--batch-parallelism=b", "--batch-results=c" }));
+    }
+
+    @Test
+    public void fromArguments() throws Exception {
+
+        Batch b = Batch.fromArguments(new String[] { "--batch=commands.txt" });
+
+        assertNotNull(b);
+        assertEquals("commands.txt", b.getSource());
+        assertEquals(1, b.getParallelism());
+        assertNull(b.getResults());
+
+        b = Batch.fromArguments(new String[] { "--batch-parallelism=4", "--batch=-", "--batch-results=results.txt" });
+
+        assertNotNull(b);
+        assertEquals(Batch.STDIN, b.getSource());
+        assertEquals(4, b.getParallelism());
+        assertEquals("results.txt", b.getResults());
+    }
+
+    @Test
+    public void fromArguments_InvalidParallelism() throws Exception {
+
+        try {
+
+            Batch.fromArguments(new String[] { "--batch=commands.txt", "--batch-parallelism=0" });
+            fail("should have thrown exception");
+        }
+        catch(UserErrorException e) {
+
+            assertEquals("invalid --batch-parallelism value \"0\"", e.getMessage());
+        }
+
+        try {
+
+            Batch.fromArguments(new String[] { "--batch=commands.txt", "--batch-parallelism=many" });
+            fail("should have thrown exception");
+        }
+        catch(UserErrorException e) {
+
+            assertEquals("invalid --batch-parallelism value \"many\"", e.getMessage());
+        }
+    }
+
+    @Test
+    public void fromArguments_CombinedWithOtherArguments() throws Exception {
+
+        try {
+
+            Batch.fromArguments(new String[] { "--batch=commands.txt", "version" });
+            fail("should have thrown exception");
+        }
+        catch(UserErrorException e) {
+
+            assertEquals("--batch cannot be combined with other arguments: version", e.getMessage());
+        }
+    }
+
+    @Test
+    public void fromArguments_ParallelismWithoutBatch() throws Exception {
+
+        try {
+
+            Batch.fromArguments(new String[] { "--batch-parallelism=2" });
+            fail("should have thrown exception");
+        }
+        catch(UserErrorException e) {
+
+            assertEquals("--batch-parallelism and --batch-results can only be used with --batch", e.getMessage());
+        }
+    }
+
+    @Test
+    public void fromArguments_MissingSource() throws Exception {
+
+        try {
+
+            Batch.fromArguments(new String[] { "--batch=" });
+            fail("should have thrown exception");
+        }
+        catch(UserErrorException e) {
+
+            assertEquals("missing --batch file name, use --batch=- for stdin", e.getMessage());
+        }
+    }
+
+    // split() ---------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void split() throws Exception {
+
+        assertEquals(Arrays.asList("a", "--b=c", "\"d", "e\""), Batch.split("  a\t--b=c  \"d e\" "));
+        assertEquals(Collections.emptyList(), Batch.split(""));
+        assertEquals(Collections.emptyList(), Batch.split("   "));
+        assertEquals(Collections.emptyList(), Batch.split("  # a comment"));
+        assertEquals(Arrays.asList("a", "#b"), Batch.split("a #b"));
+    }
+
+    // run() -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void run_Sequential() throws Exception {
+
+        write("version", "", "# a comment", "no-such-command", "version");
+
+        ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+        ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+
+        int exitCode = new Batch(batchFile.getPath(), 1, null).run(stdout, stderr);
+
+        assertEquals(1, exitCode);
+
+        String version = getVersionOutput();
+        assertEquals(version + version, stdout.toString());
+
+        String[] results = stderr.toString().split("\n");
+
+        assertEquals(4, results.length);
+        assertEquals("1 exit 0", results[0]);
+        assertEquals("4 exit 1", results[1]);
+        assertTrue(results[2].startsWith("4 stderr [error]: "));
+        assertEquals("5 exit 0", results[3]);
+    }
+
+    @Test
+    public void run_Parallel_OutputInSubmissionOrder() throws Exception {
+
+        String[] lines = new String[40];
+
+        for(int i = 0; i < lines.length; i ++) {
+
+            lines[i] = i % 3 == 0 ? "no-such-command-" + i : "version";
+        }
+
+        write(lines);
+
+        ByteArrayOutputStream sequentialStdout = new ByteArrayOutputStream();
+        ByteArrayOutputStream sequentialResults = new ByteArrayOutputStream();
+
+        assertEquals(1, new Batch(batchFile.getPath(), 1, null).run(sequentialStdout, sequentialResults));
+
+        ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+        ByteArrayOutputStream results = new ByteArrayOutputStream();
+
+        assertEquals(1, new Batch(batchFile.getPath(), 4, null).run(stdout, results));
+
+        assertEquals(sequentialStdout.toString(), stdout.toString());
+        assertEquals(sequentialResults.toString(), results.toString());
+    }
+
+    @Test
+    public void run_ResultsFile() throws Exception {
+
+        write("version");
+
+        File resultsFile = new File(scratchDir, "results.txt");
+
+        ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+
+        int exitCode = new Batch(batchFile.getPath(), 1, resultsFile.getPath()).run(new ByteArrayOutputStream(), stderr);
+
+        assertEquals(0, exitCode);
+
+        assertEquals("", stderr.toString());
+        assertEquals("1 exit 0\n", new String(Files.readAllBytes(resultsFile.toPath()), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void run_NoSuchFile() throws Exception {
+
+        try {
+
+            new Batch(new File(scratchDir, "no-such-file").getPath(), 1, null).run(
+                    new ByteArrayOutputStream(), new ByteArrayOutputStream());
+            fail("should have thrown exception");
+        }
+        catch(UserErrorException e) {
+
+            assertTrue(e.getMessage().endsWith("no-such-file not found"));
+        }
+    }
+
+    @Test
+    public void run_NestedBatch() throws Exception {
+
+        write("--batch=" + batchFile.getPath());
+
+        ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+
+        assertEquals(1, new Batch(batchFile.getPath(), 1, null).run(new ByteArrayOutputStream(), stderr));
+
+        assertEquals("1 exit 1\n1 stderr [error]: batches cannot be nested\n", stderr.toString());
+    }
+
+    @Test
+    public void run_RuntimeReused() throws Exception {
+
+        MockCommand.setNeedsRuntime(true);
+        MockCommand.setCanReuseRuntime(true);
+        TestApplicationRuntime.addOptionalGlobalOption(new StringOption("color"));
+
+        write("mock", "mock", "--color=blue mock", "mock", "--color=blue mock");
+
+        assertEquals(0, new Batch(batchFile.getPath(), 1, null).run(
+                new ByteArrayOutputStream(), new ByteArrayOutputStream()));
+
+        //
+        // one initialization for each distinct set of global options
+        //
+
+        assertEquals(2, TestApplicationRuntime.getInitializationCount());
+    }
+
+    @Test
+    public void run_RuntimeNotReusedUnlessTheCommandAllowsIt() throws Exception {
+
+        MockCommand.setNeedsRuntime(true);
+
+        write("mock", "mock", "mock");
+
+        assertEquals(0, new Batch(batchFile.getPath(), 1, null).run(
+                new ByteArrayOutputStream(), new ByteArrayOutputStream()));
+
+        assertEquals(3, TestApplicationRuntime.getInitializationCount());
+    }
+
+    @Test
+    public void commandLineApplication_Batch() throws Exception {
+
+        write("version", "version");
+
+        ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+        ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+
+        int exitCode = new CommandLineApplication(stdout, stderr).run(
+                new String[] { "--batch=" + batchFile.getPath(), "--batch-parallelism=2" });
+
+        assertEquals(0, exitCode);
+
+        String version = getVersionOutput();
+        assertEquals(version + version, stdout.toString());
+        assertEquals("1 exit 0\n2 exit 0\n", stderr.toString());
+    }
+
+    @Test
+    public void commandLineApplication_InvalidBatchOptions() throws Exception {
+
+        ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+
+        int exitCode = new CommandLineApplication(new ByteArrayOutputStream(), stderr).run(
+                new String[] { "--batch-parallelism=2" });
+
+        assertEquals(1, exitCode);
+        assertEquals(
+                "[error]: --batch-parallelism and --batch-results can only be used with --batch\n", stderr.toString());
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private void write(String... lines) throws Exception {
+
+        Files.write(batchFile.toPath(), Arrays.asList(lines), StandardCharsets.UTF_8);
+    }
+
+    private static String getVersionOutput() throws Exception {
+
+        //
+        // the version command writes to System.out, which is routed to the line's stdout
+        //
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        Batch batch = new Batch(Batch.STDIN, 1, null);
+        InvocationContext.installRoutingStreams();
+        assertEquals(0, batch.execute(Collections.singletonList("version"), baos, new ByteArrayOutputStream()));
+        return baos.toString();
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.clad;
+
+import io.novaordis.clad.application.InvocationContext;
+import io.novaordis.clad.application.TestApplicationRuntime;
+import io.novaordis.clad.command.RegistryOnly;
+import io.novaordis.clad.configuration.Configuration;
+import io.novaordis.clad.option.DynamicMacroResolver;
+import io.novaordis.clad.option.HelpOption;
+import io.novaordis.utilities.UserErrorException;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+public class CladEngineTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @After
+    public void tearDown() throws Exception {
+
+        System.clearProperty(Configuration.APPLICATION_NAME_SYSTEM_PROPERTY_NAME);
+    }
+
+    @Test
+    public void constructor() throws Exception {
+
+        CladEngine engine = new CladEngine("test");
+
+        assertEquals("test", engine.getApplicationName());
+        assertNull(System.getProperty(Configuration.APPLICATION_NAME_SYSTEM_PROPERTY_NAME));
+    }
+
+    @Test
+    public void constructor_NoSuchApplication() throws Exception {
+
+        try {
+
+            new CladEngine("no-such-application");
+            fail("should have thrown exception");
+        }
+        catch(UserErrorException e) {
+
+            assertEquals("no application runtime for application \"no-such-application\"", e.getMessage());
+        }
+    }
+
+    @Test
+    public void invoke() throws Exception {
+
+        CladEngine engine = new CladEngine("test");
+
+        ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+        ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+
+        assertEquals(0, engine.invoke(new String[] { "version" }, stdout, stderr));
+        assertEquals("version N/A\nrelease date N/A\n", stdout.toString());
+        assertEquals("", stderr.toString());
+    }
+
+    @Test
+    public void invoke_Error() throws Exception {
+
+        CladEngine engine = new CladEngine("test");
+
+        ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+        ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+
+        assertEquals(1, engine.invoke(new String[] { "no-such-command" }, stdout, stderr));
+        assertEquals("", stdout.toString());
+        assertTrue(stderr.toString().startsWith("[error]: "));
+    }
+
+    @Test
+    public void invoke_DoesNotConsultTheApplicationNameSystemProperty() throws Exception {
+
+        CladEngine engine = new CladEngine("test");
+
+        System.setProperty(Configuration.APPLICATION_NAME_SYSTEM_PROPERTY_NAME, "no-such-application");
+
+        ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+        assertEquals(0, engine.invoke(new String[] { "version" }, stdout, new ByteArrayOutputStream()));
+        assertEquals("version N/A\nrelease date N/A\n", stdout.toString());
+    }
+
+    @Test
+    public void invoke_BatchNotAvailable() throws Exception {
+
+        CladEngine engine = new CladEngine("test");
+
+        ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+
+        assertEquals(1, engine.invoke(new String[] { "--batch=-" }, new ByteArrayOutputStream(), stderr));
+        assertTrue(stderr.toString().startsWith("[error]: "));
+    }
+
+    @Test
+    public void invoke_RestoresTheCallersContext() throws Exception {
+
+        CladEngine engine = new CladEngine("test");
+
+        InvocationContext callers = new InvocationContext(new File("."), Collections.<String, String>emptyMap(),
+                new ByteArrayInputStream(new byte[0]), new ByteArrayOutputStream(), new ByteArrayOutputStream());
+
+        InvocationContext.set(callers);
+
+        try {
+
+            engine.invoke(new String[] { "version" }, new ByteArrayOutputStream(), new ByteArrayOutputStream());
+            assertTrue(callers == InvocationContext.get());
+        }
+        finally {
+
+            InvocationContext.remove();
+        }
+    }
+
+    @Test
+    public void invoke_Concurrent() throws Exception {
+
+        CladEngine engine = new CladEngine("test");
+
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        try {
+
+            List<Future<String>> results = new ArrayList<>();
+
+            for(int i = 0; i < threads * 25; i ++) {
+
+                results.add(executor.submit(new Invoker(engine, i % 2 == 0)));
+            }
+
+            for(Future<String> f: results) {
+
+                //
+                // each invocation sees only its own output
+                //
+
+                String result = f.get();
+                assertTrue(result,
+                        "0 version N/A\nrelease date N/A\n".equals(result) || result.startsWith("1 [error]: "));
+            }
+        }
+        finally {
+
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void invoke_HelpUsesTheRegistry() throws Exception {
+
+        //
+        // a command the registry lists, but that is not found on the class path
+        //
+
+        Map<String, List<String>> commands = new HashMap<>();
+        commands.put("RegistryOnlyCommand", Collections.singletonList(RegistryOnly.class.getName()));
+
+        CladEngine engine = new CladEngine(
+                new EngineRegistry("test", TestApplicationRuntime.class.getName(), commands));
+
+        assertNull(InstanceFactory.getCommand("registry-only"));
+
+        ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+        ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+
+        assertEquals(0, engine.invoke(new String[] { "--help=registry-only" }, stdout, stderr));
+        assertEquals(HelpOption.NO_COMMAND_HELP_FOUND_TEXT + " 'registry-only'\n", stdout.toString());
+        assertEquals("", stderr.toString());
+
+        stdout = new ByteArrayOutputStream();
+
+        assertEquals(0, engine.invoke(new String[] { "--help" }, stdout, stderr));
+        assertEquals("this is application help placeholder\n\n" +
+                "  registry-only" + DynamicMacroResolver.NO_HELP_ANNOTATION + "\n\n", stdout.toString());
+        assertEquals("", stderr.toString());
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+    private static class Invoker implements Callable<String> {
+
+        private CladEngine engine;
+        private boolean valid;
+
+        Invoker(CladEngine engine, boolean valid) {
+
+            this.engine = engine;
+            this.valid = valid;
+        }
+
+        /**
+         * @return the exit code, followed by the invocation's stdout and stderr.
+         */
+        @Override
+        public String call() throws Exception {
+
+            ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+            ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+
+            int exitCode = engine.invoke(new String[] { valid ? "version" : "no-such-command" }, stdout, stderr);
+
+            return exitCode + " " + stdout + stderr;
+        }
+    }
+}
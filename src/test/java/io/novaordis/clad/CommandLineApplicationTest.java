@@ -329,6 +329,34 @@ public class CommandLineApplicationTest {
         }
     }
 
+    @Test
+    public void execute_StartupReport() throws Exception {
+
+        StartupReport report = new StartupReport(StartupReport.STDERR, StartupReport.JSON);
+
+        CommandLineApplication commandLineApplication = new CommandLineApplication();
+        commandLineApplication.setStartupReport(report);
+
+        int exitCode = commandLineApplication.run(
+                new String[] { "test", "--required-test-command-option=something" });
+
+        assertEquals(0, exitCode);
+
+        List<String> phases = new ArrayList<>();
+
+        for(StartupReport.Phase p: report.getPhases()) {
+            phases.add(p.getName());
+        }
+
+        assertEquals(Arrays.asList(
+                StartupReport.IDENTIFY_RUNTIME,
+                StartupReport.IDENTIFY_COMMAND,
+                StartupReport.GLOBAL_OPTIONS,
+                StartupReport.RUNTIME_INIT,
+                StartupReport.REQUIRED_OPTIONS,
+                StartupReport.EXECUTE), phases);
+    }
+
     @Test
     public void main_NoDefaultCommand() throws Exception {
 
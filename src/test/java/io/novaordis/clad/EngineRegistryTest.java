@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.clad;
+
+import io.novaordis.clad.application.TestApplicationRuntime;
+import io.novaordis.clad.command.CompoundNameCommand;
+import io.novaordis.clad.command.TestCommand;
+import io.novaordis.utilities.UserErrorException;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+public class EngineRegistryTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void build() throws Exception {
+
+        EngineRegistry r = EngineRegistry.build("test", InstanceFactory.DIRECTORIES_ARE_SEARCHED_FIRST);
+
+        assertEquals("test", r.getApplicationName());
+        assertEquals(TestApplicationRuntime.class.getName(), r.getApplicationRuntimeClassName());
+        assertTrue(r.newApplicationRuntime() instanceof TestApplicationRuntime);
+    }
+
+    @Test
+    public void newCommand() throws Exception {
+
+        EngineRegistry r = EngineRegistry.build("test", InstanceFactory.DIRECTORIES_ARE_SEARCHED_FIRST);
+
+        assertTrue(r.newCommand("test") instanceof TestCommand);
+        assertTrue(r.newCommand("compound-name") instanceof CompoundNameCommand);
+
+        //
+        // a new instance for each invocation
+        //
+
+        assertTrue(r.newCommand("test") != r.newCommand("test"));
+    }
+
+    @Test
+    public void newCommand_NoSuchCommand() throws Exception {
+
+        EngineRegistry r = EngineRegistry.build("test", InstanceFactory.DIRECTORIES_ARE_SEARCHED_FIRST);
+
+        assertNull(r.newCommand("no-such-command"));
+        assertNull(r.newCommand("--test"));
+        assertNull(r.newCommand(""));
+        assertNull(r.newCommand(null));
+    }
+
+    @Test
+    public void newCommand_Ambiguous() throws Exception {
+
+        Map<String, List<String>> commands = new HashMap<>();
+        commands.put("TestCommand", Arrays.asList("a.TestCommand", "b.TestCommand"));
+
+        EngineRegistry r = new EngineRegistry("test", TestApplicationRuntime.class.getName(), commands);
+
+        try {
+
+            r.newCommand("test");
+            fail("should have thrown exception");
+        }
+        catch(UserErrorException e) {
+
+            assertEquals("more than one class matches TestCommand: [a.TestCommand, b.TestCommand]", e.getMessage());
+        }
+    }
+
+    @Test
+    public void snapshot() throws Exception {
+
+        Map<String, List<String>> commands = new HashMap<>();
+        commands.put("TestCommand", Collections.singletonList(TestCommand.class.getName()));
+
+        EngineRegistry r = new EngineRegistry("test", TestApplicationRuntime.class.getName(), commands);
+
+        commands.clear();
+
+        assertTrue(r.newCommand("test") instanceof TestCommand);
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
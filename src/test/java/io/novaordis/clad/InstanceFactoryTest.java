@@ -23,14 +23,23 @@ import io.novaordis.clad.command.Command;
 import io.novaordis.clad.command.MockCommand;
 import io.novaordis.clad.command.Test2Command;
 import io.novaordis.clad.command.TestCommand;
+import org.junit.After;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.jar.JarFile;
 
 import static org.junit.Assert.assertEquals;
@@ -52,18 +61,90 @@ public class InstanceFactoryTest {
 
     // Static ----------------------------------------------------------------------------------------------------------
 
+    private static final String JAVA_CLASS_PATH = "java.class.path";
+
+    /**
+     * Compiles, with -proc:none, a minimal application that carries no discovery index. Also used by the discovery
+     * tests.
+     *
+     * @return the directory containing x.y.FooApplicationRuntime and x.y.HelloCommand, created under scratchDir.
+     */
+    public static File compileApplicationWithoutProcessor(File scratchDir) throws Exception {
+
+        delete(scratchDir);
+
+        File sources = new File(scratchDir, "src/x/y");
+        File classes = new File(scratchDir, "classes");
+        assertTrue(sources.mkdirs());
+        assertTrue(classes.mkdirs());
+
+        File runtime = new File(sources, "FooApplicationRuntime.java");
+        Files.write(runtime.toPath(), (
+                "package x.y;\n" +
+                "public class FooApplicationRuntime extends io.novaordis.clad.application.ApplicationRuntimeBase {\n" +
+                "    public String getDefaultCommandName() { return null; }\n" +
+                "    public java.util.Set<io.novaordis.clad.option.Option> requiredGlobalOptions() {\n" +
+                "        return java.util.Collections.emptySet();\n" +
+                "    }\n" +
+                "    public java.util.Set<io.novaordis.clad.option.Option> optionalGlobalOptions() {\n" +
+                "        return java.util.Collections.emptySet();\n" +
+                "    }\n" +
+                "}\n").getBytes(StandardCharsets.UTF_8));
+
+        File command = new File(sources, "HelloCommand.java");
+        Files.write(command.toPath(), (
+                "package x.y;\n" +
+                "public class HelloCommand extends io.novaordis.clad.command.CommandBase {\n" +
+                "    public void execute(io.novaordis.clad.application.ApplicationRuntime runtime) throws Exception {\n" +
+                "        runtime.info(\"hello\");\n" +
+                "    }\n" +
+                "}\n").getBytes(StandardCharsets.UTF_8));
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assertNotNull(compiler);
+
+        int rc = compiler.run(null, null, null, "-proc:none", "-cp", System.getProperty(JAVA_CLASS_PATH),
+                "-d", classes.getPath(), runtime.getPath(), command.getPath());
+        assertEquals(0, rc);
+
+        return classes;
+    }
+
+    public static void delete(File f) {
+
+        File[] children = f.listFiles();
+
+        if (children != null) {
+            for(File c: children) {
+                delete(c);
+            }
+        }
+
+        //noinspection ResultOfMethodCallIgnored
+        f.delete();
+    }
+
     // Attributes ------------------------------------------------------------------------------------------------------
 
+    private File scratchDir;
+
     // Constructors ----------------------------------------------------------------------------------------------------
 
     // Public ----------------------------------------------------------------------------------------------------------
 
+    @After
+    public void tearDown() {
+
+        if (scratchDir != null) {
+
+            delete(scratchDir);
+        }
+    }
+
     @Test
     public void getCommand() throws Exception {
 
-        Util.normalizeLabelInvoked = false;
         Command command = InstanceFactory.getCommand("test");
-        assertTrue(Util.normalizeLabelInvoked);
         assertNotNull(command);
         assertTrue(command instanceof TestCommand);
     }
@@ -71,67 +152,42 @@ public class InstanceFactoryTest {
     @Test
     public void getCommand_NoSuchCommand() throws Exception {
 
-        Util.normalizeLabelInvoked = false;
+        assertTrue(InstanceFactory.canBePartOfAClassName("no-such-command"));
         assertNull(InstanceFactory.getCommand("no-such-command"));
-        assertTrue(Util.normalizeLabelInvoked);
     }
 
     @Test
     public void getCommand_InvalidCandidate_SmallerThanA() throws Exception {
 
-        Util.normalizeLabelInvoked = false;
+        assertFalse(InstanceFactory.canBePartOfAClassName("@something"));
         Command c = InstanceFactory.getCommand("@something");
-        assertFalse(Util.normalizeLabelInvoked);
         assertNull(c);
     }
 
     @Test
     public void getCommand_InvalidCandidate_BetweenZanda() throws Exception {
 
-        Util.normalizeLabelInvoked = false;
+        assertFalse(InstanceFactory.canBePartOfAClassName("{something"));
         Command c = InstanceFactory.getCommand("{something");
-        assertFalse(Util.normalizeLabelInvoked);
         assertNull(c);
     }
 
     @Test
     public void getCommand_InvalidCandidate_BiggerThanz() throws Exception {
 
-        Util.normalizeLabelInvoked = false;
+        assertFalse(InstanceFactory.canBePartOfAClassName("-something"));
         Command c = InstanceFactory.getCommand("-something");
-        assertFalse(Util.normalizeLabelInvoked);
         assertNull(c);
     }
 
     @Test
     public void getCommand_InvalidCandidate_UnbecomingCharacters() throws Exception {
 
-        Util.normalizeLabelInvoked = false;
+        assertFalse(InstanceFactory.canBePartOfAClassName("timestamp(time:yy/MM/dd"));
         Command c = InstanceFactory.getCommand("timestamp(time:yy/MM/dd");
-        assertFalse(Util.normalizeLabelInvoked);
         assertNull(c);
     }
 
-    // getFileNames() --------------------------------------------------------------------------------------------------
-
-    @Test
-    public void getFileNames() throws Exception {
-
-        String basedir = System.getProperty("basedir");
-        assertNotNull(basedir);
-
-        File testDir = new File(basedir, "src/test/resources/data/testDir");
-        assertTrue(testDir.isDirectory());
-
-        List<String> names = InstanceFactory.getFileNames(testDir.getPath(), testDir);
-        assertEquals(2, names.size());
-
-        String name = testDir.getPath() + File.separator  + "A.txt";
-        assertEquals(name, names.get(0));
-        name = testDir.getPath() + File.separator  + "testSubDir" +  File.separator  + "B.txt";
-        assertEquals(name, names.get(1));
-    }
-
     // toSimpleClassName() ---------------------------------------------------------------------------------------------
 
     @Test
@@ -319,6 +375,35 @@ public class InstanceFactoryTest {
         assertEquals("c.test.Example3", names.get(2));
     }
 
+    @Test
+    public void getFullyQualifiedClassNamesFromJarFiles_MultipleClassesMatch() throws Exception {
+
+        String s = System.getProperty("basedir");
+        assertNotNull(s);
+        File jarFile = new File(s, "src/test/resources/data/test.jar");
+        assertTrue(jarFile.isFile());
+
+        List<String> names = InstanceFactory.getFullyQualifiedClassNamesFromJarFiles(
+                ".*\\.Example.", Collections.singletonList(jarFile));
+
+        assertEquals(3, names.size());
+        assertEquals("a.test.Example1", names.get(0));
+        assertEquals("b.test.Example2", names.get(1));
+        assertEquals("c.test.Example3", names.get(2));
+    }
+
+    @Test
+    public void getFullyQualifiedClassNamesFromJarFiles_InvalidPattern() throws Exception {
+
+        try {
+            InstanceFactory.getFullyQualifiedClassNamesFromJarFiles(".*\\..*2\\.class", Collections.<File>emptyList());
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+            log.info(e.getMessage());
+        }
+    }
+
     // instances() -----------------------------------------------------------------------------------------------------
 
     @Test
@@ -380,7 +465,7 @@ public class InstanceFactoryTest {
 
         Set<Command> commands = commandFactory.instances(Command.class, Collections.emptyList(), directories);
 
-        assertEquals(9, commands.size());
+        assertEquals(10, commands.size());
         boolean sample1found = false;
         boolean sample2found = false;
         boolean sample3found = false;
@@ -420,6 +505,56 @@ public class InstanceFactoryTest {
         assertTrue(mockFound);
     }
 
+    // application built without a discovery index --------------------------------------------------------------------
+
+    /**
+     * An application compiled without annotation processing runs, with the clad classes, which carry an index
+     * resource, on the same class path: the class path entries without an index resource are scanned.
+     */
+    @Test
+    public void applicationBuiltWithoutDiscoveryIndex() throws Exception {
+
+        String basedir = System.getProperty("basedir");
+        assertNotNull(basedir);
+
+        scratchDir = new File(basedir, "target/test-scratch/instance-factory");
+
+        File classes = compileApplicationWithoutProcessor(scratchDir);
+
+        String classPath = System.getProperty(JAVA_CLASS_PATH);
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+
+        ProcessBuilder pb = new ProcessBuilder(
+                java, "-cp", classes.getPath() + File.pathSeparator + classPath,
+                "-Dapplication.name=foo", CommandLineApplication.class.getName(), "hello");
+
+        File stderr = new File(scratchDir, "stderr.txt");
+        pb.redirectError(stderr);
+
+        Process p = pb.start();
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        try(InputStream is = p.getInputStream()) {
+
+            byte[] buffer = new byte[1024];
+            int n;
+
+            while((n = is.read(buffer)) != -1) {
+
+                output.write(buffer, 0, n);
+            }
+        }
+
+        assertTrue(p.waitFor(60, TimeUnit.SECONDS));
+
+        String out = new String(output.toByteArray(), StandardCharsets.UTF_8);
+        assertEquals(new String(Files.readAllBytes(stderr.toPath()), StandardCharsets.UTF_8), 0, p.exitValue());
+
+        // the test logging configuration may log on stdout too
+        assertTrue(out, Arrays.asList(out.split("\n")).contains("hello"));
+    }
+
     // Package protected -----------------------------------------------------------------------------------------------
 
     // Protected -------------------------------------------------------------------------------------------------------
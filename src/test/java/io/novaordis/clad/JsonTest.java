@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.clad;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+public class JsonTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // parse() ---------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void parse_Scalars() throws Exception {
+
+        assertEquals("a b", Json.parse("\"a b\""));
+        assertEquals(new BigDecimal("-12.5e3"), Json.parse(" -12.5e3 "));
+        assertEquals(Boolean.TRUE, Json.parse("true"));
+        assertEquals(Boolean.FALSE, Json.parse("false"));
+        assertNull(Json.parse("null"));
+    }
+
+    @Test
+    public void parse_Escapes() throws Exception {
+
+        assertEquals("\"\\/\n\r\t\b\f\u00e9", Json.parse("\"\\\"\\\\\\/\\n\\r\\t\\b\\f\\u00E9\""));
+    }
+
+    @Test
+    public void parse_Object() throws Exception {
+
+        Map<?, ?> m = (Map<?, ?>)Json.parse("{ \"id\" : 7, \"argv\" : [ \"a\", \"b\" ], \"env\" : { } }");
+
+        assertEquals(Arrays.asList("id", "argv", "env"), Arrays.asList(m.keySet().toArray()));
+        assertEquals(new BigDecimal(7), m.get("id"));
+        assertEquals(Arrays.asList("a", "b"), m.get("argv"));
+        assertEquals(Collections.emptyMap(), m.get("env"));
+    }
+
+    @Test
+    public void parse_EmptyArray() throws Exception {
+
+        assertEquals(Collections.emptyList(), Json.parse("[]"));
+    }
+
+    @Test
+    public void parse_Invalid() throws Exception {
+
+        String[] invalid = {
+                "", "{", "{\"a\" 1}", "{a: 1}", "[1,]", "[1 2]", "\"abc", "\"\\x\"", "\"\\u12\"", "tru", "-", "1 2",
+                "\"a\nb\"",
+        };
+
+        for(String s: invalid) {
+
+            try {
+
+                Json.parse(s);
+                fail("should have thrown exception for " + s);
+            }
+            catch(ParseException e) {
+
+                assertTrue(e.getMessage(), e.getMessage().contains(" at position "));
+            }
+        }
+    }
+
+    @Test
+    public void parse_MaximumDepth() throws Exception {
+
+        String deepest = repeat("[", Json.MAX_DEPTH) + repeat("]", Json.MAX_DEPTH);
+
+        Object o = Json.parse(deepest);
+
+        for(int i = 1; i < Json.MAX_DEPTH; i ++) {
+
+            o = ((List<?>)o).get(0);
+        }
+
+        assertEquals(Collections.emptyList(), o);
+    }
+
+    @Test
+    public void parse_TooDeep() throws Exception {
+
+        String[] tooDeep = { repeat("[", Json.MAX_DEPTH + 1), repeat("[", 100000), repeat("{\"a\":", 100000) };
+
+        for(String s: tooDeep) {
+
+            try {
+
+                Json.parse(s);
+                fail("should have thrown exception");
+            }
+            catch(ParseException e) {
+
+                assertTrue(e.getMessage(), e.getMessage().startsWith("nesting deeper than " + Json.MAX_DEPTH));
+            }
+        }
+    }
+
+    // toJson() --------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void toJson() throws Exception {
+
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("id", null);
+        m.put("exit", 1);
+        m.put("list", Arrays.asList("a", new BigDecimal("2.5"), true));
+        m.put("text", "\"q\" \\ \n\t\u0001\u2028");
+
+        assertEquals(
+                "{\"id\":null,\"exit\":1,\"list\":[\"a\",2.5,true],\"text\":\"\\\"q\\\" \\\\ \\n\\t\\u0001\\u2028\"}",
+                Json.toJson(m));
+    }
+
+    @Test
+    public void toJson_RoundTrip() throws Exception {
+
+        String s = "line 1\nline 2\t\u00e9\u0000\"\\";
+
+        assertEquals(s, Json.parse(Json.toJson(s)));
+
+        List<?> list = (List<?>)Json.parse(Json.toJson(Arrays.asList(s, "")));
+        assertEquals(Arrays.asList(s, ""), list);
+    }
+
+    @Test
+    public void toJson_Unsupported() throws Exception {
+
+        try {
+
+            Json.toJson(new Object());
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            assertTrue(e.getMessage().startsWith("cannot serialize java.lang.Object"));
+        }
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private static String repeat(String s, int times) {
+
+        StringBuilder sb = new StringBuilder();
+
+        for(int i = 0; i < times; i ++) {
+
+            sb.append(s);
+        }
+
+        return sb.toString();
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
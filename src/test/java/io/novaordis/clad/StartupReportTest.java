@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.clad;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+public class StartupReportTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @After
+    public void tearDown() {
+
+        System.clearProperty(StartupReport.STARTUP_REPORT_SYSTEM_PROPERTY_NAME);
+        System.clearProperty(StartupReport.STARTUP_REPORT_FORMAT_SYSTEM_PROPERTY_NAME);
+    }
+
+    @Test
+    public void fromSystemProperties_Disabled() throws Exception {
+
+        StartupReport r = StartupReport.fromSystemProperties();
+
+        assertFalse(r.isEnabled());
+        assertEquals(-1L, r.getUptimeAtStart());
+
+        r.phase("something");
+        r.end();
+
+        assertTrue(r.getPhases().isEmpty());
+    }
+
+    @Test
+    public void fromSystemProperties_FormatFromFileName() throws Exception {
+
+        System.setProperty(StartupReport.STARTUP_REPORT_SYSTEM_PROPERTY_NAME, "/tmp/report.json");
+
+        StartupReport r = StartupReport.fromSystemProperties();
+
+        assertTrue(r.isEnabled());
+        assertTrue(r.getUptimeAtStart() >= 0);
+        assertTrue(r.toString().contains("(json)"));
+
+        System.setProperty(StartupReport.STARTUP_REPORT_FORMAT_SYSTEM_PROPERTY_NAME, "TEXT");
+
+        assertTrue(StartupReport.fromSystemProperties().toString().contains("(text)"));
+    }
+
+    @Test
+    public void fromSystemProperties_UnknownFormat() throws Exception {
+
+        System.setProperty(StartupReport.STARTUP_REPORT_SYSTEM_PROPERTY_NAME, StartupReport.STDERR);
+        System.setProperty(StartupReport.STARTUP_REPORT_FORMAT_SYSTEM_PROPERTY_NAME, "xml");
+
+        StartupReport r = StartupReport.fromSystemProperties();
+
+        assertTrue(r.isEnabled());
+        assertTrue(r.toString().contains("(text)"));
+    }
+
+    @Test
+    public void constructor_UnknownFormat() throws Exception {
+
+        try {
+            new StartupReport(StartupReport.STDERR, "xml");
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("xml"));
+        }
+    }
+
+    @Test
+    public void phases() throws Exception {
+
+        StartupReport r = new StartupReport(StartupReport.STDERR, StartupReport.TEXT);
+
+        r.phase("a");
+        r.phase("b");
+
+        //
+        // allocate something, and load a class that was not loaded yet
+        //
+
+        byte[] b = new byte[100000];
+        assertEquals(100000, b.length);
+        assertEquals("loaded", new Loaded().toString());
+
+        r.end();
+        r.end();
+
+        List<StartupReport.Phase> phases = r.getPhases();
+
+        assertEquals(2, phases.size());
+        assertEquals("a", phases.get(0).getName());
+
+        StartupReport.Phase p = phases.get(1);
+
+        assertEquals("b", p.getName());
+        assertTrue(p.getWallNanos() > 0);
+        assertTrue(p.getClassesLoaded() >= 1);
+
+        if (p.getAllocatedBytes() != -1) {
+            assertTrue(p.getAllocatedBytes() >= 100000);
+        }
+
+        StartupReport.Phase total = r.getTotal();
+
+        assertEquals(phases.get(0).getWallNanos() + p.getWallNanos(), total.getWallNanos());
+        assertEquals(phases.get(0).getClassesLoaded() + p.getClassesLoaded(), total.getClassesLoaded());
+    }
+
+    @Test
+    public void toText() throws Exception {
+
+        StartupReport r = new StartupReport(StartupReport.STDERR, StartupReport.TEXT);
+
+        r.phase(StartupReport.EXECUTE);
+        r.end();
+
+        String[] lines = r.toText().split("\n");
+
+        assertTrue(lines[0].startsWith("startup report, JVM uptime at start "));
+        assertTrue(lines[2].startsWith("phase"));
+        assertTrue(lines[3].startsWith(StartupReport.EXECUTE + " "));
+        assertTrue(lines[4].startsWith("total "));
+        assertEquals(5, lines.length);
+    }
+
+    @Test
+    public void write_JsonFile() throws Exception {
+
+        File f = new File(System.getProperty("basedir"), "target/startup-report-test.json");
+
+        try {
+
+            StartupReport r = new StartupReport(f.getPath(), StartupReport.JSON);
+
+            r.phase(StartupReport.LOGGING);
+            r.phase(StartupReport.EXECUTE);
+
+            //
+            // write() ends the phase in progress
+            //
+
+            r.write();
+
+            String s = new String(Files.readAllBytes(f.toPath()), StandardCharsets.UTF_8);
+
+            assertTrue(s.startsWith("{\"uptimeAtStartMillis\":"));
+            assertTrue(s.contains("\"phases\":[{\"name\":\"logging\",\"wallNanos\":"));
+            assertTrue(s.contains("{\"name\":\"execute\","));
+            assertTrue(s.contains("],\"total\":{\"name\":\"total\","));
+            assertTrue(s.endsWith("}}\n"));
+            assertEquals(1, s.split("\n").length);
+        }
+        finally {
+
+            assertTrue(f.delete());
+        }
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+    private static class Loaded {
+
+        @Override
+        public String toString() {
+            return "loaded";
+        }
+    }
+
+}
@@ -0,0 +1,496 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.clad;
+
+import io.novaordis.clad.application.InvocationContext;
+import io.novaordis.clad.application.TestApplicationRuntime;
+import io.novaordis.clad.command.MockCommand;
+import io.novaordis.clad.configuration.Configuration;
+import io.novaordis.utilities.UserErrorException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.PrintStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+public class StdioServerTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @Before
+    public void setUp() throws Exception {
+
+        System.setProperty(Configuration.APPLICATION_NAME_SYSTEM_PROPERTY_NAME, "test");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+
+        TestApplicationRuntime.reset();
+        MockCommand.reset();
+        InvocationContext.uninstallRoutingStreams();
+        System.clearProperty(Configuration.APPLICATION_NAME_SYSTEM_PROPERTY_NAME);
+    }
+
+    // fromArguments() -------------------------------------------------------------------------------------------------
+
+    @Test
+    public void fromArguments_NotAServer() throws Exception {
+
+        assertNull(StdioServer.fromArguments(new String[] { "version", "--serve-stdio-not" }));
+    }
+
+    @Test
+    public void fromArguments() throws Exception {
+
+        StdioServer s = StdioServer.fromArguments(new String[] { "--serve-stdio" });
+
+        assertNotNull(s);
+        assertEquals(Runtime.getRuntime().availableProcessors(), s.getParallelism());
+
+        s = StdioServer.fromArguments(new String[] { "--serve-stdio-parallelism=3", "--serve-stdio" });
+
+        assertNotNull(s);
+        assertEquals(3, s.getParallelism());
+    }
+
+    @Test
+    public void fromArguments_InvalidParallelism() throws Exception {
+
+        try {
+
+            StdioServer.fromArguments(new String[] { "--serve-stdio", "--serve-stdio-parallelism=-1" });
+            fail("should have thrown exception");
+        }
+        catch(UserErrorException e) {
+
+            assertEquals("invalid --serve-stdio-parallelism value \"-1\"", e.getMessage());
+        }
+    }
+
+    @Test
+    public void fromArguments_CombinedWithOtherArguments() throws Exception {
+
+        try {
+
+            StdioServer.fromArguments(new String[] { "--serve-stdio", "version" });
+            fail("should have thrown exception");
+        }
+        catch(UserErrorException e) {
+
+            assertEquals("--serve-stdio cannot be combined with other arguments: version", e.getMessage());
+        }
+    }
+
+    @Test
+    public void fromArguments_ParallelismWithoutServer() throws Exception {
+
+        try {
+
+            StdioServer.fromArguments(new String[] { "--serve-stdio-parallelism=2" });
+            fail("should have thrown exception");
+        }
+        catch(UserErrorException e) {
+
+            assertEquals("--serve-stdio-parallelism can only be used with --serve-stdio", e.getMessage());
+        }
+    }
+
+    // parseRequest() --------------------------------------------------------------------------------------------------
+
+    @Test
+    public void parseRequest() throws Exception {
+
+        File dir = new File(System.getProperty("basedir"));
+
+        StdioServer.Request r = StdioServer.parseRequest(
+                "{\"id\":\"r1\",\"argv\":[\"version\",\"-v\"],\"cwd\":" + Json.toJson(dir.getPath()) +
+                        ",\"env\":{\"A\":\"1\"}}");
+
+        assertNull(r.getError());
+        assertEquals("r1", r.getId());
+        assertEquals(Arrays.asList("version", "-v"), r.getArguments());
+        assertEquals(dir, r.getCurrentDirectory());
+        assertEquals(Collections.singletonMap("A", "1"), r.getEnvironment());
+    }
+
+    @Test
+    public void parseRequest_Minimal() throws Exception {
+
+        StdioServer.Request r = StdioServer.parseRequest("{\"id\":5,\"argv\":[]}");
+
+        assertNull(r.getError());
+        assertEquals(new BigDecimal(5), r.getId());
+        assertEquals(Collections.emptyList(), r.getArguments());
+        assertNull(r.getCurrentDirectory());
+        assertEquals(Collections.emptyMap(), r.getEnvironment());
+    }
+
+    @Test
+    public void parseRequest_Invalid() throws Exception {
+
+        assertError(null, "invalid JSON: ", "{\"id\":1,");
+        assertError(null, "the request is not a JSON object", "[1]");
+        assertError(null, "\"id\" must be a string or a number", "{\"id\":[1],\"argv\":[]}");
+        assertError("a", "missing \"argv\" array", "{\"id\":\"a\"}");
+        assertError("a", "\"argv\" elements must be strings", "{\"id\":\"a\",\"argv\":[1]}");
+        assertError("a", "stdio servers cannot be nested", "{\"id\":\"a\",\"argv\":[\"--serve-stdio\"]}");
+        assertError("a", "\"cwd\" must be a string", "{\"id\":\"a\",\"argv\":[],\"cwd\":1}");
+        assertError("a", "no such directory: /no/such/dir", "{\"id\":\"a\",\"argv\":[],\"cwd\":\"/no/such/dir\"}");
+        assertError("a", "\"env\" must be an object", "{\"id\":\"a\",\"argv\":[],\"env\":[]}");
+        assertError("a", "\"env\" values must be strings", "{\"id\":\"a\",\"argv\":[],\"env\":{\"A\":1}}");
+    }
+
+    // run() -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void run() throws Exception {
+
+        List<Map<?, ?>> responses = serve(1,
+                "{\"id\":\"a\",\"argv\":[\"version\"]}",
+                "",
+                "not json",
+                "{\"id\":2,\"argv\":[\"no-such-command\"]}");
+
+        assertEquals(3, responses.size());
+
+        //
+        // responses are written as requests complete, the error response may come before the others
+        //
+
+        Map<Object, Map<?, ?>> byId = new HashMap<>();
+
+        for(Map<?, ?> r: responses) {
+            byId.put(r.get("id"), r);
+        }
+
+        Map<?, ?> r = byId.get("a");
+        assertEquals(new BigDecimal(0), r.get("exit"));
+        assertEquals(getVersionOutput(), r.get("stdout"));
+        assertEquals("", r.get("stderr"));
+
+        r = byId.get(null);
+        assertTrue(((String)r.get("error")).startsWith("invalid JSON: "));
+        assertNull(r.get("exit"));
+
+        r = byId.get(new BigDecimal(2));
+        assertEquals(new BigDecimal(1), r.get("exit"));
+        assertEquals("", r.get("stdout"));
+        assertTrue(((String)r.get("stderr")).startsWith("[error]: "));
+    }
+
+    @Test
+    public void run_TooDeeplyNestedRequest() throws Exception {
+
+        StringBuilder deep = new StringBuilder();
+
+        for(int i = 0; i < 100000; i ++) {
+            deep.append('[');
+        }
+
+        List<Map<?, ?>> responses = serve(1, deep.toString(), "{\"id\":\"a\",\"argv\":[\"version\"]}");
+
+        assertEquals(2, responses.size());
+
+        Map<Object, Map<?, ?>> byId = new HashMap<>();
+
+        for(Map<?, ?> r: responses) {
+            byId.put(r.get("id"), r);
+        }
+
+        Map<?, ?> r = byId.get(null);
+        assertTrue((String)r.get("error"), ((String)r.get("error")).startsWith("invalid JSON: nesting deeper than "));
+
+        r = byId.get("a");
+        assertEquals(new BigDecimal(0), r.get("exit"));
+    }
+
+    @Test
+    public void run_Concurrent_ResponsesCorrelatedById() throws Exception {
+
+        String[] requests = new String[50];
+
+        for(int i = 0; i < requests.length; i ++) {
+
+            String command = i % 3 == 0 ? "no-such-command" : "version";
+            requests[i] = "{\"id\":" + i + ",\"argv\":[\"" + command + "\"]}";
+        }
+
+        List<Map<?, ?>> responses = serve(4, requests);
+
+        assertEquals(requests.length, responses.size());
+
+        String version = getVersionOutput();
+        Map<Integer, Map<?, ?>> byId = new HashMap<>();
+
+        for(Map<?, ?> r: responses) {
+
+            assertNull(byId.put(((BigDecimal)r.get("id")).intValue(), r));
+        }
+
+        for(int i = 0; i < requests.length; i ++) {
+
+            Map<?, ?> r = byId.get(i);
+            assertNotNull(r);
+
+            if (i % 3 == 0) {
+
+                assertEquals(new BigDecimal(1), r.get("exit"));
+                assertEquals("", r.get("stdout"));
+            }
+            else {
+
+                assertEquals(new BigDecimal(0), r.get("exit"));
+                assertEquals(version, r.get("stdout"));
+            }
+        }
+    }
+
+    @Test
+    public void run_FailureAnsweredWithInternalError() throws Exception {
+
+        //
+        // the first response cannot be written, the client must still get a response for the id
+        //
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream() {
+
+            private boolean failed;
+
+            @Override
+            public synchronized void write(byte[] b, int off, int len) {
+
+                if (!failed) {
+
+                    failed = true;
+                    throw new IllegalStateException("SYNTHETIC");
+                }
+
+                super.write(b, off, len);
+            }
+        };
+
+        InputStream in = new ByteArrayInputStream(
+                "{\"id\":7,\"argv\":[\"version\"]}\n".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(0, new StdioServer(1).run(in, out));
+
+        Map<?, ?> r = (Map<?, ?>)Json.parse(new String(out.toByteArray(), StandardCharsets.UTF_8).trim());
+
+        assertEquals(new BigDecimal(7), r.get("id"));
+        assertEquals(new BigDecimal(1), r.get("exit"));
+        assertEquals("internal error: java.lang.IllegalStateException: SYNTHETIC", r.get("stderr"));
+    }
+
+    @Test
+    public void run_RuntimeReused() throws Exception {
+
+        MockCommand.setNeedsRuntime(true);
+        MockCommand.setCanReuseRuntime(true);
+
+        serve(1, "{\"id\":1,\"argv\":[\"mock\"]}", "{\"id\":2,\"argv\":[\"mock\"]}");
+
+        assertEquals(1, TestApplicationRuntime.getInitializationCount());
+    }
+
+    @Test
+    public void run_UnboundStdoutDoesNotReachResponses() throws Exception {
+
+        PrintStream processOut = System.out;
+        PrintStream processErr = System.err;
+
+        ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+        ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+
+        System.setOut(new PrintStream(stdout, true));
+        System.setErr(new PrintStream(stderr, true));
+
+        try {
+
+            //
+            // the responses go to the process' stdout, as they do in --serve-stdio mode
+            //
+
+            PipedOutputStream requests = new PipedOutputStream();
+            PipedInputStream in = new PipedInputStream(requests);
+            StdioServer server = new StdioServer(1);
+            AtomicReference<Throwable> failure = new AtomicReference<>();
+
+            Thread serverThread = new Thread(() -> {
+
+                try {
+                    server.run(in, stdout);
+                }
+                catch(Throwable t) {
+                    failure.set(t);
+                }
+            });
+
+            serverThread.start();
+
+            requests.write("{\"id\":1,\"argv\":[\"version\"]}\n".getBytes(StandardCharsets.UTF_8));
+            requests.flush();
+
+            long deadline = System.currentTimeMillis() + 10000L;
+
+            while(stdout.size() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10L);
+            }
+
+            //
+            // the server is running, write from a thread that is not bound to any invocation
+            //
+
+            assertNull(InvocationContext.get());
+
+            Thread unbound = new Thread(() -> System.out.println("unbound output"));
+            unbound.start();
+            unbound.join();
+
+            requests.write("{\"id\":2,\"argv\":[\"version\"]}\n".getBytes(StandardCharsets.UTF_8));
+            requests.close();
+
+            serverThread.join(10000L);
+            assertFalse(serverThread.isAlive());
+            assertNull(failure.get());
+
+            String[] lines = new String(stdout.toByteArray(), StandardCharsets.UTF_8).split("\n");
+
+            assertEquals(2, lines.length);
+
+            for(String line: lines) {
+                assertTrue(line, Json.parse(line) instanceof Map);
+            }
+
+            assertTrue(stderr.toString().contains("unbound output\n"));
+
+            //
+            // once the server stopped, unbound output goes to stdout again
+            //
+
+            System.out.println("after");
+
+            assertTrue(stdout.toString().endsWith("after\n"));
+        }
+        finally {
+
+            InvocationContext.uninstallRoutingStreams();
+            System.setOut(processOut);
+            System.setErr(processErr);
+        }
+    }
+
+    @Test
+    public void commandLineApplication_InvalidServerOptions() throws Exception {
+
+        ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+
+        int exitCode = new CommandLineApplication(new ByteArrayOutputStream(), stderr).run(
+                new String[] { "--serve-stdio", "--batch=-" });
+
+        assertEquals(1, exitCode);
+        assertEquals("[error]: --batch cannot be combined with other arguments: --serve-stdio\n", stderr.toString());
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private static List<Map<?, ?>> serve(int parallelism, String... requests) throws Exception {
+
+        InputStream in = new ByteArrayInputStream(
+                (String.join("\n", requests) + "\n").getBytes(StandardCharsets.UTF_8));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        assertEquals(0, new StdioServer(parallelism).run(in, out));
+
+        List<Map<?, ?>> responses = new ArrayList<>();
+
+        for(String line: new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n")) {
+
+            if (!line.isEmpty()) {
+                responses.add((Map<?, ?>)Json.parse(line));
+            }
+        }
+
+        return responses;
+    }
+
+    private static void assertError(Object id, String errorPrefix, String line) {
+
+        StdioServer.Request r = StdioServer.parseRequest(line);
+
+        assertEquals(id, r.getId());
+        assertNotNull(r.getError());
+        assertTrue(r.getError(), r.getError().startsWith(errorPrefix));
+    }
+
+    private static String getVersionOutput() throws Exception {
+
+        //
+        // the version command writes to System.out, which is routed to the request's stdout
+        //
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        StdioServer server = new StdioServer(1);
+        InvocationContext.installRoutingStreams();
+
+        assertEquals(0, server.execute(StdioServer.parseRequest("{\"argv\":[\"version\"]}"),
+                new File("."), System.getenv(), baos, new ByteArrayOutputStream()));
+
+        return baos.toString();
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -64,6 +64,34 @@ public class UtilTest {
         assertEquals("AppOneTwo", Util.normalizeLabel("app-one-two"));
     }
 
+    // toCommandName() -------------------------------------------------------------------------------------------------
+
+    @Test
+    public void toCommandName() throws Exception {
+
+        assertEquals("test", Util.toCommandName("TestCommand"));
+    }
+
+    @Test
+    public void toCommandName_CompoundName() throws Exception {
+
+        assertEquals("compound-name", Util.toCommandName("CompoundNameCommand"));
+    }
+
+    // toApplicationName() ---------------------------------------------------------------------------------------------
+
+    @Test
+    public void toApplicationName() throws Exception {
+
+        assertEquals("test", Util.toApplicationName("TestApplicationRuntime"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void toApplicationName_NonStandardName() throws Exception {
+
+        Util.toApplicationName("Test");
+    }
+
     // Package protected -----------------------------------------------------------------------------------------------
 
     // Protected -------------------------------------------------------------------------------------------------------
@@ -89,6 +89,9 @@ public abstract class ApplicationRuntimeTest {
 
         runtime.info("test");
 
+        // the output is buffered
+        runtime.flush();
+
         assertEquals("test\n", stdout.getWrittenString());
         assertEquals(0, stderr.getWrittenBytes().length);
     }
@@ -109,6 +112,9 @@ public abstract class ApplicationRuntimeTest {
 
         runtime.warn("test");
 
+        // the output is buffered
+        runtime.flush();
+
         assertEquals("[warn]: test\n", stdout.getWrittenString());
         assertEquals(0, stderr.getWrittenBytes().length);
     }
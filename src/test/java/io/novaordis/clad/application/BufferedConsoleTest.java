@@ -0,0 +1,376 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.clad.application;
+
+import io.novaordis.clad.MockOutputStream;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+public class BufferedConsoleTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void constructor_InvalidBufferSize() throws Exception {
+
+        try {
+
+            new BufferedConsole(new MockOutputStream(), new MockOutputStream(), StandardCharsets.UTF_8, false, 15);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            assertEquals("invalid buffer size 15", e.getMessage());
+        }
+    }
+
+    @Test
+    public void constructor_NotATerminal() throws Exception {
+
+        BufferedConsole c = new BufferedConsole(new MockOutputStream(), new MockOutputStream());
+        assertFalse(c.isLineFlush());
+    }
+
+    // isTerminal() ----------------------------------------------------------------------------------------------------
+
+    @Test
+    public void isTerminal_NoConsole() throws Exception {
+
+        assertFalse(BufferedConsole.isTerminal(null, null));
+        assertFalse(BufferedConsole.isTerminal(null, TestConsole.class.getMethod("isTerminal")));
+    }
+
+    /**
+     * Java 22 and newer: System.console() returns a console for redirected streams too.
+     */
+    @Test
+    public void isTerminal_ConsoleForRedirectedStreams() throws Exception {
+
+        assertFalse(BufferedConsole.isTerminal(new TestConsole(false), TestConsole.class.getMethod("isTerminal")));
+        assertTrue(BufferedConsole.isTerminal(new TestConsole(true), TestConsole.class.getMethod("isTerminal")));
+    }
+
+    /**
+     * Before Java 22 there is no Console.isTerminal(), and a console means a terminal.
+     */
+    @Test
+    public void isTerminal_ConsoleWithoutIsTerminal() throws Exception {
+
+        assertTrue(BufferedConsole.isTerminal(new TestConsole(false), null));
+    }
+
+    /**
+     * The tests run with redirected standard output.
+     */
+    @Test
+    public void isTerminal_RedirectedStandardOutput() throws Exception {
+
+        assertFalse(BufferedConsole.isTerminal(System.out));
+        assertFalse(new BufferedConsole(System.out, System.err).isLineFlush());
+    }
+
+    @Test
+    public void info_Buffered() throws Exception {
+
+        MockOutputStream stdout = new MockOutputStream();
+        MockOutputStream stderr = new MockOutputStream();
+        BufferedConsole c = new BufferedConsole(stdout, stderr, StandardCharsets.UTF_8, false, 1024);
+
+        c.info("a");
+        c.info("b");
+
+        assertEquals("", stdout.getWrittenString());
+        assertEquals(4, c.getPendingByteCount());
+
+        c.flush();
+
+        assertEquals("a\nb\n", stdout.getWrittenString());
+        assertEquals("", stderr.getWrittenString());
+        assertEquals(0, c.getPendingByteCount());
+    }
+
+    @Test
+    public void info_LineFlush() throws Exception {
+
+        RecordingOutputStream stdout = new RecordingOutputStream();
+        BufferedConsole c = new BufferedConsole(stdout, new MockOutputStream(), StandardCharsets.UTF_8, true, 1024);
+
+        c.info("a");
+
+        assertEquals("a\n", stdout.getWrittenString());
+        assertEquals(1, stdout.getFlushCount());
+    }
+
+    @Test
+    public void info_BufferFillsUp() throws Exception {
+
+        RecordingOutputStream stdout = new RecordingOutputStream();
+        BufferedConsole c = new BufferedConsole(stdout, new MockOutputStream(), StandardCharsets.UTF_8, false, 16);
+
+        c.info("0123456789");
+        c.info("0123456789");
+
+        // written when the buffer fills up, but not flushed
+        assertEquals("0123456789\n01234", stdout.getWrittenString());
+        assertEquals(0, stdout.getFlushCount());
+
+        c.flush();
+
+        assertEquals("0123456789\n0123456789\n", stdout.getWrittenString());
+        assertEquals(1, stdout.getFlushCount());
+
+        // nothing to flush
+        c.flush();
+        assertEquals(1, stdout.getFlushCount());
+    }
+
+    @Test
+    public void warn() throws Exception {
+
+        MockOutputStream stdout = new MockOutputStream();
+        MockOutputStream stderr = new MockOutputStream();
+        BufferedConsole c = new BufferedConsole(stdout, stderr, StandardCharsets.UTF_8, false, 1024);
+
+        c.warn("a");
+        c.flush();
+
+        assertEquals("[warn]: a\n", stdout.getWrittenString());
+        assertEquals("", stderr.getWrittenString());
+    }
+
+    @Test
+    public void error_FlushesStdoutFirst() throws Exception {
+
+        StringBuilder log = new StringBuilder();
+        RecordingOutputStream stdout = new RecordingOutputStream(log);
+        RecordingOutputStream stderr = new RecordingOutputStream(log);
+        BufferedConsole c = new BufferedConsole(stdout, stderr, StandardCharsets.UTF_8, false, 1024);
+
+        c.info("a");
+        c.error("b");
+
+        assertEquals("a\n[error]: b\n", log.toString());
+        assertEquals(1, stdout.getFlushCount());
+        assertEquals(1, stderr.getFlushCount());
+        assertEquals(0, c.getPendingByteCount());
+    }
+
+    @Test
+    public void overloads() throws Exception {
+
+        MockOutputStream stdout = new MockOutputStream();
+        MockOutputStream stderr = new MockOutputStream();
+        BufferedConsole c = new BufferedConsole(stdout, stderr, StandardCharsets.UTF_8, false, 1024);
+
+        c.info(new StringBuilder("sb"));
+        c.info("xcharsx".toCharArray(), 1, 5);
+        c.warn(new StringBuilder("sb"));
+        c.warn("xcharsx".toCharArray(), 1, 5);
+        c.error(new StringBuilder("sb"));
+        c.error("xcharsx".toCharArray(), 1, 5);
+        c.info((String)null);
+        c.flush();
+
+        assertEquals("sb\nchars\n[warn]: sb\n[warn]: chars\nnull\n", stdout.getWrittenString());
+        assertEquals("[error]: sb\n[error]: chars\n", stderr.getWrittenString());
+    }
+
+    @Test
+    public void charArray_InvalidBounds() throws Exception {
+
+        BufferedConsole c = new BufferedConsole(
+                new MockOutputStream(), new MockOutputStream(), StandardCharsets.UTF_8, false, 1024);
+
+        try {
+
+            c.info(new char[3], 2, 2);
+            fail("should have thrown exception");
+        }
+        catch(IndexOutOfBoundsException e) {
+
+            // expected
+        }
+    }
+
+    @Test
+    public void encoding_SameAsGetBytes() throws Exception {
+
+        encoding_SameAsGetBytes(StandardCharsets.UTF_8);
+        encoding_SameAsGetBytes(StandardCharsets.ISO_8859_1);
+        encoding_SameAsGetBytes(StandardCharsets.UTF_16BE);
+    }
+
+    @Test
+    public void writeFailure_NotPropagated() throws Exception {
+
+        BufferedConsole c = new BufferedConsole(
+                new FailingOutputStream(), new FailingOutputStream(), StandardCharsets.UTF_8, true, 1024);
+
+        c.info("a");
+        c.error("b");
+        c.flush();
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    /**
+     * Lines of random length, with surrogate pairs, unpaired surrogates and characters the charset cannot map, some of
+     * them split across the encoder's chunks, compared with what String.getBytes() produces.
+     */
+    private void encoding_SameAsGetBytes(Charset charset) throws Exception {
+
+        Random random = new Random(7);
+        String alphabet = "abé€😀\ud83d";
+
+        ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        BufferedConsole c = new BufferedConsole(stdout, new MockOutputStream(), charset, false, 64);
+
+        for(int i = 0; i < 200; i ++) {
+
+            StringBuilder sb = new StringBuilder();
+
+            for(int j = random.nextInt(10000); j > 0; j --) {
+                sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+
+            String line = sb.toString();
+
+            if (i % 3 == 0) {
+
+                c.info(line);
+            }
+            else if (i % 3 == 1) {
+
+                c.info(sb);
+            }
+            else {
+
+                c.info(line.toCharArray(), 0, line.length());
+            }
+
+            expected.write((line + "\n").getBytes(charset));
+        }
+
+        c.flush();
+
+        assertArrayEquals(charset.toString(), expected.toByteArray(), stdout.toByteArray());
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+    /**
+     * Stands in for the Java 22 java.io.Console, which cannot be instantiated.
+     */
+    public static class TestConsole {
+
+        private boolean terminal;
+
+        public TestConsole(boolean terminal) {
+            this.terminal = terminal;
+        }
+
+        public boolean isTerminal() {
+            return terminal;
+        }
+    }
+
+    private static class RecordingOutputStream extends OutputStream {
+
+        private StringBuilder log;
+        private ByteArrayOutputStream written = new ByteArrayOutputStream();
+        private int flushCount;
+
+        RecordingOutputStream() {
+
+            this(new StringBuilder());
+        }
+
+        RecordingOutputStream(StringBuilder log) {
+
+            this.log = log;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+
+            written.write(b);
+            log.append((char)b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+
+            written.write(b, off, len);
+            log.append(new String(b, off, len, StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public void flush() throws IOException {
+
+            flushCount ++;
+        }
+
+        String getWrittenString() {
+
+            return new String(written.toByteArray(), StandardCharsets.UTF_8);
+        }
+
+        int getFlushCount() {
+
+            return flushCount;
+        }
+    }
+
+    private static class FailingOutputStream extends OutputStream {
+
+        @Override
+        public void write(int b) throws IOException {
+
+            throw new IOException("SYNTHETIC");
+        }
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.clad.application;
+
+import io.novaordis.clad.MockOutputStream;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+public class InvocationContextTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @After
+    public void tearDown() {
+
+        InvocationContext.remove();
+        InvocationContext.uninstallRoutingStreams();
+    }
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void constructor_NullComponent() throws Exception {
+
+        try {
+
+            new InvocationContext(null, Collections.emptyMap(), getStdin(), new MockOutputStream(),
+                    new MockOutputStream());
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            assertEquals("null invocation context component", e.getMessage());
+        }
+    }
+
+    @Test
+    public void environmentIsACopy() throws Exception {
+
+        Map<String, String> environment = new HashMap<>();
+        environment.put("A", "1");
+
+        InvocationContext c = new InvocationContext(
+                new File("/tmp"), environment, getStdin(), new MockOutputStream(), new MockOutputStream());
+
+        environment.put("B", "2");
+
+        assertEquals(Collections.singletonMap("A", "1"), c.getEnvironment());
+
+        try {
+
+            c.getEnvironment().put("C", "3");
+            fail("should have thrown exception");
+        }
+        catch(UnsupportedOperationException e) {
+
+            // expected
+        }
+    }
+
+    @Test
+    public void noContextByDefault() throws Exception {
+
+        assertNull(InvocationContext.get());
+
+        MockApplicationRuntime r = new MockApplicationRuntime();
+
+        assertEquals(new File("."), r.getCurrentDirectory());
+        assertEquals(System.out, r.getStdoutOutputStream());
+        assertEquals(System.err, r.getStderrOutputStream());
+    }
+
+    @Test
+    public void runtimeUsesTheInvocationContext() throws Exception {
+
+        MockOutputStream stdout = new MockOutputStream();
+        MockOutputStream stderr = new MockOutputStream();
+
+        InvocationContext.set(new InvocationContext(
+                new File("/some/dir"), Collections.singletonMap("CLAD_TEST_VARIABLE", "blue"),
+                getStdin(), stdout, stderr));
+
+        MockApplicationRuntime r = new MockApplicationRuntime();
+
+        assertEquals(new File("/some/dir"), r.getCurrentDirectory());
+        assertEquals(stdout, r.getStdoutOutputStream());
+        assertEquals(stderr, r.getStderrOutputStream());
+
+        assertEquals("blue", r.getRootScope().getVariable("CLAD_TEST_VARIABLE").get());
+
+        //
+        // the process' environment is not visible
+        //
+
+        assertTrue(System.getenv("USER") != null);
+        assertNull(r.getRootScope().getVariable("USER"));
+    }
+
+    @Test
+    public void theContextIsNotInheritedByChildThreads() throws Exception {
+
+        InvocationContext c = new InvocationContext(
+                new File("/tmp"), Collections.emptyMap(), getStdin(), new MockOutputStream(), new MockOutputStream());
+
+        InvocationContext.set(c);
+
+        final AtomicReference<InvocationContext> seen = new AtomicReference<>(c);
+
+        Thread t = new Thread(new ContextRecorder(seen));
+        t.start();
+        t.join();
+
+        assertNull(seen.get());
+    }
+
+    @Test
+    public void wrap() throws Exception {
+
+        InvocationContext c = new InvocationContext(
+                new File("/tmp"), Collections.emptyMap(), getStdin(), new MockOutputStream(), new MockOutputStream());
+
+        InvocationContext.set(c);
+
+        final AtomicReference<InvocationContext> seen = new AtomicReference<>();
+
+        Runnable wrapped = InvocationContext.wrap(new ContextRecorder(seen));
+
+        InvocationContext.remove();
+
+        Thread t = new Thread(wrapped);
+        t.start();
+        t.join();
+
+        assertEquals(c, seen.get());
+
+        //
+        // the executing thread's own context is restored
+        //
+
+        InvocationContext other = new InvocationContext(
+                new File("/"), Collections.emptyMap(), getStdin(), new MockOutputStream(), new MockOutputStream());
+
+        InvocationContext.set(other);
+
+        wrapped.run();
+
+        assertEquals(c, seen.get());
+        assertEquals(other, InvocationContext.get());
+    }
+
+    @Test
+    public void wrap_Callable() throws Exception {
+
+        InvocationContext c = new InvocationContext(
+                new File("/tmp"), Collections.emptyMap(), getStdin(), new MockOutputStream(), new MockOutputStream());
+
+        InvocationContext.set(c);
+
+        Callable<InvocationContext> getter = InvocationContext::get;
+        Callable<InvocationContext> wrapped = InvocationContext.wrap(getter);
+
+        InvocationContext.remove();
+
+        assertEquals(c, wrapped.call());
+        assertNull(InvocationContext.get());
+    }
+
+    @Test
+    public void routingStreams() throws Exception {
+
+        InvocationContext.installRoutingStreams();
+
+        ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+        ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+        InputStream stdin = new ByteArrayInputStream("input".getBytes());
+
+        InvocationContext.set(
+                new InvocationContext(new File("/tmp"), Collections.emptyMap(), stdin, stdout, stderr));
+
+        System.out.print("out");
+        System.err.print("err");
+
+        byte[] buffer = new byte[10];
+        int n = System.in.read(buffer);
+
+        InvocationContext.remove();
+
+        assertEquals("out", stdout.toString());
+        assertEquals("err", stderr.toString());
+        assertEquals("input", new String(buffer, 0, n));
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private static InputStream getStdin() {
+
+        return new ByteArrayInputStream(new byte[0]);
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+    private static class ContextRecorder implements Runnable {
+
+        private AtomicReference<InvocationContext> seen;
+
+        ContextRecorder(AtomicReference<InvocationContext> seen) {
+
+            this.seen = seen;
+        }
+
+        @Override
+        public void run() {
+
+            seen.set(InvocationContext.get());
+        }
+    }
+}
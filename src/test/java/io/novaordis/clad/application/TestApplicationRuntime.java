@@ -41,6 +41,8 @@ public class TestApplicationRuntime extends ApplicationRuntimeBase {
 
     private static boolean initialized;
 
+    private static int initializationCount;
+
     private static Set<Option> optionalGlobalOptions;
 
     private static String defaultCommandName;
@@ -50,6 +52,7 @@ public class TestApplicationRuntime extends ApplicationRuntimeBase {
     static {
 
         initialized = false;
+        initializationCount = 0;
         optionalGlobalOptions = new HashSet<>();
         defaultCommandName = null;
         initBehavior = ApplicationInitBehavior.INSTALLS_SAME_INSTANCE;
@@ -60,9 +63,18 @@ public class TestApplicationRuntime extends ApplicationRuntimeBase {
         return initialized;
     }
 
+    /**
+     * @return the number of init() calls since the last reset().
+     */
+    public static int getInitializationCount() {
+
+        return initializationCount;
+    }
+
     public static void reset() {
 
         initialized = false;
+        initializationCount = 0;
         optionalGlobalOptions.clear();
         defaultCommandName = null;
     }
@@ -103,10 +115,19 @@ public class TestApplicationRuntime extends ApplicationRuntimeBase {
         return optionalGlobalOptions;
     }
 
+    /**
+     * The tests change the optional global options.
+     */
+    @Override
+    public boolean computesGlobalOptions() {
+        return true;
+    }
+
     @Override
     public void init(Configuration configuration) throws UserErrorException {
 
         initialized = true;
+        initializationCount ++;
 
         if (ApplicationInitBehavior.INSTALLS_SAME_INSTANCE.equals(initBehavior)) {
 
@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.clad.command;
+
+import io.novaordis.clad.CommandLineApplication;
+import io.novaordis.utilities.UserErrorException;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+public class CdsCommandTest extends CommandTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @After
+    public void tearDown() {
+
+        System.clearProperty(CdsCommand.CDS_DIRECTORY_SYSTEM_PROPERTY_NAME);
+    }
+
+    @Test
+    public void toJavaFeatureVersion() throws Exception {
+
+        assertEquals(8, CdsCommand.toJavaFeatureVersion("1.8"));
+        assertEquals(11, CdsCommand.toJavaFeatureVersion("11"));
+        assertEquals(17, CdsCommand.toJavaFeatureVersion("17.0"));
+        assertEquals(-1, CdsCommand.toJavaFeatureVersion("blah"));
+        assertEquals(-1, CdsCommand.toJavaFeatureVersion(null));
+    }
+
+    @Test
+    public void needsRuntime() throws Exception {
+
+        assertFalse(getCommandToTest().needsRuntime());
+    }
+
+    // configure() -----------------------------------------------------------------------------------------------------
+
+    @Test
+    public void configure() throws Exception {
+
+        CdsCommand c = getCommandToTest();
+
+        //
+        // "--global cds test --something": the command name was already removed
+        //
+
+        List<String> args = new ArrayList<>(Arrays.asList("--global", "test", "--something"));
+
+        c.configure(1, args);
+
+        assertEquals(Collections.singletonList("--global"), args);
+        assertEquals(Arrays.asList("--global", "test", "--something"), c.getTrainingArguments());
+    }
+
+    @Test
+    public void configure_NoTrainingCommandLine() throws Exception {
+
+        CdsCommand c = getCommandToTest();
+
+        try {
+            c.configure(1, new ArrayList<>(Collections.singletonList("--global")));
+            fail("should have thrown exception");
+        }
+        catch(UserErrorException e) {
+            assertTrue(e.getMessage().contains("no training command line"));
+        }
+    }
+
+    // getCdsDirectory() -----------------------------------------------------------------------------------------------
+
+    @Test
+    public void getCdsDirectory_NotSpecified() throws Exception {
+
+        try {
+            getCommandToTest().getCdsDirectory();
+            fail("should have thrown exception");
+        }
+        catch(UserErrorException e) {
+            assertTrue(e.getMessage().contains(CdsCommand.CDS_DIRECTORY_SYSTEM_PROPERTY_NAME));
+        }
+    }
+
+    @Test
+    public void getCdsDirectory() throws Exception {
+
+        System.setProperty(CdsCommand.CDS_DIRECTORY_SYSTEM_PROPERTY_NAME, "/tmp/something");
+        assertEquals(new File("/tmp/something"), getCommandToTest().getCdsDirectory());
+    }
+
+    // command lines ---------------------------------------------------------------------------------------------------
+
+    @Test
+    public void getTrainingCommandLine_DynamicArchive() throws Exception {
+
+        CdsCommand c = getCommandToTest();
+        c.configure(0, new ArrayList<>(Collections.singletonList("version")));
+
+        File archive = new File("/a/clad.jsa");
+        File classList = new File("/a/clad.classlist");
+
+        List<String> cl = c.getTrainingCommandLine(
+                17, "x.jar:y.jar", Collections.singletonList("-Dapplication.name=test"), archive, classList);
+
+        assertTrue(cl.get(0).endsWith("java"));
+        assertEquals(Arrays.asList(
+                "-XX:ArchiveClassesAtExit=" + archive.getPath(),
+                "-XX:DumpLoadedClassList=" + classList.getPath(),
+                "-cp", "x.jar:y.jar",
+                "-Dapplication.name=test",
+                CommandLineApplication.class.getName(),
+                "version"), cl.subList(1, cl.size()));
+    }
+
+    @Test
+    public void getTrainingAndDumpCommandLines_StaticArchive() throws Exception {
+
+        CdsCommand c = getCommandToTest();
+        c.configure(0, new ArrayList<>(Collections.singletonList("version")));
+
+        File archive = new File("/a/clad.jsa");
+        File classList = new File("/a/clad.classlist");
+        List<String> jvmArguments = Collections.emptyList();
+
+        List<String> training = c.getTrainingCommandLine(11, "x.jar", jvmArguments, archive, classList);
+
+        assertEquals("-Xshare:off", training.get(1));
+        assertEquals("-XX:DumpLoadedClassList=" + classList.getPath(), training.get(2));
+
+        List<String> dump = c.getDumpCommandLine(11, "x.jar", jvmArguments, archive, classList);
+
+        assertEquals(Arrays.asList(
+                "-Xshare:dump",
+                "-XX:SharedClassListFile=" + classList.getPath(),
+                "-XX:SharedArchiveFile=" + archive.getPath(),
+                "-cp", "x.jar"), dump.subList(1, dump.size()));
+
+        dump = c.getDumpCommandLine(10, "x.jar", jvmArguments, archive, classList);
+        assertTrue(dump.contains("-XX:+UseAppCDS"));
+    }
+
+    @Test
+    public void getInheritedJvmArguments() throws Exception {
+
+        for(String a: getCommandToTest().getInheritedJvmArguments()) {
+
+            assertTrue(a.startsWith("-D"));
+            assertFalse(a.startsWith("-D" + CdsCommand.CDS_DIRECTORY_SYSTEM_PROPERTY_NAME));
+        }
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    @Override
+    protected CdsCommand getCommandToTest() throws Exception {
+
+        return new CdsCommand();
+    }
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
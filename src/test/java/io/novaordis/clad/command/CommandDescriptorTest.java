@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.clad.command;
+
+import io.novaordis.clad.InstanceFactory;
+import io.novaordis.clad.discovery.ClasspathNameIndex;
+import io.novaordis.clad.discovery.DiscoveryIndex;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.StringTokenizer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+public class CommandDescriptorTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @After
+    public void tearDown() {
+
+        System.clearProperty(DiscoveryIndex.DISABLE_INDEX_SYSTEM_PROPERTY_NAME);
+        ClasspathNameIndex.reset();
+    }
+
+    @Test
+    public void constructor_NullClassName() throws Exception {
+
+        try {
+            new CommandDescriptor(null);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+            assertEquals("null class name", e.getMessage());
+        }
+    }
+
+    @Test
+    public void sameNameAndHelpFilePathAsCommandBase() throws Exception {
+
+        for(CommandBase c: new CommandBase[] { new TestCommand(), new CompoundNameCommand(), new VersionCommand() }) {
+
+            CommandDescriptor d = new CommandDescriptor(c.getClass().getName());
+
+            assertEquals(c.getName(), d.getName());
+            assertEquals(c.getHelpFilePath(), d.getHelpFilePath());
+        }
+    }
+
+    @Test
+    public void toHelpFilePath() throws Exception {
+
+        assertEquals("a/b/compound-name.txt", CommandDescriptor.toHelpFilePath("a.b.CompoundNameCommand"));
+    }
+
+    @Test
+    public void isHelpAvailable() throws Exception {
+
+        assertTrue(new CommandDescriptor(VersionCommand.class.getName()).isHelpAvailable());
+        assertFalse(new CommandDescriptor(CompoundNameCommand.class.getName()).isHelpAvailable());
+    }
+
+    // getCommandDescriptors() -----------------------------------------------------------------------------------------
+
+    @Test
+    public void getCommandDescriptors() throws Exception {
+
+        List<CommandDescriptor> descriptors = CommandDescriptor.getCommandDescriptors();
+
+        List<String> names = new ArrayList<>();
+
+        for(CommandDescriptor d: descriptors) {
+            names.add(d.getName());
+        }
+
+        assertTrue(names.contains("test"));
+        assertTrue(names.contains("version"));
+        assertTrue(names.contains("compound-name"));
+
+        for(int i = 1; i < names.size(); i ++) {
+            assertTrue(names.get(i - 1).compareTo(names.get(i)) <= 0);
+        }
+    }
+
+    @Test
+    public void getCommandDescriptors_ClassPathScan_NonCommandsAreExcluded() throws Exception {
+
+        System.setProperty(DiscoveryIndex.DISABLE_INDEX_SYSTEM_PROPERTY_NAME, "true");
+        ClasspathNameIndex.reset();
+
+        List<String> classNames = new ArrayList<>();
+
+        for(CommandDescriptor d: CommandDescriptor.getCommandDescriptors()) {
+            classNames.add(d.getClassName());
+        }
+
+        assertTrue(classNames.contains(TestCommand.class.getName()));
+
+        //
+        // the interface and the abstract base class follow the naming convention, but are not listed
+        //
+
+        assertFalse(classNames.contains(Command.class.getName()));
+        assertFalse(classNames.contains(CommandBase.class.getName()));
+    }
+
+    @Test
+    public void getCommandDescriptors_NoCommandClassIsInitialized() throws Exception {
+
+        //
+        // other tests in this JVM may have initialized the command classes already, so the descriptors are obtained
+        // in a fresh class loader
+        //
+
+        List<URL> urls = new ArrayList<>();
+
+        String classPath = System.getProperty(InstanceFactory.JAVA_CLASS_PATH_SYSTEM_PROPERTY_NAME);
+
+        for(StringTokenizer st = new StringTokenizer(classPath, File.pathSeparator); st.hasMoreTokens(); ) {
+            urls.add(new File(st.nextToken()).toURI().toURL());
+        }
+
+        try(URLClassLoader isolated = new URLClassLoader(urls.toArray(new URL[urls.size()]), null)) {
+
+            Class<?> descriptorClass = isolated.loadClass(CommandDescriptor.class.getName());
+            List<?> descriptors = (List<?>)descriptorClass.getMethod("getCommandDescriptors").invoke(null);
+
+            boolean found = false;
+
+            for(Object d: descriptors) {
+
+                if ("static-initializer".equals(descriptorClass.getMethod("getName").invoke(d))) {
+                    found = true;
+                }
+            }
+
+            assertTrue(found);
+
+            Class<?> trackerClass = isolated.loadClass(InitializationTracker.class.getName());
+            Set<?> initialized = (Set<?>)trackerClass.getField("initialized").get(null);
+            assertTrue(initialized.isEmpty());
+        }
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
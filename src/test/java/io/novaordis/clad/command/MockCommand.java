@@ -44,15 +44,18 @@ public class MockCommand implements Command {
     // Static ----------------------------------------------------------------------------------------------------------
 
     private static boolean needsRuntime;
+    private static boolean canReuseRuntime;
 
     static {
 
         needsRuntime = false;
+        canReuseRuntime = false;
     }
 
     public static void reset() {
 
         needsRuntime = false;
+        canReuseRuntime = false;
     }
 
     public static void setNeedsRuntime(boolean b) {
@@ -60,6 +63,11 @@ public class MockCommand implements Command {
         needsRuntime = b;
     }
 
+    public static void setCanReuseRuntime(boolean b) {
+
+        canReuseRuntime = b;
+    }
+
     // Attributes ------------------------------------------------------------------------------------------------------
 
     private Configuration configuration;
@@ -86,6 +94,12 @@ public class MockCommand implements Command {
         return needsRuntime;
     }
 
+    @Override
+    public boolean canReuseRuntime() {
+
+        return canReuseRuntime;
+    }
+
     @Override
     public Set<Option> requiredOptions() {
 
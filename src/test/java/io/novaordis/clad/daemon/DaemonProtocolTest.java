@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.clad.daemon;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+public class DaemonProtocolTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void roundTrip() throws Exception {
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(baos);
+
+        DaemonProtocol.write(out, DaemonProtocol.ARGUMENT, "süßes \"argument\"");
+        DaemonProtocol.write(out, DaemonProtocol.EXIT, 7);
+        DaemonProtocol.write(out, DaemonProtocol.RUN, new byte[0], 0, 0);
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(baos.toByteArray()));
+
+        DaemonProtocol.Frame f = DaemonProtocol.read(in);
+        assertEquals(DaemonProtocol.ARGUMENT, f.getType());
+        assertEquals("süßes \"argument\"", f.getPayloadAsString());
+
+        f = DaemonProtocol.read(in);
+        assertEquals(DaemonProtocol.EXIT, f.getType());
+        assertEquals(7, f.getPayloadAsInt());
+
+        f = DaemonProtocol.read(in);
+        assertEquals(DaemonProtocol.RUN, f.getType());
+        assertEquals(0, f.getPayload().length);
+
+        assertNull(DaemonProtocol.read(in));
+    }
+
+    @Test
+    public void largeContentIsSplit() throws Exception {
+
+        byte[] content = new byte[DaemonProtocol.MAX_PAYLOAD_LENGTH * 2 + 10];
+        Arrays.fill(content, (byte)'x');
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        DaemonProtocol.write(new DataOutputStream(baos), DaemonProtocol.STDOUT, content, 0, content.length);
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(baos.toByteArray()));
+
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+        int frames = 0;
+        DaemonProtocol.Frame f;
+
+        while((f = DaemonProtocol.read(in)) != null) {
+
+            assertEquals(DaemonProtocol.STDOUT, f.getType());
+            received.write(f.getPayload());
+            frames ++;
+        }
+
+        assertEquals(3, frames);
+        assertArrayEquals(content, received.toByteArray());
+    }
+
+    @Test
+    public void read_TruncatedFrame() throws Exception {
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        DaemonProtocol.write(new DataOutputStream(baos), DaemonProtocol.ARGUMENT, "something");
+
+        byte[] bytes = Arrays.copyOf(baos.toByteArray(), baos.size() - 2);
+
+        try {
+
+            DaemonProtocol.read(new DataInputStream(new ByteArrayInputStream(bytes)));
+            fail("should have thrown exception");
+        }
+        catch(EOFException e) {
+
+            // expected
+        }
+    }
+
+    @Test
+    public void read_InvalidLength() throws Exception {
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(baos);
+        out.writeByte(DaemonProtocol.STDIN);
+        out.writeInt(DaemonProtocol.MAX_PAYLOAD_LENGTH + 1);
+
+        try {
+
+            DaemonProtocol.read(new DataInputStream(new ByteArrayInputStream(baos.toByteArray())));
+            fail("should have thrown exception");
+        }
+        catch(IOException e) {
+
+            assertEquals("invalid frame length " + (DaemonProtocol.MAX_PAYLOAD_LENGTH + 1), e.getMessage());
+        }
+    }
+
+    @Test
+    public void getPayloadAsInt_NotAnInteger() throws Exception {
+
+        try {
+
+            new DaemonProtocol.Frame(DaemonProtocol.EXIT, new byte[3]).getPayloadAsInt();
+            fail("should have thrown exception");
+        }
+        catch(IOException e) {
+
+            assertEquals("expected a 4 byte payload, got 3 bytes", e.getMessage());
+        }
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.clad.daemon;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+public class DaemonStateTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private File scratchDir;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @Before
+    public void setUp() throws Exception {
+
+        String basedir = System.getProperty("basedir");
+        assertNotNull(basedir);
+
+        scratchDir = new File(basedir, "target/test-scratch/daemon-state");
+        assertTrue(scratchDir.isDirectory() || scratchDir.mkdirs());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+
+        File[] files = scratchDir.listFiles();
+
+        if (files != null) {
+            for(File f: files) {
+                assertTrue(f.delete());
+            }
+        }
+    }
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void writeAndRead() throws Exception {
+
+        File file = new File(scratchDir, "test.daemon");
+
+        DaemonState state = new DaemonState(12345, "abc", 77L);
+        state.write(file);
+
+        assertEquals(state, DaemonState.read(file));
+
+        //
+        // no temporary file left behind
+        //
+
+        String[] names = scratchDir.list();
+        assertNotNull(names);
+        assertEquals(1, names.length);
+    }
+
+    @Test
+    public void write_OnlyTheOwnerCanReadTheStateFile() throws Exception {
+
+        File file = new File(scratchDir, "test.daemon");
+
+        new DaemonState(12345, "abc", 77L).write(file);
+
+        assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(file.toPath())));
+    }
+
+    @Test
+    public void read_NoSuchFile() throws Exception {
+
+        assertNull(DaemonState.read(new File(scratchDir, "no-such-file")));
+    }
+
+    @Test
+    public void read_CorruptedFile() throws Exception {
+
+        File file = new File(scratchDir, "test.daemon");
+        Files.write(file.toPath(), "port=blah\n".getBytes());
+
+        assertNull(DaemonState.read(file));
+    }
+
+    @Test
+    public void getStateFile() throws Exception {
+
+        File f = DaemonState.getStateFile(scratchDir, "my app", "a.jar");
+
+        assertEquals(scratchDir, f.getParentFile());
+        assertEquals("my_app-" + DaemonState.fingerprint("a.jar") + ".daemon", f.getName());
+
+        f = DaemonState.getStateFile(scratchDir, null, "a.jar");
+        assertTrue(f.getName().startsWith(DaemonState.DEFAULT_APPLICATION_NAME + "-"));
+    }
+
+    @Test
+    public void fingerprint_ChangesWhenAJarChanges() throws Exception {
+
+        File jar = new File(scratchDir, "test.jar");
+        Files.write(jar.toPath(), new byte[] { 1, 2, 3 });
+
+        String classPath = scratchDir + File.pathSeparator + jar;
+
+        String fingerprint = DaemonState.fingerprint(classPath);
+        assertEquals(fingerprint, DaemonState.fingerprint(classPath));
+
+        Files.write(jar.toPath(), new byte[] { 1, 2, 3, 4 });
+
+        assertNotEquals(fingerprint, DaemonState.fingerprint(classPath));
+    }
+
+    @Test
+    public void newToken() throws Exception {
+
+        String token = DaemonState.newToken();
+
+        assertEquals(32, token.length());
+        assertFalse(token.equals(DaemonState.newToken()));
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,267 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.clad.daemon;
+
+import io.novaordis.clad.application.InvocationContext;
+import io.novaordis.clad.configuration.Configuration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the daemon in-process, on a separate thread, and talks to it with the client.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+public class DaemonTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private File scratchDir;
+    private File stateFile;
+
+    private Daemon daemon;
+    private Thread daemonThread;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @Before
+    public void setUp() throws Exception {
+
+        String basedir = System.getProperty("basedir");
+        assertNotNull(basedir);
+
+        scratchDir = new File(basedir, "target/test-scratch/daemon");
+        assertTrue(scratchDir.isDirectory() || scratchDir.mkdirs());
+
+        stateFile = new File(scratchDir, "test.daemon");
+
+        System.setProperty(Configuration.APPLICATION_NAME_SYSTEM_PROPERTY_NAME, "test");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+
+        if (daemon != null) {
+
+            daemon.stop();
+            daemonThread.join(10000L);
+            assertFalse(daemonThread.isAlive());
+        }
+
+        InvocationContext.uninstallRoutingStreams();
+
+        System.clearProperty(Configuration.APPLICATION_NAME_SYSTEM_PROPERTY_NAME);
+
+        File[] files = scratchDir.listFiles();
+
+        if (files != null) {
+            for(File f: files) {
+                assertTrue(f.delete());
+            }
+        }
+    }
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void start_PublishesTheState() throws Exception {
+
+        startDaemon(0L);
+
+        DaemonState state = DaemonState.read(stateFile);
+
+        assertEquals(daemon.getState(), state);
+    }
+
+    @Test
+    public void invoke() throws Exception {
+
+        startDaemon(0L);
+
+        ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+        ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+
+        int exitCode = invoke(stdout, stderr, "version");
+
+        assertEquals(0, exitCode);
+        assertTrue(stdout.toString().startsWith("version "));
+        assertEquals("", stderr.toString());
+
+        //
+        // the same daemon serves the next invocation
+        //
+
+        stdout.reset();
+
+        exitCode = invoke(stdout, stderr, "version");
+
+        assertEquals(0, exitCode);
+        assertTrue(stdout.toString().startsWith("version "));
+    }
+
+    @Test
+    public void invoke_UserError() throws Exception {
+
+        startDaemon(0L);
+
+        ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+        ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+
+        int exitCode = invoke(stdout, stderr, "no-such-command");
+
+        assertEquals(1, exitCode);
+        assertEquals("", stdout.toString());
+        assertTrue(stderr.toString().startsWith("[error]: "));
+    }
+
+    @Test
+    public void invoke_NoDaemon() throws Exception {
+
+        ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+
+        int exitCode = invoke(new ByteArrayOutputStream(), stderr, "version");
+
+        assertEquals(1, exitCode);
+        assertTrue(stderr.toString().startsWith("[error]: failed to reach the daemon"));
+    }
+
+    @Test
+    public void invoke_InvalidToken() throws Exception {
+
+        startDaemon(0L);
+
+        new DaemonState(daemon.getState().getPort(), "not-the-token", -1L).write(stateFile);
+
+        ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+
+        int exitCode = invoke(new ByteArrayOutputStream(), stderr, "version");
+
+        assertEquals(1, exitCode);
+        assertTrue(stderr.toString().contains("the daemon closed the connection"));
+    }
+
+    @Test
+    public void stop() throws Exception {
+
+        startDaemon(0L);
+
+        assertTrue(new DaemonClient(stateFile, false).stop());
+
+        daemonThread.join(10000L);
+        assertFalse(daemonThread.isAlive());
+        assertFalse(stateFile.exists());
+    }
+
+    @Test
+    public void stop_NoDaemon() throws Exception {
+
+        assertFalse(new DaemonClient(stateFile, false).stop());
+    }
+
+    @Test
+    public void idleTimeout() throws Exception {
+
+        startDaemon(100L);
+
+        daemonThread.join(10000L);
+        assertFalse(daemonThread.isAlive());
+        assertFalse(stateFile.exists());
+    }
+
+    @Test
+    public void getDaemonCommandLine() throws Exception {
+
+        List<String> commandLine = DaemonClient.getDaemonCommandLine(Arrays.asList(
+                "-Xmx1g", "-Dapplication.name=test",
+                "-agentlib:jdwp=transport=dt_socket,server=y,suspend=y,address=5011",
+                "-Dclad.startup.report=stderr", "-D" + DaemonClient.STOP_SYSTEM_PROPERTY_NAME + "=true"));
+
+        assertTrue(commandLine.get(0).endsWith("java"));
+        assertEquals(Arrays.asList("-Xmx1g", "-Dapplication.name=test", "-cp"), commandLine.subList(1, 4));
+        assertEquals(System.getProperty("java.class.path"), commandLine.get(4));
+        assertEquals(Daemon.class.getName(), commandLine.get(5));
+        assertEquals(6, commandLine.size());
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private void startDaemon(long idleTimeoutMs) throws Exception {
+
+        daemon = new Daemon(stateFile, idleTimeoutMs);
+        daemon.start();
+
+        daemonThread = new Thread(new Server(daemon), "test daemon");
+        daemonThread.start();
+    }
+
+    private int invoke(ByteArrayOutputStream stdout, ByteArrayOutputStream stderr, String... args) throws Exception {
+
+        DaemonClient client = new DaemonClient(stateFile, false);
+
+        return client.invoke(args, scratchDir, Collections.singletonMap("A", "B"),
+                new ByteArrayInputStream(new byte[0]), stdout, stderr);
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+    private static class Server implements Runnable {
+
+        private Daemon daemon;
+
+        Server(Daemon daemon) {
+
+            this.daemon = daemon;
+        }
+
+        @Override
+        public void run() {
+
+            try {
+
+                daemon.serve();
+            }
+            catch(Exception e) {
+
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
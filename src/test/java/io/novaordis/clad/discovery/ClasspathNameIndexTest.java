@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.clad.discovery;
+
+import io.novaordis.clad.InstanceFactory;
+import io.novaordis.clad.InstanceFactoryTest;
+import io.novaordis.clad.command.TestCommand;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+public class ClasspathNameIndexTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private String originalClassPath = System.getProperty(InstanceFactory.JAVA_CLASS_PATH_SYSTEM_PROPERTY_NAME);
+    private File scratchDir;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @After
+    public void tearDown() {
+
+        InstanceFactory.searchOrder = InstanceFactory.DIRECTORIES_ARE_SEARCHED_FIRST;
+        System.clearProperty(DiscoveryIndex.DISABLE_INDEX_SYSTEM_PROPERTY_NAME);
+        System.clearProperty(DiscoveryCache.DISABLE_CACHE_SYSTEM_PROPERTY_NAME);
+        System.setProperty(InstanceFactory.JAVA_CLASS_PATH_SYSTEM_PROPERTY_NAME, originalClassPath);
+        ClasspathNameIndex.reset();
+
+        if (scratchDir != null) {
+
+            InstanceFactoryTest.delete(scratchDir);
+        }
+    }
+
+    // getFullyQualifiedClassNames() -----------------------------------------------------------------------------------
+
+    @Test
+    public void getFullyQualifiedClassNames_NoMatch() throws Exception {
+
+        ClasspathNameIndex index = new ClasspathNameIndex("");
+        index.add("a.b.TestCommand", false);
+
+        List<String> result = index.getFullyQualifiedClassNames("NoSuchCommand");
+        assertTrue(result.isEmpty());
+    }
+
+    @Test
+    public void getFullyQualifiedClassNames_Ambiguous() throws Exception {
+
+        ClasspathNameIndex index = new ClasspathNameIndex("");
+        index.add("a.b.TestCommand", false);
+        index.add("c.d.TestCommand", false);
+
+        List<String> result = index.getFullyQualifiedClassNames("TestCommand");
+        assertEquals(2, result.size());
+        assertEquals("a.b.TestCommand", result.get(0));
+        assertEquals("c.d.TestCommand", result.get(1));
+    }
+
+    @Test
+    public void getFullyQualifiedClassNames_SameClassIndexedTwiceIsNotAmbiguous() throws Exception {
+
+        ClasspathNameIndex index = new ClasspathNameIndex("");
+        index.add("a.b.TestCommand", true);
+        index.add("a.b.TestCommand", true);
+
+        List<String> result = index.getFullyQualifiedClassNames("TestCommand");
+        assertEquals(1, result.size());
+        assertEquals("a.b.TestCommand", result.get(0));
+    }
+
+    @Test
+    public void getFullyQualifiedClassNames_SearchOrder() throws Exception {
+
+        ClasspathNameIndex index = new ClasspathNameIndex("");
+        index.add("dir.TestCommand", false);
+        index.add("jar.TestCommand", true);
+        index.add("jar.OtherCommand", true);
+
+        InstanceFactory.searchOrder = InstanceFactory.DIRECTORIES_ARE_SEARCHED_FIRST;
+
+        List<String> result = index.getFullyQualifiedClassNames("TestCommand");
+        assertEquals(1, result.size());
+        assertEquals("dir.TestCommand", result.get(0));
+
+        //
+        // not found in directories, falls back to JARs
+        //
+
+        result = index.getFullyQualifiedClassNames("OtherCommand");
+        assertEquals(1, result.size());
+        assertEquals("jar.OtherCommand", result.get(0));
+
+        InstanceFactory.searchOrder = InstanceFactory.JARS_ARE_SEARCHED_FIRST;
+
+        result = index.getFullyQualifiedClassNames("TestCommand");
+        assertEquals(1, result.size());
+        assertEquals("jar.TestCommand", result.get(0));
+    }
+
+    // getFullyQualifiedClassNamesWithSuffix() -------------------------------------------------------------------------
+
+    @Test
+    public void getFullyQualifiedClassNamesWithSuffix() throws Exception {
+
+        ClasspathNameIndex index = new ClasspathNameIndex("");
+        index.add("dir.TestCommand", false);
+        index.add("jar.OtherCommand", true);
+        index.add("jar.TestApplicationRuntime", true);
+
+        List<String> result = index.getFullyQualifiedClassNamesWithSuffix("Command");
+        assertEquals(2, result.size());
+        assertEquals("jar.OtherCommand", result.get(0));
+        assertEquals("dir.TestCommand", result.get(1));
+
+        result = index.getFullyQualifiedClassNamesWithSuffix("ApplicationRuntime");
+        assertEquals(1, result.size());
+        assertEquals("jar.TestApplicationRuntime", result.get(0));
+    }
+
+    // getInstance() ---------------------------------------------------------------------------------------------------
+
+    @Test
+    public void getInstance() throws Exception {
+
+        ClasspathNameIndex index = ClasspathNameIndex.getInstance();
+        assertNotNull(index);
+
+        List<String> result = index.getFullyQualifiedClassNames("TestCommand");
+        assertTrue(result.contains(TestCommand.class.getName()));
+
+        //
+        // built once per class path
+        //
+
+        assertSame(index, ClasspathNameIndex.getInstance());
+    }
+
+    @Test
+    public void getInstance_ClassPathScan() throws Exception {
+
+        System.setProperty(DiscoveryIndex.DISABLE_INDEX_SYSTEM_PROPERTY_NAME, "true");
+        System.setProperty(DiscoveryCache.DISABLE_CACHE_SYSTEM_PROPERTY_NAME, "true");
+        ClasspathNameIndex.reset();
+
+        ClasspathNameIndex index = ClasspathNameIndex.getInstance();
+
+        List<String> result = index.getFullyQualifiedClassNames("TestCommand");
+        assertEquals(1, result.size());
+        assertEquals(TestCommand.class.getName(), result.get(0));
+
+        assertFalse(index.getFullyQualifiedClassNamesWithSuffix("ApplicationRuntime").isEmpty());
+        assertTrue(index.getFullyQualifiedClassNames("NoSuchCommand").isEmpty());
+    }
+
+    /**
+     * A class path entry without an index resource (an application built without annotation processing) is scanned,
+     * even if other class path entries carry one.
+     */
+    @Test
+    public void getInstance_ClassPathEntryWithoutDiscoveryIndex() throws Exception {
+
+        System.setProperty(DiscoveryCache.DISABLE_CACHE_SYSTEM_PROPERTY_NAME, "true");
+
+        String basedir = System.getProperty("basedir");
+        assertNotNull(basedir);
+
+        scratchDir = new File(basedir, "target/test-scratch/classpath-name-index");
+
+        File classes = InstanceFactoryTest.compileApplicationWithoutProcessor(scratchDir);
+
+        System.setProperty(InstanceFactory.JAVA_CLASS_PATH_SYSTEM_PROPERTY_NAME,
+                originalClassPath + File.pathSeparator + classes.getPath());
+        ClasspathNameIndex.reset();
+
+        ClasspathNameIndex index = ClasspathNameIndex.getInstance();
+
+        assertFalse(index.isBuiltFromDiscoveryIndex());
+
+        List<String> result = index.getFullyQualifiedClassNames("HelloCommand");
+        assertEquals(1, result.size());
+        assertEquals("x.y.HelloCommand", result.get(0));
+        assertFalse(index.isFromDiscoveryIndex("x.y.HelloCommand"));
+
+        result = index.getFullyQualifiedClassNames("FooApplicationRuntime");
+        assertEquals(1, result.size());
+        assertEquals("x.y.FooApplicationRuntime", result.get(0));
+
+        //
+        // the indexed class path entries are resolved from their index resource
+        //
+
+        result = index.getFullyQualifiedClassNames("TestCommand");
+        assertEquals(1, result.size());
+        assertEquals(TestCommand.class.getName(), result.get(0));
+        assertTrue(index.isFromDiscoveryIndex(TestCommand.class.getName()));
+
+        assertFalse(index.isCoveredByDiscoveryIndex("Command"));
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.clad.discovery;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+public class ClasspathScannerTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private File scratchDir;
+    private File testJar;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @Before
+    public void setUp() throws Exception {
+
+        String basedir = System.getProperty("basedir");
+        assertNotNull(basedir);
+
+        testJar = new File(basedir, "src/test/resources/data/test.jar");
+        assertTrue(testJar.isFile());
+
+        scratchDir = new File(basedir, "target/test-scratch/classpath-scanner");
+        delete(scratchDir);
+        assertTrue(scratchDir.mkdirs());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+
+        System.clearProperty(ClasspathScanner.PARALLELISM_SYSTEM_PROPERTY_NAME);
+        delete(scratchDir);
+    }
+
+    @Test
+    public void invalidParallelism() throws Exception {
+
+        try {
+            new ClasspathScanner(0, null);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("invalid parallelism"));
+        }
+    }
+
+    @Test
+    public void getDefaultParallelism() throws Exception {
+
+        assertEquals(Runtime.getRuntime().availableProcessors(), ClasspathScanner.getDefaultParallelism());
+
+        System.setProperty(ClasspathScanner.PARALLELISM_SYSTEM_PROPERTY_NAME, "3");
+        assertEquals(3, ClasspathScanner.getDefaultParallelism());
+
+        System.setProperty(ClasspathScanner.PARALLELISM_SYSTEM_PROPERTY_NAME, "blah");
+        assertEquals(Runtime.getRuntime().availableProcessors(), ClasspathScanner.getDefaultParallelism());
+    }
+
+    // scan() ----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void scan_Serial() throws Exception {
+
+        File dir = createClassDirectory();
+
+        ClasspathScanner scanner = new ClasspathScanner(1, null);
+        scanner.scan(Collections.singletonList(dir), Collections.singletonList(testJar));
+
+        assertEquals(Arrays.asList(
+                "a.AlphaCommand",
+                "a.b.BetaCommand",
+                "a.b.GammaApplicationRuntime",
+                "a.c.DeltaCommand",
+                "z.OmegaCommand"), scanner.getDirectoryClassNames());
+
+        List<String> jarClassNames = scanner.getJarClassNames();
+        assertEquals(6, jarClassNames.size());
+        assertTrue(jarClassNames.contains("io.novaordis.clad.command.TestCommand"));
+    }
+
+    @Test
+    public void scan_ParallelResultIdenticalToSerial() throws Exception {
+
+        File dir = createClassDirectory();
+        File dir2 = new File(scratchDir, "classes2");
+        touch(dir2, "m/n/SomethingCommand.class");
+
+        List<File> dirs = Arrays.asList(dir, dir2);
+        List<File> jars = Arrays.asList(testJar, testJar);
+
+        ClasspathScanner serial = new ClasspathScanner(1, null);
+        serial.scan(dirs, jars);
+
+        for(int i = 0; i < 5; i ++) {
+
+            ClasspathScanner parallel = new ClasspathScanner(4, null);
+            parallel.scan(dirs, jars);
+
+            assertEquals(serial.getDirectoryClassNames(), parallel.getDirectoryClassNames());
+            assertEquals(serial.getJarClassNames(), parallel.getJarClassNames());
+        }
+
+        assertEquals(6, serial.getDirectoryClassNames().size());
+        assertEquals("m.n.SomethingCommand", serial.getDirectoryClassNames().get(5));
+        assertEquals(12, serial.getJarClassNames().size());
+    }
+
+    @Test
+    public void scan_Parallel_InvalidJar() throws Exception {
+
+        File invalid = new File(scratchDir, "invalid.jar");
+        Files.write(invalid.toPath(), "this is not a ZIP archive, but it is long enough".getBytes());
+
+        ClasspathScanner scanner = new ClasspathScanner(4, null);
+
+        try {
+            scanner.scan(Collections.<File>emptyList(), Arrays.asList(testJar, invalid));
+            fail("should have thrown exception");
+        }
+        catch(IOException e) {
+            assertTrue(e.getMessage().contains("not a ZIP archive"));
+        }
+    }
+
+    @Test
+    public void scan_WithCache() throws Exception {
+
+        DiscoveryCache cache = new DiscoveryCache(new File(scratchDir, "cache"));
+
+        ClasspathScanner scanner = new ClasspathScanner(4, cache);
+        scanner.scan(Collections.<File>emptyList(), Arrays.asList(testJar, testJar));
+
+        assertEquals(12, scanner.getJarClassNames().size());
+        assertTrue(cache.getScanCount() >= 1);
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private File createClassDirectory() throws Exception {
+
+        File dir = new File(scratchDir, "classes");
+
+        touch(dir, "z/OmegaCommand.class");
+        touch(dir, "a/c/DeltaCommand.class");
+        touch(dir, "a/b/BetaCommand.class");
+        touch(dir, "a/b/GammaApplicationRuntime.class");
+        touch(dir, "a/b/NotACommandHelper.class");
+        touch(dir, "a/AlphaCommand.class");
+        touch(dir, "a/Command.class");
+        touch(dir, "RootCommand.class");
+
+        return dir;
+    }
+
+    private static void touch(File root, String relativePath) throws Exception {
+
+        File f = new File(root, relativePath);
+        assertTrue(f.getParentFile().isDirectory() || f.getParentFile().mkdirs());
+        assertTrue(f.createNewFile());
+    }
+
+    private static void delete(File f) {
+
+        File[] children = f.listFiles();
+
+        if (children != null) {
+            for(File c: children) {
+                delete(c);
+            }
+        }
+
+        //noinspection ResultOfMethodCallIgnored
+        f.delete();
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
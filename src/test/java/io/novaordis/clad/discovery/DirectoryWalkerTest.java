@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.clad.discovery;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+public class DirectoryWalkerTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private File root;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @Before
+    public void setUp() throws Exception {
+
+        String basedir = System.getProperty("basedir");
+        assertNotNull(basedir);
+
+        root = new File(basedir, "target/test-scratch/directory-walker");
+        delete(root);
+
+        touch("z/OmegaCommand.class");
+        touch("a/c/TestCommand.class");
+        touch("a/b/TestCommand.class");
+        touch("a/b/Helper.class");
+        touch("a/b/README.txt");
+        touch("a/AlphaCommand.class");
+        touch("b/TestCommand.class");
+        touch("META-INF/HiddenCommand.class");
+        touch("test-data/HiddenCommand.class");
+        touch("RootCommand.class");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+
+        delete(root);
+    }
+
+    @Test
+    public void isPackageDirectoryName() throws Exception {
+
+        assertTrue(DirectoryWalker.isPackageDirectoryName("io"));
+        assertTrue(DirectoryWalker.isPackageDirectoryName("a_b1"));
+        assertFalse(DirectoryWalker.isPackageDirectoryName("META-INF"));
+        assertFalse(DirectoryWalker.isPackageDirectoryName("1a"));
+        assertFalse(DirectoryWalker.isPackageDirectoryName("a.b"));
+        assertFalse(DirectoryWalker.isPackageDirectoryName(""));
+    }
+
+    // walk() ----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void walk_AllClasses_DeterministicOrder() throws Exception {
+
+        List<String> visited = walk(DirectoryWalker.CLASS_FILES);
+
+        assertEquals(Arrays.asList(
+                "RootCommand",
+                "a.AlphaCommand",
+                "a.b.Helper",
+                "a.b.TestCommand",
+                "a.c.TestCommand",
+                "b.TestCommand",
+                "z.OmegaCommand"), visited);
+    }
+
+    @Test
+    public void walk_SuffixFilter() throws Exception {
+
+        List<String> visited = walk(DirectoryWalker.suffixFilter("Command"));
+
+        assertEquals(6, visited.size());
+        assertFalse(visited.contains("a.b.Helper"));
+    }
+
+    @Test
+    public void walk_VisitorStops() throws Exception {
+
+        CollectingVisitor visitor = new CollectingVisitor(3);
+
+        boolean completed = DirectoryWalker.walk(root, DirectoryWalker.CLASS_FILES, visitor);
+
+        assertFalse(completed);
+        assertEquals(3, visitor.visited.size());
+    }
+
+    @Test
+    public void walk_NoSuchDirectory() throws Exception {
+
+        CollectingVisitor visitor = new CollectingVisitor(Integer.MAX_VALUE);
+
+        assertTrue(DirectoryWalker.walk(new File(root, "no-such-dir"), DirectoryWalker.CLASS_FILES, visitor));
+        assertTrue(visitor.visited.isEmpty());
+    }
+
+    // findClasses() ---------------------------------------------------------------------------------------------------
+
+    @Test
+    public void findClasses_NoMatch() throws Exception {
+
+        assertTrue(DirectoryWalker.findClasses(Collections.singletonList(root), "NoSuchCommand").isEmpty());
+    }
+
+    @Test
+    public void findClasses_OneMatch() throws Exception {
+
+        List<String> result = DirectoryWalker.findClasses(Collections.singletonList(root), "OmegaCommand");
+        assertEquals(Collections.singletonList("z.OmegaCommand"), result);
+    }
+
+    @Test
+    public void findClasses_StopsAtSecondMatch() throws Exception {
+
+        List<String> result = DirectoryWalker.findClasses(Collections.singletonList(root), "TestCommand");
+
+        assertEquals(Arrays.asList("a.b.TestCommand", "a.c.TestCommand"), result);
+    }
+
+    @Test
+    public void findClasses_DefaultPackageIgnored() throws Exception {
+
+        assertTrue(DirectoryWalker.findClasses(Collections.singletonList(root), "RootCommand").isEmpty());
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private List<String> walk(DirectoryWalker.FileNameFilter filter) throws Exception {
+
+        CollectingVisitor visitor = new CollectingVisitor(Integer.MAX_VALUE);
+
+        assertTrue(DirectoryWalker.walk(root, filter, visitor));
+
+        return visitor.visited;
+    }
+
+    private void touch(String relativePath) throws Exception {
+
+        File f = new File(root, relativePath);
+        assertTrue(f.getParentFile().isDirectory() || f.getParentFile().mkdirs());
+        assertTrue(f.createNewFile());
+    }
+
+    private static void delete(File f) {
+
+        File[] children = f.listFiles();
+
+        if (children != null) {
+            for(File c: children) {
+                delete(c);
+            }
+        }
+
+        //noinspection ResultOfMethodCallIgnored
+        f.delete();
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+    /**
+     * A named class and not an anonymous one: InstanceFactoryTest scans target/test-classes for names ending in digits.
+     */
+    private static class CollectingVisitor implements DirectoryWalker.Visitor {
+
+        private int limit;
+        private List<String> visited = new ArrayList<>();
+
+        private CollectingVisitor(int limit) {
+
+            this.limit = limit;
+        }
+
+        @Override
+        public boolean visit(String className) {
+
+            visited.add(className);
+            return visited.size() < limit;
+        }
+    }
+
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.clad.discovery;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+public class DiscoveryCacheTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private File scratchDir;
+    private File jar;
+    private File cacheFile;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @Before
+    public void setUp() throws Exception {
+
+        String basedir = System.getProperty("basedir");
+        assertNotNull(basedir);
+
+        scratchDir = new File(basedir, "target/test-scratch/discovery-cache");
+        assertTrue(scratchDir.isDirectory() || scratchDir.mkdirs());
+
+        jar = new File(scratchDir, "test.jar");
+        Files.copy(new File(basedir, "src/test/resources/data/test.jar").toPath(), jar.toPath(),
+                StandardCopyOption.REPLACE_EXISTING);
+
+        cacheFile = new File(scratchDir, "cache/discovery-cache");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+
+        File[] files = cacheFile.getParentFile().listFiles();
+
+        if (files != null) {
+            for(File f: files) {
+                assertTrue(f.delete());
+            }
+        }
+
+        assertTrue(!jar.exists() || jar.delete());
+    }
+
+    // isDiscoverable() ------------------------------------------------------------------------------------------------
+
+    @Test
+    public void isDiscoverable() throws Exception {
+
+        assertTrue(DiscoveryCache.isDiscoverable("a/b/TestCommand.class"));
+        assertTrue(DiscoveryCache.isDiscoverable("a/b/TestApplicationRuntime.class"));
+        assertFalse(DiscoveryCache.isDiscoverable("a/b/CommandTest.class"));
+        assertFalse(DiscoveryCache.isDiscoverable("a/b/TestCommand.txt"));
+        assertFalse(DiscoveryCache.isDiscoverable("Command"));
+        assertFalse(DiscoveryCache.isDiscoverable("a/b/Command.class"));
+        assertFalse(DiscoveryCache.isDiscoverable("TestCommand.class"));
+    }
+
+    @Test
+    public void isCached() throws Exception {
+
+        assertTrue(DiscoveryCache.isCached("Command"));
+        assertTrue(DiscoveryCache.isCached("ApplicationRuntime"));
+        assertFalse(DiscoveryCache.isCached("Something"));
+    }
+
+    // getClassNames() -------------------------------------------------------------------------------------------------
+
+    @Test
+    public void getClassNames_NotCached() throws Exception {
+
+        DiscoveryCache cache = new DiscoveryCache(cacheFile);
+
+        List<String> classNames = cache.getClassNames(jar);
+
+        assertEquals(1, cache.getScanCount());
+        assertEquals(6, classNames.size());
+        assertTrue(classNames.contains("a.test.Sample1Command"));
+        assertTrue(classNames.contains("b.test.Sample2Command"));
+        assertTrue(classNames.contains("c.test.Sample3Command"));
+        assertTrue(classNames.contains("io.novaordis.clad.command.TestCommand"));
+        assertTrue(classNames.contains("io.novaordis.clad.command.Test2Command"));
+        assertTrue(classNames.contains("io.novaordis.clad.TestApplicationRuntime"));
+
+        //
+        // the second time it comes from memory
+        //
+
+        assertEquals(classNames, cache.getClassNames(jar));
+        assertEquals(1, cache.getScanCount());
+    }
+
+    @Test
+    public void saveAndReload() throws Exception {
+
+        DiscoveryCache cache = new DiscoveryCache(cacheFile);
+        List<String> classNames = cache.getClassNames(jar);
+        cache.save();
+
+        assertTrue(cacheFile.isFile());
+
+        DiscoveryCache cache2 = new DiscoveryCache(cacheFile);
+        assertEquals(classNames, cache2.getClassNames(jar));
+        assertEquals(0, cache2.getScanCount());
+    }
+
+    @Test
+    public void fingerprintChanged() throws Exception {
+
+        DiscoveryCache cache = new DiscoveryCache(cacheFile);
+        cache.getClassNames(jar);
+        cache.save();
+
+        assertTrue(jar.setLastModified(jar.lastModified() - 10000L));
+
+        DiscoveryCache cache2 = new DiscoveryCache(cacheFile);
+        assertEquals(6, cache2.getClassNames(jar).size());
+        assertEquals(1, cache2.getScanCount());
+    }
+
+    @Test
+    public void corruptedCacheFile() throws Exception {
+
+        assertTrue(cacheFile.getParentFile().isDirectory() || cacheFile.getParentFile().mkdirs());
+        Files.write(cacheFile.toPath(), "jar blah\nclass something\n".getBytes());
+
+        DiscoveryCache cache = new DiscoveryCache(cacheFile);
+        assertEquals(6, cache.getClassNames(jar).size());
+        assertEquals(1, cache.getScanCount());
+    }
+
+    @Test
+    public void save_RecordsOfMissingJarsAreDropped() throws Exception {
+
+        DiscoveryCache cache = new DiscoveryCache(cacheFile);
+        cache.getClassNames(jar);
+        assertTrue(jar.delete());
+        cache.save();
+
+        String content = new String(Files.readAllBytes(cacheFile.toPath()));
+        assertFalse(content.contains("test.jar"));
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,306 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.clad.discovery;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+public class DiscoveryIndexProcessorTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private File scratchDir;
+    private File sources;
+    private File generated;
+    private File classes;
+
+    // the compiler diagnostics of the last compile() invocation
+    private String diagnostics;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @Before
+    public void setUp() throws Exception {
+
+        String basedir = System.getProperty("basedir");
+        assertNotNull(basedir);
+
+        scratchDir = new File(basedir, "target/test-scratch/discovery-index-processor");
+        delete(scratchDir);
+
+        sources = new File(scratchDir, "src");
+        generated = new File(scratchDir, "generated");
+        classes = new File(scratchDir, "classes");
+        assertTrue(sources.mkdirs());
+        assertTrue(generated.mkdirs());
+        assertTrue(classes.mkdirs());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+
+        delete(scratchDir);
+    }
+
+    /**
+     * No other processor supports the annotations present in the sources, so the processor claims them and the
+     * compilation does not warn about unclaimed annotations.
+     */
+    @Test
+    public void annotationsNotSupportedByOtherProcessorsAreClaimed() throws Exception {
+
+        File marker = write("x.y.Marker",
+                "@java.lang.annotation.Retention(java.lang.annotation.RetentionPolicy.RUNTIME)\n" +
+                "public @interface Marker {}\n");
+
+        File hello = write("x.y.HelloCommand",
+                "@Marker\n" +
+                "public class HelloCommand extends io.novaordis.clad.command.CommandBase {\n" +
+                "    public void execute(io.novaordis.clad.application.ApplicationRuntime r) {}\n" +
+                "}\n");
+
+        assertEquals(diagnostics, 0, compile(marker, hello));
+        assertFalse(diagnostics, diagnostics.contains("No processor claimed"));
+    }
+
+    // supports() ------------------------------------------------------------------------------------------------------
+
+    /**
+     * A constructor that declares a checked exception cannot be invoked by the registry, the generated registry must
+     * still compile, and the class must still be indexed.
+     */
+    @Test
+    public void constructorThatThrowsCheckedException() throws Exception {
+
+        File hello = write("x.y.HelloCommand",
+                "public class HelloCommand extends io.novaordis.clad.command.CommandBase {\n" +
+                "    public void execute(io.novaordis.clad.application.ApplicationRuntime r) {}\n" +
+                "}\n");
+
+        File boom = write("x.y.BoomCommand",
+                "public class BoomCommand extends io.novaordis.clad.command.CommandBase {\n" +
+                "    public BoomCommand() throws Exception {}\n" +
+                "    public void execute(io.novaordis.clad.application.ApplicationRuntime r) {}\n" +
+                "}\n");
+
+        File unchecked = write("x.y.UncheckedCommand",
+                "public class UncheckedCommand extends io.novaordis.clad.command.CommandBase {\n" +
+                "    public UncheckedCommand() throws IllegalStateException {}\n" +
+                "    public void execute(io.novaordis.clad.application.ApplicationRuntime r) {}\n" +
+                "}\n");
+
+        assertEquals(diagnostics, 0, compile(hello, boom, unchecked));
+
+        DiscoveryIndex index = new DiscoveryIndex();
+
+        try(FileReader r = new FileReader(new File(classes, DiscoveryIndex.INDEX_RESOURCE_NAME))) {
+
+            index.read(r, false);
+        }
+
+        List<String> indexed = new ArrayList<>();
+
+        for(DiscoveryIndex.Entry e: index.getEntries(DiscoveryIndex.COMMAND)) {
+
+            indexed.add(e.getClassName());
+        }
+
+        assertEquals(Arrays.asList("x.y.BoomCommand", "x.y.HelloCommand", "x.y.UncheckedCommand"), indexed);
+
+        String registry = new String(Files.readAllBytes(
+                new File(generated, DiscoveryIndexProcessor.toDefaultRegistryClassName(indexed).replace('.', '/') +
+                        ".java").toPath()),
+                StandardCharsets.UTF_8);
+
+        assertTrue(registry.contains("return new x.y.HelloCommand();"));
+        assertTrue(registry.contains("return new x.y.UncheckedCommand();"));
+        assertFalse(registry.contains("x.y.BoomCommand"));
+    }
+
+    // registry name -------------------------------------------------------------------------------------------------
+
+    @Test
+    public void toDefaultRegistryClassName() throws Exception {
+
+        String a = DiscoveryIndexProcessor.toDefaultRegistryClassName(Arrays.asList("x.y.ACommand", "z.BCommand"));
+
+        assertTrue(a, a.matches("x\\.y\\." + DiscoveryIndexProcessor.REGISTRY_SIMPLE_CLASS_NAME + "_[0-9a-f]{8}"));
+
+        // the same classes, the same name
+        assertEquals(a, DiscoveryIndexProcessor.toDefaultRegistryClassName(Arrays.asList("x.y.ACommand", "z.BCommand")));
+
+        // another module, with classes in the same package
+        assertFalse(a.equals(
+                DiscoveryIndexProcessor.toDefaultRegistryClassName(Arrays.asList("x.y.ACommand", "z.CCommand"))));
+    }
+
+    /**
+     * Two modules that generate the same registry class would hide each other's registry.
+     */
+    @Test
+    public void registryClassNameClash() throws Exception {
+
+        File hello = write("x.y.HelloCommand",
+                "public class HelloCommand extends io.novaordis.clad.command.CommandBase {\n" +
+                "    public void execute(io.novaordis.clad.application.ApplicationRuntime r) {}\n" +
+                "}\n");
+
+        String existing = BuiltInRegistry.class.getName();
+
+        assertEquals(diagnostics, 1,
+                compile(Collections.singletonList("-A" + DiscoveryIndexProcessor.REGISTRY_OPTION_NAME + "=" + existing),
+                        hello));
+
+        assertTrue(diagnostics, diagnostics.contains("registry class " + existing + " already exists on the class path"));
+        assertFalse(new File(classes, DiscoveryIndexProcessor.REGISTRY_SERVICE_RESOURCE_NAME).exists());
+    }
+
+    @Test
+    public void registryClassNameOfAPreviousCompilation() throws Exception {
+
+        File hello = write("x.y.HelloCommand",
+                "public class HelloCommand extends io.novaordis.clad.command.CommandBase {\n" +
+                "    public void execute(io.novaordis.clad.application.ApplicationRuntime r) {}\n" +
+                "}\n");
+
+        assertEquals(diagnostics, 0, compile(hello));
+
+        //
+        // the output directory, and the registry generated into it, is on the class path of the next compilation
+        //
+
+        assertEquals(diagnostics, 0, compile(hello));
+    }
+
+    @Test
+    public void supports() throws Exception {
+
+        assertTrue(DiscoveryIndexProcessor.supports("*", "a.b.C"));
+        assertTrue(DiscoveryIndexProcessor.supports("a.b.C", "a.b.C"));
+        assertFalse(DiscoveryIndexProcessor.supports("a.b.C", "a.b.D"));
+        assertTrue(DiscoveryIndexProcessor.supports("a.b.*", "a.b.C"));
+        assertTrue(DiscoveryIndexProcessor.supports("a.b.*", "a.b.c.D"));
+        assertFalse(DiscoveryIndexProcessor.supports("a.b.*", "a.bc.D"));
+        assertTrue(DiscoveryIndexProcessor.supports("m/a.b.C", "a.b.C"));
+        assertTrue(DiscoveryIndexProcessor.supports("m/*", "a.b.C"));
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private File write(String className, String body) throws Exception {
+
+        int i = className.lastIndexOf('.');
+        File f = new File(sources, className.replace('.', '/') + ".java");
+        assertTrue(f.getParentFile().isDirectory() || f.getParentFile().mkdirs());
+
+        Files.write(f.toPath(),
+                ("package " + className.substring(0, i) + ";\n" + body).getBytes(StandardCharsets.UTF_8));
+
+        return f;
+    }
+
+    /**
+     * Compiles the given sources with DiscoveryIndexProcessor, against the output directory and the test class path,
+     * the way Maven does.
+     *
+     * @return the compiler exit code. The diagnostics are available in the "diagnostics" attribute.
+     */
+    private int compile(File... sourceFiles) {
+
+        return compile(Collections.<String>emptyList(), sourceFiles);
+    }
+
+    /**
+     * @param options additional compiler options.
+     */
+    private int compile(List<String> options, File... sourceFiles) {
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assertNotNull(compiler);
+
+        String classPath = System.getProperty("java.class.path");
+
+        List<String> arguments = new ArrayList<>(Arrays.asList(
+                "-Xlint:all",
+                "-cp", classes.getPath() + File.pathSeparator + classPath,
+                "-processorpath", classPath,
+                "-processor", DiscoveryIndexProcessor.class.getName(),
+                "-s", generated.getPath(),
+                "-d", classes.getPath()));
+
+        arguments.addAll(options);
+
+        for(File f: sourceFiles) {
+
+            arguments.add(f.getPath());
+        }
+
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        int rc = compiler.run(null, null, err, arguments.toArray(new String[arguments.size()]));
+        diagnostics = new String(err.toByteArray(), StandardCharsets.UTF_8);
+        return rc;
+    }
+
+    private static void delete(File f) {
+
+        File[] children = f.listFiles();
+
+        if (children != null) {
+            for(File c: children) {
+                delete(c);
+            }
+        }
+
+        //noinspection ResultOfMethodCallIgnored
+        f.delete();
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.clad.discovery;
+
+import io.novaordis.clad.application.TestApplicationRuntime;
+import io.novaordis.clad.command.TestCommand;
+import io.novaordis.clad.command.VersionCommand;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.StringReader;
+import java.net.URL;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+public class DiscoveryIndexTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // read() ----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void read() throws Exception {
+
+        DiscoveryIndex index = new DiscoveryIndex();
+
+        index.read(new StringReader(
+                "# comment\n" +
+                        "\n" +
+                        "command test a.b.TestCommand\n" +
+                        "  application test a.b.TestApplicationRuntime  \n"), false);
+
+        List<DiscoveryIndex.Entry> entries = index.getEntries();
+        assertEquals(2, entries.size());
+
+        DiscoveryIndex.Entry e = entries.get(0);
+        assertEquals(DiscoveryIndex.COMMAND, e.getKind());
+        assertEquals("test", e.getName());
+        assertEquals("a.b.TestCommand", e.getClassName());
+        assertEquals("TestCommand", e.getSimpleClassName());
+
+        e = entries.get(1);
+        assertEquals(DiscoveryIndex.APPLICATION, e.getKind());
+        assertEquals("test", e.getName());
+        assertEquals("a.b.TestApplicationRuntime", e.getClassName());
+
+        assertEquals(1, index.getEntries(DiscoveryIndex.COMMAND).size());
+        assertEquals(1, index.getEntries(DiscoveryIndex.APPLICATION).size());
+    }
+
+    @Test
+    public void read_InvalidLinesAreIgnored() throws Exception {
+
+        DiscoveryIndex index = new DiscoveryIndex();
+
+        index.read(new StringReader(
+                "command test\n" +
+                        "something test a.b.TestCommand\n" +
+                        "command test a.b.TestCommand extra\n" +
+                        "command test2 a.b.Test2Command\n"), false);
+
+        assertEquals(1, index.getEntries().size());
+        assertEquals("a.b.Test2Command", index.getEntries().get(0).getClassName());
+    }
+
+    // getCommandFingerprint() -----------------------------------------------------------------------------------------
+
+    @Test
+    public void getCommandFingerprint() throws Exception {
+
+        DiscoveryIndex index = new DiscoveryIndex();
+        index.read(new StringReader("command a a.b.ACommand\ncommand b a.b.BCommand\n"), false);
+
+        String fingerprint = index.getCommandFingerprint();
+        assertEquals(64, fingerprint.length());
+
+        //
+        // the order, duplicates and applications do not matter
+        //
+
+        DiscoveryIndex index2 = new DiscoveryIndex();
+        index2.read(new StringReader(
+                "command b a.b.BCommand\napplication x a.b.XApplicationRuntime\ncommand a a.b.ACommand\n"), false);
+        index2.read(new StringReader("command a a.b.ACommand\n"), true);
+
+        assertEquals(fingerprint, index2.getCommandFingerprint());
+
+        //
+        // commands do
+        //
+
+        index2.read(new StringReader("command c a.b.CCommand\n"), true);
+
+        assertNotEquals(fingerprint, index2.getCommandFingerprint());
+    }
+
+    // load() ----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void load_NoIndex() throws Exception {
+
+        ClassLoader empty = new ClassLoader(null) {};
+        assertNull(DiscoveryIndex.load(empty));
+    }
+
+    /**
+     * The test classes are compiled with DiscoveryIndexProcessor on the class path, so the test class path contains
+     * a generated index, in addition to the built-in one.
+     */
+    @Test
+    public void load_GeneratedAndBuiltInIndex() throws Exception {
+
+        DiscoveryIndex index = DiscoveryIndex.load(getClass().getClassLoader());
+        assertNotNull(index);
+
+        boolean testCommandFound = false;
+        boolean versionCommandFound = false;
+        boolean compoundNameFound = false;
+
+        for(DiscoveryIndex.Entry e: index.getEntries(DiscoveryIndex.COMMAND)) {
+
+            if (TestCommand.class.getName().equals(e.getClassName())) {
+                testCommandFound = true;
+                assertEquals("test", e.getName());
+            }
+            else if (VersionCommand.class.getName().equals(e.getClassName())) {
+                versionCommandFound = true;
+                assertEquals("version", e.getName());
+            }
+            else if ("compound-name".equals(e.getName())) {
+                compoundNameFound = true;
+            }
+
+            // abstract classes and interfaces are not indexed
+            assertTrue(!e.getClassName().endsWith(".CommandBase") && !e.getClassName().endsWith(".Command"));
+        }
+
+        assertTrue(testCommandFound);
+        assertTrue(versionCommandFound);
+        assertTrue(compoundNameFound);
+
+        boolean testApplicationFound = false;
+
+        for(DiscoveryIndex.Entry e: index.getEntries(DiscoveryIndex.APPLICATION)) {
+
+            if (TestApplicationRuntime.class.getName().equals(e.getClassName())) {
+                testApplicationFound = true;
+                assertEquals("test", e.getName());
+            }
+        }
+
+        assertTrue(testApplicationFound);
+
+        //
+        // the class path directories that carry the index resources
+        //
+
+        String basedir = System.getProperty("basedir");
+        assertNotNull(basedir);
+
+        assertTrue(index.isIndexed(new File(basedir, "target/test-classes")));
+        assertTrue(index.isIndexed(new File(basedir, "target/classes")));
+        assertFalse(index.isIndexed(new File(basedir, "src/test/resources/data/test.jar")));
+    }
+
+    // toClasspathEntry() ----------------------------------------------------------------------------------------------
+
+    @Test
+    public void toClasspathEntry_Directory() throws Exception {
+
+        File dir = new File("/a/b/classes");
+        URL url = new File(dir, DiscoveryIndex.INDEX_RESOURCE_NAME).toURI().toURL();
+
+        assertEquals(dir.getAbsoluteFile(), DiscoveryIndex.toClasspathEntry(url));
+    }
+
+    @Test
+    public void toClasspathEntry_Jar() throws Exception {
+
+        File jar = new File("/a/b/app.jar");
+        URL url = new URL("jar:" + jar.toURI().toURL() + "!/" + DiscoveryIndex.INDEX_RESOURCE_NAME);
+
+        assertEquals(jar.getAbsoluteFile(), DiscoveryIndex.toClasspathEntry(url));
+    }
+
+    @Test
+    public void toClasspathEntry_UnknownProtocol() throws Exception {
+
+        assertNull(DiscoveryIndex.toClasspathEntry(new URL("http://example.com/" + DiscoveryIndex.INDEX_RESOURCE_NAME)));
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.clad.discovery;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+public class JarScannerTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private File testJar;
+    private File scratchDir;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @Before
+    public void setUp() throws Exception {
+
+        String basedir = System.getProperty("basedir");
+        assertNotNull(basedir);
+
+        testJar = new File(basedir, "src/test/resources/data/test.jar");
+        assertTrue(testJar.isFile());
+
+        scratchDir = new File(basedir, "target/test-scratch/jar-scanner");
+        assertTrue(scratchDir.isDirectory() || scratchDir.mkdirs());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+
+        File[] files = scratchDir.listFiles();
+
+        if (files != null) {
+            for(File f: files) {
+                assertTrue(f.delete());
+            }
+        }
+    }
+
+    // scan() ----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void scan_SameEntriesAsJarFile() throws Exception {
+
+        List<String> expected = new ArrayList<>();
+
+        try(JarFile jarFile = new JarFile(testJar)) {
+
+            for(Enumeration<JarEntry> e = jarFile.entries(); e.hasMoreElements(); ) {
+
+                String name = e.nextElement().getName();
+
+                if (name.endsWith(".class")) {
+                    expected.add(name);
+                }
+            }
+        }
+
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, JarScanner.scan(testJar, JarScanner.CLASS_FILES));
+    }
+
+    @Test
+    public void scan_NotAZipArchive() throws Exception {
+
+        File f = new File(scratchDir, "not-a-jar.jar");
+        Files.write(f.toPath(), "this is not a ZIP archive, but it is long enough".getBytes(StandardCharsets.UTF_8));
+
+        try {
+            JarScanner.scan(f, JarScanner.CLASS_FILES);
+            fail("should have thrown exception");
+        }
+        catch(IOException e) {
+            assertTrue(e.getMessage().contains("not a ZIP archive"));
+        }
+    }
+
+    @Test
+    public void scan_EmptyArchive() throws Exception {
+
+        File f = new File(scratchDir, "empty.jar");
+        new ZipOutputStream(new FileOutputStream(f)).close();
+
+        assertTrue(JarScanner.scan(f, JarScanner.CLASS_FILES).isEmpty());
+    }
+
+    @Test
+    public void scan_PrefixAndComment() throws Exception {
+
+        //
+        // self-extracting archives and launcher-prefixed JARs have content before the first local header; the comment
+        // contains the end of central directory signature, to make sure it is not mistaken for the real record
+        //
+
+        File f = new File(scratchDir, "prefixed.jar");
+
+        try(FileOutputStream fos = new FileOutputStream(f)) {
+
+            fos.write("#!/bin/sh\nexec java -jar \"$0\" \"$@\"\n".getBytes(StandardCharsets.US_ASCII));
+
+            ZipOutputStream zos = new ZipOutputStream(fos);
+            zos.putNextEntry(new ZipEntry("a/b/SomethingCommand.class"));
+            zos.write(new byte[] { 1, 2, 3 });
+            zos.closeEntry();
+            zos.putNextEntry(new ZipEntry("a/b/resource.txt"));
+            zos.closeEntry();
+            zos.setComment("PK\u0005\u0006 a comment");
+            zos.close();
+        }
+
+        List<String> names = JarScanner.getClassNames(f, JarScanner.CLASS_FILES);
+        assertEquals(1, names.size());
+        assertEquals("a.b.SomethingCommand", names.get(0));
+    }
+
+    @Test
+    public void scan_Zip64() throws Exception {
+
+        //
+        // more than 65535 entries forces the ZIP64 end of central directory record
+        //
+
+        File f = new File(scratchDir, "zip64.jar");
+
+        int count = 70000;
+
+        try(ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(f))) {
+
+            for(int i = 0; i < count; i ++) {
+
+                zos.putNextEntry(new ZipEntry("p/C" + i + (i % 1000 == 0 ? "Command" : "") + ".class"));
+                zos.closeEntry();
+            }
+        }
+
+        assertEquals(count, JarScanner.scan(f, JarScanner.CLASS_FILES).size());
+
+        List<String> commands = JarScanner.getClassNames(f, JarScanner.suffixFilter("Command"));
+        assertEquals(count / 1000, commands.size());
+        assertEquals("p.C0Command", commands.get(0));
+        assertEquals("p.C69000Command", commands.get(commands.size() - 1));
+    }
+
+    @Test
+    public void scan_HandleReleased() throws Exception {
+
+        File f = new File(scratchDir, "released.jar");
+        Files.copy(testJar.toPath(), f.toPath());
+
+        assertFalse(JarScanner.scan(f, JarScanner.CLASS_FILES).isEmpty());
+
+        //
+        // would fail on platforms that lock open or mapped files, if the channel or the mappings were still around
+        //
+
+        assertTrue(f.delete());
+    }
+
+    // suffixFilter() --------------------------------------------------------------------------------------------------
+
+    @Test
+    public void suffixFilter() throws Exception {
+
+        JarScanner.EntryNameFilter filter = JarScanner.suffixFilter("Command", "ApplicationRuntime");
+
+        assertTrue(accept(filter, "a/b/TestCommand.class"));
+        assertTrue(accept(filter, "a/TestApplicationRuntime.class"));
+        assertFalse(accept(filter, "a/b/CommandTest.class"));
+        assertFalse(accept(filter, "a/b/TestCommand.txt"));
+        assertFalse(accept(filter, "a/b/Command.class"));
+        assertFalse(accept(filter, "TestCommand.class"));
+        assertFalse(accept(filter, "/TestCommand.class"));
+        assertFalse(accept(filter, "Command"));
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private static boolean accept(JarScanner.EntryNameFilter filter, String name) {
+
+        //
+        // the filter must only look at the first 'length' bytes
+        //
+
+        byte[] bytes = (name + "garbage").getBytes(StandardCharsets.UTF_8);
+        return filter.accept(bytes, name.length());
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
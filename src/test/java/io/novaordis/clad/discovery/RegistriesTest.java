@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.clad.discovery;
+
+import io.novaordis.clad.application.TestApplicationRuntime;
+import io.novaordis.clad.command.CdsCommand;
+import io.novaordis.clad.command.TestCommand;
+import io.novaordis.clad.command.VersionCommand;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Scanner;
+import java.util.ServiceLoader;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+public class RegistriesTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @After
+    public void tearDown() {
+
+        System.clearProperty(Registries.DISABLE_REGISTRY_SYSTEM_PROPERTY_NAME);
+    }
+
+    @Test
+    public void builtInCommands() throws Exception {
+
+        assertTrue(Registries.newCommand(VersionCommand.class.getName()) instanceof VersionCommand);
+        assertTrue(Registries.newCommand(CdsCommand.class.getName()) instanceof CdsCommand);
+    }
+
+    @Test
+    public void generatedRegistry() throws Exception {
+
+        //
+        // the test classes are compiled with DiscoveryIndexProcessor, which generates a registry for them
+        //
+
+        assertTrue(Registries.newCommand(TestCommand.class.getName()) instanceof TestCommand);
+        assertTrue(Registries.newApplicationRuntime(TestApplicationRuntime.class.getName())
+                instanceof TestApplicationRuntime);
+    }
+
+    @Test
+    public void noSuchClass() throws Exception {
+
+        assertNull(Registries.newCommand("no.such.Command"));
+        assertNull(Registries.newApplicationRuntime(TestCommand.class.getName()));
+    }
+
+    @Test
+    public void disabled() throws Exception {
+
+        System.setProperty(Registries.DISABLE_REGISTRY_SYSTEM_PROPERTY_NAME, "true");
+
+        assertNull(Registries.newCommand(VersionCommand.class.getName()));
+        assertNull(Registries.newApplicationRuntime(TestApplicationRuntime.class.getName()));
+    }
+
+    @Test
+    public void everyRegistryHasNativeImageConfiguration() throws Exception {
+
+        //
+        // also keeps the hand-maintained built-in configuration in sync with BuiltInRegistry
+        //
+
+        ClassLoader cl = getClass().getClassLoader();
+
+        for(Registry r: ServiceLoader.load(Registry.class, cl)) {
+
+            String directory = DiscoveryIndexProcessor.NATIVE_IMAGE_DIRECTORY + r.getClass().getName() + "/";
+
+            String reflectConfig = read(cl.getResource(directory + "reflect-config.json"));
+            String resourceConfig = read(cl.getResource(directory + "resource-config.json"));
+
+            assertTrue(reflectConfig.contains("\"" + r.getClass().getName() + "\""));
+            assertTrue(resourceConfig.contains("\\\\Q" + DiscoveryIndex.INDEX_RESOURCE_NAME + "\\\\E"));
+
+            for(DiscoveryIndex.Entry e: DiscoveryIndex.load(cl).getEntries()) {
+
+                String c = e.getClassName();
+
+                Object instance = DiscoveryIndex.COMMAND.equals(e.getKind()) ?
+                        r.newCommand(c) : r.newApplicationRuntime(c);
+
+                if (instance != null) {
+                    assertTrue(r + " does not cover " + c, reflectConfig.contains("\"" + c + "\""));
+                }
+            }
+        }
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private static String read(URL url) throws Exception {
+
+        assertNotNull(url);
+
+        try(InputStream is = url.openStream(); Scanner s = new Scanner(is, StandardCharsets.UTF_8.name())) {
+
+            return s.useDelimiter("\\A").next();
+        }
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.clad.filter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+public class MappedFileTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final String CONTENT = "0123456789abcdefghijklmnopqrstuvwxyz";
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private File file;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @Before
+    public void setUp() throws Exception {
+
+        String basedir = System.getProperty("basedir");
+        assertNotNull(basedir);
+
+        File scratchDir = new File(basedir, "target/test-scratch/mapped-file");
+        assertTrue(scratchDir.isDirectory() || scratchDir.mkdirs());
+
+        file = new File(scratchDir, "content.txt");
+        Files.write(file.toPath(), CONTENT.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+
+        assertTrue(file.delete());
+    }
+
+    @Test
+    public void window() throws Exception {
+
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            MappedFile f = new MappedFile(channel, 10)) {
+
+            assertEquals(CONTENT.length(), f.size());
+
+            MappedByteBuffer w = f.window(5, 3);
+            assertEquals(5L, f.getWindowStart());
+            assertEquals(15L, f.getWindowEnd());
+            assertEquals('5', w.get(0));
+
+            // inside the current window
+            assertSame(w, f.window(12, 3));
+
+            // past the current window
+            w = f.window(14, 3);
+            assertEquals(14L, f.getWindowStart());
+            assertEquals('e', w.get(0));
+
+            // the last window is shorter
+            f.window(30, 10);
+            assertEquals(36L, f.getWindowEnd());
+        }
+    }
+
+    @Test
+    public void window_Invalid() throws Exception {
+
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            MappedFile f = new MappedFile(channel, 10)) {
+
+            try {
+
+                f.window(-1, 1);
+                fail("should have thrown Exception");
+            }
+            catch(IndexOutOfBoundsException e) {
+
+                // expected
+            }
+
+            try {
+
+                f.window(0, 11);
+                fail("should have thrown Exception");
+            }
+            catch(IllegalArgumentException e) {
+
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void indexOf() throws Exception {
+
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            MappedFile f = new MappedFile(channel, 4)) {
+
+            assertEquals(0L, f.indexOf((byte)'0', 0, f.size()));
+            assertEquals(35L, f.indexOf((byte)'z', 0, f.size()));
+            assertEquals(35L, f.indexOf((byte)'z', 35, f.size()));
+            assertEquals(-1L, f.indexOf((byte)'z', 0, 35));
+            assertEquals(-1L, f.indexOf((byte)'0', 1, f.size()));
+            assertEquals(-1L, f.indexOf((byte)'!', 0, f.size()));
+        }
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,381 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.clad.filter;
+
+import io.novaordis.clad.option.TimestampOption;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+public class TimeOrderedMergeTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final LocalDateTime START = LocalDateTime.of(2016, 7, 3, 10, 0, 0);
+
+    private static final DateTimeFormatter FORMAT =
+            DateTimeFormatter.ofPattern(TimestampOption.DEFAULT_FORMAT_AS_STRING);
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private File scratchDir;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @Before
+    public void setUp() throws Exception {
+
+        String basedir = System.getProperty("basedir");
+        assertNotNull(basedir);
+
+        scratchDir = new File(basedir, "target/test-scratch/time-ordered-merge");
+        assertTrue(scratchDir.isDirectory() || scratchDir.mkdirs());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+
+        File[] files = scratchDir.listFiles();
+
+        if (files != null) {
+            for(File f: files) {
+                assertTrue(f.delete());
+            }
+        }
+    }
+
+    @Test
+    public void constructor_NullRange() throws Exception {
+
+        try {
+
+            new TimeOrderedMerge(null);
+            fail("should have thrown Exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            assertEquals("null range", e.getMessage());
+        }
+    }
+
+    @Test
+    public void setBufferSize_Invalid() throws Exception {
+
+        try {
+
+            new TimeOrderedMerge(null, null).setBufferSize(0);
+            fail("should have thrown Exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            assertTrue(e.getMessage().contains("invalid buffer size"));
+        }
+    }
+
+    // merge() ---------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void merge() throws Exception {
+
+        Path a = write("a.log", "header a\n" + line(0, "a") + line(2, "a") + "    at a\n" + line(4, "a"));
+        Path b = write("b.log", line(1, "b") + line(2, "b") + line(3, "b") + "    at b\n    at b\n");
+        Path c = write("c.log", "");
+
+        TimeOrderedMerge m = new TimeOrderedMerge(new TimeRangeFilter(null, null));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long written = m.merge(Arrays.asList(a, b, c), out);
+
+        // the header is dropped, same timestamp records are in input order, the last record is terminated
+        String expected = line(0, "a") + line(1, "b") + line(2, "a") + "    at a\n" + line(2, "b") +
+                line(3, "b") + "    at b\n    at b\n" + line(4, "a");
+
+        assertEquals(expected, new String(out.toByteArray(), StandardCharsets.US_ASCII));
+        assertEquals(expected.length(), written);
+    }
+
+    @Test
+    public void merge_Range() throws Exception {
+
+        Path a = write("a.log", line(0, "a") + line(2, "a") + line(4, "a") + line(6, "a"));
+        Path b = write("b.log", line(1, "b") + line(3, "b") + "    at b\n" + line(5, "b") + line(7, "b"));
+
+        TimestampOption from = new TimestampOption("from");
+        from.setZone(ZoneOffset.UTC);
+        from.setValue(START.plusSeconds(2).format(FORMAT));
+
+        TimestampOption to = new TimestampOption("to");
+        to.setZone(ZoneOffset.UTC);
+        to.setValue(START.plusSeconds(5).format(FORMAT));
+
+        TimeOrderedMerge m = new TimeOrderedMerge(from, to);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        m.merge(Arrays.asList(a, b), out);
+
+        assertEquals(line(2, "a") + line(3, "b") + "    at b\n" + line(4, "a"),
+                new String(out.toByteArray(), StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    public void merge_RelativeTimestamps() throws Exception {
+
+        Path a = write("a.log", "10:00:00 a\n10:00:02 a\n");
+        Path b = write("b.log", line(1, "b") + "10:00:03 b\n");
+
+        TimeOrderedMerge m = new TimeOrderedMerge(new TimeRangeFilter(Long.MIN_VALUE, Long.MAX_VALUE, ZoneOffset.UTC));
+        m.getRange().setReferenceDay(START.toLocalDate());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        m.merge(Arrays.asList(a, b), out);
+
+        assertEquals("10:00:00 a\n" + line(1, "b") + "10:00:02 a\n10:00:03 b\n",
+                new String(out.toByteArray(), StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    public void merge_SameAsSortingAllRecords() throws Exception {
+
+        Random random = new Random(20261017L);
+
+        int inputCount = 5;
+
+        List<Path> files = new ArrayList<>();
+        List<Record> records = new ArrayList<>();
+        int maxSecond = 0;
+
+        for(int i = 0; i < inputCount; i ++) {
+
+            StringBuilder sb = new StringBuilder();
+
+            if (random.nextBoolean()) {
+                sb.append("header ").append(i).append('\n');
+            }
+
+            int second = random.nextInt(10);
+
+            for(int j = random.nextInt(1000); j > 0; j --) {
+
+                second += random.nextInt(3);
+
+                StringBuilder r = new StringBuilder(line(second, i + "-" + j));
+
+                for(int k = random.nextInt(4) - 2; k > 0; k --) {
+                    r.append("    at ").append(k).append('\n');
+                }
+
+                if (random.nextInt(50) == 0) {
+
+                    for(int k = random.nextInt(3000); k > 0; k --) {
+                        r.append('x');
+                    }
+
+                    r.append('\n');
+                }
+
+                records.add(new Record(millis(second), i, records.size(), r.toString()));
+                sb.append(r);
+            }
+
+            maxSecond = Math.max(maxSecond, second);
+            files.add(write("input-" + i + ".log", sb.toString()));
+        }
+
+        Collections.sort(records);
+
+        for(int i = 0; i < 50; i ++) {
+
+            long from = random.nextInt(5) == 0 ? Long.MIN_VALUE : millis(random.nextInt(maxSecond + 10) - 5);
+            long to = random.nextInt(5) == 0 ? Long.MAX_VALUE : from + random.nextInt(maxSecond / 2 + 1) * 1000L;
+
+            StringBuilder expected = new StringBuilder();
+
+            for(Record r: records) {
+
+                if (r.timestamp >= from && r.timestamp < to) {
+                    expected.append(r.text);
+                }
+            }
+
+            TimeOrderedMerge m = new TimeOrderedMerge(new TimeRangeFilter(from, to, ZoneOffset.UTC));
+            m.setReadAhead(random.nextBoolean());
+            m.setBufferSize(random.nextBoolean() ? 1 + random.nextInt(200) : TimeOrderedMerge.DEFAULT_BUFFER_SIZE);
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            long written = m.merge(files, out);
+
+            String message = "[" + from + ", " + to + "), " + m.getBufferSize() + " bytes, read-ahead " +
+                    m.isReadAhead();
+
+            assertEquals(message, expected.toString(), new String(out.toByteArray(), StandardCharsets.US_ASCII));
+            assertEquals(message, expected.length(), written);
+        }
+    }
+
+    @Test
+    public void mergeChannels_Streams() throws Exception {
+
+        ReadableByteChannel a = Channels.newChannel(
+                new ByteArrayInputStream((line(0, "a") + line(2, "a")).getBytes(StandardCharsets.US_ASCII)));
+        ReadableByteChannel b = Channels.newChannel(
+                new ByteArrayInputStream(line(1, "b").getBytes(StandardCharsets.US_ASCII)));
+
+        TimeOrderedMerge m = new TimeOrderedMerge(null, null);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        m.mergeChannels(Arrays.asList(a, b), Channels.newChannel(out));
+
+        assertEquals(line(0, "a") + line(1, "b") + line(2, "a"),
+                new String(out.toByteArray(), StandardCharsets.US_ASCII));
+
+        assertTrue(!a.isOpen() && !b.isOpen());
+    }
+
+    @Test
+    public void mergeChannels_ReadFailure() throws Exception {
+
+        for(boolean readAhead: new boolean[] { true, false }) {
+
+            TimeOrderedMerge m = new TimeOrderedMerge(null, null);
+            m.setReadAhead(readAhead);
+
+            try {
+
+                m.mergeChannels(Collections.singletonList(new FailingChannel()),
+                        Channels.newChannel(new ByteArrayOutputStream()));
+                fail("should have thrown Exception");
+            }
+            catch(IOException e) {
+
+                String message = e.getMessage() + (e.getCause() == null ? "" : " " + e.getCause().getMessage());
+                assertTrue(message, message.contains("SYNTHETIC"));
+            }
+        }
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private static long millis(int second) {
+
+        return START.plusSeconds(second).toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    private static String line(int second, String message) {
+
+        return START.plusSeconds(second).format(FORMAT) + " " + message + "\n";
+    }
+
+    private Path write(String name, String content) throws Exception {
+
+        Path p = new File(scratchDir, name).toPath();
+        Files.write(p, content.getBytes(StandardCharsets.US_ASCII));
+        return p;
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+    private static class Record implements Comparable<Record> {
+
+        private long timestamp;
+        private int input;
+        private int sequence;
+        private String text;
+
+        Record(long timestamp, int input, int sequence, String text) {
+
+            this.timestamp = timestamp;
+            this.input = input;
+            this.sequence = sequence;
+            this.text = text;
+        }
+
+        @Override
+        public int compareTo(Record o) {
+
+            if (timestamp != o.timestamp) {
+                return timestamp < o.timestamp ? -1 : 1;
+            }
+
+            if (input != o.input) {
+                return input - o.input;
+            }
+
+            return sequence - o.sequence;
+        }
+    }
+
+    private static class FailingChannel implements ReadableByteChannel {
+
+        private boolean open = true;
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+
+            throw new IOException("SYNTHETIC");
+        }
+
+        @Override
+        public boolean isOpen() {
+
+            return open;
+        }
+
+        @Override
+        public void close() {
+
+            open = false;
+        }
+    }
+
+}
@@ -0,0 +1,456 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.clad.filter;
+
+import io.novaordis.clad.option.TimestampOption;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+public class TimeRangeFilterTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final LocalDateTime START = LocalDateTime.of(2016, 7, 3, 10, 0, 0);
+
+    private static final DateTimeFormatter FORMAT =
+            DateTimeFormatter.ofPattern(TimestampOption.DEFAULT_FORMAT_AS_STRING);
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private File scratchDir;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @Before
+    public void setUp() throws Exception {
+
+        String basedir = System.getProperty("basedir");
+        assertNotNull(basedir);
+
+        scratchDir = new File(basedir, "target/test-scratch/time-range-filter");
+        assertTrue(scratchDir.isDirectory() || scratchDir.mkdirs());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+
+        File[] files = scratchDir.listFiles();
+
+        if (files != null) {
+            for(File f: files) {
+                assertTrue(f.delete());
+            }
+        }
+    }
+
+    // constructors ----------------------------------------------------------------------------------------------------
+
+    @Test
+    public void constructor_TimestampOptions() throws Exception {
+
+        TimestampOption from = new TimestampOption("from");
+        from.setZone(ZoneOffset.ofHours(2));
+        from.setValue("07/03/16 10:00:00");
+
+        TimestampOption to = new TimestampOption("to", "07/03/16 11:00:00");
+
+        TimeRangeFilter f = new TimeRangeFilter(from, to);
+
+        assertEquals(from.getEpochMillis(), f.getFrom());
+        assertEquals(to.getEpochMillis(), f.getTo());
+        assertEquals(ZoneOffset.ofHours(2), f.getZone());
+    }
+
+    @Test
+    public void constructor_Unbounded() throws Exception {
+
+        TimeRangeFilter f = new TimeRangeFilter(null, new TimestampOption("to"));
+
+        assertEquals(Long.MIN_VALUE, f.getFrom());
+        assertEquals(Long.MAX_VALUE, f.getTo());
+
+        assertTrue(f.accept(Long.MIN_VALUE));
+        assertTrue(f.accept(0L));
+    }
+
+    @Test
+    public void constructor_FromFollowsTo() throws Exception {
+
+        try {
+
+            new TimeRangeFilter(2L, 1L, ZoneOffset.UTC);
+            fail("should have thrown Exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            assertTrue(e.getMessage().contains("follows its end"));
+        }
+    }
+
+    // accept() --------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void accept_Timestamp() throws Exception {
+
+        TimeRangeFilter f = new TimeRangeFilter(10L, 20L, ZoneOffset.UTC);
+
+        assertFalse(f.accept(9L));
+        assertTrue(f.accept(10L));
+        assertTrue(f.accept(19L));
+        assertFalse(f.accept(20L));
+    }
+
+    @Test
+    public void accept_Lines() throws Exception {
+
+        TimeRangeFilter f = new TimeRangeFilter(millis(10), millis(20), ZoneOffset.UTC);
+
+        assertFalse(f.accept("header"));
+        assertFalse(f.accept(line(5)));
+        assertFalse(f.accept("    at continuation"));
+        assertTrue(f.accept(line(10)));
+        assertTrue(f.accept("    at continuation"));
+        assertFalse(f.isPastTheEnd());
+
+        byte[] b = ("xx" + line(20)).getBytes(StandardCharsets.US_ASCII);
+        assertFalse(f.accept(b, 2, b.length - 2));
+        assertFalse(f.accept("    at continuation"));
+        assertTrue(f.isPastTheEnd());
+
+        f.reset();
+        assertFalse(f.isPastTheEnd());
+    }
+
+    @Test
+    public void accept_Lines_NoStart() throws Exception {
+
+        TimeRangeFilter f = new TimeRangeFilter(Long.MIN_VALUE, millis(20), ZoneOffset.UTC);
+
+        assertTrue(f.accept("header"));
+        assertTrue(f.accept(line(5)));
+        assertFalse(f.accept(line(25)));
+    }
+
+    @Test
+    public void accept_TimestampOffset() throws Exception {
+
+        TimeRangeFilter f = new TimeRangeFilter(millis(10), millis(20), ZoneOffset.UTC);
+        f.setTimestampOffset(1);
+
+        assertEquals(1, f.getTimestampOffset());
+        assertTrue(f.accept("[" + line(10) + "]"));
+        assertFalse(f.accept("[" + line(20) + "]"));
+    }
+
+    @Test
+    public void accept_RelativeTimestamps() throws Exception {
+
+        TimeRangeFilter f = new TimeRangeFilter(millis(10), millis(20), ZoneOffset.UTC);
+
+        // not a record, and there was no record before it
+        assertFalse(f.accept("10:00:10 message"));
+
+        f.setReferenceDay(START.toLocalDate());
+        assertEquals(START.toLocalDate(), f.getReferenceDay());
+
+        assertTrue(f.accept("10:00:10 message"));
+        assertFalse(f.accept("10:00:20 message"));
+    }
+
+    // seek() ----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void seek() throws Exception {
+
+        List<String> lines = new ArrayList<>();
+        lines.add("header");
+
+        for(int i = 0; i < 100; i ++) {
+
+            lines.add(line(i * 2));
+
+            if (i % 3 == 0) {
+                lines.add("    continuation of " + i);
+            }
+        }
+
+        File file = write(lines, true);
+
+        for(int second = -1; second <= 201; second ++) {
+
+            TimeRangeFilter f = new TimeRangeFilter(millis(second), Long.MAX_VALUE, ZoneOffset.UTC);
+            f.setWindowSize(64);
+
+            try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+
+                assertEquals("second " + second, expectedStart(lines, f), f.seek(channel));
+            }
+        }
+    }
+
+    @Test
+    public void seek_NoStart() throws Exception {
+
+        File file = write(lines(10), true);
+
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+
+            assertEquals(0L, new TimeRangeFilter(Long.MIN_VALUE, 0L, ZoneOffset.UTC).seek(channel));
+        }
+    }
+
+    @Test
+    public void seek_EmptyFile() throws Exception {
+
+        File file = write(new ArrayList<String>(), false);
+
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+
+            assertEquals(0L, new TimeRangeFilter(0L, Long.MAX_VALUE, ZoneOffset.UTC).seek(channel));
+        }
+    }
+
+    // filter() --------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void filter() throws Exception {
+
+        File file = write(lines(10), true);
+
+        TimeRangeFilter f = new TimeRangeFilter(millis(3), millis(6), ZoneOffset.UTC);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long written = f.filter(file.toPath(), out);
+
+        String expected = line(3) + "\n" + line(4) + "\n" + line(5) + "\n";
+        assertEquals(expected, new String(out.toByteArray(), StandardCharsets.US_ASCII));
+        assertEquals(expected.length(), written);
+    }
+
+    @Test
+    public void filter_NoTrailingNewLine() throws Exception {
+
+        File file = write(lines(10), false);
+
+        TimeRangeFilter f = new TimeRangeFilter(millis(8), Long.MAX_VALUE, ZoneOffset.UTC);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        f.filter(file.toPath(), out);
+
+        assertEquals(line(8) + "\n" + line(9), new String(out.toByteArray(), StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    public void filter_Unbounded() throws Exception {
+
+        List<String> lines = lines(10);
+        lines.add(0, "header");
+        File file = write(lines, true);
+
+        TimeRangeFilter f = new TimeRangeFilter(null, null);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        f.filter(file.toPath(), out);
+
+        assertEquals(file.length(), out.size());
+    }
+
+    @Test
+    public void filter_RecordsOutOfOrderWithinTheRange() throws Exception {
+
+        List<String> lines = new ArrayList<>();
+        lines.add(line(0));
+        lines.add(line(1));
+        lines.add(line(3));
+        lines.add(line(2));
+        lines.add("    continuation");
+        lines.add(line(4));
+        lines.add(line(5));
+        File file = write(lines, true);
+
+        TimeRangeFilter f = new TimeRangeFilter(millis(1), millis(5), ZoneOffset.UTC);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        f.filter(file.toPath(), out);
+
+        assertEquals(line(1) + "\n" + line(3) + "\n" + line(2) + "\n    continuation\n" + line(4) + "\n",
+                new String(out.toByteArray(), StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    public void filter_SameAsLineByLineFiltering() throws Exception {
+
+        Random random = new Random(20261017L);
+
+        List<String> lines = new ArrayList<>();
+        lines.add("header");
+
+        int second = 0;
+
+        for(int i = 0; i < 2000; i ++) {
+
+            // same second timestamps, gaps, fractions of a second, continuation lines, long lines
+            second += random.nextInt(3);
+
+            String s = "[" + line(second) + (random.nextBoolean() ? "," + random.nextInt(1000) : "") + "] message " + i;
+
+            if (random.nextInt(20) == 0) {
+
+                StringBuilder sb = new StringBuilder(s);
+
+                for(int j = random.nextInt(500); j > 0; j --) {
+                    sb.append('x');
+                }
+
+                s = sb.toString();
+            }
+
+            lines.add(s);
+
+            for(int j = random.nextInt(4) - 2; j > 0; j --) {
+                lines.add("    at continuation " + j);
+            }
+        }
+
+        File file = write(lines, true);
+
+        for(int i = 0; i < 200; i ++) {
+
+            long from = random.nextInt(10) == 0 ? Long.MIN_VALUE : millis(random.nextInt(second + 10) - 5);
+            long to = random.nextInt(10) == 0 ? Long.MAX_VALUE : from + random.nextInt(60) * 1000L;
+
+            TimeRangeFilter f = new TimeRangeFilter(from, to, ZoneOffset.UTC);
+            f.setTimestampOffset(1);
+            f.setWindowSize(random.nextBoolean() ? 64 + random.nextInt(1000) : MappedFile.DEFAULT_WINDOW_SIZE);
+
+            StringBuilder expected = new StringBuilder();
+
+            for(String line: lines) {
+
+                if (f.accept(line)) {
+                    expected.append(line).append('\n');
+                }
+            }
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            f.filter(file.toPath(), out);
+
+            assertEquals("[" + from + ", " + to + ")", expected.toString(),
+                    new String(out.toByteArray(), StandardCharsets.US_ASCII));
+        }
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private static long millis(int second) {
+
+        return START.plusSeconds(second).toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    private static String line(int second) {
+
+        return START.plusSeconds(second).format(FORMAT) + " message";
+    }
+
+    private static List<String> lines(int count) {
+
+        List<String> lines = new ArrayList<>();
+
+        for(int i = 0; i < count; i ++) {
+            lines.add(line(i));
+        }
+
+        return lines;
+    }
+
+    private File write(List<String> lines, boolean trailingNewLine) throws Exception {
+
+        StringBuilder sb = new StringBuilder();
+
+        for(int i = 0; i < lines.size(); i ++) {
+
+            sb.append(lines.get(i));
+
+            if (i < lines.size() - 1 || trailingNewLine) {
+                sb.append('\n');
+            }
+        }
+
+        File file = new File(scratchDir, "input.log");
+        Files.write(file.toPath(), sb.toString().getBytes(StandardCharsets.US_ASCII));
+        return file;
+    }
+
+    /**
+     * The position of the first record that is not before the range, found by reading the lines in order.
+     */
+    private static long expectedStart(List<String> lines, TimeRangeFilter f) {
+
+        TimestampParser parser = new TimestampParser(f.getZone());
+
+        long position = 0;
+
+        for(String line: lines) {
+
+            long timestamp = parser.parse(line, 0, line.length());
+
+            if (timestamp != TimestampParser.NO_TIMESTAMP && timestamp >= f.getFrom()) {
+                return position;
+            }
+
+            position += line.length() + 1;
+        }
+
+        return position;
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
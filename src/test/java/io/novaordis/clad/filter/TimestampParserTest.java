@@ -0,0 +1,367 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.clad.filter;
+
+import io.novaordis.clad.option.TimestampOption;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+public class TimestampParserTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final ZoneId NEW_YORK = ZoneId.of("America/New_York");
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void constructor_NullZone() throws Exception {
+
+        try {
+
+            new TimestampParser(null);
+            fail("should have thrown Exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            assertEquals("null zone", e.getMessage());
+        }
+    }
+
+    // parse() ---------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void parse() throws Exception {
+
+        TimestampParser p = new TimestampParser(ZoneOffset.UTC);
+
+        assertEquals(utc(2016, 7, 3, 4, 5, 6), parse(p, "07/03/16 04:05:06"));
+        assertEquals(17, p.getEnd());
+
+        assertEquals(utc(2016, 7, 3, 4, 5, 6), parse(p, "7/3/16 4:5:6"));
+        assertEquals(12, p.getEnd());
+
+        assertEquals(utc(1916, 7, 3, 4, 5, 6), parse(p, "07/03/1916 04:05:06"));
+        assertEquals(utc(6, 7, 3, 4, 5, 6), parse(p, "07/03/6 04:05:06"));
+    }
+
+    @Test
+    public void parse_Lenient() throws Exception {
+
+        TimestampParser p = new TimestampParser(ZoneOffset.UTC);
+
+        assertEquals(utc(2017, 2, 15, 2, 2, 1), parse(p, "13/45/16 25:61:61"));
+        assertEquals(utc(2015, 11, 30, 0, 0, 0), parse(p, "0/0/16 0:0:0"));
+    }
+
+    @Test
+    public void parse_TwoDigitYear() throws Exception {
+
+        TimestampParser p = new TimestampParser(ZoneOffset.UTC);
+
+        LocalDateTime start = TimestampOption.TWO_DIGIT_YEAR_START;
+        int base = TimestampOption.TWO_DIGIT_YEAR_BASE;
+        String yy = String.format("%02d", base % 100);
+
+        // the dates before the start of the two digit year century belong to the next century
+        int firstDayYear = start.getDayOfYear() == 1 ? base : base + 100;
+        assertEquals(utc(firstDayYear, 1, 1, 0, 0, 0), parse(p, "01/01/" + yy + " 00:00:00"));
+        assertEquals(utc(base, 12, 31, 23, 59, 59), parse(p, "12/31/" + yy + " 23:59:59"));
+
+        LocalDateTime before = start.minusDays(1);
+        assertEquals(utc(base + 100, before.getMonthValue(), before.getDayOfMonth(), 0, 0, 0),
+                parse(p, String.format("%02d/%02d/%s 00:00:00", before.getMonthValue(), before.getDayOfMonth(), yy)));
+
+        int last = base + 99;
+        assertEquals(utc(last, 1, 1, 0, 0, 0), parse(p, "01/01/" + String.format("%02d", last % 100) + " 00:00:00"));
+
+        //
+        // same as TimestampOption
+        //
+
+        TimestampOption o = new TimestampOption("test", null);
+        o.setZone(ZoneOffset.UTC);
+
+        for(String s: new String[] {
+                "01/01/" + yy + " 00:00:00", "12/31/" + yy + " 23:59:59",
+                "13/01/" + yy + " 00:00:00", "00/01/" + yy + " 00:00:00" }) {
+
+            o.setValue(s);
+            assertEquals(s, o.getEpochMillis(), parse(p, s));
+        }
+    }
+
+    @Test
+    public void parse_WhateverFollowsIsIgnored() throws Exception {
+
+        TimestampParser p = new TimestampParser(ZoneOffset.UTC);
+
+        assertEquals(utc(2016, 7, 3, 4, 5, 6), parse(p, "07/03/16 04:05:06 INFO something happened"));
+        assertEquals(17, p.getEnd());
+
+        assertEquals(utc(2016, 7, 3, 4, 5, 6), parse(p, "07/03/16 04:05:06."));
+        assertEquals(17, p.getEnd());
+    }
+
+    @Test
+    public void parse_FractionOfASecond() throws Exception {
+
+        TimestampParser p = new TimestampParser(ZoneOffset.UTC);
+
+        assertEquals(utc(2016, 7, 3, 4, 5, 6) + 345, parse(p, "07/03/16 04:05:06,345 INFO"));
+        assertEquals(21, p.getEnd());
+
+        assertEquals(utc(2016, 7, 3, 4, 5, 6) + 500, parse(p, "07/03/16 04:05:06.5"));
+        assertEquals(utc(2016, 7, 3, 4, 5, 6) + 123, parse(p, "07/03/16 04:05:06.123456789"));
+        assertEquals(27, p.getEnd());
+    }
+
+    @Test
+    public void parse_NoTimestamp() throws Exception {
+
+        TimestampParser p = new TimestampParser(ZoneOffset.UTC);
+
+        String[] values = {
+                "", "something", "07/03/16", "07/03/16 04:05", "07-03-16 04:05:06", " 07/03/16 04:05:06",
+                "07/03/16  04:05:06", "07/03/16\t04:05:06", "-7/03/16 04:05:06", "07/03/16 04:05:", "04:05:06",
+                "07/03/12345 04:05:06", "1234567890/03/16 04:05:06", "07/03/16 04:05:1234567890",
+        };
+
+        for(String s: values) {
+
+            assertEquals(s, TimestampParser.NO_TIMESTAMP, parse(p, s));
+        }
+    }
+
+    @Test
+    public void parse_PositionAndLimit() throws Exception {
+
+        TimestampParser p = new TimestampParser(ZoneOffset.UTC);
+
+        byte[] bytes = "[07/03/16 04:05:06] INFO".getBytes(StandardCharsets.US_ASCII);
+
+        assertEquals(utc(2016, 7, 3, 4, 5, 6), p.parse(bytes, 1, bytes.length));
+        assertEquals(18, p.getEnd());
+
+        // the limit cuts the seconds
+        assertEquals(utc(2016, 7, 3, 4, 5, 0), p.parse(bytes, 1, 17));
+        assertEquals(TimestampParser.NO_TIMESTAMP, p.parse(bytes, 1, 16));
+    }
+
+    @Test
+    public void parse_ByteBuffer() throws Exception {
+
+        TimestampParser p = new TimestampParser(ZoneOffset.UTC);
+
+        ByteBuffer b = ByteBuffer.wrap("xx07/03/16 04:05:06".getBytes(StandardCharsets.US_ASCII));
+        b.position(5);
+
+        assertEquals(utc(2016, 7, 3, 4, 5, 6), p.parse(b, 2, b.limit()));
+
+        // absolute reads only
+        assertEquals(5, b.position());
+    }
+
+    @Test
+    public void parse_CharSequence() throws Exception {
+
+        TimestampParser p = new TimestampParser(ZoneOffset.UTC);
+
+        assertEquals(utc(2016, 7, 3, 4, 5, 6), p.parse(new StringBuilder("07/03/16 04:05:06"), 0, 17));
+
+        // non-ASCII digits
+        assertEquals(TimestampParser.NO_TIMESTAMP, p.parse("０7/03/16 04:05:06", 0, 17));
+    }
+
+    @Test
+    public void parse_Zone() throws Exception {
+
+        TimestampParser p = new TimestampParser(ZoneOffset.ofHours(2));
+
+        assertEquals(utc(2016, 7, 3, 2, 5, 6), parse(p, "07/03/16 04:05:06"));
+    }
+
+    @Test
+    public void parse_DaylightSavingTime() throws Exception {
+
+        TimestampParser p = new TimestampParser(NEW_YORK);
+
+        // EST, EDT, the 2:00 - 3:00 gap on March 13 and the 1:00 - 2:00 overlap on November 6
+        String[] values = {
+                "01/15/16 12:00:00", "07/15/16 12:00:00", "03/13/16 01:59:59", "03/13/16 02:30:00", "03/13/16 03:00:00",
+                "11/06/16 00:59:59", "11/06/16 01:30:00", "11/06/16 02:00:00", "01/15/16 12:00:00",
+        };
+
+        for(String s: values) {
+
+            assertEquals(s, epochMillis(NEW_YORK, s), parse(p, s));
+        }
+    }
+
+    @Test
+    public void parse_SameAsTimestampOption() throws Exception {
+
+        Random random = new Random(20261017L);
+
+        TimestampParser newYork = new TimestampParser(NEW_YORK);
+        TimestampParser utc = new TimestampParser(ZoneOffset.UTC);
+
+        for(int i = 0; i < 20000; i ++) {
+
+            String s = field(random, 1 + random.nextInt(12), 3) + "/" + field(random, 1 + random.nextInt(31), 3) +
+                    "/" + field(random, random.nextInt(10000), 4) + " " + field(random, random.nextInt(24), 3) +
+                    ":" + field(random, random.nextInt(60), 3) + ":" + field(random, random.nextInt(60), 3);
+
+            assertEquals(s, epochMillis(NEW_YORK, s), parse(newYork, s));
+            assertEquals(s, epochMillis(ZoneOffset.UTC, s), parse(utc, s));
+        }
+    }
+
+    @Test
+    public void parse_Relative() throws Exception {
+
+        TimestampParser p = new TimestampParser(ZoneOffset.UTC);
+
+        // not accepted by default
+        assertEquals(null, p.getReferenceDay());
+        assertEquals(TimestampParser.NO_TIMESTAMP, parse(p, "04:05:06"));
+
+        p.setReferenceDay(LocalDate.of(2016, 7, 3));
+        assertEquals(LocalDate.of(2016, 7, 3), p.getReferenceDay());
+
+        assertEquals(utc(2016, 7, 3, 4, 5, 6), parse(p, "04:05:06 message"));
+        assertEquals(8, p.getEnd());
+        assertEquals(utc(2016, 7, 3, 4, 5, 6) + 7, parse(p, "4:5:6.007"));
+
+        // the hours past 23 roll over into the next days
+        assertEquals(utc(2016, 7, 5, 1, 0, 0), parse(p, "49:00:00"));
+
+        // full timestamps are still accepted
+        assertEquals(utc(2016, 7, 4, 4, 5, 6), parse(p, "07/04/16 04:05:06"));
+
+        assertEquals(TimestampParser.NO_TIMESTAMP, parse(p, "04:05"));
+        assertEquals(TimestampParser.NO_TIMESTAMP, parse(p, "04 05:06"));
+
+        p.setReferenceDay(null);
+        assertEquals(TimestampParser.NO_TIMESTAMP, parse(p, "04:05:06"));
+    }
+
+    @Test
+    public void parse_Relative_SameAsTimestampOption() throws Exception {
+
+        Random random = new Random(20261017L);
+
+        LocalDate day = LocalDate.of(2016, 3, 13);
+
+        TimestampParser p = new TimestampParser(NEW_YORK);
+        p.setReferenceDay(day);
+
+        for(int i = 0; i < 5000; i ++) {
+
+            String s = field(random, random.nextInt(24), 3) + ":" + field(random, random.nextInt(60), 3) + ":" +
+                    field(random, random.nextInt(60), 3);
+
+            TimestampOption o = new TimestampOption("test");
+            o.setZone(NEW_YORK);
+            o.setReferenceDay(day);
+            o.setValue(s);
+
+            assertEquals(s, o.getEpochMillis(), parse(p, s));
+        }
+    }
+
+    // epochDay() ------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void epochDay() throws Exception {
+
+        for(int year = -1000; year <= 3000; year ++) {
+
+            for(int month = 1; month <= 12; month ++) {
+
+                assertEquals(LocalDate.of(year, month, 1).toEpochDay(), TimestampParser.epochDay(year, month));
+            }
+        }
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private static long parse(TimestampParser p, String s) {
+
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        return p.parse(bytes, 0, bytes.length);
+    }
+
+    private static long utc(int year, int month, int day, int hour, int minute, int second) {
+
+        return LocalDateTime.of(year, month, day, hour, minute, second).toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    private static long epochMillis(ZoneId zone, String s) {
+
+        TimestampOption o = new TimestampOption("test");
+        o.setZone(zone);
+        o.setValue(s);
+        return o.getEpochMillis();
+    }
+
+    /**
+     * The value, out of range now and then, with a random number of digits.
+     */
+    private static String field(Random random, int value, int maxDigits) {
+
+        if (random.nextInt(10) == 0) {
+            value = random.nextInt((int)Math.pow(10, maxDigits));
+        }
+
+        String s = Integer.toString(value);
+
+        while(s.length() < maxDigits && random.nextBoolean()) {
+            s = "0" + s;
+        }
+
+        return s;
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.clad.option;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+public class ArgumentTokensTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void constructor_InvalidSize() throws Exception {
+
+        try {
+            new ArgumentTokens(new String[1], 2);
+            fail("should throw exception");
+        }
+        catch(IllegalArgumentException e) {
+            // ok
+        }
+    }
+
+    @Test
+    public void firstAndNext() throws Exception {
+
+        ArgumentTokens tokens = new ArgumentTokens(new String[] { "a", "b", "c", "d", "unused" }, 4);
+
+        assertEquals(4, tokens.size());
+        assertEquals(0, tokens.first(0));
+        assertEquals(1, tokens.next(0));
+
+        tokens.consume(1);
+        tokens.consume(2);
+
+        assertTrue(tokens.isConsumed(1));
+        assertFalse(tokens.isConsumed(3));
+        assertEquals(3, tokens.next(0));
+        assertEquals(3, tokens.first(1));
+        assertEquals("d", tokens.get(3));
+
+        tokens.consume(3);
+
+        assertEquals(4, tokens.next(0));
+        assertEquals(4, tokens.first(4));
+        assertEquals(4, tokens.next(4));
+    }
+
+    @Test
+    public void consume_OutOfBounds() throws Exception {
+
+        ArgumentTokens tokens = new ArgumentTokens(new String[] { "a", "b" }, 1);
+
+        try {
+            tokens.consume(1);
+            fail("should throw exception");
+        }
+        catch(IndexOutOfBoundsException e) {
+            // ok
+        }
+    }
+
+    @Test
+    public void compact() throws Exception {
+
+        List<String> list = new ArrayList<>(Arrays.asList("x", "a", "b", "c", "d"));
+
+        ArgumentTokens tokens = new ArgumentTokens(list.toArray(new String[list.size()]), list.size());
+
+        tokens.consume(2);
+        tokens.consume(4);
+
+        tokens.compact(list, 1);
+
+        assertEquals(Arrays.asList("x", "a", "c"), list);
+    }
+
+    @Test
+    public void compact_NothingConsumed() throws Exception {
+
+        List<String> list = new ArrayList<>(Arrays.asList("a", "b"));
+
+        new ArgumentTokens(list.toArray(new String[list.size()]), list.size()).compact(list, 0);
+
+        assertEquals(Arrays.asList("a", "b"), list);
+    }
+
+    @Test
+    public void compact_EverythingConsumed() throws Exception {
+
+        List<String> list = new ArrayList<>(Arrays.asList("a", "b"));
+
+        ArgumentTokens tokens = new ArgumentTokens(list.toArray(new String[list.size()]), list.size());
+        tokens.consume(0);
+        tokens.consume(1);
+        tokens.compact(list, 0);
+
+        assertEquals(Collections.<String>emptyList(), list);
+    }
+
+    @Test
+    public void write_FixedSizeList() throws Exception {
+
+        List<String> list = Arrays.asList("a", "b");
+
+        ArgumentTokens.write(list, 1, new String[] { "a", "c" }, 2);
+
+        assertEquals(Arrays.asList("a", "c"), list);
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
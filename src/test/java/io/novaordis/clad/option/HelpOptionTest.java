@@ -16,16 +16,21 @@
 
 package io.novaordis.clad.option;
 
+import io.novaordis.clad.application.MockApplicationRuntime;
 import io.novaordis.clad.application.TestApplicationRuntime;
 import io.novaordis.clad.command.Command;
 import io.novaordis.clad.MockOutputStream;
 import io.novaordis.clad.command.Test2Command;
 import io.novaordis.clad.command.TestCommand;
+import io.novaordis.clad.discovery.DiscoveryIndex;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.charset.StandardCharsets;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -128,6 +133,50 @@ public class HelpOptionTest extends OptionTest {
         assertTrue(s.contains("this is application help placeholder"));
     }
 
+    /**
+     * The test classes are compiled with DiscoveryIndexProcessor, which pre-renders the test application help.
+     */
+    @Test
+    public void displayHelp_GenericApplicationHelp_Prerendered() throws Exception {
+
+        String helpFilePath = new TestApplicationRuntime().getHelpFilePath();
+
+        PrerenderedHelp prerendered = PrerenderedHelp.load(helpFilePath);
+        assertNotNull(prerendered);
+        assertEquals(DiscoveryIndex.getInstance().getCommandFingerprint(), prerendered.getFingerprint());
+
+        HelpOption helpOption = new HelpOption();
+        helpOption.setApplication(new TestApplicationRuntime());
+
+        MockOutputStream mos = new MockOutputStream();
+
+        helpOption.displayHelp(mos);
+
+        String expected = new String(HelpOption.resolveMacros(
+                HelpOption.getHelpContent(helpFilePath), new DynamicMacroResolver()), StandardCharsets.UTF_8);
+
+        assertEquals(expected, mos.getWrittenString());
+        assertTrue(expected.contains(DynamicMacroResolver.NO_HELP_ANNOTATION));
+    }
+
+    @Test
+    public void displayHelp_GenericApplicationHelp_PrerenderedForAnotherClassPath() throws Exception {
+
+        MockApplicationRuntime application = new MockApplicationRuntime();
+
+        // the test resource was rendered with another fingerprint
+        assertEquals("0000", PrerenderedHelp.load(application.getHelpFilePath()).getFingerprint());
+
+        HelpOption helpOption = new HelpOption();
+        helpOption.setApplication(application);
+
+        MockOutputStream mos = new MockOutputStream();
+
+        helpOption.displayHelp(mos);
+
+        assertEquals(HelpOption.NO_APPLICATION_HELP_FOUND_TEXT + "'\n", mos.getWrittenString());
+    }
+
     // setCommand() ----------------------------------------------------------------------------------------------------
 
     @Test
@@ -206,6 +255,19 @@ public class HelpOptionTest extends OptionTest {
         assertEquals("abc@TESTMACRO\n@xyz", new String(content));
     }
 
+    @Test
+    public void resolveMacros_UnresolvedMacrosLeftInPlace() throws Exception {
+
+        String s = "a@UNKNOWN@b@TESTMACRO@c";
+
+        MockMacroResolver mmr = new MockMacroResolver();
+        mmr.addMacro("TESTMACRO", "@UNKNOWN@");
+
+        byte[] content = HelpOption.resolveMacros(s.getBytes(), mmr);
+
+        assertEquals("a@UNKNOWN@b@UNKNOWN@c", new String(content));
+    }
+
     // Package protected -----------------------------------------------------------------------------------------------
 
     // Protected -------------------------------------------------------------------------------------------------------
@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.clad.option;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+public class HelpTemplateTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @After
+    public void tearDown() {
+
+        HelpTemplate.clearCache();
+    }
+
+    // load() ----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void load_NoSuchResource() throws Exception {
+
+        assertNull(HelpTemplate.load("data/no-such-help.txt"));
+        assertNull(HelpTemplate.load("data/no-such-help.txt"));
+    }
+
+    @Test
+    public void load_Cached() throws Exception {
+
+        HelpTemplate t = HelpTemplate.load("data/help-macros.txt");
+        assertNotNull(t);
+        assertSame(t, HelpTemplate.load("data/help-macros.txt"));
+
+        HelpTemplate.clearCache();
+
+        HelpTemplate t2 = HelpTemplate.load("data/help-macros.txt");
+        assertNotNull(t2);
+        assertTrue(t != t2);
+    }
+
+    @Test
+    public void load_NewLineAppended() throws Exception {
+
+        HelpTemplate t = HelpTemplate.load("data/help-no-newline.txt");
+        assertEquals("test help\n", new String(t.getContent(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void load_Macros() throws Exception {
+
+        HelpTemplate t = HelpTemplate.load("data/help-macros.txt");
+        assertEquals(Arrays.asList("NAME", "COMMANDS", "UNKNOWN"), t.getMacros());
+    }
+
+    // parse() ---------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void parse_NoMacros() throws Exception {
+
+        assertEquals(Collections.emptyList(), parse("").getMacros());
+        assertEquals(Collections.emptyList(), parse("@").getMacros());
+        assertEquals(Collections.emptyList(), parse("@@").getMacros());
+        assertEquals(Collections.emptyList(), parse("a@b").getMacros());
+        assertEquals(Collections.emptyList(), parse("@a-b@").getMacros());
+        assertEquals(Collections.emptyList(), parse("@a\nb@").getMacros());
+        assertEquals(Collections.emptyList(), parse("@abc").getMacros());
+    }
+
+    @Test
+    public void parse_LikeThePattern() throws Exception {
+
+        assertEquals(Collections.singletonList("A"), parse("@A@").getMacros());
+        assertEquals(Collections.singletonList("A"), parse("@@A@").getMacros());
+        assertEquals(Collections.singletonList("A"), parse("@A@B@").getMacros());
+        assertEquals(Arrays.asList("A", "B"), parse("@A@@B@").getMacros());
+        assertEquals(Arrays.asList("a_1", "a_1"), parse("x@a_1@y@a_1@z").getMacros());
+        assertEquals(Collections.singletonList("B"), parse("@-A@B@").getMacros());
+    }
+
+    @Test
+    public void parse_LikeThePattern_Random() throws Exception {
+
+        Random random = new Random(23);
+        String alphabet = "@@@ab_1-\n";
+        Pattern pattern = Pattern.compile("@(\\w+)@");
+
+        for(int i = 0; i < 10000; i ++) {
+
+            StringBuilder sb = new StringBuilder();
+
+            for(int j = random.nextInt(20); j > 0; j --) {
+                sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+
+            List<String> expected = new ArrayList<>();
+            Matcher m = pattern.matcher(sb);
+
+            while(m.find()) {
+                expected.add(m.group(1));
+            }
+
+            assertEquals(sb.toString(), expected, parse(sb.toString()).getMacros());
+            assertEquals(sb.toString(), sb.toString(), render(parse(sb.toString()), null));
+        }
+    }
+
+    // render() --------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void render() throws Exception {
+
+        MockMacroResolver r = new MockMacroResolver();
+        r.addMacro("NAME", "clad");
+        r.addMacro("COMMANDS", "  one\n  two");
+
+        HelpTemplate t = HelpTemplate.load("data/help-macros.txt");
+
+        assertEquals("Usage: clad – café\n\n  one\n  two\n\ncontact: me@example.com @UNKNOWN@\n",
+                render(t, r));
+    }
+
+    @Test
+    public void render_NoResolver() throws Exception {
+
+        HelpTemplate t = HelpTemplate.load("data/help-macros.txt");
+        assertArrayEquals(t.getContent(), render(t, null).getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void render_ValuesAreUTF8() throws Exception {
+
+        MockMacroResolver r = new MockMacroResolver();
+        r.addMacro("A", "é€");
+
+        assertEquals("xé€y", render(parse("x@A@y"), r));
+    }
+
+    @Test
+    public void render_Recursive() throws Exception {
+
+        MockMacroResolver r = new MockMacroResolver();
+        r.addMacro("A", "<@B@ @C@>");
+        r.addMacro("B", "b");
+
+        assertEquals("[<b @C@>]", render(parse("[@A@]"), r));
+    }
+
+    @Test
+    public void render_SelfReferenceDoesNotLoop() throws Exception {
+
+        MockMacroResolver r = new MockMacroResolver();
+        r.addMacro("A", "a@A@");
+
+        StringBuilder expected = new StringBuilder();
+
+        for(int i = 0; i <= HelpTemplate.MAX_MACRO_DEPTH; i ++) {
+            expected.append('a');
+        }
+
+        expected.append("@A@");
+
+        assertEquals(expected.toString(), render(parse("@A@"), r));
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private static HelpTemplate parse(String s) {
+
+        return HelpTemplate.parse(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String render(HelpTemplate t, MacroResolver r) throws Exception {
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        t.render(baos, r);
+        return new String(baos.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,430 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.clad.option;
+
+import io.novaordis.clad.InstanceFactory;
+import io.novaordis.clad.command.Command;
+import io.novaordis.utilities.UserErrorException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The option parser as it was before it was rewritten on top of ArgumentTokens: it removes the arguments from the list
+ * as it parses them. Kept as the reference the current parser is compared with (see OptionParserDifferentialTest).
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+class ListMutatingOptionParser {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    static List<Option> parse(int from, List<String> commandLineArguments, OptionSchema schema)
+            throws Exception {
+
+        //
+        // pre-parse to handle single quotes and double quotes
+        //
+
+        coalesceQuotedSections(from, commandLineArguments);
+
+        List<Option> options = new ArrayList<>();
+
+        String current;
+
+        for(int i = from; i < commandLineArguments.size(); i++) {
+
+            current = commandLineArguments.get(i);
+
+            if (("--" + VerboseOption.LONG_LITERAL).equals(current) ||
+                    ("-" + VerboseOption.SHORT_LITERAL).equals(current)) {
+
+                VerboseOption verboseOption = new VerboseOption();
+                if(schema.isDeclared(verboseOption)) {
+                    commandLineArguments.remove(i--);
+                    options.add(verboseOption);
+                }
+            }
+            else if (handledHelpOption(i, commandLineArguments, options)) {
+
+                //
+                // handled as help option - this is handled out-of-band and the list of required and optional options
+                // is not consulted
+                //
+
+                //noinspection UnnecessaryContinue
+                continue;
+            }
+            else if (current.startsWith("--")) {
+
+                String longLiteralOptionString = commandLineArguments.get(i);
+                Option option = parseLongLiteralOption(longLiteralOptionString, commandLineArguments, i + 1);
+
+                if (schema.isDeclared(option)) {
+                    commandLineArguments.remove(i--);
+                    // literals first, the list indexes the option by its literals
+                    schema.copyLiterals(option);
+                    options.add(option);
+                }
+            }
+            else if (current.startsWith("-")) {
+
+                if (current.length() == 1) {
+                    // "-" - currently we have no use for it, advertise it as a user error
+                    throw new UserErrorException("invalid option: '-'");
+                }
+
+                //
+                // short option candidate - we only use the character following '-' and we ignore the rest
+                //
+
+                char shortLiteral = current.charAt(1);
+
+                Option candidateOption;
+
+                if (i == (commandLineArguments.size() - 1) || commandLineArguments.get(i + 1).startsWith("-")) {
+
+                    // boolean option
+                    candidateOption = new BooleanOption(shortLiteral);
+                }
+                else {
+
+                    String valueAsString = commandLineArguments.get(i + 1);
+                    Object value = OptionParser.typeHeuristics(valueAsString, null);
+                    if (value instanceof String) {
+                        candidateOption = new StringOption(shortLiteral);
+                        ((StringOption)candidateOption).setValue((String)value);
+
+                    }
+                    else if (value instanceof Long) {
+                        candidateOption = new LongOption(shortLiteral);
+                        ((LongOption)candidateOption).setValue((Long)value);
+
+                    }
+                    else if (value instanceof Double) {
+                        candidateOption = new DoubleOption(shortLiteral);
+                        ((DoubleOption)candidateOption).setValue((Double)value);
+                    }
+                    else {
+                        throw new RuntimeException("NOT YET IMPLEMENTED " + value);
+                    }
+                }
+
+                if (schema.isDeclared(candidateOption)) {
+
+                    //
+                    // only add if we know about it
+                    //
+
+                    schema.copyLiterals(candidateOption);
+                    options.add(candidateOption);
+                    if (candidateOption instanceof BooleanOption) {
+                        // remove one
+                        commandLineArguments.remove(i);
+                    }
+                    else {
+                        // remove two
+                        commandLineArguments.remove(i);
+                        commandLineArguments.remove(i--);
+                    }
+                }
+            }
+            else {
+
+                // unknown option, ignored
+            }
+        }
+
+        //
+        // Do not check for required options yet, that check belongs in the command or application.
+        //
+
+        return options;
+    }
+
+    static void coalesceQuotedSections(int from, List<String> commandLineArguments) throws UserErrorException {
+
+        StringBuilder doubleQuoted = null;
+        StringBuilder singleQuoted = null;
+        int index = -1;
+        int toRemoveCount = 0;
+
+        for(int i = from; i < commandLineArguments.size(); i++) {
+
+            String current = commandLineArguments.get(i);
+
+            int doubleQuoteIndex, singleQuoteIndex = -1;
+
+            if (((doubleQuoteIndex = current.indexOf("\"")) != -1 &&
+                    doubleQuoteIndex < current.length() - 1 &&
+                    (doubleQuoteIndex == 0 || current.charAt(doubleQuoteIndex -1) != '\\')) ||
+                    ((singleQuoteIndex = current.indexOf("'")) != -1 &&
+                            singleQuoteIndex < current.length() - 1) &&
+                            (singleQuoteIndex == 0 || current.charAt(singleQuoteIndex -1) != '\\')) {
+
+                boolean doubleQuote = doubleQuoteIndex != -1;
+                boolean singleQuote = singleQuoteIndex != -1;
+
+                if (doubleQuote && doubleQuoted != null) {
+                    String beginning = doubleQuoted.toString();
+                    if (beginning.indexOf(' ') != -1) {
+                        beginning = beginning.substring(0, beginning.indexOf(' '));
+                    }
+                    throw new UserErrorException("unbalanced double quotes: \"" + beginning + " ... " + current);
+                }
+
+                if (singleQuote && singleQuoted != null) {
+                    String beginning = singleQuoted.toString();
+                    if (beginning.indexOf(' ') != -1) {
+                        beginning = beginning.substring(0, beginning.indexOf(' '));
+                    }
+                    throw new UserErrorException("unbalanced single quotes: '" + beginning + " ... " + current);
+                }
+
+                int separatorIndex = singleQuoteIndex == -1 ? doubleQuoteIndex : singleQuoteIndex;
+
+                current = current.substring(0, separatorIndex) + current.substring(separatorIndex + 1);
+                doubleQuoted = doubleQuote ? new StringBuilder(current) : null;
+                singleQuoted = singleQuote ? new StringBuilder(current) : null;
+                index = i;
+
+            }
+            else if (doubleQuoted != null || singleQuoted != null) {
+
+                toRemoveCount ++;
+
+                if ((current.endsWith("\"") && current.length() > 1 && current.charAt(current.length() - 2) != '\\') ||
+                        (current.endsWith("'") && current.length() > 1 && current.charAt(current.length() - 2) != '\\'))
+                {
+                    //
+                    // end quote (but NOT escaped quote)
+                    //
+
+                    boolean doubleQuote = current.endsWith("\"");
+
+                    current = current.substring(0, current.length() - 1);
+
+                    if (doubleQuote) {
+                        assert doubleQuoted != null;
+                        doubleQuoted.append(" ").append(current);
+                    }
+                    else {
+                        assert singleQuoted != null;
+                        singleQuoted.append(" ").append(current);
+                    }
+
+                    //
+                    // replace in place
+                    //
+
+                    commandLineArguments.set(index, doubleQuote ? doubleQuoted.toString() : singleQuoted.toString());
+
+                    //
+                    // remove components
+                    //
+
+                    for(int j = 0; j < toRemoveCount; j ++) {
+                        commandLineArguments.remove(index + 1);
+                        i--;
+                    }
+
+                    toRemoveCount = 0;
+
+                    if (doubleQuote) {
+                        doubleQuoted = null;
+                    }
+                    else {
+                        singleQuoted = null;
+                    }
+                }
+                else if (doubleQuoted != null) {
+                    doubleQuoted.append(" ").append(current);
+                }
+                else //noinspection ConstantConditions
+                    if (singleQuoted != null) {
+                        singleQuoted.append(" ").append(current);
+                    }
+            }
+        }
+
+        //
+        // at this point the commandLineArguments list may contain escaped quotes - replace them with simple quotes
+        //
+
+        for(int i = from; i < commandLineArguments.size(); i++) {
+
+            String arg = commandLineArguments.get(i);
+            arg = arg.replaceAll("\\\\", "");
+            commandLineArguments.set(i, arg);
+        }
+
+    }
+
+    static Option parseLongLiteralOption(
+            String longLiteralOptionString, List<String> commandLineArguments, int nextArgumentIndex)
+            throws UserErrorException {
+
+        if (longLiteralOptionString == null) {
+            throw new IllegalArgumentException("null argument");
+        }
+
+        String original = longLiteralOptionString;
+
+        if (!longLiteralOptionString.startsWith("--")) {
+
+            throw new IllegalArgumentException("argument does not start with '--': " + original);
+        }
+
+        longLiteralOptionString = longLiteralOptionString.substring(2);
+
+        String optionName, valueAsString;
+
+        int i = longLiteralOptionString.indexOf('=');
+
+        if (i == -1) {
+
+            //
+            // we interpret this as a "true" boolean option
+            //
+            optionName = longLiteralOptionString;
+            valueAsString = "true";
+        }
+        else {
+            optionName = longLiteralOptionString.substring(0, i);
+            valueAsString = longLiteralOptionString.substring(i + 1);
+        }
+
+        List<String> theRestOfTheCommandLineArgs = new ArrayList<>();
+        if (commandLineArguments != null) {
+            for (int k = nextArgumentIndex; k < commandLineArguments.size(); k++) {
+                theRestOfTheCommandLineArgs.add(commandLineArguments.get(k));
+            }
+        }
+        int remainingArgCount = theRestOfTheCommandLineArgs.size();
+
+        Object o = OptionParser.typeHeuristics(valueAsString, theRestOfTheCommandLineArgs);
+
+        if (o instanceof Long) {
+            LongOption option = new LongOption(optionName);
+            option.setValue((Long)o);
+            return option;
+        }
+        else if (o instanceof Double) {
+            DoubleOption option = new DoubleOption(optionName);
+            option.setValue((Double)o);
+            return option;
+        }
+        else if (o instanceof Boolean) {
+            BooleanOption option = new BooleanOption(optionName);
+            option.setValue((Boolean)o);
+            return option;
+        }
+        else if (o instanceof String) {
+
+            if (TimestampOption.isTimestampOptionValue((String)o)) {
+
+                TimestampOption option = new TimestampOption(optionName, (String) o);
+
+                //
+                // timestamp is a special case where heuristics may use the next command line argument (we allow
+                // timestamps to be specified without quotes), so if this is the case, adjust the command line
+                // accordingly
+                //
+                int differenceInArgumentCount = remainingArgCount - theRestOfTheCommandLineArgs.size();
+                if (differenceInArgumentCount > 1) {
+                    throw new RuntimeException(
+                            "not prepared to handle the case when we use more than one trailing arguments for the " +
+                                    "timestamp");
+                }
+                if (commandLineArguments != null && differenceInArgumentCount == 1) {
+                    //
+                    // we used arguments for the timestamp
+                    //
+                    commandLineArguments.remove(nextArgumentIndex);
+                }
+
+                return option;
+            }
+            else {
+
+                StringOption option = new StringOption(optionName);
+                option.setValue((String)o);
+                return option;
+            }
+        }
+        else {
+
+            throw new IllegalArgumentException("options of type " + o + " not supported");
+        }
+    }
+
+    static boolean handledHelpOption(int index, List<String> commandLineArguments, List<Option> options)
+            throws Exception {
+
+        int i = index;
+        for(; i < commandLineArguments.size(); i ++) {
+
+            String current = commandLineArguments.get(i);
+
+            if (("--" + HelpOption.LONG_LITERAL).equals(current) ||
+                    HelpOption.LONG_LITERAL.equals(current) ||
+                    ("-" + HelpOption.SHORT_LITERAL).equals(current))  {
+
+                commandLineArguments.remove(i);
+                options.add(new HelpOption());
+                return true;
+            }
+            else if (current.startsWith("--" + HelpOption.LONG_LITERAL + "=")) {
+                String commandName = current.substring(("--" + HelpOption.LONG_LITERAL + "=").length());
+
+                Command command = InstanceFactory.getCommand(commandName);
+
+                commandLineArguments.remove(i);
+
+                if (command == null) {
+                    throw new UserErrorException("unknown command: '" + commandName + "'");
+                }
+
+                HelpOption option = new HelpOption();
+                option.setCommand(command);
+                options.add(option);
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
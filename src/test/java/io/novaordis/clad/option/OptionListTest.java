@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.clad.option;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+public class OptionListTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void empty() throws Exception {
+
+        OptionList list = new OptionList();
+
+        assertTrue(list.isEmpty());
+        assertNull(list.get(new StringOption('a')));
+        assertNull(list.get((Option)null));
+        assertFalse(list.contains(new StringOption('a')));
+        assertFalse(list.contains("a"));
+    }
+
+    @Test
+    public void get() throws Exception {
+
+        StringOption a = new StringOption('a', "alpha");
+        BooleanOption b = new BooleanOption("beta");
+        StringOption c = new StringOption('é');
+
+        OptionList list = new OptionList(Arrays.<Option>asList(a, b, c));
+
+        assertEquals(3, list.size());
+        assertSame(a, list.get(0));
+
+        assertSame(a, list.get(new StringOption('a')));
+        assertSame(a, list.get(new StringOption("alpha")));
+        assertNull(list.get(new BooleanOption('a')));
+        assertSame(b, list.get(new BooleanOption("beta")));
+        assertNull(list.get(new BooleanOption('b')));
+        assertSame(c, list.get(new StringOption('é')));
+
+        assertTrue(list.contains(new StringOption("alpha")));
+        assertFalse(list.contains(new StringOption("beta")));
+    }
+
+    @Test
+    public void get_FirstInListOrder() throws Exception {
+
+        StringOption first = new StringOption("alpha");
+        StringOption second = new StringOption('a');
+
+        OptionList list = new OptionList(Arrays.<Option>asList(first, second));
+
+        // equal with both, the first in the list wins, whichever literal matched
+        assertSame(first, list.get(new StringOption('a', "alpha")));
+    }
+
+    @Test
+    public void get_AfterModification() throws Exception {
+
+        StringOption a = new StringOption('a');
+        StringOption b = new StringOption('b');
+
+        OptionList list = new OptionList();
+        list.add(a);
+
+        assertSame(a, list.get(new StringOption('a')));
+        assertNull(list.get(new StringOption('b')));
+
+        list.add(0, b);
+        assertSame(b, list.get(new StringOption('b')));
+        assertSame(a, list.get(1));
+
+        list.remove(a);
+        assertNull(list.get(new StringOption('a')));
+        assertSame(b, list.get(new StringOption('b')));
+
+        StringOption c = new StringOption('c');
+        list.set(0, c);
+        assertNull(list.get(new StringOption('b')));
+        assertSame(c, list.get(new StringOption('c')));
+
+        list.clear();
+        assertNull(list.get(new StringOption('c')));
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.clad.option;
+
+import io.novaordis.utilities.UserErrorException;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Parses random command lines with OptionParser and with the list mutating parser it replaced, and compares the
+ * results: the options, the arguments left in the list and the failures.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+public class OptionParserDifferentialTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final long SEED = 20261017L;
+
+    private static final int COMMAND_LINES = 2000;
+
+    // single quotes are left out: the reference parser drops arguments when a quoted section opens inside a quoted
+    // section of the other kind (see OptionParserTest.coalesceQuotedSections_SectionOpensInsideSection)
+    private static final String[] VOCABULARY = {
+
+            "-v", "--verbose", "-b", "-g", "-d", "-t", "-x", "-", "--test=something", "--global2=value", "--count=5",
+            "--count=five", "--from=07/23/16", "--from=07/23/16 14:00:00", "--from=\"07/23/16", "14:00:00\"",
+            "14:00:00", "07/23/16", "--unknown=1", "--flag", "value", "12", "-7", "1.5", "true", "positional",
+            "\"double", "quoted\"", "quoted", "esc\\\"aped", "help", "--help", "-h",
+            "--help=test", "--help=no-such-command",
+    };
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void randomCommandLines() throws Exception {
+
+        Set<Option> required = new HashSet<>(Arrays.asList(new StringOption('g'), new LongOption("count")));
+
+        Set<Option> optional = new HashSet<>(Arrays.asList(
+                new BooleanOption('b'),
+                new DoubleOption('d'),
+                new StringOption('t', "test"),
+                new StringOption("global2"),
+                new TimestampOption("from"),
+                new BooleanOption("flag"),
+                new VerboseOption()));
+
+        OptionSchema schema = OptionSchema.compile(required, optional);
+
+        Random random = new Random(SEED);
+
+        int compared = 0;
+
+        for(int i = 0; i < COMMAND_LINES; i ++) {
+
+            List<String> commandLine = new ArrayList<>();
+
+            for(int j = random.nextInt(12); j > 0; j --) {
+                commandLine.add(VOCABULARY[random.nextInt(VOCABULARY.length)]);
+            }
+
+            int from = commandLine.isEmpty() ? 0 : random.nextInt(2);
+
+            if (compare(from, commandLine, schema)) {
+                compared ++;
+            }
+        }
+
+        // most command lines are well formed
+        assertTrue(compared > COMMAND_LINES / 2);
+    }
+
+    @Test
+    public void longCommandLine() throws Exception {
+
+        Set<Option> optional = new HashSet<>(Arrays.asList(
+                new StringOption('g'), new LongOption("count"), new TimestampOption("from")));
+
+        OptionSchema schema = OptionSchema.compile(new HashSet<Option>(), optional);
+
+        List<String> commandLine = new ArrayList<>();
+
+        for(int i = 0; i < 500; i ++) {
+
+            commandLine.add("--count=" + i);
+            commandLine.add("--unknown-" + i + "=something");
+            commandLine.add("-g");
+            commandLine.add("value-" + i);
+            commandLine.add("--from=07/23/16");
+            commandLine.add("14:00:00");
+            commandLine.add("\"quoted");
+            commandLine.add("section\"");
+            commandLine.add("positional-" + i);
+        }
+
+        assertTrue(compare(0, commandLine, schema));
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return false if the arguments left in the list could not be compared.
+     */
+    private static boolean compare(int from, List<String> commandLine, OptionSchema schema) throws Exception {
+
+        List<String> expectedArguments = new ArrayList<>(commandLine);
+        List<Option> expectedOptions = null;
+        Exception expectedFailure = null;
+
+        try {
+
+            expectedOptions = ListMutatingOptionParser.parse(from, expectedArguments, schema);
+        }
+        catch(Exception e) {
+
+            expectedFailure = e;
+        }
+
+        List<String> arguments = new ArrayList<>(commandLine);
+        List<Option> options = null;
+        Exception failure = null;
+
+        try {
+
+            options = OptionParser.parse(from, arguments, schema);
+        }
+        catch(Exception e) {
+
+            failure = e;
+        }
+
+        String message = "command line " + commandLine + ", from " + from;
+
+        if (expectedFailure != null) {
+
+            assertEquals(message, describe(expectedFailure), describe(failure));
+
+            if (expectedFailure instanceof UserErrorException &&
+                    expectedFailure.getMessage().startsWith("unbalanced")) {
+
+                // the reference parser leaves partially coalesced arguments behind
+                return false;
+            }
+        }
+        else {
+
+            assertEquals(message, null, describe(failure));
+            assertEquals(message, describe(expectedOptions), describe(options));
+        }
+
+        assertEquals(message, expectedArguments, arguments);
+
+        return true;
+    }
+
+    private static String describe(Exception e) {
+
+        return e == null ? null : e.getClass().getName() + ": " + e.getMessage();
+    }
+
+    private static List<String> describe(List<Option> options) {
+
+        List<String> result = new ArrayList<>();
+
+        for(Option o: options) {
+
+            String s = o.getClass().getSimpleName() + " " + o.getShortLiteral() + " " + o.getLongLiteral() + " " +
+                    o.getValue();
+
+            if (o instanceof HelpOption) {
+
+                HelpOption h = (HelpOption)o;
+                s += " " + (h.getCommand() == null ? null : h.getCommand().getClass().getName());
+            }
+
+            result.add(s);
+        }
+
+        return result;
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -474,6 +474,102 @@ public class OptionParserTest {
         assertEquals(new VerboseOption(), options.iterator().next());
     }
 
+    @Test
+    public void parse_ArgumentAfterBooleanShortOptionIsNotParsed() throws Exception {
+
+        List<String> args = tokenizeCommandLine("-b --verbose positional");
+
+        List<Option> options = OptionParser.parse(0, args, Collections.emptySet(),
+                new HashSet<>(Arrays.asList(new BooleanOption('b'), new VerboseOption())));
+
+        assertEquals(1, options.size());
+        assertEquals(new BooleanOption('b'), options.get(0));
+        assertEquals(Arrays.asList("--verbose", "positional"), args);
+    }
+
+    @Test
+    public void parse_HelpOptionIsHandledBeforeTheArgumentAtTheCurrentPosition() throws Exception {
+
+        List<String> args = tokenizeCommandLine("--count=1 positional --help --count=2");
+
+        List<Option> options = OptionParser.parse(0, args, Collections.emptySet(),
+                new HashSet<>(Collections.singletonList(new LongOption("count"))));
+
+        //
+        // the help option is found while the parser is at the first argument, which is not parsed
+        //
+
+        assertEquals(2, options.size());
+        assertTrue(options.get(0) instanceof HelpOption);
+        assertEquals(2L, options.get(1).getValue());
+        assertEquals(Arrays.asList("--count=1", "positional"), args);
+    }
+
+    @Test
+    public void parse_HelpOption_UnknownCommand_ArgumentListUpdated() throws Exception {
+
+        List<String> args = tokenizeCommandLine("-g a --help=no-such-command");
+
+        try {
+
+            OptionParser.parse(0, args, Collections.emptySet(), Collections.emptySet());
+            fail("should throw exception");
+        }
+        catch(UserErrorException e) {
+
+            assertEquals("unknown command: 'no-such-command'", e.getMessage());
+        }
+
+        assertEquals(Arrays.asList("-g", "a"), args);
+    }
+
+    @Test
+    public void parse_From() throws Exception {
+
+        List<String> args = tokenizeCommandLine("-g a -g b --from=07/23/16 14:00:00 c");
+
+        List<Option> options = OptionParser.parse(2, args, Collections.emptySet(),
+                new HashSet<>(Arrays.asList(new StringOption('g'), new TimestampOption("from"))));
+
+        assertEquals(2, options.size());
+        assertEquals("b", options.get(0).getValue());
+        assertEquals("07/23/16 14:00:00", ((TimestampOption)options.get(1)).getString());
+        assertEquals(Arrays.asList("-g", "a", "c"), args);
+    }
+
+    @Test
+    public void parse_LongCommandLine() throws Exception {
+
+        List<String> args = new ArrayList<>();
+
+        for(int i = 0; i < 5000; i ++) {
+
+            args.add("--count=" + i);
+            args.add("-g");
+            args.add("value-" + i);
+            args.add("--from=07/23/16");
+            args.add("14:00:00");
+            args.add("\"file");
+            args.add(i + "\"");
+            args.add("--unknown=" + i);
+        }
+
+        Set<Option> optional = new HashSet<>(Arrays.asList(
+                new StringOption('g'), new LongOption("count"), new TimestampOption("from")));
+
+        List<Option> options = OptionParser.parse(0, args, Collections.emptySet(), optional);
+
+        assertEquals(15000, options.size());
+        assertEquals(4999L, options.get(14997).getValue());
+        assertEquals("value-4999", options.get(14998).getValue());
+
+        assertEquals(10000, args.size());
+        assertEquals("file 0", args.get(0));
+        assertEquals("--unknown=0", args.get(1));
+        assertEquals("file 4999", args.get(9998));
+        assertEquals("--unknown=4999", args.get(9999));
+    }
+
     // coalesceQuotedSections ------------------------------------------------------------------------------------------
 
     @Test
@@ -685,6 +781,30 @@ public class OptionParserTest {
         assertEquals("--from=a b", args.get(0));
     }
 
+    @Test
+    public void coalesceQuotedSections_SectionOpensInsideSection() throws Exception {
+
+        List<String> args = new ArrayList<>(Arrays.asList("\"a", "b", "'c", "d'", "e"));
+
+        OptionParser.coalesceQuotedSections(0, args);
+
+        //
+        // the double quoted section is never closed, the single quoted one is
+        //
+
+        assertEquals(Arrays.asList("\"a", "b", "c d", "e"), args);
+    }
+
+    @Test
+    public void coalesceQuotedSections_From() throws Exception {
+
+        List<String> args = new ArrayList<>(Arrays.asList("\"a", "b\"", "\"c", "d\"", "x\\y"));
+
+        OptionParser.coalesceQuotedSections(2, args);
+
+        assertEquals(Arrays.asList("\"a", "b\"", "c d", "xy"), args);
+    }
+
     // typeHeuristics() ------------------------------------------------------------------------------------------------
 
     @Test
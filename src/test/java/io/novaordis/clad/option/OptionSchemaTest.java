@@ -0,0 +1,330 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.clad.option;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+public class OptionSchemaTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // compile() -------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void compile_NullSets() throws Exception {
+
+        try {
+            OptionSchema.compile(null, Collections.<Option>emptySet());
+            fail("should throw exception");
+        }
+        catch(IllegalArgumentException e) {
+            // ok
+        }
+
+        try {
+            OptionSchema.compile(Collections.<Option>emptySet(), null);
+            fail("should throw exception");
+        }
+        catch(IllegalArgumentException e) {
+            // ok
+        }
+    }
+
+    @Test
+    public void empty() throws Exception {
+
+        assertFalse(OptionSchema.EMPTY.isDeclared(new StringOption('a')));
+        assertFalse(OptionSchema.EMPTY.isDeclared(new StringOption("a")));
+        assertFalse(OptionSchema.EMPTY.isDeclared(null));
+        assertTrue(OptionSchema.EMPTY.getRequired().isEmpty());
+        assertTrue(OptionSchema.EMPTY.getOptional().isEmpty());
+    }
+
+    // lookup ----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void lookup() throws Exception {
+
+        Set<Option> required = Collections.<Option>singleton(new StringOption('o', "output"));
+        Set<Option> optional = new HashSet<>(Arrays.asList(new BooleanOption('b'), new LongOption("count")));
+
+        OptionSchema schema = OptionSchema.compile(required, optional);
+
+        assertTrue(schema.isRequired(new StringOption('o')));
+        assertTrue(schema.isRequired(new StringOption("output")));
+        assertFalse(schema.isOptional(new StringOption('o')));
+        assertFalse(schema.isRequired(new BooleanOption('o')));
+
+        assertTrue(schema.isOptional(new BooleanOption('b')));
+        assertFalse(schema.isOptional(new BooleanOption("b")));
+        assertTrue(schema.isOptional(new LongOption("count")));
+        assertFalse(schema.isOptional(new StringOption("count")));
+        assertFalse(schema.isRequired(new LongOption("count")));
+
+        assertFalse(schema.isDeclared(new StringOption('x')));
+        assertFalse(schema.isDeclared(new StringOption("outpu")));
+    }
+
+    /**
+     * A HashSet does not find a declaration with both literals given an option that only carries one of them, because
+     * the hash codes differ. The schema does.
+     */
+    @Test
+    public void lookup_DeclarationWithBothLiterals_HashSet() throws Exception {
+
+        Set<Option> optional = new HashSet<>(Collections.<Option>singletonList(new StringOption('t', "test")));
+
+        OptionSchema schema = OptionSchema.compile(Collections.<Option>emptySet(), optional);
+
+        assertTrue(schema.isOptional(new StringOption('t')));
+        assertTrue(schema.isOptional(new StringOption("test")));
+    }
+
+    @Test
+    public void lookup_NonAsciiShortLiteral() throws Exception {
+
+        Set<Option> optional = Collections.<Option>singleton(new StringOption('é'));
+
+        OptionSchema schema = OptionSchema.compile(Collections.<Option>emptySet(), optional);
+
+        assertTrue(schema.isOptional(new StringOption('é')));
+        assertFalse(schema.isOptional(new StringOption('e')));
+    }
+
+    @Test
+    public void lookup_SameLiteralDifferentTypes() throws Exception {
+
+        Set<Option> optional = new LinkedHashSet<>(Arrays.asList(new StringOption('x'), new BooleanOption('x')));
+
+        OptionSchema schema = OptionSchema.compile(Collections.<Option>emptySet(), optional);
+
+        assertTrue(schema.isOptional(new StringOption('x')));
+        assertTrue(schema.isOptional(new BooleanOption('x')));
+        assertFalse(schema.isOptional(new LongOption('x')));
+    }
+
+    @Test
+    public void lookup_Equivalents() throws Exception {
+
+        StringOption format = new StringOption("format");
+        StringOption formatFile = new StringOption("format-file");
+        format.addEquivalentOption(formatFile);
+
+        OptionSchema schema = OptionSchema.compile(
+                Collections.<Option>singleton(format), Collections.<Option>emptySet());
+
+        assertTrue(schema.isRequired(new StringOption("format")));
+        assertTrue(schema.isRequired(new StringOption("format-file")));
+        assertFalse(schema.isOptional(new StringOption("format-file")));
+
+        //
+        // the schema is consistent with the parser's set based predicates
+        //
+
+        assertTrue(OptionParser.isRequiredOption(new StringOption("format-file"), schema.getRequired()));
+    }
+
+    // copyLiterals() --------------------------------------------------------------------------------------------------
+
+    @Test
+    public void copyLiterals() throws Exception {
+
+        OptionSchema schema = OptionSchema.compile(
+                Collections.<Option>singleton(new StringOption('o', "output")), Collections.<Option>emptySet());
+
+        Option o = new StringOption('o');
+        schema.copyLiterals(o);
+        assertEquals('o', o.getShortLiteral().charValue());
+        assertEquals("output", o.getLongLiteral());
+
+        Option o2 = new StringOption("output");
+        schema.copyLiterals(o2);
+        assertEquals('o', o2.getShortLiteral().charValue());
+        assertEquals("output", o2.getLongLiteral());
+    }
+
+    @Test
+    public void copyLiterals_OptionalWins() throws Exception {
+
+        OptionSchema schema = OptionSchema.compile(
+                Collections.<Option>singleton(new StringOption('o', "output")),
+                Collections.<Option>singleton(new StringOption('o', "out")));
+
+        Option o = new StringOption('o');
+        schema.copyLiterals(o);
+        assertEquals("out", o.getLongLiteral());
+    }
+
+    @Test
+    public void copyLiterals_EquivalentIsLeftAlone() throws Exception {
+
+        StringOption format = new StringOption('f', "format");
+        format.addEquivalentOption(new StringOption("format-file"));
+
+        OptionSchema schema = OptionSchema.compile(
+                Collections.<Option>emptySet(), Collections.<Option>singleton(format));
+
+        Option o = new StringOption("format-file");
+        schema.copyLiterals(o);
+        assertEquals(null, o.getShortLiteral());
+        assertEquals("format-file", o.getLongLiteral());
+    }
+
+    @Test
+    public void copyLiterals_Undeclared() throws Exception {
+
+        Option o = new StringOption('o');
+        OptionSchema.EMPTY.copyLiterals(o);
+        assertEquals(null, o.getLongLiteral());
+    }
+
+    // forOwner() ------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void forOwner() throws Exception {
+
+        Set<Option> required = Collections.emptySet();
+        Set<Option> optional = Collections.<Option>singleton(new StringOption('a'));
+
+        OptionSchema s = OptionSchema.forOwner(ConstantOwner.class, required, optional);
+
+        assertTrue(s.isOptional(new StringOption('a')));
+
+        //
+        // the declarations are not looked at again
+        //
+
+        OptionSchema s2 = OptionSchema.forOwner(ConstantOwner.class, required,
+                Collections.<Option>singleton(new StringOption('b')));
+
+        assertSame(s, s2);
+    }
+
+    @Test
+    public void forOwner_Revalidate() throws Exception {
+
+        Set<Option> required = Collections.emptySet();
+        Set<Option> optional = Collections.<Option>singleton(new StringOption('a'));
+
+        OptionSchema s = OptionSchema.forOwner(Owner.class, required, optional, true);
+        OptionSchema s2 = OptionSchema.forOwner(Owner.class, required,
+                Collections.<Option>singleton(new StringOption('a')), true);
+
+        assertSame(s, s2);
+
+        //
+        // the owner now declares something else
+        //
+
+        OptionSchema s3 = OptionSchema.forOwner(Owner.class, required,
+                Collections.<Option>singleton(new StringOption('b')), true);
+
+        assertNotSame(s, s3);
+        assertTrue(s3.isOptional(new StringOption('b')));
+        assertFalse(s3.isOptional(new StringOption('a')));
+
+        //
+        // same literal, different type
+        //
+
+        OptionSchema s4 = OptionSchema.forOwner(Owner.class, required,
+                Collections.<Option>singleton(new BooleanOption('b')), true);
+
+        assertNotSame(s3, s4);
+        assertTrue(s4.isOptional(new BooleanOption('b')));
+        assertFalse(s4.isOptional(new StringOption('b')));
+    }
+
+    @Test
+    public void getRequiredAndOptional_Unmodifiable() throws Exception {
+
+        OptionSchema schema = OptionSchema.compile(
+                new HashSet<>(Collections.<Option>singleton(new StringOption('o'))), Collections.<Option>emptySet());
+
+        try {
+            schema.getRequired().clear();
+            fail("should throw exception");
+        }
+        catch(UnsupportedOperationException e) {
+            // ok
+        }
+
+        assertEquals(1, schema.getRequired().size());
+    }
+
+    // OptionParser.parse() with a schema ------------------------------------------------------------------------------
+
+    @Test
+    public void parse() throws Exception {
+
+        Set<Option> optional = new HashSet<>(Collections.<Option>singletonList(new StringOption('t', "test")));
+        OptionSchema schema = OptionSchema.compile(Collections.<Option>emptySet(), optional);
+
+        List<String> args = new ArrayList<>(Arrays.asList("-t", "something", "positional"));
+
+        OptionList options = OptionParser.parse(0, args, schema);
+
+        assertEquals(1, options.size());
+        Option o = options.get(new StringOption("test"));
+        assertEquals("something", o.getValue());
+        assertEquals('t', o.getShortLiteral().charValue());
+        assertEquals("test", o.getLongLiteral());
+        assertEquals(Collections.singletonList("positional"), args);
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+    private static class Owner {
+    }
+
+    private static class ConstantOwner {
+    }
+}
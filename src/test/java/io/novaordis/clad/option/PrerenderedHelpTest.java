@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.clad.option;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+public class PrerenderedHelpTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @After
+    public void tearDown() {
+
+        PrerenderedHelp.clearCache();
+    }
+
+    @Test
+    public void toResourceName() throws Exception {
+
+        assertEquals("META-INF/clad/help/a/b/c.txt", PrerenderedHelp.toResourceName("a/b/c.txt"));
+    }
+
+    @Test
+    public void render() throws Exception {
+
+        MockMacroResolver r = new MockMacroResolver();
+        r.addMacro("COMMANDS", "  a\n  b\n");
+
+        byte[] content = PrerenderedHelp.render(
+                "usage\n\n@COMMANDS@@OTHER@".getBytes(StandardCharsets.UTF_8), r, "abc");
+
+        assertEquals("fingerprint abc\nusage\n\n  a\n  b\n@OTHER@\n", new String(content, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void load() throws Exception {
+
+        PrerenderedHelp h = PrerenderedHelp.load("data/prerendered.txt");
+
+        assertNotNull(h);
+        assertEquals("abc", h.getFingerprint());
+        assertSame(h, PrerenderedHelp.load("data/prerendered.txt"));
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        h.write(baos);
+
+        // the content is written as it is, macros included
+        assertEquals("rendered @COMMANDS@\n", new String(baos.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void load_NotPrerendered() throws Exception {
+
+        assertNull(PrerenderedHelp.load("data/help.txt"));
+        assertNull(PrerenderedHelp.load("data/help.txt"));
+    }
+
+    @Test
+    public void load_NoFingerprint() throws Exception {
+
+        assertNull(PrerenderedHelp.load("data/invalid.txt"));
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -21,7 +21,19 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -69,7 +81,7 @@ public class TimestampOptionTest extends OptionTest {
     @Test
     public void constructor_FullValue() throws Exception {
 
-        String timestamp = TimestampOption.DEFAULT_FULL_FORMAT.format(new Date());
+        String timestamp = TimestampOption.DEFAULT_FULL_FORMATTER.format(LocalDateTime.now().withNano(0));
         TimestampOption to = new TimestampOption("test", timestamp);
         assertEquals(timestamp, to.getValue());
         assertFalse(to.isRelative());
@@ -183,7 +195,8 @@ public class TimestampOptionTest extends OptionTest {
 
         TimestampOption to = new TimestampOption("test", null);
 
-        assertEquals(TimestampOption.DEFAULT_FULL_FORMAT, to.getFullFormat());
+        assertEquals(TimestampOption.DEFAULT_FULL_FORMATTER, to.getFullFormatter());
+        assertEquals(TimestampOption.DEFAULT_FORMAT_AS_STRING, ((SimpleDateFormat)to.getFullFormat()).toPattern());
         assertNotNull(to.getRelativeFormat());
     }
 
@@ -226,6 +239,345 @@ public class TimestampOptionTest extends OptionTest {
         assertFalse(b);
     }
 
+    // getEpochMillis() ------------------------------------------------------------------------------------------------
+
+    @Test
+    public void getEpochMillis_Full() throws Exception {
+
+        TimestampOption o = new TimestampOption("test", "07/03/16 04:05:06");
+        o.setZone(ZoneOffset.UTC);
+
+        assertEquals(LocalDateTime.of(2016, 7, 3, 4, 5, 6).toInstant(ZoneOffset.UTC).toEpochMilli(),
+                o.getEpochMillis());
+    }
+
+    @Test
+    public void getEpochMillis_Full_Lenient() throws Exception {
+
+        TimestampOption o = new TimestampOption("test", "13/45/16 25:61:61");
+        o.setZone(ZoneOffset.UTC);
+
+        assertEquals(LocalDateTime.of(2017, 2, 15, 2, 2, 1).toInstant(ZoneOffset.UTC).toEpochMilli(),
+                o.getEpochMillis());
+
+        // a four digit year is taken literally
+        o.setValue("07/03/1916 04:05:06");
+        assertEquals(LocalDateTime.of(1916, 7, 3, 4, 5, 6).toInstant(ZoneOffset.UTC).toEpochMilli(),
+                o.getEpochMillis());
+    }
+
+    @Test
+    public void getEpochMillis_Full_TwoDigitYear() throws Exception {
+
+        //
+        // the century is picked for the whole date, the way SimpleDateFormat picks it, so the first days of
+        // TWO_DIGIT_YEAR_BASE belong to the next century
+        //
+
+        LocalDateTime start = TimestampOption.TWO_DIGIT_YEAR_START;
+        int base = TimestampOption.TWO_DIGIT_YEAR_BASE;
+
+        LocalDateTime[] dates = {
+                LocalDateTime.of(base, 1, 1, 0, 0, 0),
+                start.minusDays(1),
+                start.plusDays(1),
+                LocalDateTime.of(base, 12, 31, 23, 59, 59),
+                LocalDateTime.of(base + 99, 1, 1, 0, 0, 0),
+        };
+
+        SimpleDateFormat reference = new SimpleDateFormat("MM/dd/yy HH:mm:ss");
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("MM/dd/yy HH:mm:ss");
+
+        TimestampOption o = new TimestampOption("test", null);
+
+        for(LocalDateTime d: dates) {
+
+            String s = d.format(formatter);
+            o.setValue(s);
+            assertEquals(s, reference.parse(s).getTime(), o.getEpochMillis());
+        }
+
+        o.setValue(LocalDateTime.of(base, 1, 1, 0, 0, 0).format(formatter));
+        LocalDateTime expected = LocalDateTime.of(start.getDayOfYear() == 1 ? base : base + 100, 1, 1, 0, 0, 0);
+        assertEquals(expected.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli(), o.getEpochMillis());
+
+        LocalDateTime lastOfBase = LocalDateTime.of(base, 12, 31, 23, 59, 59);
+        o.setValue(lastOfBase.format(formatter));
+        assertEquals(lastOfBase.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli(), o.getEpochMillis());
+    }
+
+    @Test
+    public void getEpochMillis_Full_DefaultZone() throws Exception {
+
+        TimestampOption o = new TimestampOption("test", "07/03/16 04:05:06");
+
+        assertEquals(ZoneId.systemDefault(), o.getZone());
+        assertEquals(LocalDateTime.of(2016, 7, 3, 4, 5, 6).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli(),
+                o.getEpochMillis());
+    }
+
+    @Test
+    public void getEpochMillis_Relative() throws Exception {
+
+        TimestampOption o = new TimestampOption("test", "04:05:06");
+        o.setZone(ZoneOffset.UTC);
+        o.setReferenceDay(LocalDate.of(2016, 7, 3));
+
+        assertEquals(LocalDate.of(2016, 7, 3), o.getReferenceDay());
+        assertEquals(LocalDateTime.of(2016, 7, 3, 4, 5, 6).toInstant(ZoneOffset.UTC).toEpochMilli(),
+                o.getEpochMillis());
+    }
+
+    @Test
+    public void getEpochMillis_Relative_Today() throws Exception {
+
+        TimestampOption o = new TimestampOption("test", "04:05:06");
+        o.setZone(ZoneOffset.UTC);
+
+        assertNull(o.getReferenceDay());
+
+        LocalDate before = LocalDate.now(ZoneOffset.UTC);
+        long epochMillis = o.getEpochMillis();
+        o.setReferenceDay(null);
+        LocalDate after = LocalDate.now(ZoneOffset.UTC);
+
+        assertTrue(epochMillis == before.atTime(4, 5, 6).toInstant(ZoneOffset.UTC).toEpochMilli() ||
+                epochMillis == after.atTime(4, 5, 6).toInstant(ZoneOffset.UTC).toEpochMilli());
+    }
+
+    @Test
+    public void getEpochMillis_Relative_RollsOverIntoTheNextDays() throws Exception {
+
+        TimestampOption o = new TimestampOption("test", "49:00:00");
+        o.setZone(ZoneOffset.UTC);
+        o.setReferenceDay(LocalDate.of(2016, 7, 3));
+
+        assertTrue(o.isRelative());
+        assertEquals(LocalDateTime.of(2016, 7, 5, 1, 0, 0).toInstant(ZoneOffset.UTC).toEpochMilli(),
+                o.getEpochMillis());
+    }
+
+    @Test
+    public void getEpochMillis_ZoneChange() throws Exception {
+
+        TimestampOption o = new TimestampOption("test", "07/03/16 04:05:06");
+        o.setZone(ZoneOffset.UTC);
+        long utc = o.getEpochMillis();
+
+        o.setZone(ZoneOffset.ofHours(2));
+        assertEquals(ZoneOffset.ofHours(2), o.getZone());
+        assertEquals(utc - 2 * 3600 * 1000L, o.getEpochMillis());
+    }
+
+    @Test
+    public void getEpochMillis_NoValue() throws Exception {
+
+        TimestampOption o = new TimestampOption("test");
+
+        try {
+
+            o.getEpochMillis();
+            fail("should have thrown Exception");
+        }
+        catch(IllegalStateException e) {
+
+            log.info(e.getMessage());
+        }
+    }
+
+    @Test
+    public void setValue_DoesNotResolve() throws Exception {
+
+        TimestampOption o = new TimestampOption("test");
+
+        // no SimpleDateFormat fallback for custom formatters
+        o.setFormatters(TimestampOption.toFormatter("MM/dd/yyyy HH:mm:ss"), null);
+        o.setValue("07/03/2016 04:05:06");
+        long epochMillis = o.getEpochMillis();
+
+        try {
+
+            o.setValue("13/1/999999999 00:00:00");
+            fail("should have thrown Exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            assertTrue(e.getMessage().contains("does not match neither format (full or relative)"));
+        }
+
+        // the previous value is preserved
+        assertEquals("07/03/2016 04:05:06", o.getValue());
+        assertEquals(epochMillis, o.getEpochMillis());
+    }
+
+    @Test
+    public void setValue_TheFormatMatchesTheBeginningOfTheValue() throws Exception {
+
+        TimestampOption o = new TimestampOption("test");
+        o.setZone(ZoneOffset.UTC);
+        o.setReferenceDay(LocalDate.of(2016, 7, 3));
+
+        o.setValue("07/03/16 04:05:06 and then some");
+
+        assertFalse(o.isRelative());
+        assertEquals(LocalDateTime.of(2016, 7, 3, 4, 5, 6).toInstant(ZoneOffset.UTC).toEpochMilli(),
+                o.getEpochMillis());
+
+        o.setValue("12:00:00.123");
+
+        assertTrue(o.isRelative());
+        assertEquals(LocalDate.of(2016, 7, 3).atTime(12, 0).toInstant(ZoneOffset.UTC).toEpochMilli(),
+                o.getEpochMillis());
+    }
+
+    @Test
+    public void setValue_SimpleDateFormatLeniency() throws Exception {
+
+        TimestampOption o = new TimestampOption("test");
+        o.setZone(ZoneOffset.UTC);
+        o.setReferenceDay(LocalDate.of(2016, 7, 3));
+
+        // spaces before the fields
+        o.setValue(" 07/ 03/16  04:05:06");
+
+        assertFalse(o.isRelative());
+        assertEquals(LocalDateTime.of(2016, 7, 3, 4, 5, 6).toInstant(ZoneOffset.UTC).toEpochMilli(),
+                o.getEpochMillis());
+
+        // signs
+        o.setValue("07/03/16 04:05:-6");
+
+        assertEquals(LocalDateTime.of(2016, 7, 3, 4, 4, 54).toInstant(ZoneOffset.UTC).toEpochMilli(),
+                o.getEpochMillis());
+
+        // relative
+        o.setValue(" 12:00:00");
+
+        assertTrue(o.isRelative());
+        assertEquals(LocalDate.of(2016, 7, 3).atTime(12, 0).toInstant(ZoneOffset.UTC).toEpochMilli(),
+                o.getEpochMillis());
+    }
+
+    // setFormatters() -------------------------------------------------------------------------------------------------
+
+    @Test
+    public void setFormatters() throws Exception {
+
+        TimestampOption o = new TimestampOption("test");
+
+        DateTimeFormatter full = TimestampOption.toFormatter("yyyy-MM-dd HH:mm:ss");
+        o.setFormatters(full, null);
+
+        assertEquals(full, o.getFullFormatter());
+        assertNull(o.getRelativeFormatter());
+
+        o.setZone(ZoneOffset.UTC);
+        o.setValue("2016-07-03 04:05:06");
+
+        assertFalse(o.isRelative());
+        assertEquals(LocalDateTime.of(2016, 7, 3, 4, 5, 6).toInstant(ZoneOffset.UTC).toEpochMilli(),
+                o.getEpochMillis());
+
+        try {
+
+            o.setValue("04:05:06");
+            fail("should have thrown Exception, the option does not accept relative values");
+        }
+        catch(IllegalArgumentException e) {
+
+            log.info(e.getMessage());
+        }
+    }
+
+    @Test
+    public void setFormatters_DateOnly() throws Exception {
+
+        TimestampOption o = new TimestampOption("test");
+        o.setFormatters(TimestampOption.toFormatter("yyyy-MM-dd"), null);
+        o.setZone(ZoneOffset.UTC);
+        o.setValue("2016-07-03");
+
+        assertEquals(LocalDate.of(2016, 7, 3).atStartOfDay().toInstant(ZoneOffset.UTC).toEpochMilli(),
+                o.getEpochMillis());
+    }
+
+    @Test
+    public void setFormatters_TheValueCarriesItsZone() throws Exception {
+
+        TimestampOption o = new TimestampOption("test");
+        o.setFormatters(TimestampOption.toFormatter("yyyy-MM-dd HH:mm:ss XXX"), null);
+        o.setZone(ZoneOffset.UTC);
+        o.setValue("2016-07-03 04:05:06 +02:00");
+
+        assertEquals(LocalDateTime.of(2016, 7, 3, 2, 5, 6).toInstant(ZoneOffset.UTC).toEpochMilli(),
+                o.getEpochMillis());
+
+        // the value's zone takes precedence
+        o.setZone(ZoneOffset.ofHours(-5));
+        assertEquals(LocalDateTime.of(2016, 7, 3, 2, 5, 6).toInstant(ZoneOffset.UTC).toEpochMilli(),
+                o.getEpochMillis());
+    }
+
+    @Test
+    public void setFormatters_TheCurrentValueDoesNotMatch() throws Exception {
+
+        TimestampOption o = new TimestampOption("test", "07/03/16 04:05:06");
+
+        try {
+
+            o.setFormatters(TimestampOption.toFormatter("yyyy-MM-dd"), null);
+            fail("should have thrown Exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            log.info(e.getMessage());
+        }
+
+        assertEquals(TimestampOption.DEFAULT_FULL_FORMATTER, o.getFullFormatter());
+        assertEquals(TimestampOption.DEFAULT_RELATIVE_FORMATTER, o.getRelativeFormatter());
+        assertEquals("07/03/16 04:05:06", o.getValue());
+    }
+
+    @Test
+    public void setFormatters_Null() throws Exception {
+
+        try {
+
+            new TimestampOption("test").setFormatters(null, TimestampOption.DEFAULT_RELATIVE_FORMATTER);
+            fail("should have thrown Exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            log.info(e.getMessage());
+        }
+    }
+
+    // concurrency -----------------------------------------------------------------------------------------------------
+
+    @Test
+    public void concurrentParsing() throws Exception {
+
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        try {
+
+            List<Future<Integer>> results = new ArrayList<>();
+
+            for(int i = 0; i < threads; i ++) {
+                results.add(executor.submit(new Parser(i, 2000)));
+            }
+
+            for(Future<Integer> f: results) {
+                assertEquals(0, f.get().intValue());
+            }
+        }
+        finally {
+
+            executor.shutdownNow();
+        }
+    }
+
     // Package protected -----------------------------------------------------------------------------------------------
 
     // Protected -------------------------------------------------------------------------------------------------------
@@ -247,4 +599,40 @@ public class TimestampOptionTest extends OptionTest {
 
     // Inner classes ---------------------------------------------------------------------------------------------------
 
+    /**
+     * Parses distinct values and counts the ones that do not resolve to the expected point in time.
+     */
+    private static class Parser implements Callable<Integer> {
+
+        private int seed;
+        private int count;
+
+        Parser(int seed, int count) {
+
+            this.seed = seed;
+            this.count = count;
+        }
+
+        @Override
+        public Integer call() throws Exception {
+
+            int errors = 0;
+
+            for(int i = 0; i < count; i ++) {
+
+                LocalDateTime expected = LocalDateTime.of(2000 + seed, 1 + i % 12, 1 + i % 28, i % 24, i % 60, seed);
+
+                TimestampOption o = new TimestampOption("test");
+                o.setZone(ZoneOffset.UTC);
+                o.setValue(expected.format(DateTimeFormatter.ofPattern(TimestampOption.DEFAULT_FORMAT_AS_STRING)));
+
+                if (o.getEpochMillis() != expected.toInstant(ZoneOffset.UTC).toEpochMilli()) {
+                    errors ++;
+                }
+            }
+
+            return errors;
+        }
+    }
+
 }
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.clad.option;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.List;
+
+/**
+ * OptionParser.typeHeuristics() as it was before ValueClassifier: it classifies a value by attempting to parse it as
+ * a timestamp, a long and a double, in this order. Kept as the reference the current implementation is compared with
+ * (see ValueClassifierDifferentialTest).
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+class TrialAndErrorTypeHeuristics {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    static Object typeHeuristics(String value, List<String> nextCommandLineSections) {
+
+        if (value == null) {
+            return null;
+        }
+
+        if (isTimestampOptionValue(value)) {
+            return value;
+        }
+
+        if (nextCommandLineSections != null && nextCommandLineSections.size() > 0) {
+
+            String timestampCandidateValue = value + " " + nextCommandLineSections.get(0);
+            if (isTimestampOptionValue(timestampCandidateValue)) {
+
+                nextCommandLineSections.remove(0);
+                return timestampCandidateValue;
+            }
+        }
+
+        try {
+
+            return Long.parseLong(value);
+        }
+        catch (Exception e) {
+
+            // ignore, keep trying
+        }
+
+        try {
+
+            return Double.parseDouble(value);
+        }
+        catch (Exception e) {
+
+            // ignore, keep trying
+        }
+
+        String lc = value.toLowerCase();
+
+        if ("true".equals(lc)) {
+
+            return Boolean.TRUE;
+        }
+
+        if ("false".equals(lc)) {
+
+            return Boolean.FALSE;
+        }
+
+        return value;
+    }
+
+    static boolean isTimestampOptionValue(String value) {
+
+        String full = TimestampOption.DEFAULT_FORMAT_AS_STRING;
+        String relative = full.substring(full.indexOf(' ') + 1);
+
+        return parses(full, value) || parses(relative, value);
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private static boolean parses(String format, String value) {
+
+        try {
+
+            new SimpleDateFormat(format).parse(value);
+            return true;
+        }
+        catch(ParseException e) {
+
+            return false;
+        }
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
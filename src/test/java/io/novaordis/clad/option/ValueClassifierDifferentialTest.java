@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.clad.option;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Classifies random values with OptionParser.typeHeuristics() and with the trial and error implementation it replaced,
+ * and compares the results.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+public class ValueClassifierDifferentialTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final long SEED = 20261017L;
+
+    private static final int VALUES = 20000;
+
+    // the characters that matter to the timestamp, numeric and boolean grammars, and a few that do not
+    private static final String ALPHABET =
+            "0123456789012345678901234567890123456789///:::::     \t-+.eEfFdDxXpNaNInfinityTRUEtrueFALSEfalse" +
+                    "١٢１∞ ſ_#,z";
+
+    private static final String[] TEMPLATES = {
+
+            "07/23/16 14:00:00", "14:00:00", "07/23/16", "1/2/3 4:5:6", "12", "-7", "+7", "1.5", "-1.5e10", ".5",
+            "1.", "1e5", "1f", "0x1p3", "NaN", "-Infinity", " 12 ", "9223372036854775807", "9223372036854775808",
+            "-9223372036854775808", "99999999999999999999", "true", "FALSE", "TrUe", "", " ",
+    };
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void templates() throws Exception {
+
+        for(String value: TEMPLATES) {
+
+            compare(value, null);
+
+            for(String next: TEMPLATES) {
+                compare(value, next);
+            }
+        }
+    }
+
+    @Test
+    public void randomValues() throws Exception {
+
+        Random random = new Random(SEED);
+
+        for(int i = 0; i < VALUES; i ++) {
+
+            String value = randomValue(random);
+            String next = random.nextInt(3) == 0 ? randomValue(random) : null;
+
+            compare(value, next);
+        }
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    /**
+     * Random characters, or a template with random characters replaced, inserted or removed.
+     */
+    private static String randomValue(Random random) {
+
+        StringBuilder sb = new StringBuilder();
+
+        if (random.nextBoolean()) {
+
+            for(int i = random.nextInt(14); i > 0; i --) {
+                sb.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+            }
+
+            return sb.toString();
+        }
+
+        sb.append(TEMPLATES[random.nextInt(TEMPLATES.length)]);
+
+        for(int i = random.nextInt(3); i > 0; i --) {
+
+            int position = random.nextInt(sb.length() + 1);
+            char c = ALPHABET.charAt(random.nextInt(ALPHABET.length()));
+
+            int operation = random.nextInt(3);
+
+            if (operation == 0 || position == sb.length()) {
+                sb.insert(position, c);
+            }
+            else if (operation == 1) {
+                sb.setCharAt(position, c);
+            }
+            else {
+                sb.deleteCharAt(position);
+            }
+        }
+
+        return sb.toString();
+    }
+
+    private static void compare(String value, String next) {
+
+        List<String> expectedNext = new ArrayList<>();
+        List<String> actualNext = new ArrayList<>();
+
+        if (next != null) {
+            expectedNext.add(next);
+            actualNext.add(next);
+        }
+
+        Object expected = TrialAndErrorTypeHeuristics.typeHeuristics(value, expectedNext);
+        Object actual = OptionParser.typeHeuristics(value, actualNext);
+
+        String message = "\"" + value + "\", \"" + next + "\"";
+
+        assertEquals(message, expected == null ? null : expected.getClass(), actual == null ? null : actual.getClass());
+        assertEquals(message, expected, actual);
+        assertEquals(message, expectedNext, actualNext);
+
+        assertEquals(message, TrialAndErrorTypeHeuristics.isTimestampOptionValue(value),
+                TimestampOption.isTimestampOptionValue(value));
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
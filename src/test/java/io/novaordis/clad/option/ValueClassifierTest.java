@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.clad.option;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/17/26
+ */
+public class ValueClassifierTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // isTimestamp() ---------------------------------------------------------------------------------------------------
+
+    @Test
+    public void isTimestamp_Full() throws Exception {
+
+        assertTrue(ValueClassifier.isTimestamp("07/23/16 14:00:00"));
+        assertTrue(ValueClassifier.isTimestamp("7/3/16 4:0:0"));
+        assertTrue(ValueClassifier.isTimestamp(" 07/ 23/16  14:00:00 and then some"));
+
+        // lenient
+        assertTrue(ValueClassifier.isTimestamp("13/45/16 25:61:61"));
+
+        assertFalse(ValueClassifier.isTimestamp("07/23/16"));
+        assertFalse(ValueClassifier.isTimestamp("07/23/16 14:00"));
+        assertFalse(ValueClassifier.isTimestamp("07/23/16\t14:00:00"));
+    }
+
+    @Test
+    public void isTimestamp_Relative() throws Exception {
+
+        assertTrue(ValueClassifier.isTimestamp("14:00:00"));
+        assertTrue(ValueClassifier.isTimestamp("1:2:\t3x"));
+
+        assertFalse(ValueClassifier.isTimestamp("14:00"));
+        assertFalse(ValueClassifier.isTimestamp("1 :2:3"));
+        assertFalse(ValueClassifier.isTimestamp("1::3"));
+        assertFalse(ValueClassifier.isTimestamp(""));
+    }
+
+    @Test
+    public void isTimestamp_DeferredToTheFormats() throws Exception {
+
+        // the number parser accepts signs, non-ASCII digits and the NaN symbol
+        assertTrue(ValueClassifier.isTimestamp("-1:2:3"));
+        assertTrue(ValueClassifier.isTimestamp("１:2:3"));
+        assertTrue(ValueClassifier.isTimestamp("NaN:1:1"));
+        assertTrue(ValueClassifier.isTimestamp("1234567890:1:1"));
+
+        assertFalse(ValueClassifier.isTimestamp("a:b:c"));
+    }
+
+    @Test
+    public void isTimestamp_Next() throws Exception {
+
+        assertTrue(ValueClassifier.isTimestamp("07/23/16", "14:00:00"));
+        assertTrue(ValueClassifier.isTimestamp("14:00:00", "something"));
+        assertTrue(ValueClassifier.isTimestamp("-7/23/16", "14:00:00"));
+
+        assertFalse(ValueClassifier.isTimestamp("07/23/16", "14:00"));
+        assertFalse(ValueClassifier.isTimestamp("07/23/16", "something"));
+    }
+
+    // classify() ------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void classify_Long() throws Exception {
+
+        assertEquals(12L, ValueClassifier.classify("12"));
+        assertEquals(-7L, ValueClassifier.classify("-7"));
+        assertEquals(7L, ValueClassifier.classify("+7"));
+        assertEquals(Long.MAX_VALUE, ValueClassifier.classify("9223372036854775807"));
+        assertEquals(Long.MIN_VALUE, ValueClassifier.classify("-9223372036854775808"));
+        assertEquals(12L, ValueClassifier.classify("١٢"));
+    }
+
+    @Test
+    public void classify_Double() throws Exception {
+
+        assertEquals(1.5d, ValueClassifier.classify("1.5"));
+        assertEquals(9.223372036854775808E18d, ValueClassifier.classify("9223372036854775808"));
+        assertEquals(12d, ValueClassifier.classify(" 12 "));
+        assertEquals(0.5d, ValueClassifier.classify(".5"));
+        assertEquals(1d, ValueClassifier.classify("1."));
+        assertEquals(-1.5e10d, ValueClassifier.classify("-1.5e10"));
+        assertEquals(1d, ValueClassifier.classify("1f"));
+        assertEquals(8d, ValueClassifier.classify("0x1p3"));
+        assertEquals(Double.NaN, ValueClassifier.classify("NaN"));
+        assertEquals(Double.NEGATIVE_INFINITY, ValueClassifier.classify("-Infinity"));
+    }
+
+    @Test
+    public void classify_Boolean() throws Exception {
+
+        assertSame(Boolean.TRUE, ValueClassifier.classify("true"));
+        assertSame(Boolean.TRUE, ValueClassifier.classify("TrUe"));
+        assertSame(Boolean.FALSE, ValueClassifier.classify("FALSE"));
+
+        // the upper case form of the long s is 'S', its lower case form is not 's'
+        assertEquals("falſe", ValueClassifier.classify("falſe"));
+    }
+
+    @Test
+    public void classify_String() throws Exception {
+
+        String s = "something";
+        assertSame(s, ValueClassifier.classify(s));
+
+        assertEquals("", ValueClassifier.classify(""));
+        assertEquals("1e", ValueClassifier.classify("1e"));
+        assertEquals(".", ValueClassifier.classify("."));
+        assertEquals("0x", ValueClassifier.classify("0x"));
+        assertEquals("-", ValueClassifier.classify("-"));
+        assertEquals("Infinity!", ValueClassifier.classify("Infinity!"));
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}